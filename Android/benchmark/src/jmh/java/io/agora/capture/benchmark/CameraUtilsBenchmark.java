@@ -0,0 +1,60 @@
+package io.agora.capture.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.agora.capture.framework.util.CameraUtils;
+import io.agora.capture.video.camera.VideoCapture;
+
+/**
+ * Selection of the camera frame rate range, over the
+ * ranges a typical device reports, scaled by 1000.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CameraUtilsBenchmark {
+    private static final int[][] RANGES = {
+            {15000, 15000}, {8000, 24000}, {20000, 20000}, {24000, 24000}, {7000, 30000},
+            {10000, 30000}, {15000, 30000}, {24000, 30000}, {30000, 30000}, {30000, 60000},
+    };
+
+    @Param({"15", "24", "30", "60"})
+    public int frameRate;
+
+    private List<VideoCapture.FrameRateRange> mRanges;
+
+    @Setup
+    public void setup() {
+        mRanges = new ArrayList<>();
+        for (int[] range : RANGES) {
+            mRanges.add(new VideoCapture.FrameRateRange(range[0], range[1]));
+        }
+    }
+
+    @Benchmark
+    public VideoCapture.FrameRateRange closestExactly() {
+        return CameraUtils.getClosestFrameRateRangeExactly(mRanges, frameRate * 1000);
+    }
+
+    @Benchmark
+    public VideoCapture.FrameRateRange closestWebrtc() {
+        return CameraUtils.getClosestFrameRateRangeWebrtc(mRanges, frameRate * 1000);
+    }
+}
@@ -0,0 +1,131 @@
+package io.agora.capture.benchmark;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.opengl.GLES11Ext;
+import android.opengl.Matrix;
+import android.os.Handler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.agora.capture.framework.gles.MatrixOperator;
+import io.agora.capture.framework.gles.core.RecordingGlBackend;
+import io.agora.capture.framework.modules.channels.VideoChannel;
+import io.agora.capture.framework.modules.processors.WatermarkProcessor;
+import io.agora.capture.framework.util.ThreadUtils;
+import io.agora.capture.video.camera.FrameTimestamps;
+import io.agora.capture.video.camera.VideoCaptureFrame;
+import io.agora.capture.video.camera.VideoCaptureFramePool;
+import io.agora.capture.video.camera.VideoModule;
+
+/**
+ * A camera frame through a channel on the recording GL
+ * backend: the watermark and rotate processors, and the
+ * window consumers drawing on the channel thread. Draws
+ * may cost GPU time spent on the channel thread.
+ * VideoChannelTest checks the passes of a frame and the
+ * GL objects left after the channel stops.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChannelPipelineBenchmark {
+    private static final int CHANNEL_ID = 101;
+    private static final int WIDTH = 1280;
+    private static final int HEIGHT = 720;
+
+    @Param({"1", "4"})
+    public int consumers;
+
+    @Param({"false", "true"})
+    public boolean watermark;
+
+    @Param({"0", "200"})
+    public int drawCostUs;
+
+    private final VideoCaptureFramePool mFramePool = new VideoCaptureFramePool(2);
+    private final FrameTimestamps mCleanTimestamps = new FrameTimestamps();
+    private final float[] mTransform = new float[16];
+    private final List<HeadlessWindowConsumer> mConsumers = new ArrayList<>();
+
+    private VideoChannel mChannel;
+    private Handler mHandler;
+
+    @Setup
+    public void setup() {
+        VideoModule module = VideoModule.instance();
+        if (!module.hasInitialized()) {
+            module.init(new Context() {});
+        }
+        module.setGlBackendFactory(() -> {
+            RecordingGlBackend backend = new RecordingGlBackend();
+            backend.setDrawCostNs(TimeUnit.MICROSECONDS.toNanos(drawCostUs));
+            return backend;
+        });
+        module.startChannel(CHANNEL_ID);
+        mChannel = module.getVideoChannel(CHANNEL_ID);
+        mHandler = mChannel.getHandler();
+
+        for (int i = 0; i < consumers; i++) {
+            HeadlessWindowConsumer consumer = new HeadlessWindowConsumer("window_" + i, HEIGHT, WIDTH);
+            consumer.connectChannel(CHANNEL_ID);
+            mConsumers.add(consumer);
+        }
+
+        if (watermark) {
+            // The processors are created on the channel thread
+            ThreadUtils.invokeAtFrontUninterruptibly(mHandler, () -> {
+                WatermarkProcessor processor = mChannel.getWatermarkProcessor();
+                processor.setOutSize(HEIGHT, WIDTH);
+                processor.setWatermarkBitmap(Bitmap.createBitmap(200, 100, Bitmap.Config.ARGB_8888),
+                        0, 0, MatrixOperator.ScaleType.FitCenter);
+            });
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        for (HeadlessWindowConsumer consumer : mConsumers) {
+            consumer.disconnectChannel(CHANNEL_ID);
+        }
+        mConsumers.clear();
+        VideoModule.instance().stopChannel(CHANNEL_ID);
+        mChannel.join();
+    }
+
+    @Benchmark
+    public void pushFrame() {
+        final VideoCaptureFrame frame = mFramePool.obtain();
+        frame.format.setWidth(WIDTH);
+        frame.format.setHeight(HEIGHT);
+        frame.format.setTexFormat(GLES11Ext.GL_TEXTURE_EXTERNAL_OES);
+        frame.textureId = 1;
+        Matrix.setIdentityM(mTransform, 0);
+        frame.textureTransform = mTransform;
+        frame.rotation = 90;
+        frame.mirrored = true;
+        frame.timestamps.copyFrom(mCleanTimestamps);
+        frame.timestamps.mark(FrameTimestamps.CAPTURE);
+
+        ThreadUtils.invokeAtFrontUninterruptibly(mHandler, () -> mChannel.pushVideoFrame(frame));
+        frame.release();
+    }
+}
@@ -0,0 +1,88 @@
+package io.agora.capture.benchmark;
+
+import android.content.Context;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import io.agora.capture.framework.gles.core.RecordingGlBackend;
+import io.agora.capture.framework.modules.producers.FrameQueue;
+import io.agora.capture.framework.modules.producers.VideoProducer;
+import io.agora.capture.video.camera.VideoCaptureFrame;
+import io.agora.capture.video.camera.VideoCaptureFramePool;
+import io.agora.capture.video.camera.VideoModule;
+
+/**
+ * Handoff of pooled frames from the producer thread to
+ * the channel thread through the frame queue, with every
+ * queue policy. The channel only counts the frames, so
+ * this is the cost of the handoff itself.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrameHandoffBenchmark {
+    private static final int CHANNEL_ID = 100;
+    private static final int QUEUE_CAPACITY = 3;
+    private static final long BLOCKING_TIMEOUT_MS = 100;
+
+    @Param({"latest_wins", "bounded_fifo", "blocking"})
+    public String queue;
+
+    private static class BenchmarkProducer extends VideoProducer {
+
+    }
+
+    private final VideoCaptureFramePool mFramePool = new VideoCaptureFramePool(QUEUE_CAPACITY + 2);
+    private VideoProducer mProducer;
+
+    @Setup
+    public void setup() {
+        VideoModule module = VideoModule.instance();
+        if (!module.hasInitialized()) {
+            module.init(new Context() {});
+        }
+        module.setGlBackendFactory(RecordingGlBackend::new);
+        mProducer = new BenchmarkProducer();
+        switch (queue) {
+            case "bounded_fifo":
+                mProducer.setFrameQueue(FrameQueue.boundedFifo(QUEUE_CAPACITY));
+                break;
+            case "blocking":
+                mProducer.setFrameQueue(FrameQueue.blocking(QUEUE_CAPACITY, BLOCKING_TIMEOUT_MS));
+                break;
+            default:
+                mProducer.setFrameQueue(FrameQueue.latestWins());
+                break;
+        }
+        mProducer.connectChannel(CHANNEL_ID);
+    }
+
+    @TearDown
+    public void tearDown() {
+        mProducer.disconnect();
+        VideoModule.instance().stopChannel(CHANNEL_ID);
+    }
+
+    @Benchmark
+    public void pushVideoFrame() {
+        VideoCaptureFrame frame = mFramePool.obtain();
+        mProducer.pushVideoFrame(frame);
+        frame.release();
+    }
+}
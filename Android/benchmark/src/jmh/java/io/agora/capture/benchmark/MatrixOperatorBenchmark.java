@@ -0,0 +1,107 @@
+package io.agora.capture.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import io.agora.capture.framework.gles.MatrixOperator;
+import io.agora.capture.framework.gles.MatrixOperatorGL;
+import io.agora.capture.framework.gles.MatrixOperatorGraphics;
+
+/**
+ * Matrix updates done for every frame. The texture
+ * transform alternates between two matrices like the
+ * camera gives, so that every update is recomposed.
+ * The chains use the final matrices without copy, as the
+ * pipeline does, and should not allocate with -prof gc.
+ * MatrixOperatorTest checks the operators against the
+ * matrices composed with android.graphics.Matrix and
+ * android.opengl.Matrix.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatrixOperatorBenchmark {
+    private static final int WIDTH = 1280;
+    private static final int HEIGHT = 720;
+
+    private final float[][] mTransforms = {
+            {0, -1, 0, 0, -1, 0, 0, 0, 0, 0, 1, 0, 1, 1, 0, 1},
+            {0, -1, 0, 0, 1, 0, 0, 0, 0, 0, 1, 0, 0, 1, 0, 1},
+    };
+    private int mFrame;
+
+    private MatrixOperator mTexMatrix;
+    private MatrixOperator mMVPMatrix;
+
+    @Setup
+    public void setup() {
+        mTexMatrix = new MatrixOperatorGraphics(MatrixOperator.ScaleType.FitXY);
+        mMVPMatrix = new MatrixOperatorGL(MatrixOperator.ScaleType.FitXY);
+    }
+
+    private float[] nextTransform() {
+        return mTransforms[mFrame++ & 1];
+    }
+
+    @Benchmark
+    public float[] graphicsUpdateChain() {
+        mTexMatrix.setTransformMatrix(nextTransform());
+        mTexMatrix.setPreFlipH((mFrame & 2) != 0);
+        mTexMatrix.setRotation(270);
+        return mTexMatrix.peekFinalMatrix();
+    }
+
+    @Benchmark
+    public float[] glUpdateChain() {
+        mMVPMatrix.setTransformMatrix(nextTransform());
+        mMVPMatrix.update(HEIGHT, WIDTH, HEIGHT, WIDTH);
+        mMVPMatrix.setRotation(90);
+        mMVPMatrix.setFlipH((mFrame & 2) != 0);
+        return mMVPMatrix.peekFinalMatrix();
+    }
+
+    /**
+     * A copy of the final matrix, not composed again
+     */
+    @Benchmark
+    public float[] graphicsFinalMatrix() {
+        return mTexMatrix.getFinalMatrix();
+    }
+
+    @Benchmark
+    public float[] glFinalMatrix() {
+        return mMVPMatrix.getFinalMatrix();
+    }
+
+    /**
+     * The matrix work of RotateProcessor for one frame
+     */
+    @Benchmark
+    public void rotateProcessorChain(Blackhole blackhole) {
+        boolean mirrored = (mFrame & 2) != 0;
+        mTexMatrix.setTransformMatrix(nextTransform());
+        mTexMatrix.setPreFlipH(mirrored);
+        mTexMatrix.setRotation(270);
+
+        mMVPMatrix.update(HEIGHT, WIDTH, HEIGHT, WIDTH);
+        mMVPMatrix.setRotation(mirrored ? -90 : 90);
+        mMVPMatrix.setFlipH(mirrored);
+
+        blackhole.consume(mTexMatrix.peekFinalMatrix());
+        blackhole.consume(mMVPMatrix.peekFinalMatrix());
+    }
+}
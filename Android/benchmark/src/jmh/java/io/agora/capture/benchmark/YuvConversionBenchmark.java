@@ -0,0 +1,87 @@
+package io.agora.capture.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import io.agora.capture.video.camera.BandedYuvConverter;
+import io.agora.capture.video.camera.VideoFramePlanes;
+import io.agora.capture.video.camera.YuvConverter;
+
+/**
+ * Packing of Camera2 YUV_420_888 images into NV21, by the
+ * stride-aware converter, by bands on several threads, and
+ * by the conversion that it replaced, see LegacyNv21.
+ * Images are synthetic direct buffers, either semi-planar
+ * chroma like most devices give, or planar chroma. Their
+ * rows are tight, where the legacy conversion copies NV21
+ * chroma in bulk, or padded as on many devices, where it
+ * reads luma by rows and chroma one sample at a time.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class YuvConversionBenchmark {
+    @Param({"1280x720", "1920x1080", "3840x2160"})
+    public String resolution;
+
+    @Param({"semi_planar", "planar"})
+    public String chroma;
+
+    @Param({"0", "64"})
+    public int rowPadding;
+
+    private VideoFramePlanes mPlanes;
+    private byte[] mOut;
+    private BandedYuvConverter mBandedConverter;
+
+    @Setup
+    public void setup() {
+        String[] size = resolution.split("x");
+        mPlanes = SyntheticPlanes.create(Integer.parseInt(size[0]), Integer.parseInt(size[1]),
+                chroma.equals("planar") ? SyntheticPlanes.CHROMA_PLANAR : SyntheticPlanes.CHROMA_VU,
+                rowPadding);
+
+        mOut = new byte[mPlanes.getPackedSize()];
+        YuvConverter.convert(mPlanes, mOut, VideoFramePlanes.LAYOUT_NV21);
+        if (!LegacyNv21.matches(mPlanes, mOut, LegacyNv21.convert(mPlanes, new byte[mOut.length]))) {
+            throw new IllegalStateException("The legacy conversion differs from the converter");
+        }
+
+        mBandedConverter = BandedYuvConverter.createDefault();
+    }
+
+    @TearDown
+    public void tearDown() {
+        mBandedConverter.release();
+    }
+
+    @Benchmark
+    public byte[] yuvConverter() {
+        return YuvConverter.convert(mPlanes, mOut, VideoFramePlanes.LAYOUT_NV21);
+    }
+
+    @Benchmark
+    public byte[] bandedYuvConverter() {
+        return mBandedConverter.convert(mPlanes, mOut, VideoFramePlanes.LAYOUT_NV21);
+    }
+
+    @Benchmark
+    public byte[] legacyNV21() {
+        return LegacyNv21.convert(mPlanes, mOut);
+    }
+}
@@ -0,0 +1,151 @@
+package io.agora.capture.framework.modules.channels;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import io.agora.capture.framework.metrics.FpsCounter;
+import io.agora.capture.framework.modules.consumers.AsyncVideoConsumer;
+import io.agora.capture.framework.modules.consumers.IVideoConsumer;
+import io.agora.capture.framework.modules.producers.FrameQueue;
+import io.agora.capture.video.camera.FrameTimestamps;
+import io.agora.capture.video.camera.VideoCaptureFrame;
+
+/**
+ * Fan-out of a frame to the consumers of a channel, as
+ * the frame loop of VideoChannel does it. One of the
+ * consumers is busy, and runs inline or on its own
+ * thread behind an AsyncVideoConsumer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConsumerFanOutBenchmark {
+    private static final long BUSY_TOKENS = 2000;
+
+    @Param({"1", "4", "16"})
+    public int consumers;
+
+    @Param({"false", "true"})
+    public boolean paced;
+
+    @Param({"false", "true"})
+    public boolean async;
+
+    private static class BenchmarkConsumer implements IVideoConsumer {
+        private final String mId;
+        private final long mTokens;
+        private long mConsumedCount;
+
+        BenchmarkConsumer(String id, long tokens) {
+            mId = id;
+            mTokens = tokens;
+        }
+
+        @Override
+        public void onConsumeFrame(VideoCaptureFrame frame, VideoChannel.ChannelContext context) {
+            if (mTokens > 0) Blackhole.consumeCPU(mTokens);
+            mConsumedCount++;
+        }
+
+        @Override
+        public void connectChannel(int channelId) {
+
+        }
+
+        @Override
+        public void disconnectChannel(int channelId) {
+
+        }
+
+        @Override
+        public void setMirrorMode(int mode) {
+
+        }
+
+        @Override
+        public Object getDrawingTarget() {
+            return this;
+        }
+
+        @Override
+        public int onMeasuredWidth() {
+            return 0;
+        }
+
+        @Override
+        public int onMeasuredHeight() {
+            return 0;
+        }
+
+        @Override
+        public void recycle() {
+
+        }
+
+        @Override
+        public String getId() {
+            return mId;
+        }
+    }
+
+    private final ConsumerRegistry mRegistry = new ConsumerRegistry();
+    private final VideoChannel.ChannelContext mContext = new VideoChannel.ChannelContext();
+    private final FrameTimestamps mCapturedTimestamps = new FrameTimestamps();
+    private VideoCaptureFrame mFrame;
+    private AsyncVideoConsumer mAsyncConsumer;
+
+    @Setup
+    public void setup() {
+        mFrame = new VideoCaptureFrame(null, null, -1, (byte[]) null, null, 0, 0, false);
+        mCapturedTimestamps.copyFrom(mFrame.timestamps);
+
+        IVideoConsumer busy = new BenchmarkConsumer("busy", BUSY_TOKENS);
+        if (async) {
+            mAsyncConsumer = new AsyncVideoConsumer(busy, FrameQueue.latestWins());
+            busy = mAsyncConsumer;
+        }
+        mRegistry.add(busy, new FpsCounter());
+
+        for (int i = 1; i < consumers; i++) {
+            IVideoConsumer consumer = new BenchmarkConsumer("consumer_" + i, 0);
+            mRegistry.add(consumer, new FpsCounter());
+            if (paced) mRegistry.setPacer(consumer, FramePacer.everyNth(2));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (mAsyncConsumer != null) mAsyncConsumer.recycle();
+    }
+
+    @Benchmark
+    public void consumeFrame() {
+        VideoCaptureFrame frame = mFrame;
+        frame.timestamps.copyFrom(mCapturedTimestamps);
+        for (ConsumerRegistry.Entry entry : mRegistry.entries()) {
+            if (entry.pacer != null &&
+                    !entry.pacer.accept(frame.timestamps.get(FrameTimestamps.CAPTURE))) {
+                continue;
+            }
+            entry.consumer.onConsumeFrame(frame, mContext);
+            frame.timestamps.markConsumer();
+            if (entry.fps != null) entry.fps.increment();
+        }
+    }
+}
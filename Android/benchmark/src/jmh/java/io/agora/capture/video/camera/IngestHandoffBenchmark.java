@@ -0,0 +1,124 @@
+package io.agora.capture.video.camera;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import io.agora.capture.benchmark.SyntheticPlanes;
+import io.agora.capture.framework.util.ThreadUtils;
+
+/**
+ * Frames per second that Camera2 capture sustains with a
+ * busy preprocessor on the channel thread, when the
+ * images are converted on the channel thread as before,
+ * and when they are converted on the ingest thread and
+ * handed over. The benchmark thread is the camera, a new
+ * image is given only after the channel has taken the
+ * previous one, so no frames are dropped and every
+ * operation is one processed frame.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IngestHandoffBenchmark {
+    private static final int WIDTH = 1280;
+    private static final int HEIGHT = 720;
+
+    @Param({"channel_thread", "ingest_thread"})
+    public String mode;
+
+    // Time the preprocessor takes for every frame
+    @Param({"0", "2000", "8000"})
+    public int preprocessUs;
+
+    private final FrameBufferPool mBufferPool = new FrameBufferPool(4);
+    private final IngestHandoff mHandoff = new IngestHandoff();
+    private final Semaphore mTaken = new Semaphore(1);
+    private VideoFramePlanes mPlanes;
+    private HandlerThread mChannelThread;
+    private Handler mChannelHandler;
+    private volatile int mSink;
+
+    private final IngestHandoff.Receiver mReceiver = new IngestHandoff.Receiver() {
+        @Override
+        public void onFrame(FrameBuffer buffer, VideoFramePlanes planes, long timestampNs) {
+            mTaken.release();
+            preprocess(buffer);
+        }
+    };
+
+    private final Runnable mDeliver = new Runnable() {
+        @Override
+        public void run() {
+            mHandoff.deliver(mReceiver);
+        }
+    };
+
+    @Setup
+    public void setup() {
+        mPlanes = SyntheticPlanes.create(WIDTH, HEIGHT, SyntheticPlanes.CHROMA_VU, 0);
+
+        mChannelThread = new HandlerThread("IngestHandoffBenchmark");
+        mChannelThread.start();
+        mChannelHandler = new Handler(mChannelThread.getLooper());
+    }
+
+    @TearDown
+    public void tearDown() {
+        mTaken.acquireUninterruptibly();
+        mChannelThread.quitSafely();
+        ThreadUtils.joinUninterruptibly(mChannelThread);
+        mHandoff.clear();
+        mTaken.release();
+    }
+
+    @Benchmark
+    public void captureFrame() {
+        FrameBuffer buffer = convert();
+        if (mode.equals("channel_thread")) {
+            try {
+                preprocess(buffer);
+            } finally {
+                buffer.release();
+            }
+            return;
+        }
+
+        mTaken.acquireUninterruptibly();
+        if (mHandoff.offer(buffer, null, System.nanoTime())) {
+            mChannelHandler.post(mDeliver);
+        }
+    }
+
+    private FrameBuffer convert() {
+        FrameBuffer buffer = mBufferPool.obtain(mPlanes.getPackedSize());
+        YuvConverter.convert(mPlanes, buffer.data(), VideoFramePlanes.LAYOUT_NV21);
+        return buffer;
+    }
+
+    private void preprocess(FrameBuffer buffer) {
+        long end = System.nanoTime() + preprocessUs * 1000L;
+        while (System.nanoTime() < end) {
+            // Busy like a beauty filter
+        }
+        mSink = buffer.data()[0];
+    }
+}
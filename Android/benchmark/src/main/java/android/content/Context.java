@@ -0,0 +1,23 @@
+package android.content;
+
+import android.content.res.Resources;
+
+/**
+ * JVM stand-in of the Android context, which provides
+ * no system service and no resource.
+ */
+public abstract class Context {
+    public static final String WINDOW_SERVICE = "window";
+
+    public Context getApplicationContext() {
+        return this;
+    }
+
+    public Resources getResources() {
+        return new Resources();
+    }
+
+    public Object getSystemService(String name) {
+        return null;
+    }
+}
@@ -0,0 +1,15 @@
+package android.content.res;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * JVM stand-in of the Android assets, which has no asset
+ * on the JVM.
+ */
+public final class AssetManager {
+    public InputStream open(String fileName) throws IOException {
+        throw new FileNotFoundException(fileName);
+    }
+}
@@ -0,0 +1,50 @@
+package android.graphics;
+
+import java.nio.ByteBuffer;
+
+/**
+ * JVM stand-in of the Android bitmap, with its size and
+ * transparent pixels only.
+ */
+public class Bitmap {
+    public enum Config {
+        ARGB_8888
+    }
+
+    private final int mWidth;
+    private final int mHeight;
+
+    private Bitmap(int width, int height) {
+        mWidth = width;
+        mHeight = height;
+    }
+
+    public static Bitmap createBitmap(int width, int height, Config config) {
+        return new Bitmap(width, height);
+    }
+
+    public static Bitmap createBitmap(Bitmap source, int x, int y, int width, int height,
+                                      Matrix m, boolean filter) {
+        return new Bitmap(width, height);
+    }
+
+    public Bitmap copy(Config config, boolean isMutable) {
+        return new Bitmap(mWidth, mHeight);
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public void copyPixelsToBuffer(ByteBuffer dst) {
+        dst.position(dst.position() + mWidth * mHeight * 4);
+    }
+
+    public void recycle() {
+
+    }
+}
@@ -0,0 +1,14 @@
+package android.graphics;
+
+/**
+ * JVM stand-in of the Android canvas, which draws nothing.
+ */
+public class Canvas {
+    public Canvas(Bitmap bitmap) {
+
+    }
+
+    public void drawBitmap(Bitmap bitmap, Rect src, Rect dst, Paint paint) {
+
+    }
+}
@@ -0,0 +1,8 @@
+package android.graphics;
+
+/**
+ * JVM stand-in of the Android colors.
+ */
+public class Color {
+    public static final int WHITE = 0xFFFFFFFF;
+}
@@ -0,0 +1,10 @@
+package android.graphics;
+
+/**
+ * JVM stand-in of the Android image formats.
+ */
+public class ImageFormat {
+    public static final int UNKNOWN = 0;
+    public static final int NV21 = 0x11;
+    public static final int YUV_420_888 = 0x23;
+}
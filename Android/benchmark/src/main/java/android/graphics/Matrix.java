@@ -0,0 +1,114 @@
+package android.graphics;
+
+/**
+ * JVM stand-in of the Android 3x3 matrix, with the
+ * operations used by the framework. The Android one is
+ * implemented natively, so the costs measured with this
+ * one only tell the overhead around it.
+ */
+public class Matrix {
+    public static final int MSCALE_X = 0;
+    public static final int MSKEW_X = 1;
+    public static final int MTRANS_X = 2;
+    public static final int MSKEW_Y = 3;
+    public static final int MSCALE_Y = 4;
+    public static final int MTRANS_Y = 5;
+    public static final int MPERSP_0 = 6;
+    public static final int MPERSP_1 = 7;
+    public static final int MPERSP_2 = 8;
+
+    private final float[] mValues = new float[9];
+    private final float[] mTemp = new float[9];
+
+    public Matrix() {
+        reset();
+    }
+
+    public Matrix(Matrix src) {
+        set(src);
+    }
+
+    public void reset() {
+        for (int i = 0; i < 9; i++) {
+            mValues[i] = 0;
+        }
+        mValues[MSCALE_X] = 1;
+        mValues[MSCALE_Y] = 1;
+        mValues[MPERSP_2] = 1;
+    }
+
+    public void set(Matrix src) {
+        if (src == null) {
+            reset();
+        } else {
+            System.arraycopy(src.mValues, 0, mValues, 0, 9);
+        }
+    }
+
+    public void setValues(float[] values) {
+        System.arraycopy(values, 0, mValues, 0, 9);
+    }
+
+    public void getValues(float[] values) {
+        System.arraycopy(mValues, 0, values, 0, 9);
+    }
+
+    public boolean preTranslate(float dx, float dy) {
+        return preConcat(1, 0, dx, 0, 1, dy);
+    }
+
+    public boolean preScale(float sx, float sy) {
+        return preConcat(sx, 0, 0, 0, sy, 0);
+    }
+
+    public boolean preRotate(float degrees) {
+        double radians = Math.toRadians(degrees);
+        float sin = (float) Math.sin(radians);
+        float cos = (float) Math.cos(radians);
+        return preConcat(cos, -sin, 0, sin, cos, 0);
+    }
+
+    public boolean postScale(float sx, float sy) {
+        for (int i = 0; i < 3; i++) {
+            mValues[i] *= sx;
+            mValues[3 + i] *= sy;
+        }
+        return true;
+    }
+
+    public boolean preConcat(Matrix other) {
+        multiply(mValues, other.mValues);
+        return true;
+    }
+
+    private boolean preConcat(float a, float b, float c, float d, float e, float f) {
+        float[] other = mTemp;
+        other[0] = a;
+        other[1] = b;
+        other[2] = c;
+        other[3] = d;
+        other[4] = e;
+        other[5] = f;
+        other[6] = 0;
+        other[7] = 0;
+        other[8] = 1;
+        multiply(mValues, other);
+        return true;
+    }
+
+    // values = values * other, in row-major order
+    private static void multiply(float[] values, float[] other) {
+        float v0 = values[0], v1 = values[1], v2 = values[2];
+        float v3 = values[3], v4 = values[4], v5 = values[5];
+        float v6 = values[6], v7 = values[7], v8 = values[8];
+        values[0] = v0 * other[0] + v1 * other[3] + v2 * other[6];
+        values[1] = v0 * other[1] + v1 * other[4] + v2 * other[7];
+        values[2] = v0 * other[2] + v1 * other[5] + v2 * other[8];
+        values[3] = v3 * other[0] + v4 * other[3] + v5 * other[6];
+        values[4] = v3 * other[1] + v4 * other[4] + v5 * other[7];
+        values[5] = v3 * other[2] + v4 * other[5] + v5 * other[8];
+        values[6] = v6 * other[0] + v7 * other[3] + v8 * other[6];
+        values[7] = v6 * other[1] + v7 * other[4] + v8 * other[7];
+        values[8] = v6 * other[2] + v7 * other[5] + v8 * other[8];
+    }
+}
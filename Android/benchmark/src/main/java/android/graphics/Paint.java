@@ -0,0 +1,14 @@
+package android.graphics;
+
+/**
+ * JVM stand-in of the Android paint, which keeps nothing.
+ */
+public class Paint {
+    public void setAntiAlias(boolean aa) {
+
+    }
+
+    public void setColor(int color) {
+
+    }
+}
@@ -0,0 +1,26 @@
+package android.graphics;
+
+/**
+ * JVM stand-in of the Android rectangle.
+ */
+public class Rect {
+    public int left;
+    public int top;
+    public int right;
+    public int bottom;
+
+    public Rect(int left, int top, int right, int bottom) {
+        this.left = left;
+        this.top = top;
+        this.right = right;
+        this.bottom = bottom;
+    }
+
+    public int width() {
+        return right - left;
+    }
+
+    public int height() {
+        return bottom - top;
+    }
+}
@@ -0,0 +1,27 @@
+package android.graphics;
+
+/**
+ * JVM stand-in of the Android surface texture, which
+ * has no image stream on the JVM.
+ */
+public class SurfaceTexture {
+    public SurfaceTexture(int texName) {
+
+    }
+
+    public void updateTexImage() {
+
+    }
+
+    public void getTransformMatrix(float[] mtx) {
+        android.opengl.Matrix.setIdentityM(mtx, 0);
+    }
+
+    public long getTimestamp() {
+        return 0;
+    }
+
+    public void release() {
+
+    }
+}
@@ -0,0 +1,118 @@
+package android.opengl;
+
+/**
+ * JVM stand-in of EGL 1.4, with the constants and calls
+ * used by the framework. There is no EGL on the JVM, so
+ * every call throws.
+ */
+public class EGL14 {
+    public static final int EGL_DEFAULT_DISPLAY = 0;
+    public static final int EGL_SUCCESS = 0x3000;
+    public static final int EGL_ALPHA_SIZE = 0x3021;
+    public static final int EGL_BLUE_SIZE = 0x3022;
+    public static final int EGL_GREEN_SIZE = 0x3023;
+    public static final int EGL_RED_SIZE = 0x3024;
+    public static final int EGL_DEPTH_SIZE = 0x3025;
+    public static final int EGL_STENCIL_SIZE = 0x3026;
+    public static final int EGL_NONE = 0x3038;
+    public static final int EGL_RENDERABLE_TYPE = 0x3040;
+    public static final int EGL_HEIGHT = 0x3056;
+    public static final int EGL_WIDTH = 0x3057;
+    public static final int EGL_DRAW = 0x3059;
+    public static final int EGL_CONTEXT_CLIENT_VERSION = 0x3098;
+    public static final int EGL_OPENGL_ES2_BIT = 0x0004;
+
+    public static final EGLContext EGL_NO_CONTEXT = new EGLContext();
+    public static final EGLDisplay EGL_NO_DISPLAY = new EGLDisplay();
+    public static final EGLSurface EGL_NO_SURFACE = new EGLSurface();
+
+    static UnsupportedOperationException noEgl() {
+        return new UnsupportedOperationException("No EGL on the JVM");
+    }
+
+    public static boolean eglChooseConfig(EGLDisplay dpy, int[] attribList, int attribListOffset,
+                                          EGLConfig[] configs, int configsOffset, int configSize,
+                                          int[] numConfig, int numConfigOffset) {
+        throw noEgl();
+    }
+
+    public static EGLContext eglCreateContext(EGLDisplay dpy, EGLConfig config,
+                                              EGLContext shareContext, int[] attribList,
+                                              int offset) {
+        throw noEgl();
+    }
+
+    public static EGLSurface eglCreatePbufferSurface(EGLDisplay dpy, EGLConfig config,
+                                                     int[] attribList, int offset) {
+        throw noEgl();
+    }
+
+    public static EGLSurface eglCreateWindowSurface(EGLDisplay dpy, EGLConfig config, Object win,
+                                                    int[] attribList, int offset) {
+        throw noEgl();
+    }
+
+    public static boolean eglDestroyContext(EGLDisplay dpy, EGLContext ctx) {
+        throw noEgl();
+    }
+
+    public static boolean eglDestroySurface(EGLDisplay dpy, EGLSurface surface) {
+        throw noEgl();
+    }
+
+    public static EGLContext eglGetCurrentContext() {
+        throw noEgl();
+    }
+
+    public static EGLDisplay eglGetCurrentDisplay() {
+        throw noEgl();
+    }
+
+    public static EGLSurface eglGetCurrentSurface(int readdraw) {
+        throw noEgl();
+    }
+
+    public static EGLDisplay eglGetDisplay(int displayId) {
+        throw noEgl();
+    }
+
+    public static int eglGetError() {
+        throw noEgl();
+    }
+
+    public static boolean eglInitialize(EGLDisplay dpy, int[] major, int majorOffset,
+                                        int[] minor, int minorOffset) {
+        throw noEgl();
+    }
+
+    public static boolean eglMakeCurrent(EGLDisplay dpy, EGLSurface draw, EGLSurface read,
+                                         EGLContext ctx) {
+        throw noEgl();
+    }
+
+    public static boolean eglQueryContext(EGLDisplay dpy, EGLContext ctx, int attribute,
+                                          int[] value, int offset) {
+        throw noEgl();
+    }
+
+    public static String eglQueryString(EGLDisplay dpy, int name) {
+        throw noEgl();
+    }
+
+    public static boolean eglQuerySurface(EGLDisplay dpy, EGLSurface surface, int attribute,
+                                          int[] value, int offset) {
+        throw noEgl();
+    }
+
+    public static boolean eglReleaseThread() {
+        throw noEgl();
+    }
+
+    public static boolean eglSwapBuffers(EGLDisplay dpy, EGLSurface surface) {
+        throw noEgl();
+    }
+
+    public static boolean eglTerminate(EGLDisplay dpy) {
+        throw noEgl();
+    }
+}
@@ -0,0 +1,13 @@
+package android.opengl;
+
+/**
+ * JVM stand-in of the EGL extensions, only with those
+ * used by the framework.
+ */
+public class EGLExt {
+    public static final int EGL_OPENGL_ES3_BIT_KHR = 0x0040;
+
+    public static boolean eglPresentationTimeANDROID(EGLDisplay dpy, EGLSurface sur, long time) {
+        throw EGL14.noEgl();
+    }
+}
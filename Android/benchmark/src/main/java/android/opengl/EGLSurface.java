@@ -0,0 +1,8 @@
+package android.opengl;
+
+/**
+ * JVM stand-in of the EGL handle, never created on the JVM.
+ */
+public class EGLSurface {
+
+}
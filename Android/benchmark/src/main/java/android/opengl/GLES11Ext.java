@@ -0,0 +1,9 @@
+package android.opengl;
+
+/**
+ * JVM stand-in of the GLES extensions, only with the
+ * constants used by the pipeline.
+ */
+public class GLES11Ext {
+    public static final int GL_TEXTURE_EXTERNAL_OES = 0x8D65;
+}
@@ -0,0 +1,266 @@
+package android.opengl;
+
+import java.nio.Buffer;
+import java.nio.IntBuffer;
+
+/**
+ * JVM stand-in of GLES 2.0, with the constants and calls
+ * used by the framework. There is no GL on the JVM, so
+ * every call throws, channels draw through a recording
+ * GL backend instead.
+ */
+public class GLES20 {
+    public static final int GL_NO_ERROR = 0;
+    public static final int GL_POINTS = 0x0000;
+    public static final int GL_TRIANGLE_STRIP = 0x0005;
+    public static final int GL_DEPTH_BUFFER_BIT = 0x0100;
+    public static final int GL_SRC_ALPHA = 0x0302;
+    public static final int GL_ONE_MINUS_SRC_ALPHA = 0x0303;
+    public static final int GL_STENCIL_BUFFER_BIT = 0x0400;
+    public static final int GL_BLEND = 0x0BE2;
+    public static final int GL_VIEWPORT = 0x0BA2;
+    public static final int GL_TEXTURE_2D = 0x0DE1;
+    public static final int GL_UNSIGNED_BYTE = 0x1401;
+    public static final int GL_FLOAT = 0x1406;
+    public static final int GL_RGBA = 0x1908;
+    public static final int GL_VENDOR = 0x1F00;
+    public static final int GL_RENDERER = 0x1F01;
+    public static final int GL_VERSION = 0x1F02;
+    public static final int GL_NEAREST = 0x2600;
+    public static final int GL_LINEAR = 0x2601;
+    public static final int GL_TEXTURE_MAG_FILTER = 0x2800;
+    public static final int GL_TEXTURE_MIN_FILTER = 0x2801;
+    public static final int GL_TEXTURE_WRAP_S = 0x2802;
+    public static final int GL_TEXTURE_WRAP_T = 0x2803;
+    public static final int GL_REPEAT = 0x2901;
+    public static final int GL_COLOR_BUFFER_BIT = 0x4000;
+    public static final int GL_CLAMP_TO_EDGE = 0x812F;
+    public static final int GL_DEPTH_COMPONENT16 = 0x81A5;
+    public static final int GL_TEXTURE0 = 0x84C0;
+    public static final int GL_FRAGMENT_SHADER = 0x8B30;
+    public static final int GL_VERTEX_SHADER = 0x8B31;
+    public static final int GL_COMPILE_STATUS = 0x8B81;
+    public static final int GL_LINK_STATUS = 0x8B82;
+    public static final int GL_FRAMEBUFFER_BINDING = 0x8CA6;
+    public static final int GL_FRAMEBUFFER_COMPLETE = 0x8CD5;
+    public static final int GL_COLOR_ATTACHMENT0 = 0x8CE0;
+    public static final int GL_DEPTH_ATTACHMENT = 0x8D00;
+    public static final int GL_FRAMEBUFFER = 0x8D40;
+    public static final int GL_RENDERBUFFER = 0x8D41;
+    public static final int GL_TRUE = 1;
+
+    static UnsupportedOperationException noGl() {
+        return new UnsupportedOperationException("No GLES on the JVM");
+    }
+
+    public static void glActiveTexture(int texture) {
+        throw noGl();
+    }
+
+    public static void glAttachShader(int program, int shader) {
+        throw noGl();
+    }
+
+    public static void glBindFramebuffer(int target, int framebuffer) {
+        throw noGl();
+    }
+
+    public static void glBindRenderbuffer(int target, int renderbuffer) {
+        throw noGl();
+    }
+
+    public static void glBindTexture(int target, int texture) {
+        throw noGl();
+    }
+
+    public static void glBlendFunc(int sfactor, int dfactor) {
+        throw noGl();
+    }
+
+    public static int glCheckFramebufferStatus(int target) {
+        throw noGl();
+    }
+
+    public static void glClear(int mask) {
+        throw noGl();
+    }
+
+    public static void glCompileShader(int shader) {
+        throw noGl();
+    }
+
+    public static int glCreateProgram() {
+        throw noGl();
+    }
+
+    public static int glCreateShader(int type) {
+        throw noGl();
+    }
+
+    public static void glDeleteFramebuffers(int n, int[] framebuffers, int offset) {
+        throw noGl();
+    }
+
+    public static void glDeleteProgram(int program) {
+        throw noGl();
+    }
+
+    public static void glDeleteRenderbuffers(int n, int[] renderbuffers, int offset) {
+        throw noGl();
+    }
+
+    public static void glDeleteShader(int shader) {
+        throw noGl();
+    }
+
+    public static void glDeleteTextures(int n, int[] textures, int offset) {
+        throw noGl();
+    }
+
+    public static void glDisable(int cap) {
+        throw noGl();
+    }
+
+    public static void glDisableVertexAttribArray(int index) {
+        throw noGl();
+    }
+
+    public static void glDrawArrays(int mode, int first, int count) {
+        throw noGl();
+    }
+
+    public static void glEnable(int cap) {
+        throw noGl();
+    }
+
+    public static void glEnableVertexAttribArray(int index) {
+        throw noGl();
+    }
+
+    public static void glFinish() {
+        throw noGl();
+    }
+
+    public static void glFramebufferRenderbuffer(int target, int attachment,
+                                                 int renderbuffertarget, int renderbuffer) {
+        throw noGl();
+    }
+
+    public static void glFramebufferTexture2D(int target, int attachment, int textarget,
+                                              int texture, int level) {
+        throw noGl();
+    }
+
+    public static void glGenFramebuffers(int n, int[] framebuffers, int offset) {
+        throw noGl();
+    }
+
+    public static void glGenRenderbuffers(int n, int[] renderbuffers, int offset) {
+        throw noGl();
+    }
+
+    public static void glGenTextures(int n, int[] textures, int offset) {
+        throw noGl();
+    }
+
+    public static int glGetAttribLocation(int program, String name) {
+        throw noGl();
+    }
+
+    public static int glGetError() {
+        throw noGl();
+    }
+
+    public static void glGetIntegerv(int pname, int[] params, int offset) {
+        throw noGl();
+    }
+
+    public static void glGetIntegerv(int pname, IntBuffer params) {
+        throw noGl();
+    }
+
+    public static String glGetProgramInfoLog(int program) {
+        throw noGl();
+    }
+
+    public static void glGetProgramiv(int program, int pname, int[] params, int offset) {
+        throw noGl();
+    }
+
+    public static String glGetShaderInfoLog(int shader) {
+        throw noGl();
+    }
+
+    public static void glGetShaderiv(int shader, int pname, int[] params, int offset) {
+        throw noGl();
+    }
+
+    public static String glGetString(int name) {
+        throw noGl();
+    }
+
+    public static int glGetUniformLocation(int program, String name) {
+        throw noGl();
+    }
+
+    public static void glLinkProgram(int program) {
+        throw noGl();
+    }
+
+    public static void glReadPixels(int x, int y, int width, int height, int format, int type,
+                                    Buffer pixels) {
+        throw noGl();
+    }
+
+    public static void glRenderbufferStorage(int target, int internalformat, int width,
+                                             int height) {
+        throw noGl();
+    }
+
+    public static void glShaderSource(int shader, String string) {
+        throw noGl();
+    }
+
+    public static void glTexImage2D(int target, int level, int internalformat, int width,
+                                    int height, int border, int format, int type, Buffer pixels) {
+        throw noGl();
+    }
+
+    public static void glTexParameterf(int target, int pname, float param) {
+        throw noGl();
+    }
+
+    public static void glTexParameteri(int target, int pname, int param) {
+        throw noGl();
+    }
+
+    public static void glUniform1f(int location, float x) {
+        throw noGl();
+    }
+
+    public static void glUniform1i(int location, int x) {
+        throw noGl();
+    }
+
+    public static void glUniform4fv(int location, int count, float[] v, int offset) {
+        throw noGl();
+    }
+
+    public static void glUniformMatrix4fv(int location, int count, boolean transpose,
+                                          float[] value, int offset) {
+        throw noGl();
+    }
+
+    public static void glUseProgram(int program) {
+        throw noGl();
+    }
+
+    public static void glVertexAttribPointer(int index, int size, int type, boolean normalized,
+                                             int stride, Buffer ptr) {
+        throw noGl();
+    }
+
+    public static void glViewport(int x, int y, int width, int height) {
+        throw noGl();
+    }
+}
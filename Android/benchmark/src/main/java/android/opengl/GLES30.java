@@ -0,0 +1,10 @@
+package android.opengl;
+
+/**
+ * JVM stand-in of GLES 3.0, only with the constants used
+ * by the framework.
+ */
+public class GLES30 extends GLES20 {
+    public static final int GL_MAJOR_VERSION = 0x821B;
+    public static final int GL_MINOR_VERSION = 0x821C;
+}
@@ -0,0 +1,17 @@
+package android.opengl;
+
+import android.graphics.Bitmap;
+
+/**
+ * JVM stand-in of the GL utilities, whose calls throw
+ * as there is no GL on the JVM.
+ */
+public final class GLUtils {
+    private GLUtils() {
+
+    }
+
+    public static void texImage2D(int target, int level, Bitmap bitmap, int border) {
+        throw GLES20.noGl();
+    }
+}
@@ -0,0 +1,118 @@
+package android.opengl;
+
+/**
+ * JVM stand-in of the Android OpenGL matrix math, on
+ * column-major 4x4 float matrices. The operations used
+ * by the framework follow the Android implementation.
+ */
+public class Matrix {
+    private static final ThreadLocal<float[]> sTemp = new ThreadLocal<float[]>() {
+        @Override
+        protected float[] initialValue() {
+            return new float[32];
+        }
+    };
+
+    public static void setIdentityM(float[] sm, int smOffset) {
+        for (int i = 0; i < 16; i++) {
+            sm[smOffset + i] = 0;
+        }
+        for (int i = 0; i < 16; i += 5) {
+            sm[smOffset + i] = 1.0f;
+        }
+    }
+
+    /**
+     * The result must not overlap either operand, as
+     * required on Android.
+     */
+    public static void multiplyMM(float[] result, int resultOffset,
+                                  float[] lhs, int lhsOffset, float[] rhs, int rhsOffset) {
+        for (int i = 0; i < 4; i++) {
+            for (int j = 0; j < 4; j++) {
+                float sum = 0;
+                for (int k = 0; k < 4; k++) {
+                    sum += lhs[lhsOffset + k * 4 + j] * rhs[rhsOffset + i * 4 + k];
+                }
+                result[resultOffset + i * 4 + j] = sum;
+            }
+        }
+    }
+
+    public static void scaleM(float[] sm, int smOffset, float[] m, int mOffset,
+                              float x, float y, float z) {
+        for (int i = 0; i < 4; i++) {
+            sm[smOffset + i] = m[mOffset + i] * x;
+            sm[smOffset + 4 + i] = m[mOffset + 4 + i] * y;
+            sm[smOffset + 8 + i] = m[mOffset + 8 + i] * z;
+            sm[smOffset + 12 + i] = m[mOffset + 12 + i];
+        }
+    }
+
+    public static void scaleM(float[] m, int mOffset, float x, float y, float z) {
+        scaleM(m, mOffset, m, mOffset, x, y, z);
+    }
+
+    public static void translateM(float[] tm, int tmOffset, float[] m, int mOffset,
+                                  float x, float y, float z) {
+        for (int i = 0; i < 12; i++) {
+            tm[tmOffset + i] = m[mOffset + i];
+        }
+        for (int i = 0; i < 4; i++) {
+            tm[tmOffset + 12 + i] = m[mOffset + i] * x + m[mOffset + 4 + i] * y +
+                    m[mOffset + 8 + i] * z + m[mOffset + 12 + i];
+        }
+    }
+
+    public static void translateM(float[] m, int mOffset, float x, float y, float z) {
+        translateM(m, mOffset, m, mOffset, x, y, z);
+    }
+
+    public static void rotateM(float[] rm, int rmOffset, float[] m, int mOffset,
+                               float a, float x, float y, float z) {
+        float[] temp = sTemp.get();
+        setRotateM(temp, 0, a, x, y, z);
+        multiplyMM(temp, 16, m, mOffset, temp, 0);
+        System.arraycopy(temp, 16, rm, rmOffset, 16);
+    }
+
+    public static void rotateM(float[] m, int mOffset, float a, float x, float y, float z) {
+        rotateM(m, mOffset, m, mOffset, a, x, y, z);
+    }
+
+    public static void setRotateM(float[] rm, int rmOffset, float a, float x, float y, float z) {
+        rm[rmOffset + 3] = 0;
+        rm[rmOffset + 7] = 0;
+        rm[rmOffset + 11] = 0;
+        rm[rmOffset + 12] = 0;
+        rm[rmOffset + 13] = 0;
+        rm[rmOffset + 14] = 0;
+        rm[rmOffset + 15] = 1;
+        a *= (float) (Math.PI / 180.0f);
+        float s = (float) Math.sin(a);
+        float c = (float) Math.cos(a);
+        float len = (float) Math.sqrt(x * x + y * y + z * z);
+        if (len != 1.0f) {
+            float recipLen = 1.0f / len;
+            x *= recipLen;
+            y *= recipLen;
+            z *= recipLen;
+        }
+        float nc = 1.0f - c;
+        float xy = x * y;
+        float yz = y * z;
+        float zx = z * x;
+        float xs = x * s;
+        float ys = y * s;
+        float zs = z * s;
+        rm[rmOffset] = x * x * nc + c;
+        rm[rmOffset + 4] = xy * nc - zs;
+        rm[rmOffset + 8] = zx * nc + ys;
+        rm[rmOffset + 1] = xy * nc + zs;
+        rm[rmOffset + 5] = y * y * nc + c;
+        rm[rmOffset + 9] = yz * nc - xs;
+        rm[rmOffset + 2] = zx * nc - ys;
+        rm[rmOffset + 6] = yz * nc + xs;
+        rm[rmOffset + 10] = z * z * nc + c;
+    }
+}
@@ -0,0 +1,44 @@
+package android.os;
+
+/**
+ * JVM stand-in of the Android handler, posting runnables
+ * to the queue of a looper.
+ */
+public class Handler {
+    private final Looper mLooper;
+
+    public Handler() {
+        this(Looper.myLooper());
+    }
+
+    public Handler(Looper looper) {
+        if (looper == null) {
+            throw new RuntimeException("Can't create handler without a looper");
+        }
+        mLooper = looper;
+    }
+
+    public final Looper getLooper() {
+        return mLooper;
+    }
+
+    public final boolean post(Runnable r) {
+        return mLooper.enqueue(r, System.nanoTime());
+    }
+
+    public final boolean postDelayed(Runnable r, long delayMillis) {
+        return mLooper.enqueue(r, System.nanoTime() + delayMillis * 1000000L);
+    }
+
+    public final boolean postAtFrontOfQueue(Runnable r) {
+        return mLooper.enqueue(r, Long.MIN_VALUE);
+    }
+
+    public final void removeCallbacks(Runnable r) {
+        mLooper.remove(r);
+    }
+
+    public final void removeCallbacksAndMessages(Object token) {
+        mLooper.removeAll();
+    }
+}
@@ -0,0 +1,174 @@
+package android.os;
+
+/**
+ * JVM stand-in of the Android looper: a queue of delayed
+ * runnables executed in order by the thread that loops.
+ * Like the Android message queue, messages are kept in a
+ * list sorted by time and are reused, so that posting
+ * does not allocate.
+ */
+public final class Looper {
+    private static final ThreadLocal<Looper> sThreadLocal = new ThreadLocal<>();
+    private static volatile Looper sMainLooper;
+
+    private static final int MAX_POOL_SIZE = 50;
+
+    private static final class Message {
+        Runnable callback;
+        long whenNs;
+        Message next;
+    }
+
+    // Ends the loop once the messages before it are run
+    private static final Runnable QUIT = () -> { };
+
+    private final Thread mThread;
+    // Guarded by this
+    private Message mMessages;
+    private Message mPool;
+    private int mPoolSize;
+    private boolean mQuitting;
+
+    private Looper() {
+        mThread = Thread.currentThread();
+    }
+
+    public static void prepare() {
+        if (sThreadLocal.get() != null) {
+            throw new RuntimeException("Only one Looper may be created per thread");
+        }
+        sThreadLocal.set(new Looper());
+    }
+
+    public static void prepareMainLooper() {
+        prepare();
+        sMainLooper = myLooper();
+    }
+
+    public static Looper getMainLooper() {
+        return sMainLooper;
+    }
+
+    public static Looper myLooper() {
+        return sThreadLocal.get();
+    }
+
+    public static void loop() {
+        Looper looper = myLooper();
+        if (looper == null) {
+            throw new RuntimeException("No Looper; Looper.prepare() wasn't called on this thread.");
+        }
+
+        while (true) {
+            Runnable callback;
+            try {
+                synchronized (looper) {
+                    Message message = looper.mMessages;
+                    if (message == null) {
+                        looper.wait();
+                        continue;
+                    }
+                    long delayNs = message.whenNs - System.nanoTime();
+                    if (delayNs > 0) {
+                        looper.wait(Math.max(1, delayNs / 1000000));
+                        continue;
+                    }
+                    looper.mMessages = message.next;
+                    callback = message.callback;
+                    looper.recycle(message);
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            if (callback == QUIT) {
+                return;
+            }
+            callback.run();
+        }
+    }
+
+    synchronized boolean enqueue(Runnable r, long whenNs) {
+        if (mQuitting) {
+            return false;
+        }
+        insert(r, whenNs);
+        return true;
+    }
+
+    synchronized void remove(Runnable r) {
+        Message prev = null;
+        Message message = mMessages;
+        while (message != null) {
+            Message next = message.next;
+            if (message.callback == r) {
+                if (prev == null) mMessages = next;
+                else prev.next = next;
+                recycle(message);
+            } else {
+                prev = message;
+            }
+            message = next;
+        }
+    }
+
+    synchronized void removeAll() {
+        while (mMessages != null) {
+            Message message = mMessages;
+            mMessages = message.next;
+            recycle(message);
+        }
+    }
+
+    public Thread getThread() {
+        return mThread;
+    }
+
+    public synchronized void quit() {
+        mQuitting = true;
+        removeAll();
+        insert(QUIT, Long.MIN_VALUE);
+    }
+
+    /**
+     * Runs the messages already due before quitting.
+     */
+    public synchronized void quitSafely() {
+        mQuitting = true;
+        insert(QUIT, System.nanoTime());
+    }
+
+    // Messages of the same time run in the order posted
+    private void insert(Runnable r, long whenNs) {
+        Message message = mPool;
+        if (message != null) {
+            mPool = message.next;
+            mPoolSize--;
+        } else {
+            message = new Message();
+        }
+        message.callback = r;
+        message.whenNs = whenNs;
+
+        Message prev = null;
+        Message next = mMessages;
+        while (next != null && next.whenNs <= whenNs) {
+            prev = next;
+            next = next.next;
+        }
+        message.next = next;
+        if (prev == null) mMessages = message;
+        else prev.next = message;
+        notifyAll();
+    }
+
+    private void recycle(Message message) {
+        message.callback = null;
+        message.next = null;
+        if (mPoolSize < MAX_POOL_SIZE) {
+            message.next = mPool;
+            mPool = message;
+            mPoolSize++;
+        }
+    }
+}
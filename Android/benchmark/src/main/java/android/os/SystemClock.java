@@ -0,0 +1,22 @@
+package android.os;
+
+/**
+ * JVM stand-in of the Android system clock.
+ */
+public final class SystemClock {
+    private SystemClock() {
+
+    }
+
+    public static long uptimeMillis() {
+        return System.nanoTime() / 1000000L;
+    }
+
+    public static long elapsedRealtime() {
+        return System.nanoTime() / 1000000L;
+    }
+
+    public static long elapsedRealtimeNanos() {
+        return System.nanoTime();
+    }
+}
@@ -0,0 +1,14 @@
+package android.text;
+
+/**
+ * JVM stand-in of the Android text utilities.
+ */
+public final class TextUtils {
+    private TextUtils() {
+
+    }
+
+    public static boolean isEmpty(CharSequence str) {
+        return str == null || str.length() == 0;
+    }
+}
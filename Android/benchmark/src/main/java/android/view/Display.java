@@ -0,0 +1,11 @@
+package android.view;
+
+/**
+ * JVM stand-in of the Android display, in its natural
+ * rotation.
+ */
+public class Display {
+    public int getRotation() {
+        return Surface.ROTATION_0;
+    }
+}
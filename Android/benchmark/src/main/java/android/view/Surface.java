@@ -0,0 +1,12 @@
+package android.view;
+
+/**
+ * JVM stand-in of the Android surface, only with the
+ * display rotations.
+ */
+public class Surface {
+    public static final int ROTATION_0 = 0;
+    public static final int ROTATION_90 = 1;
+    public static final int ROTATION_180 = 2;
+    public static final int ROTATION_270 = 3;
+}
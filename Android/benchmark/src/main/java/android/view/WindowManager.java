@@ -0,0 +1,8 @@
+package android.view;
+
+/**
+ * JVM stand-in of the Android window manager.
+ */
+public interface WindowManager {
+    Display getDefaultDisplay();
+}
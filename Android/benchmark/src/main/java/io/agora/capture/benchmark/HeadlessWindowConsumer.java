@@ -0,0 +1,37 @@
+package io.agora.capture.benchmark;
+
+import io.agora.capture.framework.gles.MatrixOperator;
+import io.agora.capture.framework.modules.consumers.BaseWindowConsumer;
+import io.agora.capture.video.camera.VideoModule;
+
+/**
+ * A window consumer drawing on the channel thread to a
+ * window of a fixed size, for the recording GL backend.
+ */
+public class HeadlessWindowConsumer extends BaseWindowConsumer {
+    private final Object mWindow = new Object();
+    private final int mWidth;
+    private final int mHeight;
+
+    public HeadlessWindowConsumer(String id, int width, int height) {
+        super(VideoModule.instance(), false, MatrixOperator.ScaleType.CenterCrop);
+        setId(id);
+        mWidth = width;
+        mHeight = height;
+    }
+
+    @Override
+    public Object getDrawingTarget() {
+        return mWindow;
+    }
+
+    @Override
+    public int onMeasuredWidth() {
+        return mWidth;
+    }
+
+    @Override
+    public int onMeasuredHeight() {
+        return mHeight;
+    }
+}
@@ -0,0 +1,114 @@
+package io.agora.capture.benchmark;
+
+import java.nio.ByteBuffer;
+
+import io.agora.capture.video.camera.VideoFramePlanes;
+
+/**
+ * The conversion of Camera2 images to NV21 before the
+ * stride-aware converter, YUV_420_888toNV21 of
+ * VideoCaptureCamera2, as the baseline of the benchmarks.
+ * It takes planes instead of an Image, and duplicates
+ * their buffers, which were new for every image.
+ * Otherwise unchanged, with the bulk copy of chroma when
+ * the V and U planes overlap as NV21, which it finds by
+ * writing to the V plane, and with its two bugs, see
+ * matches().
+ */
+public final class LegacyNv21 {
+    private LegacyNv21() {
+
+    }
+
+    /**
+     * Whether out holds the image expected, but for the
+     * bytes the conversion gets wrong. Luma rows after the
+     * first of padded planes are read from the padding of
+     * the rows before instead of the row start. The bulk
+     * copy of chroma is of uvSize, the size of one chroma
+     * plane, so it leaves out the second half of the
+     * chroma. Interleaved chroma is assumed to overlap as
+     * NV21, as in SyntheticPlanes.
+     */
+    public static boolean matches(VideoFramePlanes image, byte[] expected, byte[] out) {
+        int width = image.getWidth();
+        int ySize = width * image.getHeight();
+        int lumaEnd = image.getPlanes()[0].getRowStride() == width ? ySize : width;
+        VideoFramePlanes.Plane v = image.getPlanes()[2];
+        boolean shortcut = v.getPixelStride() == 2 && v.getRowStride() == width;
+        int chromaEnd = shortcut ? ySize + ySize / 4 : expected.length;
+        return equals(expected, out, 0, lumaEnd) && equals(expected, out, ySize, chromaEnd);
+    }
+
+    private static boolean equals(byte[] a, byte[] b, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (a[i] != b[i]) return false;
+        }
+        return true;
+    }
+
+    public static byte[] convert(VideoFramePlanes image, byte[] out) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int ySize = width * height;
+        int uvSize = width * height / 4;
+
+        ByteBuffer yBuffer = image.getPlanes()[0].getBuffer().duplicate(); // Y
+        ByteBuffer uBuffer = image.getPlanes()[1].getBuffer().duplicate(); // U
+        ByteBuffer vBuffer = image.getPlanes()[2].getBuffer().duplicate(); // V
+
+        int rowStride = image.getPlanes()[0].getRowStride();
+        assert (image.getPlanes()[0].getPixelStride() == 1);
+
+        int pos = 0;
+
+        if (rowStride == width) { // likely
+            yBuffer.get(out, 0, ySize);
+            pos += ySize;
+        } else {
+            int yBufferPos = width - rowStride; // not an actual position
+            for (; pos < ySize; pos += width) {
+                yBufferPos += rowStride - width;
+                yBuffer.position(yBufferPos);
+                yBuffer.get(out, pos, width);
+            }
+        }
+
+        rowStride = image.getPlanes()[2].getRowStride();
+        int pixelStride = image.getPlanes()[2].getPixelStride();
+
+        assert (rowStride == image.getPlanes()[1].getRowStride());
+        assert (pixelStride == image.getPlanes()[1].getPixelStride());
+
+        if (pixelStride == 2 && rowStride == width && uBuffer.get(0) == vBuffer.get(1)) {
+            // maybe V an U planes overlap as per NV21, which means vBuffer[1] is alias of uBuffer[0]
+            byte savePixel = vBuffer.get(1);
+            vBuffer.put(1, (byte) 0);
+            if (uBuffer.get(0) == 0) {
+                vBuffer.put(1, (byte) 255);
+                if (uBuffer.get(0) == 255) {
+                    vBuffer.put(1, savePixel);
+                    vBuffer.get(out, ySize, uvSize);
+
+                    return out; // shortcut
+                }
+            }
+
+            // unfortunately, the check failed. We must save U and V pixel by pixel
+            vBuffer.put(1, savePixel);
+        }
+
+        // other optimizations could check if (pixelStride == 1) or (pixelStride == 2),
+        // but performance gain would be less significant
+
+        for (int row = 0; row < height / 2; row++) {
+            for (int col = 0; col < width / 2; col++) {
+                int vuPos = col * pixelStride + row * rowStride;
+                out[pos++] = vBuffer.get(vuPos);
+                out[pos++] = uBuffer.get(vuPos);
+            }
+        }
+
+        return out;
+    }
+}
@@ -0,0 +1,229 @@
+package io.agora.capture.benchmark;
+
+import android.opengl.Matrix;
+
+import io.agora.capture.framework.gles.MatrixOperator;
+import io.agora.capture.framework.gles.MatrixOperatorGL;
+import io.agora.capture.framework.gles.MatrixOperatorGraphics;
+
+/**
+ * The matrices composed with android.opengl.Matrix and
+ * android.graphics.Matrix as the operators used to, to
+ * check the operators against over combinations of their
+ * inputs.
+ * The GL operator rotated with the same array as result
+ * and operand of rotateM, which multiplies straight into
+ * the result on Android. Where the arrays are not copied
+ * for the native product, the columns it writes first are
+ * read back as operand, see glAliased(). The operators
+ * compute the product as if the arrays did not overlap,
+ * as the stand-in of rotateM does.
+ */
+public final class MatrixReference {
+    private static final float TOLERANCE = 1e-5f;
+
+    private static final int[][] SIZES = {
+            {720, 1280, 1280, 720},
+            {1280, 720, 1280, 720},
+            {1080, 1080, 640, 480},
+            {0, 0, 640, 480},
+    };
+    private static final float[] ROTATIONS = {0, 90, 180, 270, -90, 30};
+    private static final float[][] TRANSFORMS = {
+            {1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1},
+            {0, -1, 0, 0, -1, 0, 0, 0, 0, 0, 1, 0, 1, 1, 0, 1},
+            {0, -1, 0, 0, 1, 0, 0, 0, 0, 0, 1, 0, 0, 1, 0, 1},
+    };
+
+    private MatrixReference() {
+
+    }
+
+    /**
+     * @throws IllegalStateException if an operator differs
+     */
+    public static void check() {
+        int[] scaleTypes = {MatrixOperator.ScaleType.CenterCrop,
+                MatrixOperator.ScaleType.FitCenter, MatrixOperator.ScaleType.FitXY};
+        for (int scaleType : scaleTypes) {
+            for (int[] size : SIZES) {
+                for (float rotation : ROTATIONS) {
+                    for (int flips = 0; flips < 16; flips++) {
+                        for (float[] transform : TRANSFORMS) {
+                            check(scaleType, size, rotation, flips, transform, 1, 0);
+                            check(scaleType, size, rotation, flips, transform, 0.5f, 0.25f);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static void check(int scaleType, int[] size, float rotation, int flips,
+                              float[] transform, float scaleRadio, float translate) {
+        boolean flipH = (flips & 1) != 0;
+        boolean flipV = (flips & 2) != 0;
+        boolean preFlipH = (flips & 4) != 0;
+        boolean preFlipV = (flips & 8) != 0;
+
+        MatrixOperator gl = new MatrixOperatorGL(scaleType);
+        MatrixOperator graphics = new MatrixOperatorGraphics(scaleType);
+        for (MatrixOperator operator : new MatrixOperator[]{gl, graphics}) {
+            operator.update(size[0], size[1], size[2], size[3]);
+            operator.setScaleRadio(scaleRadio);
+            operator.translateX(translate);
+            operator.translateY(-translate);
+            operator.setRotation(rotation);
+            operator.setFlipH(flipH);
+            operator.setFlipV(flipV);
+            operator.setPreFlipH(preFlipH);
+            operator.setPreFlipV(preFlipV);
+            operator.setTransformMatrix(transform);
+        }
+
+        compare("gl", gl.getFinalMatrix(), gl(scaleType, size, rotation, flipH, flipV,
+                preFlipH, preFlipV, transform, scaleRadio, translate, -translate, false));
+        compare("graphics", graphics.getFinalMatrix(), graphics(scaleType, size, rotation,
+                flipH, flipV, preFlipH, preFlipV, transform, scaleRadio, translate, -translate));
+    }
+
+    private static void compare(String name, float[] actual, float[] expected) {
+        for (int i = 0; i < 16; i++) {
+            if (Math.abs(actual[i] - expected[i]) > TOLERANCE) {
+                throw new IllegalStateException("The " + name + " matrix differs at " + i +
+                        ": " + actual[i] + " instead of " + expected[i]);
+            }
+        }
+    }
+
+    /**
+     * The GL matrix with no flip nor translation, as
+     * composed where rotateM multiplies into its own
+     * operand.
+     */
+    public static float[] glAliased(int scaleType, int[] size, float rotation,
+                                    float[] transform, float scaleRadio) {
+        return gl(scaleType, size, rotation, false, false, false, false, transform,
+                scaleRadio, 0, 0, true);
+    }
+
+    /**
+     * The GL matrix with no flip nor translation.
+     */
+    public static float[] gl(int scaleType, int[] size, float rotation,
+                             float[] transform, float scaleRadio) {
+        return gl(scaleType, size, rotation, false, false, false, false, transform,
+                scaleRadio, 0, 0, false);
+    }
+
+    private static float[] gl(int scaleType, int[] size, float rotation,
+                              boolean flipH, boolean flipV, boolean preFlipH, boolean preFlipV,
+                              float[] transform, float scaleRadio, float translateX, float translateY,
+                              boolean aliased) {
+        float scaleX = 1.0f, scaleY = 1.0f;
+        int displayWidth = size[0], displayHeight = size[1];
+        int realWidth = size[2], realHeight = size[3];
+        if (displayWidth != 0 && displayHeight != 0 && scaleType != MatrixOperator.ScaleType.FitXY) {
+            float scale = displayWidth * realHeight * 1.0f / displayHeight / realWidth;
+            if (scale != 1) {
+                boolean crop = scaleType == MatrixOperator.ScaleType.CenterCrop;
+                scaleX = (crop ? scale > 1 : scale < 1) ? 1F : (1F / scale);
+                scaleY = (crop ? scale > 1 : scale < 1) ? scale : 1F;
+            }
+        }
+
+        float[] tmp = new float[16];
+        Matrix.setIdentityM(tmp, 0);
+
+        float _scaleX = scaleX * scaleRadio;
+        float _scaleY = scaleY * scaleRadio;
+        boolean _flipH = flipH;
+        boolean _flipV = flipV;
+        if (rotation % 180 != 0) {
+            _flipH = flipV;
+            _flipV = flipH;
+        }
+
+        Matrix.scaleM(tmp, 0, tmp, 0, preFlipH ? -1f : 1f, preFlipV ? -1.0f : 1f, 1f);
+        if (_scaleX != 1 || _scaleY != 1) {
+            Matrix.scaleM(tmp, 0, tmp, 0, _scaleX, _scaleY, 1.f);
+        }
+        if (translateX != 0 || translateY != 0) {
+            Matrix.translateM(tmp, 0, tmp, 0, translateX * (1 - _scaleX) / _scaleX,
+                    translateY * (1 - _scaleY) / _scaleY, 0);
+        }
+        if (_flipH) {
+            Matrix.scaleM(tmp, 0, tmp, 0, -1f, 1f, 1f);
+        }
+        if (_flipV) {
+            Matrix.scaleM(tmp, 0, tmp, 0, 1f, -1f, 1f);
+        }
+        if (rotation != 0) {
+            float angle = _flipH != _flipV ? -rotation : rotation;
+            if (aliased) {
+                rotateInPlace(tmp, angle);
+            } else {
+                Matrix.rotateM(tmp, 0, tmp, 0, angle, 0, 0, 1);
+            }
+        }
+
+        float[] result = new float[16];
+        Matrix.multiplyMM(result, 0, tmp, 0, transform, 0);
+        return result;
+    }
+
+    /**
+     * rotateM(m, 0, m, 0, a, 0, 0, 1) as on Android, the
+     * native product of m by the rotation into m, one
+     * column at a time.
+     */
+    private static void rotateInPlace(float[] m, float a) {
+        float[] rotate = new float[16];
+        Matrix.setRotateM(rotate, 0, a, 0, 0, 1);
+        for (int i = 0; i < 4; i++) {
+            float[] column = new float[4];
+            for (int j = 0; j < 4; j++) {
+                for (int k = 0; k < 4; k++) {
+                    column[k] += m[j * 4 + k] * rotate[i * 4 + j];
+                }
+            }
+            System.arraycopy(column, 0, m, i * 4, 4);
+        }
+    }
+
+    private static float[] graphics(int scaleType, int[] size, float rotation,
+                                    boolean flipH, boolean flipV, boolean preFlipH, boolean preFlipV,
+                                    float[] transform, float scaleRadio, float translateX, float translateY) {
+        float scaleX = 1.0f, scaleY = 1.0f;
+        int displayWidth = size[0], displayHeight = size[1];
+        int realWidth = size[2], realHeight = size[3];
+        if (displayWidth != 0 && displayHeight != 0 && scaleType != MatrixOperator.ScaleType.FitXY) {
+            float frameAspectRatio = realWidth / (float) realHeight;
+            float drawnAspectRatio = displayWidth / (float) displayHeight;
+            boolean crop = scaleType == MatrixOperator.ScaleType.CenterCrop;
+            if (crop ? frameAspectRatio > drawnAspectRatio : frameAspectRatio < drawnAspectRatio) {
+                scaleX = drawnAspectRatio / frameAspectRatio;
+            } else {
+                scaleY = frameAspectRatio / drawnAspectRatio;
+            }
+        }
+
+        android.graphics.Matrix matrix = new android.graphics.Matrix();
+        matrix.preTranslate(0.5f, 0.5f);
+        matrix.preScale(preFlipH ? -1f : 1f, preFlipV ? -1f : 1f);
+        matrix.preRotate(rotation);
+        matrix.preScale(flipH ? -1f : 1f, flipV ? -1f : 1f);
+        matrix.preScale(scaleX * scaleRadio, scaleY * scaleRadio);
+        matrix.preTranslate(-0.5f, -0.5f);
+        matrix.preTranslate(translateX, translateY);
+
+        android.graphics.Matrix finalMatrix = new android.graphics.Matrix();
+        finalMatrix.setValues(new float[]{
+                transform[0], transform[4], transform[12],
+                transform[1], transform[5], transform[13],
+                transform[3], transform[7], transform[15],
+        });
+        finalMatrix.preConcat(matrix);
+        return MatrixOperatorGraphics.convertMatrixFromAndroidGraphicsMatrix(finalMatrix);
+    }
+}
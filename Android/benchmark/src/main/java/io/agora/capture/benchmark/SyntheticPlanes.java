@@ -0,0 +1,81 @@
+package io.agora.capture.benchmark;
+
+import java.nio.ByteBuffer;
+
+import io.agora.capture.video.camera.VideoFramePlanes;
+
+/**
+ * Synthetic YUV_420_888 images in direct buffers, laid
+ * out like Camera2 images, for the benchmarks and tests
+ * of the YUV conversion. The bytes of a buffer have no
+ * short period, so that a sample read from a wrong
+ * position shows.
+ */
+public final class SyntheticPlanes {
+    /**
+     * V and U interleaved in one buffer, with the V plane
+     * one byte before the U plane as NV21, like most
+     * devices give.
+     */
+    public static final int CHROMA_VU = 0;
+
+    /**
+     * U and V interleaved in one buffer, with the U plane
+     * one byte before the V plane as NV12.
+     */
+    public static final int CHROMA_UV = 1;
+
+    /**
+     * U and V in buffers of their own, a byte per sample.
+     */
+    public static final int CHROMA_PLANAR = 2;
+
+    private SyntheticPlanes() {
+
+    }
+
+    /**
+     * @param rowPadding bytes after every row of a plane,
+     *                   0 for rows packed tightly
+     */
+    public static VideoFramePlanes create(int width, int height, int chroma, int rowPadding) {
+        int chromaWidth = VideoFramePlanes.chromaWidth(width);
+        int chromaHeight = VideoFramePlanes.chromaHeight(height);
+        int yStride = width + rowPadding;
+        VideoFramePlanes.Plane y = new VideoFramePlanes.Plane(filled(yStride * height), yStride, 1);
+
+        if (chroma == CHROMA_PLANAR) {
+            int stride = chromaWidth + rowPadding;
+            return new VideoFramePlanes(width, height, VideoFramePlanes.LAYOUT_YUV_420_888, y,
+                    new VideoFramePlanes.Plane(filled(stride * chromaHeight), stride, 1),
+                    new VideoFramePlanes.Plane(filled(stride * chromaHeight), stride, 1));
+        }
+
+        // The second plane of the pair ends a byte before
+        // the buffer, as the last sample of the first one
+        // ends the last row.
+        int stride = chromaWidth * 2 + rowPadding;
+        ByteBuffer interleaved = filled(stride * chromaHeight);
+        ByteBuffer first = slice(interleaved, 0, interleaved.capacity() - 1);
+        ByteBuffer second = slice(interleaved, 1, interleaved.capacity() - 1);
+        boolean vFirst = chroma == CHROMA_VU;
+        return new VideoFramePlanes(width, height, VideoFramePlanes.LAYOUT_YUV_420_888, y,
+                new VideoFramePlanes.Plane(vFirst ? second : first, stride, 2),
+                new VideoFramePlanes.Plane(vFirst ? first : second, stride, 2));
+    }
+
+    public static ByteBuffer filled(int size) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+        for (int i = 0; i < size; i++) {
+            buffer.put(i, (byte) ((i * 0x9E3779B1) >>> 24));
+        }
+        return buffer;
+    }
+
+    public static ByteBuffer slice(ByteBuffer data, int offset, int length) {
+        ByteBuffer buffer = data.duplicate();
+        buffer.position(offset);
+        buffer.limit(offset + length);
+        return buffer.slice();
+    }
+}
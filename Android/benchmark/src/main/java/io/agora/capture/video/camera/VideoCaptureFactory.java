@@ -0,0 +1,15 @@
+package io.agora.capture.video.camera;
+
+import android.content.Context;
+
+/**
+ * JVM stand-in of the video capture factory, the only
+ * framework class not built from the framework sources,
+ * as there is no camera on the JVM. The camera channel
+ * cannot be created on the JVM.
+ */
+public class VideoCaptureFactory {
+    public static VideoCapture createVideoCapture(Context context) {
+        throw new UnsupportedOperationException("No camera on the JVM");
+    }
+}
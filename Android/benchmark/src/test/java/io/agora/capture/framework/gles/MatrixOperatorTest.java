@@ -0,0 +1,80 @@
+package io.agora.capture.framework.gles;
+
+import org.junit.Test;
+
+import io.agora.capture.benchmark.MatrixReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The operators against the matrices they were composed
+ * with before, and where they intentionally differ from
+ * the GL matrix of devices whose rotateM multiplies into
+ * its own operand.
+ */
+public class MatrixOperatorTest {
+    private static final float TOLERANCE = 1e-5f;
+
+    private static final float[] IDENTITY = {1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1};
+    // Portrait display of a landscape frame, so that the
+    // scales of the axes differ
+    private static final int[] PORTRAIT = {720, 1280, 1280, 720};
+    private static final int[] LANDSCAPE = {1280, 720, 1280, 720};
+
+    @Test
+    public void matchesThePreviousComposition() {
+        MatrixReference.check();
+    }
+
+    @Test
+    public void matchesTheAliasedRotationByHalfTurns() {
+        for (int[] size : new int[][]{PORTRAIT, LANDSCAPE}) {
+            for (float rotation : new float[]{0, 180, -180}) {
+                assertEquals(0, maxDifference(operator(size, rotation),
+                        MatrixReference.glAliased(MatrixOperator.ScaleType.CenterCrop,
+                                size, rotation, IDENTITY, 1)), TOLERANCE);
+            }
+        }
+    }
+
+    @Test
+    public void doesNotCollapseQuarterTurnsLikeTheAliasedRotation() {
+        // The second column of the aliased product is made
+        // from the first one already rotated, so both end up
+        // parallel and the image is drawn as a line.
+        for (int[] size : new int[][]{PORTRAIT, LANDSCAPE}) {
+            for (float rotation : new float[]{90, 270, -90}) {
+                float[] expected = MatrixReference.gl(MatrixOperator.ScaleType.CenterCrop,
+                        size, rotation, IDENTITY, 1);
+                float[] aliased = MatrixReference.glAliased(MatrixOperator.ScaleType.CenterCrop,
+                        size, rotation, IDENTITY, 1);
+                float[] actual = operator(size, rotation);
+
+                assertEquals(0, maxDifference(actual, expected), TOLERANCE);
+                assertEquals(0, determinant(aliased), TOLERANCE);
+                assertTrue(Math.abs(determinant(actual)) > 0.1f);
+            }
+        }
+    }
+
+    private static float[] operator(int[] size, float rotation) {
+        MatrixOperator operator = new MatrixOperatorGL(MatrixOperator.ScaleType.CenterCrop);
+        operator.update(size[0], size[1], size[2], size[3]);
+        operator.setRotation(rotation);
+        return operator.getFinalMatrix();
+    }
+
+    // Of the upper left 2x2, the 2D part of the transform
+    private static float determinant(float[] m) {
+        return m[0] * m[5] - m[4] * m[1];
+    }
+
+    private static float maxDifference(float[] a, float[] b) {
+        float max = 0;
+        for (int i = 0; i < 16; i++) {
+            max = Math.max(max, Math.abs(a[i] - b[i]));
+        }
+        return max;
+    }
+}
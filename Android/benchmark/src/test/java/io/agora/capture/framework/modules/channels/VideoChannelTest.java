@@ -0,0 +1,201 @@
+package io.agora.capture.framework.modules.channels;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.opengl.GLES11Ext;
+import android.opengl.Matrix;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import io.agora.capture.benchmark.HeadlessWindowConsumer;
+import io.agora.capture.framework.gles.MatrixOperator;
+import io.agora.capture.framework.gles.core.RecordingGlBackend;
+import io.agora.capture.framework.modules.processors.WatermarkProcessor;
+import io.agora.capture.framework.util.ThreadUtils;
+import io.agora.capture.video.camera.VideoCaptureFrame;
+import io.agora.capture.video.camera.VideoCaptureFramePool;
+import io.agora.capture.video.camera.VideoModule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * A camera frame through a channel on the recording GL
+ * backend is rotated once and drawn once by every window
+ * consumer, and twice more with a watermark. Every GL
+ * object is released when the channel stops. The channel
+ * is started before it sets up GL.
+ */
+public class VideoChannelTest {
+    private static final int CHANNEL_ID = 203;
+    private static final int WIDTH = 1280;
+    private static final int HEIGHT = 720;
+
+    private final VideoCaptureFramePool mFramePool = new VideoCaptureFramePool(2);
+    private final float[] mTransform = new float[16];
+    private final List<HeadlessWindowConsumer> mConsumers = new ArrayList<>();
+
+    private volatile RecordingGlBackend mBackend;
+    // Counted down once GL setup is reached, which then
+    // waits for the gate, if any
+    private volatile CountDownLatch mGlEntered;
+    private volatile CountDownLatch mGlGate;
+    private VideoChannel mChannel;
+
+    @Before
+    public void setUp() {
+        VideoModule module = VideoModule.instance();
+        if (!module.hasInitialized()) {
+            module.init(new Context() {});
+        }
+        module.setGlBackendFactory(() -> {
+            CountDownLatch entered = mGlEntered;
+            CountDownLatch gate = mGlGate;
+            if (entered != null) entered.countDown();
+            if (gate != null) {
+                // Bounded, so that a channel setting up GL before
+                // it starts fails the test rather than hangs
+                try {
+                    gate.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            RecordingGlBackend backend = new RecordingGlBackend();
+            mBackend = backend;
+            return backend;
+        });
+    }
+
+    @After
+    public void tearDown() {
+        VideoModule.instance().setGlBackendFactory(RecordingGlBackend::new);
+        mGlEntered = null;
+        mGlGate = null;
+    }
+
+    @Test
+    public void setsUpGlWhileStarted() throws InterruptedException {
+        // EGL is held up, as it is slow on some devices
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch gate = new CountDownLatch(1);
+        mGlEntered = entered;
+        mGlGate = gate;
+        VideoModule module = VideoModule.instance();
+        module.startChannel(CHANNEL_ID);
+        mChannel = module.getVideoChannel(CHANNEL_ID);
+        assertFalse(mChannel.isChannelContextReady());
+
+        // Posted like startCapture posts the capture start
+        final boolean[] readyWhenRun = new boolean[1];
+        final CountDownLatch ran = new CountDownLatch(1);
+        mChannel.getHandler().post(() -> {
+            readyWhenRun[0] = mChannel.isChannelContextReady();
+            ran.countDown();
+        });
+
+        // The camera opening meanwhile, on a thread of its own
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        long openStartNs = System.nanoTime();
+        Thread.sleep(20);
+        long openEndNs = System.nanoTime();
+        assertFalse(mChannel.isChannelContextReady());
+        gate.countDown();
+
+        // Other threads wait for the channel to set up GL
+        assertNotNull(mChannel.getChannelContext().getGlBackend());
+        assertTrue(mChannel.isChannelContextReady());
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+        assertTrue(readyWhenRun[0]);
+
+        // The camera open phase lies within the EGL phase
+        assertTrue(mChannel.getInitStartNs() <= openStartNs);
+        assertTrue(openEndNs <= mChannel.getGlReadyNs());
+        assertTrue(mChannel.getGlReadyNs() <= mChannel.getInitEndNs());
+        stopChannel();
+    }
+
+    @Test
+    public void drawsEveryPassOncePerFrame() throws InterruptedException {
+        for (int consumers : new int[]{1, 4}) {
+            for (boolean watermark : new boolean[]{false, true}) {
+                startChannel(consumers, watermark);
+                pushFrame();
+                mBackend.resetCounts();
+                pushFrame();
+
+                String message = consumers + " consumers, watermark " + watermark;
+                assertEquals(message, consumers + (watermark ? 2 : 0),
+                        mBackend.getCount(RecordingGlBackend.OP_DRAW));
+                assertEquals(message, 1, mBackend.getCount(RecordingGlBackend.OP_DRAW_ROTATE));
+                assertEquals(message, consumers, mBackend.getCount(RecordingGlBackend.OP_SWAP_BUFFERS));
+                stopChannel();
+            }
+        }
+    }
+
+    @Test
+    public void releasesEveryGlObjectWhenStopped() throws InterruptedException {
+        startChannel(4, true);
+        pushFrame();
+        pushFrame();
+        stopChannel();
+
+        assertEquals(0, mBackend.getLiveObjectCount());
+    }
+
+    private void startChannel(int consumers, boolean watermark) {
+        VideoModule module = VideoModule.instance();
+        module.startChannel(CHANNEL_ID);
+        mChannel = module.getVideoChannel(CHANNEL_ID);
+        for (int i = 0; i < consumers; i++) {
+            HeadlessWindowConsumer consumer = new HeadlessWindowConsumer("window_" + i, HEIGHT, WIDTH);
+            consumer.connectChannel(CHANNEL_ID);
+            mConsumers.add(consumer);
+        }
+
+        if (watermark) {
+            // The processors are created on the channel thread
+            ThreadUtils.invokeAtFrontUninterruptibly(mChannel.getHandler(), () -> {
+                WatermarkProcessor processor = mChannel.getWatermarkProcessor();
+                processor.setOutSize(HEIGHT, WIDTH);
+                processor.setWatermarkBitmap(Bitmap.createBitmap(200, 100, Bitmap.Config.ARGB_8888),
+                        0, 0, MatrixOperator.ScaleType.FitCenter);
+            });
+        }
+    }
+
+    private void stopChannel() throws InterruptedException {
+        for (HeadlessWindowConsumer consumer : mConsumers) {
+            consumer.disconnectChannel(CHANNEL_ID);
+        }
+        mConsumers.clear();
+        VideoModule.instance().stopChannel(CHANNEL_ID);
+        mChannel.join();
+    }
+
+    // A mirrored camera frame, as the channel thread gets it
+    private void pushFrame() {
+        final VideoCaptureFrame frame = mFramePool.obtain();
+        frame.format.setWidth(WIDTH);
+        frame.format.setHeight(HEIGHT);
+        frame.format.setTexFormat(GLES11Ext.GL_TEXTURE_EXTERNAL_OES);
+        frame.textureId = 1;
+        Matrix.setIdentityM(mTransform, 0);
+        frame.textureTransform = mTransform;
+        frame.rotation = 90;
+        frame.mirrored = true;
+
+        ThreadUtils.invokeAtFrontUninterruptibly(mChannel.getHandler(), () -> mChannel.pushVideoFrame(frame));
+        frame.release();
+    }
+}
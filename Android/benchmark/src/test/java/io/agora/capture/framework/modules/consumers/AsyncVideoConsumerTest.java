@@ -0,0 +1,196 @@
+package io.agora.capture.framework.modules.consumers;
+
+import android.content.Context;
+import android.opengl.GLES11Ext;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.agora.capture.framework.gles.core.RecordingGlBackend;
+import io.agora.capture.framework.metrics.PipelineMetrics;
+import io.agora.capture.framework.modules.channels.VideoChannel;
+import io.agora.capture.framework.modules.producers.FrameQueue;
+import io.agora.capture.framework.modules.producers.VideoProducer;
+import io.agora.capture.video.camera.FrameTimestamps;
+import io.agora.capture.video.camera.VideoCaptureFrame;
+import io.agora.capture.video.camera.VideoCaptureFramePool;
+import io.agora.capture.video.camera.VideoModule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * An async consumer recycled while the channel queues
+ * frames to it must neither keep the frames nor stop
+ * consuming once frames come again, and its lag is a
+ * metric of the channel.
+ */
+public class AsyncVideoConsumerTest {
+    private static final int CHANNEL_ID = 202;
+    private static final int RECYCLES = 2000;
+    private static final long TIMEOUT_MS = 5000;
+
+    private static class TestProducer extends VideoProducer {
+
+    }
+
+    private static class CountingConsumer implements IVideoConsumer {
+        final AtomicInteger consumed = new AtomicInteger();
+
+        @Override
+        public void onConsumeFrame(VideoCaptureFrame frame, VideoChannel.ChannelContext context) {
+            consumed.incrementAndGet();
+        }
+
+        @Override
+        public void connectChannel(int channelId) {
+
+        }
+
+        @Override
+        public void disconnectChannel(int channelId) {
+
+        }
+
+        @Override
+        public void setMirrorMode(int mode) {
+
+        }
+
+        @Override
+        public Object getDrawingTarget() {
+            return null;
+        }
+
+        @Override
+        public int onMeasuredWidth() {
+            return 0;
+        }
+
+        @Override
+        public int onMeasuredHeight() {
+            return 0;
+        }
+
+        @Override
+        public void recycle() {
+
+        }
+
+        @Override
+        public String getId() {
+            return "counting";
+        }
+    }
+
+    private final VideoCaptureFramePool mFramePool = new VideoCaptureFramePool(4);
+    private final float[] mTransform = new float[16];
+    private final CountingConsumer mConsumer = new CountingConsumer();
+    private final AsyncVideoConsumer mAsync =
+            new AsyncVideoConsumer(mConsumer, FrameQueue.latestWins());
+
+    @Before
+    public void setUp() {
+        VideoModule module = VideoModule.instance();
+        if (!module.hasInitialized()) {
+            module.init(new Context() {});
+        }
+        module.setGlBackendFactory(RecordingGlBackend::new);
+    }
+
+    @After
+    public void tearDown() {
+        mAsync.recycle();
+    }
+
+    @Test
+    public void consumesAgainAfterRecycledMeanwhile() throws InterruptedException {
+        final AtomicBoolean done = new AtomicBoolean();
+        Thread recycler = new Thread(() -> {
+            for (int i = 0; i < RECYCLES; i++) {
+                mAsync.recycle();
+                Thread.yield();
+            }
+            done.set(true);
+        });
+        recycler.start();
+        while (!done.get()) {
+            consumeFrame();
+        }
+        recycler.join();
+
+        int consumed = mConsumer.consumed.get();
+        consumeFrame();
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (mConsumer.consumed.get() == consumed) {
+            assertTrue("no frame consumed after recycled", System.currentTimeMillis() < deadline);
+            Thread.yield();
+        }
+
+        mAsync.recycle();
+        assertEquals(mFramePool.getAllocatedCount(), mFramePool.getFreeCount());
+    }
+
+    @Test
+    public void lagIsAChannelMetric() {
+        VideoModule module = VideoModule.instance();
+        module.startChannel(CHANNEL_ID);
+        TestProducer producer = new TestProducer();
+        producer.connectChannel(CHANNEL_ID);
+        module.connectConsumer(mAsync, CHANNEL_ID, IVideoConsumer.TYPE_OFF_SCREEN);
+        try {
+            VideoCaptureFrame frame = cameraFrame();
+            producer.pushVideoFrame(frame);
+            frame.release();
+            while (mConsumer.consumed.get() == 0) {
+                Thread.yield();
+            }
+
+            String name = PipelineMetrics.consumer(CHANNEL_ID, AsyncVideoConsumer.class.getSimpleName() +
+                    "@" + Integer.toHexString(System.identityHashCode(mAsync)));
+            assertEquals(1, module.getMetrics().latency(name + ".lag").getCount());
+        } finally {
+            module.disconnectConsumer(mAsync, CHANNEL_ID);
+            producer.disconnect();
+            module.stopChannel(CHANNEL_ID);
+        }
+    }
+
+    @Test
+    public void maxLagIsResetWhenRecycled() {
+        VideoCaptureFrame frame = cameraFrame();
+        frame.timestamps.set(FrameTimestamps.CAPTURE,
+                FrameTimestamps.now() - TimeUnit.MILLISECONDS.toNanos(50));
+        mAsync.onConsumeFrame(frame, null);
+        frame.release();
+        while (mConsumer.consumed.get() == 0) {
+            Thread.yield();
+        }
+        assertTrue(mAsync.getMaxLagMs() > 0);
+
+        mAsync.recycle();
+        assertEquals(0, mAsync.getMaxLagMs());
+    }
+
+    // As the channel thread does
+    private void consumeFrame() {
+        VideoCaptureFrame frame = cameraFrame();
+        mAsync.onConsumeFrame(frame, null);
+        frame.release();
+    }
+
+    private VideoCaptureFrame cameraFrame() {
+        VideoCaptureFrame frame = mFramePool.obtain();
+        frame.format.setWidth(64);
+        frame.format.setHeight(48);
+        frame.format.setTexFormat(GLES11Ext.GL_TEXTURE_EXTERNAL_OES);
+        frame.textureId = 1;
+        frame.textureTransform = mTransform;
+        return frame;
+    }
+}
@@ -0,0 +1,187 @@
+package io.agora.capture.framework.modules.consumers;
+
+import android.content.Context;
+import android.graphics.ImageFormat;
+import android.opengl.GLES11Ext;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.agora.capture.framework.gles.core.RecordingGlBackend;
+import io.agora.capture.framework.modules.producers.FrameQueue;
+import io.agora.capture.framework.modules.producers.VideoProducer;
+import io.agora.capture.framework.util.ThreadUtils;
+import io.agora.capture.video.camera.FrameBufferPool;
+import io.agora.capture.video.camera.VideoCaptureFrame;
+import io.agora.capture.video.camera.VideoCaptureFramePool;
+import io.agora.capture.video.camera.VideoFramePlanes;
+import io.agora.capture.video.camera.VideoModule;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Camera frames carry a texture besides the image, and
+ * the rotate processor replaces the image with a rotated
+ * texture before the off-screen consumers. The recorder
+ * must still write the image as captured, also from a
+ * thread of its own once the channel has moved on.
+ */
+public class FrameRecorderTest {
+    private static final int CHANNEL_ID = 201;
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 48;
+    private static final int FRAMES = 10;
+
+    private static class TestProducer extends VideoProducer {
+
+    }
+
+    private final VideoCaptureFramePool mFramePool = new VideoCaptureFramePool(4);
+    private final FrameBufferPool mBufferPool = new FrameBufferPool(4);
+    private final float[] mTransform = new float[16];
+    private File mFile;
+    private FrameRecorder mRecorder;
+    private final List<IVideoConsumer> mConsumers = new ArrayList<>();
+    private TestProducer mProducer;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("FrameRecorderTest", ".y4m");
+        // Room for every frame, none is dropped
+        mRecorder = new FrameRecorder(mFile, FrameRecorder.CONTAINER_Y4M,
+                VideoFramePlanes.LAYOUT_I420, FRAMES);
+
+        VideoModule module = VideoModule.instance();
+        if (!module.hasInitialized()) {
+            module.init(new Context() {});
+        }
+        module.setGlBackendFactory(RecordingGlBackend::new);
+        module.startChannel(CHANNEL_ID);
+        mProducer = new TestProducer();
+        mProducer.connectChannel(CHANNEL_ID);
+    }
+
+    @After
+    public void tearDown() {
+        mRecorder.stop();
+        mProducer.disconnect();
+        VideoModule module = VideoModule.instance();
+        for (IVideoConsumer consumer : mConsumers) {
+            module.disconnectConsumer(consumer, CHANNEL_ID);
+        }
+        module.stopChannel(CHANNEL_ID);
+        mFile.delete();
+        mRecorder.getIndexFile().delete();
+    }
+
+    @Test
+    public void recordsCameraFramesAsCaptured() throws IOException {
+        connect(new CaptureFrameWrapConsumer(mRecorder));
+        mRecorder.start();
+        for (int i = 0; i < FRAMES; i++) {
+            long handled = handledCount();
+            pushCameraFrame(i);
+            while (handledCount() == handled) {
+                Thread.yield();
+            }
+        }
+        mRecorder.stop();
+        assertRecorded();
+    }
+
+    @Test
+    public void recordsQueuedCameraFramesAsCaptured() throws IOException {
+        // Nothing is recorded until every frame has gone
+        // through the channel, and its buffer is pooled
+        // for fewer frames.
+        final CountDownLatch pushed = new CountDownLatch(1);
+        connect(new AsyncVideoConsumer(new CaptureFrameWrapConsumer((frame, context) -> {
+            ThreadUtils.awaitUninterruptibly(pushed);
+            mRecorder.onConsumeFrame(frame, context);
+        }), FrameQueue.boundedFifo(FRAMES)));
+        final AtomicInteger channelFrames = new AtomicInteger();
+        connect(new CaptureFrameWrapConsumer((frame, context) -> channelFrames.incrementAndGet()));
+
+        mRecorder.start();
+        for (int i = 0; i < FRAMES; i++) {
+            pushCameraFrame(i);
+            while (channelFrames.get() == i) {
+                Thread.yield();
+            }
+        }
+        pushed.countDown();
+        while (handledCount() < FRAMES) {
+            Thread.yield();
+        }
+        mRecorder.stop();
+        assertRecorded();
+    }
+
+    private void connect(IVideoConsumer consumer) {
+        mConsumers.add(consumer);
+        VideoModule.instance().connectConsumer(consumer, CHANNEL_ID, IVideoConsumer.TYPE_OFF_SCREEN);
+    }
+
+    private void assertRecorded() throws IOException {
+        assertEquals(0, mRecorder.getSkippedFrameCount());
+        assertEquals(0, mRecorder.getDroppedFrameCount());
+        assertEquals(FRAMES, mRecorder.getWrittenFrameCount());
+
+        byte[] file = Files.readAllBytes(mFile.toPath());
+        String header = "YUV4MPEG2 W" + WIDTH + " H" + HEIGHT;
+        assertEquals(header, new String(file, 0, header.length(), "US-ASCII"));
+        int headerEnd = indexOf(file, (byte) '\n', 0) + 1;
+        int frameSize = "FRAME\n".length() + WIDTH * HEIGHT * 3 / 2;
+        assertEquals(headerEnd + FRAMES * frameSize, file.length);
+
+        // The luma of every frame as captured, not rotated
+        for (int i = 0; i < FRAMES; i++) {
+            int y = headerEnd + i * frameSize + "FRAME\n".length();
+            for (int p = 0; p < WIDTH * HEIGHT; p++) {
+                assertEquals((byte) (i + p), file[y + p]);
+            }
+        }
+    }
+
+    // A frame with a texture and its NV21 image, as the
+    // camera gives them
+    private void pushCameraFrame(int index) {
+        VideoCaptureFrame frame = mFramePool.obtain();
+        frame.format.setWidth(WIDTH);
+        frame.format.setHeight(HEIGHT);
+        frame.format.setPixelFormat(ImageFormat.NV21);
+        frame.format.setTexFormat(GLES11Ext.GL_TEXTURE_EXTERNAL_OES);
+        frame.textureId = 1;
+        frame.textureTransform = mTransform;
+        frame.rotation = 90;
+        frame.mirrored = true;
+        frame.buffer = mBufferPool.obtain(WIDTH * HEIGHT * 3 / 2);
+        frame.image = frame.buffer.data();
+        for (int p = 0; p < frame.image.length; p++) {
+            frame.image[p] = (byte) (index + p);
+        }
+        mProducer.pushVideoFrame(frame);
+        frame.release();
+    }
+
+    private long handledCount() {
+        return mRecorder.getWrittenFrameCount() + mRecorder.getDroppedFrameCount() +
+                mRecorder.getSkippedFrameCount();
+    }
+
+    private static int indexOf(byte[] data, byte value, int from) {
+        for (int i = from; i < data.length; i++) {
+            if (data[i] == value) return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,160 @@
+package io.agora.capture.framework.modules.producers;
+
+import android.content.Context;
+import android.opengl.GLES11Ext;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.agora.capture.framework.gles.core.RecordingGlBackend;
+import io.agora.capture.framework.modules.channels.VideoChannel;
+import io.agora.capture.framework.modules.consumers.IVideoConsumer;
+import io.agora.capture.video.camera.VideoCaptureFrame;
+import io.agora.capture.video.camera.VideoCaptureFramePool;
+import io.agora.capture.video.camera.VideoModule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Pooled camera frames pushed by a producer through the
+ * frame queue to the channel thread, rotated and handed
+ * to a consumer, must not allocate once warmed up.
+ */
+public class VideoProducerAllocationTest {
+    private static final int CHANNEL_ID = 200;
+    private static final int WARMUP_FRAMES = 20000;
+    private static final int MEASURED_FRAMES = 5000;
+
+    private static class TestProducer extends VideoProducer {
+
+    }
+
+    private static class CountingConsumer implements IVideoConsumer {
+        final AtomicInteger consumed = new AtomicInteger();
+        volatile Thread thread;
+
+        @Override
+        public void onConsumeFrame(VideoCaptureFrame frame, VideoChannel.ChannelContext context) {
+            thread = Thread.currentThread();
+            consumed.incrementAndGet();
+        }
+
+        @Override
+        public void connectChannel(int channelId) {
+
+        }
+
+        @Override
+        public void disconnectChannel(int channelId) {
+
+        }
+
+        @Override
+        public void setMirrorMode(int mode) {
+
+        }
+
+        @Override
+        public Object getDrawingTarget() {
+            return null;
+        }
+
+        @Override
+        public int onMeasuredWidth() {
+            return 0;
+        }
+
+        @Override
+        public int onMeasuredHeight() {
+            return 0;
+        }
+
+        @Override
+        public void recycle() {
+
+        }
+
+        @Override
+        public String getId() {
+            return "counting";
+        }
+    }
+
+    private final VideoCaptureFramePool mFramePool = new VideoCaptureFramePool(4);
+    private final float[] mTransform = new float[16];
+    private final CountingConsumer mConsumer = new CountingConsumer();
+    private TestProducer mProducer;
+
+    @Before
+    public void setUp() {
+        VideoModule module = VideoModule.instance();
+        if (!module.hasInitialized()) {
+            module.init(new Context() {});
+        }
+        module.setGlBackendFactory(RecordingGlBackend::new);
+        module.startChannel(CHANNEL_ID);
+        module.connectConsumer(mConsumer, CHANNEL_ID, IVideoConsumer.TYPE_OFF_SCREEN);
+        mProducer = new TestProducer();
+        mProducer.connectChannel(CHANNEL_ID);
+    }
+
+    @After
+    public void tearDown() {
+        mProducer.disconnect();
+        VideoModule module = VideoModule.instance();
+        module.disconnectConsumer(mConsumer, CHANNEL_ID);
+        module.stopChannel(CHANNEL_ID);
+    }
+
+    @Test
+    public void steadyStateDoesNotAllocate() {
+        pushFrames(WARMUP_FRAMES);
+        Thread channelThread = mConsumer.thread;
+
+        long producerBytes = allocatedBytes(Thread.currentThread());
+        long channelBytes = allocatedBytes(channelThread);
+        pushFrames(MEASURED_FRAMES);
+        producerBytes = allocatedBytes(Thread.currentThread()) - producerBytes;
+        channelBytes = allocatedBytes(channelThread) - channelBytes;
+
+        // Any object per frame would be far more than a
+        // byte per frame, the rest is the measurement.
+        assertTrue("producer thread allocated " + producerBytes + " bytes",
+                producerBytes < MEASURED_FRAMES);
+        assertTrue("channel thread allocated " + channelBytes + " bytes",
+                channelBytes < MEASURED_FRAMES);
+        assertEquals(0, mProducer.getDroppedFrameCount());
+    }
+
+    // One frame at a time, so that none is dropped
+    private void pushFrames(int count) {
+        for (int i = 0; i < count; i++) {
+            int consumed = mConsumer.consumed.get();
+            VideoCaptureFrame frame = mFramePool.obtain();
+            frame.format.setWidth(1280);
+            frame.format.setHeight(720);
+            frame.format.setTexFormat(GLES11Ext.GL_TEXTURE_EXTERNAL_OES);
+            frame.textureId = 1;
+            frame.textureTransform = mTransform;
+            frame.rotation = 90;
+            frame.mirrored = true;
+            mProducer.pushVideoFrame(frame);
+            frame.release();
+
+            while (mConsumer.consumed.get() == consumed) {
+                Thread.yield();
+            }
+        }
+    }
+
+    private static long allocatedBytes(Thread thread) {
+        com.sun.management.ThreadMXBean bean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return bean.getThreadAllocatedBytes(thread.getId());
+    }
+}
@@ -0,0 +1,114 @@
+package io.agora.capture.framework.modules.producers;
+
+import android.content.Context;
+import android.opengl.GLES11Ext;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import io.agora.capture.framework.gles.core.RecordingGlBackend;
+import io.agora.capture.video.camera.VideoCaptureFrame;
+import io.agora.capture.video.camera.VideoCaptureFramePool;
+import io.agora.capture.video.camera.VideoModule;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Frames queued when the frame queue of a producer is
+ * replaced must go back to their pool, however many
+ * times it is replaced before the channel runs.
+ */
+public class VideoProducerFrameQueueTest {
+    private static final int CHANNEL_ID = 201;
+
+    private static class TestProducer extends VideoProducer {
+
+    }
+
+    private final VideoCaptureFramePool mFramePool = new VideoCaptureFramePool(16);
+    private final float[] mTransform = new float[16];
+    private TestProducer mProducer;
+
+    @Before
+    public void setUp() {
+        VideoModule module = VideoModule.instance();
+        if (!module.hasInitialized()) {
+            module.init(new Context() {});
+        }
+        module.setGlBackendFactory(RecordingGlBackend::new);
+        module.startChannel(CHANNEL_ID);
+        mProducer = new TestProducer();
+        mProducer.connectChannel(CHANNEL_ID);
+    }
+
+    @After
+    public void tearDown() {
+        mProducer.disconnect();
+        VideoModule.instance().stopChannel(CHANNEL_ID);
+    }
+
+    @Test
+    public void replacedQueuesReleaseTheirFrames() throws InterruptedException {
+        CountDownLatch blocked = new CountDownLatch(1);
+        mProducer.pChannelHandler.post(() -> awaitUninterruptibly(blocked));
+
+        mProducer.setFrameQueue(FrameQueue.boundedFifo(4));
+        pushFrames(3);
+        mProducer.setFrameQueue(FrameQueue.boundedFifo(4));
+        pushFrames(3);
+        mProducer.setFrameQueue(FrameQueue.boundedFifo(2));
+        pushFrames(3);
+        blocked.countDown();
+        awaitChannel();
+
+        assertEquals(mFramePool.getAllocatedCount(), mFramePool.getFreeCount());
+    }
+
+    @Test
+    public void dropsAreCountedAcrossQueues() throws InterruptedException {
+        CountDownLatch blocked = new CountDownLatch(1);
+        mProducer.pChannelHandler.post(() -> awaitUninterruptibly(blocked));
+
+        mProducer.setFrameQueue(FrameQueue.boundedFifo(1));
+        pushFrames(3);
+        mProducer.setFrameQueue(FrameQueue.boundedFifo(1));
+        pushFrames(2);
+        assertEquals(3, mProducer.getDroppedFrameCount());
+
+        blocked.countDown();
+        awaitChannel();
+        assertEquals(3, mProducer.getDroppedFrameCount());
+        assertEquals(mFramePool.getAllocatedCount(), mFramePool.getFreeCount());
+    }
+
+    private void pushFrames(int count) {
+        for (int i = 0; i < count; i++) {
+            VideoCaptureFrame frame = mFramePool.obtain();
+            frame.format.setWidth(640);
+            frame.format.setHeight(480);
+            frame.format.setTexFormat(GLES11Ext.GL_TEXTURE_EXTERNAL_OES);
+            frame.textureId = 1;
+            frame.textureTransform = mTransform;
+            mProducer.pushVideoFrame(frame);
+            frame.release();
+        }
+    }
+
+    // Everything posted before has run on the channel
+    private void awaitChannel() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        mProducer.pChannelHandler.post(done::countDown);
+        done.await();
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
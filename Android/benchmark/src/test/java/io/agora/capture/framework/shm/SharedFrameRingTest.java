@@ -0,0 +1,274 @@
+package io.agora.capture.framework.shm;
+
+import android.graphics.ImageFormat;
+import android.opengl.GLES11Ext;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+
+import io.agora.capture.benchmark.SyntheticPlanes;
+import io.agora.capture.framework.modules.consumers.SharedFrameRingConsumer;
+import io.agora.capture.video.camera.FrameBufferPool;
+import io.agora.capture.video.camera.VideoCaptureFrame;
+import io.agora.capture.video.camera.VideoCaptureFramePool;
+import io.agora.capture.video.camera.VideoFramePlanes;
+import io.agora.capture.video.camera.YuvConverter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * A writer publishing frames as fast as it can, and
+ * readers of another thread and of another process
+ * following it. Readers may miss frames or find them
+ * overwritten, but a frame still valid after reading
+ * must be exactly the frame written.
+ */
+public class SharedFrameRingTest {
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 48;
+    private static final int SLOTS = 4;
+    private static final int FRAMES = 20000;
+    private static final long TIMEOUT_MS = 60000;
+
+    private File mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("SharedFrameRingTest", ".ring");
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    @Test
+    public void readerThreadOnlySeesWholeFrames() throws Exception {
+        SharedFrameRingWriter writer = SharedFrameRingWriter.create(
+                mFile, SLOTS, VideoFramePlanes.packedSize(WIDTH, HEIGHT));
+        SharedFrameRingReader reader = SharedFrameRingReader.open(mFile);
+
+        final long[] counts = new long[4];
+        final Throwable[] error = new Throwable[1];
+        Thread readerThread = new Thread(() -> {
+            try {
+                read(reader, counts);
+            } catch (Throwable e) {
+                error[0] = e;
+            }
+        });
+        readerThread.start();
+        writeFrames(writer);
+        readerThread.join(TIMEOUT_MS);
+
+        assertTrue("reader did not finish", !readerThread.isAlive());
+        if (error[0] != null) throw new AssertionError(error[0]);
+        assertReadCounts(counts);
+    }
+
+    @Test
+    public void readerProcessOnlySeesWholeFrames() throws Exception {
+        SharedFrameRingWriter writer = SharedFrameRingWriter.create(
+                mFile, SLOTS, VideoFramePlanes.packedSize(WIDTH, HEIGHT));
+
+        String java = System.getProperty("java.home") + File.separator + "bin" +
+                File.separator + "java";
+        Process process = new ProcessBuilder(java,
+                "-cp", System.getProperty("java.class.path"),
+                SharedFrameRingTest.class.getName(), mFile.getPath())
+                .redirectErrorStream(true)
+                .start();
+        BufferedReader output = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), "US-ASCII"));
+        try {
+            assertEquals("ready", output.readLine());
+            writeFrames(writer);
+
+            String line = output.readLine();
+            assertEquals(0, process.waitFor());
+            String[] fields = line.split(" ");
+            long[] counts = new long[fields.length];
+            for (int i = 0; i < fields.length; i++) {
+                counts[i] = Long.parseLong(fields[i]);
+            }
+            assertReadCounts(counts);
+        } finally {
+            process.destroy();
+        }
+    }
+
+    @Test
+    public void consumerSharesCameraFramesAsCaptured() throws IOException {
+        SharedFrameRingWriter writer = SharedFrameRingWriter.create(
+                mFile, SLOTS, VideoFramePlanes.packedSize(WIDTH, HEIGHT));
+        SharedFrameRingConsumer consumer = new SharedFrameRingConsumer(writer);
+        SharedFrameRingReader reader = SharedFrameRingReader.open(mFile);
+
+        VideoCaptureFramePool framePool = new VideoCaptureFramePool(1);
+        FrameBufferPool bufferPool = new FrameBufferPool(1);
+        VideoCaptureFrame frame = framePool.obtain();
+        frame.format.setWidth(WIDTH);
+        frame.format.setHeight(HEIGHT);
+        frame.format.setPixelFormat(ImageFormat.NV21);
+        frame.format.setTexFormat(GLES11Ext.GL_TEXTURE_EXTERNAL_OES);
+        frame.rotation = 270;
+        frame.mirrored = true;
+        frame.buffer = bufferPool.obtain(VideoFramePlanes.packedSize(WIDTH, HEIGHT));
+        frame.image = frame.buffer.data();
+        fill(frame.image, 0);
+
+        // What the channel and the rotate processor do
+        frame.keepCapturedImage();
+        frame.image = null;
+        frame.planes = null;
+        frame.format.setPixelFormat(ImageFormat.UNKNOWN);
+        frame.format.setWidth(HEIGHT);
+        frame.format.setHeight(WIDTH);
+        frame.rotation = 0;
+        frame.mirrored = false;
+
+        consumer.onConsumeFrame(frame, null);
+        frame.release();
+
+        SharedFrameRingReader.Frame shared = reader.readNext();
+        assertEquals(WIDTH, shared.getWidth());
+        assertEquals(HEIGHT, shared.getHeight());
+        assertEquals(270, shared.getRotation());
+        assertTrue(shared.isMirrored());
+        assertTrue(isFrame(shared.getImage(), 0));
+        assertTrue(shared.isValid());
+    }
+
+    @Test
+    public void writesPlanesConvertedIntoTheSlot() throws IOException {
+        SharedFrameRingWriter writer = SharedFrameRingWriter.create(
+                mFile, SLOTS, VideoFramePlanes.packedSize(WIDTH, HEIGHT));
+        SharedFrameRingReader reader = SharedFrameRingReader.open(mFile);
+        for (int chroma : new int[]{SyntheticPlanes.CHROMA_VU, SyntheticPlanes.CHROMA_PLANAR}) {
+            VideoFramePlanes planes = SyntheticPlanes.create(WIDTH, HEIGHT, chroma, 7);
+            assertTrue(writer.write(planes, 0, 0, 90, false));
+
+            byte[] expected = YuvConverter.convert(planes, new byte[planes.getPackedSize()],
+                    VideoFramePlanes.LAYOUT_NV21);
+            SharedFrameRingReader.Frame shared = reader.readNext();
+            ByteBuffer image = shared.getImage();
+            byte[] actual = new byte[image.remaining()];
+            image.get(actual);
+            assertArrayEquals(expected, actual);
+            assertTrue(shared.isValid());
+        }
+    }
+
+    @Test
+    public void closedWriterSkipsFrames() throws IOException {
+        SharedFrameRingWriter writer = SharedFrameRingWriter.create(
+                mFile, SLOTS, VideoFramePlanes.packedSize(WIDTH, HEIGHT));
+        SharedFrameRingReader reader = SharedFrameRingReader.open(mFile);
+        byte[] image = new byte[VideoFramePlanes.packedSize(WIDTH, HEIGHT)];
+        fill(image, 0);
+        assertTrue(writer.write(image, WIDTH, HEIGHT, 0, 0, 90, false));
+
+        writer.close();
+        assertFalse(writer.write(image, WIDTH, HEIGHT, 1, 1, 90, false));
+        assertFalse(writer.write(SyntheticPlanes.create(WIDTH, HEIGHT, SyntheticPlanes.CHROMA_VU, 0),
+                1, 1, 90, false));
+        assertEquals(2, writer.getSkippedFrameCount());
+        assertEquals(1, writer.getPublishedFrameCount());
+
+        // What was written before is still read
+        SharedFrameRingReader.Frame shared = reader.readNext();
+        assertTrue(isFrame(shared.getImage(), 0));
+        assertTrue(shared.isValid());
+    }
+
+    /**
+     * The reader process of readerProcessOnlySeesWholeFrames.
+     * Prints the counts of read, missed, torn and wrong
+     * frames.
+     */
+    public static void main(String[] args) throws IOException {
+        SharedFrameRingReader reader = SharedFrameRingReader.open(new File(args[0]));
+        System.out.println("ready");
+        System.out.flush();
+
+        long[] counts = new long[4];
+        read(reader, counts);
+        System.out.println(counts[0] + " " + counts[1] + " " + counts[2] + " " + counts[3]);
+        System.exit(0);
+    }
+
+    private static void writeFrames(SharedFrameRingWriter writer) {
+        byte[] image = new byte[VideoFramePlanes.packedSize(WIDTH, HEIGHT)];
+        for (int i = 0; i < FRAMES; i++) {
+            fill(image, i);
+            writer.write(image, WIDTH, HEIGHT, i, i, 90, false);
+        }
+    }
+
+    // Reads until the last frame is published and read
+    private static void read(SharedFrameRingReader reader, long[] counts) {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        long last = -1;
+        while (true) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("timeout at frame " + last);
+            }
+            long published = reader.getPublishedFrameCount();
+            SharedFrameRingReader.Frame frame = reader.readNext();
+            if (frame == null) {
+                if (published == FRAMES) break;
+                Thread.yield();
+                continue;
+            }
+
+            long number = frame.getFrameNumber();
+            boolean whole = frame.getCaptureTimeNs() == number && isFrame(frame.getImage(), number);
+            if (number <= last) {
+                counts[3]++;
+            } else if (!frame.isValid()) {
+                // Overwritten while read, to be discarded
+                counts[2]++;
+            } else if (!whole) {
+                counts[3]++;
+            } else {
+                counts[0]++;
+            }
+            last = number;
+        }
+        counts[1] = reader.getMissedFrameCount();
+    }
+
+    private static void assertReadCounts(long[] counts) {
+        assertEquals("wrong frames", 0, counts[3]);
+        assertTrue("no frame read", counts[0] > 0);
+        assertEquals(FRAMES, counts[0] + counts[1] + counts[2]);
+    }
+
+    private static void fill(byte[] image, long number) {
+        for (int p = 0; p < image.length; p++) {
+            image[p] = (byte) (number * 7 + p);
+        }
+    }
+
+    private static boolean isFrame(ByteBuffer image, long number) {
+        if (image.remaining() != VideoFramePlanes.packedSize(WIDTH, HEIGHT)) {
+            return false;
+        }
+        for (int p = 0; p < image.remaining(); p++) {
+            if (image.get(p) != (byte) (number * 7 + p)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,156 @@
+package io.agora.capture.video.camera;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import io.agora.capture.framework.util.CameraUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The governor driven by a simulated load trace, with a
+ * camera of typical capabilities.
+ */
+public class CaptureGovernorTest {
+    private static final int WIDTH = 1280;
+    private static final int HEIGHT = 720;
+    private static final int FRAME_RATE = 30;
+
+    // 16:9 and 4:3 sizes, not all of the common ones
+    private static final int[] SIZES = {
+            1920, 1080, 1280, 960, 1280, 720, 960, 720, 960, 544,
+            800, 448, 640, 480, 640, 352, 320, 240
+    };
+
+    // Fps ranges x1000, with a fixed 30 fps range
+    private static final CameraCapabilities CAMERA = new CameraCapabilities(
+            CameraCapabilities.API_CAMERA2, "0", Constant.CAMERA_FACING_BACK, 90, false, 1,
+            SIZES, new int[]{15000, 30000, 30000, 30000});
+
+    // Every rate maps to the same variable range
+    private static final CameraCapabilities VARIABLE_FPS_CAMERA = new CameraCapabilities(
+            CameraCapabilities.API_CAMERA2, "1", Constant.CAMERA_FACING_FRONT, 270, false, 1,
+            SIZES, new int[]{15000, 30000});
+
+    @Test
+    public void capabilityLadderHasDistinctModes() {
+        CaptureGovernor governor = new CaptureGovernor();
+        assertEquals(null, governor.getLevel());
+        assertTrue(governor.fitTo(CAMERA, WIDTH, HEIGHT, FRAME_RATE));
+        assertEquals(false, governor.fitTo(CAMERA, WIDTH, HEIGHT, FRAME_RATE));
+
+        List<CaptureGovernor.Level> ladder = governor.getLadder();
+        assertModesDistinct(CAMERA, ladder);
+        assertEquals(WIDTH, ladder.get(0).width);
+        assertEquals(HEIGHT, ladder.get(0).height);
+        assertEquals(FRAME_RATE, ladder.get(0).frameRate);
+        for (CaptureGovernor.Level level : ladder) {
+            // Only the sizes of the aspect ratio requested
+            assertEquals(16f / 9, (float) level.width / level.height, 0.05f);
+        }
+        for (int i = 1; i < ladder.size(); i++) {
+            assertTrue(ladder.get(i).pixelRate() < ladder.get(i - 1).pixelRate());
+        }
+    }
+
+    @Test
+    public void defaultLadderMergesLevelsOfTheSameMode() {
+        List<CaptureGovernor.Level> requested = CaptureGovernor.defaultLadder(WIDTH, HEIGHT, FRAME_RATE);
+        CaptureGovernor governor = new CaptureGovernor(requested);
+        assertTrue(governor.fitTo(VARIABLE_FPS_CAMERA, WIDTH, HEIGHT, FRAME_RATE));
+
+        List<CaptureGovernor.Level> ladder = governor.getLadder();
+        assertModesDistinct(VARIABLE_FPS_CAMERA, ladder);
+        // 30 fps and 20 fps are the same range
+        assertEquals(requested.size() / 2, ladder.size());
+        assertEquals(0, governor.getLevelIndex());
+
+        // Switching to a camera with distinct ranges keeps
+        // the level requested
+        governor.update(0, 0);
+        for (int i = 0; i < 3; i++) {
+            governor.update(200000000L, 0.5f);
+        }
+        assertEquals(1, governor.getLevelIndex());
+        assertTrue(governor.fitTo(CAMERA, WIDTH, HEIGHT, FRAME_RATE));
+        assertModesDistinct(CAMERA, governor.getLadder());
+        assertEquals(requested.get(2).width, governor.getLevel().width);
+        assertEquals(requested.get(2).frameRate, governor.getLevel().frameRate);
+    }
+
+    @Test
+    public void loadTraceStepsDownAndBackUp() {
+        CaptureGovernor governor = new CaptureGovernor();
+        governor.setSampleCounts(3, 10, 2);
+        governor.fitTo(CAMERA, WIDTH, HEIGHT, FRAME_RATE);
+        List<CaptureGovernor.Level> ladder = governor.getLadder();
+
+        // A preprocessor taking 115 ms for a frame of the
+        // size requested
+        double nsPerPixel = 125;
+        String mode = mode(CAMERA, governor.getLevel());
+        int changes = 0;
+        for (int sample = 0; sample < 200; sample++) {
+            if (feed(governor, nsPerPixel)) {
+                changes++;
+                String next = mode(CAMERA, governor.getLevel());
+                // A step that keeps the mode would only
+                // restart capture
+                assertTrue("Same mode after a step: " + next, !next.equals(mode));
+                mode = next;
+            }
+        }
+        // Straight down to the first level that keeps up,
+        // and stays there
+        int settledLevel = governor.getLevelIndex();
+        assertEquals(settledLevel, changes);
+        CaptureGovernor.Level settled = governor.getLevel();
+        assertTrue(frameTimeNs(settled, nsPerPixel) < 1e9 / settled.frameRate);
+        CaptureGovernor.Level above = ladder.get(settledLevel - 1);
+        assertTrue(frameTimeNs(above, nsPerPixel) > 1e9 / above.frameRate);
+
+        // The load goes away, capture goes back up
+        for (int sample = 0; sample < 400; sample++) {
+            feed(governor, nsPerPixel / 10);
+        }
+        assertEquals(0, governor.getLevelIndex());
+    }
+
+    /**
+     * Feeds one sample of a pipeline whose processing time
+     * is proportional to the pixels of a frame. Frames
+     * that cannot be processed in time are dropped.
+     */
+    private static boolean feed(CaptureGovernor governor, double nsPerPixel) {
+        CaptureGovernor.Level level = governor.getLevel();
+        double frameTimeNs = frameTimeNs(level, nsPerPixel);
+        double intervalNs = 1e9 / level.frameRate;
+        float dropRate = frameTimeNs > intervalNs ? (float) (1 - intervalNs / frameTimeNs) : 0;
+        long latencyNs = (long) (frameTimeNs > intervalNs ? frameTimeNs * 2 : frameTimeNs);
+        return governor.update(latencyNs, dropRate);
+    }
+
+    private static double frameTimeNs(CaptureGovernor.Level level, double nsPerPixel) {
+        return (double) level.width * level.height * nsPerPixel;
+    }
+
+    private static void assertModesDistinct(CameraCapabilities camera,
+                                            List<CaptureGovernor.Level> ladder) {
+        Set<String> modes = new HashSet<>();
+        for (CaptureGovernor.Level level : ladder) {
+            assertTrue("Duplicate mode " + level, modes.add(mode(camera, level)));
+        }
+    }
+
+    // What the camera captures for the level
+    private static String mode(CameraCapabilities camera, CaptureGovernor.Level level) {
+        int index = camera.findClosestSize(level.width, level.height);
+        VideoCapture.FrameRateRange range = CameraUtils.getClosestFrameRateRangeExactly(
+                camera.getFrameRateRanges(), level.frameRate * 1000);
+        return camera.getWidth(index) + "x" + camera.getHeight(index) + "@" + range;
+    }
+}
@@ -0,0 +1,64 @@
+package io.agora.capture.video.camera;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Only Y4M files of one byte per sample can be replayed
+ * as I420, whatever the chroma siting.
+ */
+public class FileVideoProducerTest {
+    private static final int WIDTH = 4;
+    private static final int HEIGHT = 2;
+
+    private File mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("FileVideoProducerTest", ".y4m");
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    @Test
+    public void opensEightBit420() throws IOException {
+        for (String colorspace : new String[]{"", " C420", " C420jpeg", " C420paldv", " C420mpeg2"}) {
+            writeY4M(colorspace);
+            FileVideoProducer.openY4M(mFile);
+        }
+    }
+
+    @Test
+    public void rejectsOtherColorspaces() throws IOException {
+        for (String colorspace : new String[]{"C420p10", "C420p12", "C422", "C444", "Cmono"}) {
+            writeY4M(" " + colorspace);
+            try {
+                FileVideoProducer.openY4M(mFile);
+                fail(colorspace + " opened");
+            } catch (IOException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains(colorspace));
+            }
+        }
+    }
+
+    // One frame, sized as 8-bit 4:2:0 whatever the header
+    private void writeY4M(String colorspace) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(mFile)) {
+            out.write(("YUV4MPEG2 W" + WIDTH + " H" + HEIGHT + " F30:1" + colorspace + "\nFRAME\n")
+                    .getBytes(StandardCharsets.US_ASCII));
+            out.write(new byte[VideoFramePlanes.packedSize(WIDTH, HEIGHT)]);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package io.agora.capture.video.camera;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import io.agora.capture.benchmark.LegacyNv21;
+import io.agora.capture.benchmark.SyntheticPlanes;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The converter against the per-pixel packing it replaced,
+ * on synthetic planes of the layouts Camera2 gives, with
+ * tight and padded rows and sizes of odd dimensions.
+ */
+public class YuvConverterTest {
+    private static final int[] LAYOUTS = {
+            VideoFramePlanes.LAYOUT_NV21, VideoFramePlanes.LAYOUT_NV12, VideoFramePlanes.LAYOUT_I420
+    };
+
+    // Width and height pairs
+    private static final int[] SIZES = {
+            64, 48, 65, 33, 3, 5, 1, 1, 321, 241
+    };
+
+    private static final int[] ROW_PADDINGS = {0, 7, 64};
+
+    @Test
+    public void convertsInterleavedChroma() {
+        // The planes alias each other, a byte apart
+        for (int chroma : new int[]{SyntheticPlanes.CHROMA_VU, SyntheticPlanes.CHROMA_UV}) {
+            for (int i = 0; i < SIZES.length; i += 2) {
+                for (int padding : ROW_PADDINGS) {
+                    assertConverts(SyntheticPlanes.create(SIZES[i], SIZES[i + 1], chroma, padding));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void convertsPlanarChroma() {
+        for (int i = 0; i < SIZES.length; i += 2) {
+            for (int padding : ROW_PADDINGS) {
+                assertConverts(SyntheticPlanes.create(SIZES[i], SIZES[i + 1],
+                        SyntheticPlanes.CHROMA_PLANAR, padding));
+            }
+        }
+    }
+
+    @Test
+    public void convertsLumaOfPixelStride2() {
+        for (int i = 0; i < SIZES.length; i += 2) {
+            for (int padding : ROW_PADDINGS) {
+                VideoFramePlanes planes = SyntheticPlanes.create(SIZES[i], SIZES[i + 1],
+                        SyntheticPlanes.CHROMA_VU, padding);
+                int width = planes.getWidth();
+                int height = planes.getHeight();
+                int rowStride = width * 2 + padding;
+                VideoFramePlanes.Plane y = new VideoFramePlanes.Plane(
+                        SyntheticPlanes.filled(rowStride * (height - 1) + width * 2 - 1), rowStride, 2);
+                assertConverts(new VideoFramePlanes(width, height, VideoFramePlanes.LAYOUT_YUV_420_888,
+                        y, planes.getPlane(VideoFramePlanes.PLANE_U),
+                        planes.getPlane(VideoFramePlanes.PLANE_V)));
+            }
+        }
+    }
+
+    @Test
+    public void matchesTheLegacyCamera2Conversion() {
+        // The baseline of YuvConversionBenchmark, which only
+        // takes even sizes
+        for (int chroma : new int[]{SyntheticPlanes.CHROMA_VU, SyntheticPlanes.CHROMA_PLANAR}) {
+            for (int padding : new int[]{0, 64}) {
+                VideoFramePlanes planes = SyntheticPlanes.create(64, 48, chroma, padding);
+                byte[] legacy = LegacyNv21.convert(planes, garbage(planes.getPackedSize()));
+                assertTrue("chroma " + chroma + " padding " + padding, LegacyNv21.matches(
+                        planes, perPixel(planes, VideoFramePlanes.LAYOUT_NV21), legacy));
+            }
+        }
+    }
+
+    @Test
+    public void convertsIntoBuffers() {
+        // A slice of a larger buffer, like a slot of a mapped
+        // file, with a position and limit of its own
+        for (int i = 0; i < SIZES.length; i += 2) {
+            for (int chroma : new int[]{SyntheticPlanes.CHROMA_VU, SyntheticPlanes.CHROMA_PLANAR}) {
+                VideoFramePlanes planes = SyntheticPlanes.create(SIZES[i], SIZES[i + 1], chroma, 7);
+                for (int layout : LAYOUTS) {
+                    int size = planes.getPackedSize();
+                    ByteBuffer out = SyntheticPlanes.slice(ByteBuffer.allocateDirect(size + 16), 8, size);
+                    out.position(1).limit(2);
+                    YuvConverter.convert(planes, out, layout);
+
+                    assertEquals(1, out.position());
+                    assertEquals(2, out.limit());
+                    out.clear();
+                    assertArrayEquals(planes.getWidth() + "x" + planes.getHeight() + " layout " + layout,
+                            perPixel(planes, layout), copy(out));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void doesNotWriteTheSource() {
+        VideoFramePlanes planes = SyntheticPlanes.create(65, 33, SyntheticPlanes.CHROMA_VU, 7);
+        ByteBuffer v = planes.getPlane(VideoFramePlanes.PLANE_V).getBuffer();
+        byte[] before = copy(v);
+        for (int layout : LAYOUTS) {
+            YuvConverter.convert(planes, new byte[planes.getPackedSize()], layout);
+        }
+        assertArrayEquals(before, copy(v));
+    }
+
+    @Test
+    public void convertsByBands() {
+        // Every image is split, and into more bands than
+        // the chroma rows of the smallest ones
+        BandedYuvConverter converter = new BandedYuvConverter(4, 0);
+        try {
+            for (int i = 0; i < SIZES.length; i += 2) {
+                VideoFramePlanes planes = SyntheticPlanes.create(SIZES[i], SIZES[i + 1],
+                        SyntheticPlanes.CHROMA_VU, 7);
+                for (int layout : LAYOUTS) {
+                    byte[] out = garbage(planes.getPackedSize());
+                    assertArrayEquals(planes.getWidth() + "x" + planes.getHeight() + " layout " + layout,
+                            perPixel(planes, layout), converter.convert(planes, out, layout));
+                }
+            }
+        } finally {
+            converter.release();
+        }
+    }
+
+    private static void assertConverts(VideoFramePlanes planes) {
+        for (int layout : LAYOUTS) {
+            byte[] out = garbage(planes.getPackedSize());
+            String message = planes.getWidth() + "x" + planes.getHeight() + " layout " + layout +
+                    " strides " + planes.getPlane(VideoFramePlanes.PLANE_Y).getRowStride() + "/" +
+                    planes.getPlane(VideoFramePlanes.PLANE_U).getRowStride();
+            assertArrayEquals(message, perPixel(planes, layout), YuvConverter.convert(planes, out, layout));
+        }
+    }
+
+    /**
+     * The packing of VideoFramePlanes.toNV21 before the
+     * converter, one absolute get per sample, for every
+     * layout.
+     */
+    private static byte[] perPixel(VideoFramePlanes planes, int layout) {
+        int width = planes.getWidth();
+        int height = planes.getHeight();
+        byte[] out = new byte[planes.getPackedSize()];
+
+        VideoFramePlanes.Plane y = planes.getPlane(VideoFramePlanes.PLANE_Y);
+        ByteBuffer yBuffer = y.getBuffer();
+        for (int row = 0; row < height; row++) {
+            int rowStart = row * y.getRowStride();
+            for (int col = 0; col < width; col++) {
+                out[row * width + col] = yBuffer.get(rowStart + col * y.getPixelStride());
+            }
+        }
+
+        int pos = width * height;
+        VideoFramePlanes.Plane u = planes.getPlane(VideoFramePlanes.PLANE_U);
+        VideoFramePlanes.Plane v = planes.getPlane(VideoFramePlanes.PLANE_V);
+        int chromaWidth = VideoFramePlanes.chromaWidth(width);
+        int chromaHeight = VideoFramePlanes.chromaHeight(height);
+        if (layout == VideoFramePlanes.LAYOUT_I420) {
+            for (VideoFramePlanes.Plane plane : new VideoFramePlanes.Plane[]{u, v}) {
+                for (int row = 0; row < chromaHeight; row++) {
+                    for (int col = 0; col < chromaWidth; col++) {
+                        out[pos++] = plane.getBuffer().get(
+                                row * plane.getRowStride() + col * plane.getPixelStride());
+                    }
+                }
+            }
+            return out;
+        }
+
+        VideoFramePlanes.Plane first = layout == VideoFramePlanes.LAYOUT_NV21 ? v : u;
+        VideoFramePlanes.Plane second = layout == VideoFramePlanes.LAYOUT_NV21 ? u : v;
+        for (int row = 0; row < chromaHeight; row++) {
+            int firstPos = row * first.getRowStride();
+            int secondPos = row * second.getRowStride();
+            for (int col = 0; col < chromaWidth; col++) {
+                out[pos++] = first.getBuffer().get(firstPos);
+                out[pos++] = second.getBuffer().get(secondPos);
+                firstPos += first.getPixelStride();
+                secondPos += second.getPixelStride();
+            }
+        }
+        return out;
+    }
+
+    // So that a byte the converter misses shows
+    private static byte[] garbage(int size) {
+        byte[] out = new byte[size];
+        Arrays.fill(out, (byte) 0xA5);
+        return out;
+    }
+
+    private static byte[] copy(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.capacity()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(i);
+        }
+        return bytes;
+    }
+}
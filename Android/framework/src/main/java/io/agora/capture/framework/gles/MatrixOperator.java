@@ -14,6 +14,11 @@ public abstract class MatrixOperator {
     protected int scaleType, displayWidth = 0, displayHeight = 0, realWidth = 0, realHeight = 0;
     protected boolean flipH = false, flipV = false, preFlipH = false, preFlipV = false;
     protected final float[] transformMatrix = new float[16];
+    protected final float[] finalMatrix = new float[16];
+
+    // Set when an input changes, so that the final matrix is
+    // composed once when next used rather than by every setter
+    private volatile boolean dirty = true;
 
     public MatrixOperator(@ScaleType int scaleType){
         this.scaleType = scaleType;
@@ -28,7 +33,7 @@ public abstract class MatrixOperator {
         this.displayHeight = displayHeight;
         this.realHeight = realHeight;
         this.realWidth = realWidth;
-        updateTransform();
+        invalidate();
     }
 
     public void setScaleType(@MatrixOperator.ScaleType int scaleType) {
@@ -36,7 +41,7 @@ public abstract class MatrixOperator {
             return;
         }
         this.scaleType = scaleType;
-        updateTransform();
+        invalidate();
     }
 
     public void setScaleRadio(float scaleRadio) {
@@ -44,7 +49,7 @@ public abstract class MatrixOperator {
             return;
         }
         this.scaleRadio = scaleRadio;
-        updateTransform();
+        invalidate();
     }
 
     public void translateX(float translate) {
@@ -52,7 +57,7 @@ public abstract class MatrixOperator {
             return;
         }
         translateX = translate;
-        updateTransform();
+        invalidate();
     }
 
     public void translateY(float translate) {
@@ -60,7 +65,7 @@ public abstract class MatrixOperator {
             return;
         }
         translateY = translate;
-        updateTransform();
+        invalidate();
     }
 
     /**
@@ -71,7 +76,7 @@ public abstract class MatrixOperator {
             return;
         }
         this.rotation = rotation;
-        updateTransform();
+        invalidate();
     }
 
     public void setFlipH(boolean flipH) {
@@ -79,7 +84,7 @@ public abstract class MatrixOperator {
             return;
         }
         this.flipH = flipH;
-        updateTransform();
+        invalidate();
     }
 
     public void setFlipV(boolean flipV) {
@@ -87,7 +92,7 @@ public abstract class MatrixOperator {
             return;
         }
         this.flipV = flipV;
-        updateTransform();
+        invalidate();
     }
 
     public void setPreFlipH(boolean preFlipH) {
@@ -95,7 +100,7 @@ public abstract class MatrixOperator {
             return;
         }
         this.preFlipH = preFlipH;
-        updateTransform();
+        invalidate();
     }
 
     public void setPreFlipV(boolean preFlipV) {
@@ -103,7 +108,7 @@ public abstract class MatrixOperator {
             return;
         }
         this.preFlipV = preFlipV;
-        updateTransform();
+        invalidate();
     }
 
     public void setTransformMatrix(float[] matrix){
@@ -111,7 +116,7 @@ public abstract class MatrixOperator {
             return;
         }
         System.arraycopy(matrix, 0, transformMatrix, 0, matrix.length);
-        updateTransform();
+        invalidate();
     }
 
     public float[] getTransformMatrix() {
@@ -124,6 +129,8 @@ public abstract class MatrixOperator {
         scaleType = displayWidth = displayHeight = realWidth = realHeight = 0;
         flipH = flipV = false;
         Matrix.setIdentityM(transformMatrix, 0);
+        Matrix.setIdentityM(finalMatrix, 0);
+        dirty = false;
     }
 
     public boolean isPreFlipH() {
@@ -162,9 +169,33 @@ public abstract class MatrixOperator {
         return rotation;
     }
 
+    public float[] getFinalMatrix() {
+        return Arrays.copyOf(peekFinalMatrix(), finalMatrix.length);
+    }
+
+    /**
+     * The final matrix without copy, for the draws of every
+     * frame. It is kept by the operator and must not be
+     * modified, nor used after the next change.
+     */
+    public float[] peekFinalMatrix() {
+        if (dirty) {
+            // Cleared first, so that a change made meanwhile
+            // on another thread is applied next time
+            dirty = false;
+            updateTransform();
+        }
+        return finalMatrix;
+    }
 
-    public abstract float[] getFinalMatrix();
+    protected void invalidate() {
+        dirty = true;
+    }
 
+    /**
+     * Compose the final matrix of the inputs, without
+     * allocation.
+     */
     protected abstract void updateTransform();
 
     @Retention(RetentionPolicy.RUNTIME)
@@ -1,17 +1,16 @@
 package io.agora.capture.framework.gles;
 
-import android.graphics.Matrix;
-import android.graphics.PointF;
-import android.util.Size;
-
+/**
+ * Composes the texture matrix as android.graphics.Matrix
+ * would, in pure Java on 4x4 matrices.
+ */
 public class MatrixOperatorGraphics extends MatrixOperator {
 
-    private final Matrix mMatrix;
-
+    private final Transform2D mTransform = new Transform2D();
+    private float mScaleX, mScaleY;
 
     public MatrixOperatorGraphics(@ScaleType int scaleType){
         super(scaleType);
-        mMatrix = new Matrix();
     }
 
     @Override
@@ -19,93 +18,50 @@ public class MatrixOperatorGraphics extends MatrixOperator {
         throw new RuntimeException("MatrixOperatorGraphics setScaleType is not supported!");
     }
 
-    @Override
-    public float[] getFinalMatrix() {
-        return convertMatrixFromAndroidGraphicsMatrix(mMatrix);
-    }
-
     @Override
     protected void updateTransform() {
-        float scaleX = 1.0f, scaleY = 1.0f;
-        PointF outScale = new PointF();
-        int ret = getScaleByType(new Size(displayWidth, displayHeight),
-                new Size(realWidth, realHeight),
-                scaleType, outScale);
-        if(ret == 0){
-            scaleX = outScale.x;
-            scaleY = outScale.y;
-        }
+        updateScaleByType();
 
-        mMatrix.reset();
+        mTransform.reset();
         // Perform mirror and rotation around (0.5, 0.5) since that is the center of the texture.
-        mMatrix.preTranslate(/* dx= */ 0.5f, /* dy= */ 0.5f);
+        mTransform.translate(/* dx= */ 0.5f, /* dy= */ 0.5f);
 
-        mMatrix.preScale(/* sx= */ preFlipH ? -1f : 1f, /* sy= */preFlipV ? -1f :  1f);
-        mMatrix.preRotate(rotation);
-        mMatrix.preScale(flipH ? -1f : 1f, flipV ? -1f : 1f);
-        mMatrix.preScale(scaleX * scaleRadio, scaleY * scaleRadio);
+        mTransform.scale(/* sx= */ preFlipH ? -1f : 1f, /* sy= */preFlipV ? -1f :  1f);
+        mTransform.rotate(rotation);
+        mTransform.scale(flipH ? -1f : 1f, flipV ? -1f : 1f);
+        mTransform.scale(mScaleX * scaleRadio, mScaleY * scaleRadio);
 
-        mMatrix.preTranslate(/* dx= */ -0.5f, /* dy= */ -0.5f);
+        mTransform.translate(/* dx= */ -0.5f, /* dy= */ -0.5f);
 
-        mMatrix.preTranslate(translateX, translateY);
-
-        Matrix finalMatrix = convertMatrixToAndroidGraphicsMatrix(transformMatrix);
-        finalMatrix.preConcat(mMatrix);
-        mMatrix.set(finalMatrix);
-    }
+        mTransform.translate(translateX, translateY);
 
-    private static int distance(float x0, float y0, float x1, float y1) {
-        return (int) Math.round(Math.hypot(x1 - x0, y1 - y0));
+        // The texture transforms are affine, so the product
+        // is the one of android.graphics.Matrix.preConcat
+        mTransform.preConcat(finalMatrix, transformMatrix);
     }
 
-    private static int getScaleByType(Size displaySize, Size realSize, @ScaleType int scaleType, PointF outScale) {
-        if (displaySize == null || realSize == null || displaySize.getHeight() == 0 || realSize.getWidth() == 0 || displaySize.getWidth() == 0 || realSize.getHeight() == 0) {
-            return -1;
+    private void updateScaleByType() {
+        mScaleX = mScaleY = 1.0f;
+        if (displayHeight == 0 || realWidth == 0 || displayWidth == 0 || realHeight == 0) {
+            return;
         }
-        float scaleX = 1.0f, scaleY = 1.0f;
         if (scaleType == ScaleType.CenterCrop) {
-            final float frameAspectRatio = realSize.getWidth() / (float) realSize.getHeight();
-            final float drawnAspectRatio = displaySize.getWidth() / (float)displaySize.getHeight();
+            final float frameAspectRatio = realWidth / (float) realHeight;
+            final float drawnAspectRatio = displayWidth / (float) displayHeight;
             if (frameAspectRatio > drawnAspectRatio) {
-                scaleX = drawnAspectRatio / frameAspectRatio;
-                scaleY = 1f;
+                mScaleX = drawnAspectRatio / frameAspectRatio;
             } else {
-                scaleX = 1f;
-                scaleY = frameAspectRatio / drawnAspectRatio;
+                mScaleY = frameAspectRatio / drawnAspectRatio;
             }
         } else if (scaleType == ScaleType.FitCenter) {
-            final float frameAspectRatio = realSize.getWidth() / (float) realSize.getHeight();
-            final float drawnAspectRatio = displaySize.getWidth() / (float)displaySize.getHeight();
+            final float frameAspectRatio = realWidth / (float) realHeight;
+            final float drawnAspectRatio = displayWidth / (float) displayHeight;
             if (frameAspectRatio < drawnAspectRatio) {
-                scaleX = drawnAspectRatio / frameAspectRatio;
-                scaleY = 1f;
+                mScaleX = drawnAspectRatio / frameAspectRatio;
             } else {
-                scaleX = 1f;
-                scaleY = frameAspectRatio / drawnAspectRatio;
+                mScaleY = frameAspectRatio / drawnAspectRatio;
             }
         }
-        if (outScale != null) {
-            outScale.x = scaleX;
-            outScale.y = scaleY;
-            return 0;
-        } else {
-            return -2;
-        }
-    }
-
-    /** Converts a float[16] matrix array to android.graphics.Matrix. */
-    private static android.graphics.Matrix convertMatrixToAndroidGraphicsMatrix(float[] matrix4x4) {
-        // clang-format off
-        float[] values = {
-                matrix4x4[0 * 4 + 0], matrix4x4[1 * 4 + 0], matrix4x4[3 * 4 + 0],
-                matrix4x4[0 * 4 + 1], matrix4x4[1 * 4 + 1], matrix4x4[3 * 4 + 1],
-                matrix4x4[0 * 4 + 3], matrix4x4[1 * 4 + 3], matrix4x4[3 * 4 + 3],
-        };
-        // clang-format on
-
-        android.graphics.Matrix matrix = new android.graphics.Matrix();
-        matrix.setValues(values);
-        return matrix;
     }
 
     /** Converts android.graphics.Matrix to a float[16] matrix array. */
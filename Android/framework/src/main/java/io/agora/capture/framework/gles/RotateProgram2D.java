@@ -5,6 +5,7 @@ import android.opengl.GLES20;
 import java.nio.FloatBuffer;
 
 import io.agora.capture.framework.gles.core.Drawable2d;
+import io.agora.capture.framework.gles.core.GlTexturePool;
 import io.agora.capture.framework.gles.core.GlUtil;
 import io.agora.capture.framework.gles.core.Program;
 import io.agora.capture.framework.util.LogUtil;
@@ -79,22 +80,10 @@ public class RotateProgram2D extends Program {
         GlUtil.checkGlError("glGenFramebuffers");
         LogUtil.d(this, "EGL >> bindFramebuffer glGenFramebuffers framebuffer=" + mFramebuffer[0] );
 
-        GLES20.glGenTextures(1, mTargetTexture, 0);
-        GlUtil.checkGlError("glGenTextures");
-        LogUtil.d(this, "EGL >> bindFramebuffer glGenTextures texture=" + mTargetTexture[0] );
-
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, mTargetTexture[0]);
-        GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_RGBA, width, height, 0,
-                GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, null);
-
-        GLES20.glTexParameterf(GLES20.GL_TEXTURE_2D,
-                GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
-        GLES20.glTexParameterf(GLES20.GL_TEXTURE_2D,
-                GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
-        GLES20.glTexParameterf(GLES20.GL_TEXTURE_2D,
-                GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
-        GLES20.glTexParameterf(GLES20.GL_TEXTURE_2D,
-                GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+        // The target texture may come from the share group
+        // of the channel, released by another channel.
+        mTargetTexture[0] = GlTexturePool.obtainTexture(width, height);
+        LogUtil.d(this, "EGL >> bindFramebuffer obtainTexture texture=" + mTargetTexture[0] );
 
         GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, mFramebuffer[0]);
         GLES20.glFramebufferTexture2D(GLES20.GL_FRAMEBUFFER,
@@ -102,22 +91,22 @@ public class RotateProgram2D extends Program {
                 GLES20.GL_TEXTURE_2D,
                 mTargetTexture[0], 0);
 
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
         GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
     }
 
     private void deleteFramebuffer() {
-        if (mTargetTexture[0] != 0) {
-            GLES20.glDeleteTextures(1, mTargetTexture, 0);
-            LogUtil.d(this, "EGL >> deleteFramebuffer glDeleteTextures texture=" + mTargetTexture[0] );
-            mTargetTexture[0] = 0;
-        }
-
+        // Detach the texture before it can be used by others
         if (mFramebuffer[0] != 0) {
             GLES20.glDeleteFramebuffers(1, mFramebuffer, 0);
             LogUtil.d(this, "EGL >> deleteFramebuffer glDeleteFramebuffers framebuffer=" + mFramebuffer[0] );
             mFramebuffer[0] = 0;
         }
+
+        if (mTargetTexture[0] != 0) {
+            GlTexturePool.recycleTexture(mTargetTexture[0]);
+            LogUtil.d(this, "EGL >> deleteFramebuffer recycleTexture texture=" + mTargetTexture[0] );
+            mTargetTexture[0] = 0;
+        }
     }
 
     public void destroyProgram() {
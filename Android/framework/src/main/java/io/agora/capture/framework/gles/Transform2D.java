@@ -0,0 +1,104 @@
+package io.agora.capture.framework.gles;
+
+/**
+ * A 2D affine transform composed without allocation,
+ * in pure Java so that it runs on the JVM as well:
+ * [a b tx]
+ * [c d ty]
+ * Every operation is applied before those composed, like
+ * the pre operations of android.graphics.Matrix and the
+ * scaleM, translateM and rotateM of android.opengl.Matrix.
+ * Rotations by multiples of 90 degrees are exact.
+ */
+final class Transform2D {
+    // cos and sin of 0, 90, 180 and 270 degrees
+    private static final float[] QUARTER_COS = {1, 0, -1, 0};
+    private static final float[] QUARTER_SIN = {0, 1, 0, -1};
+
+    private float mA, mB, mC, mD, mTx, mTy;
+
+    Transform2D() {
+        reset();
+    }
+
+    void reset() {
+        mA = mD = 1;
+        mB = mC = mTx = mTy = 0;
+    }
+
+    void scale(float sx, float sy) {
+        mA *= sx;
+        mC *= sx;
+        mB *= sy;
+        mD *= sy;
+    }
+
+    void translate(float dx, float dy) {
+        mTx += mA * dx + mB * dy;
+        mTy += mC * dx + mD * dy;
+    }
+
+    /**
+     * @param degrees counterclockwise in a y-up space
+     */
+    void rotate(float degrees) {
+        float cos, sin;
+        if (degrees % 90 == 0) {
+            int quarter = ((int) (degrees / 90) % 4 + 4) % 4;
+            cos = QUARTER_COS[quarter];
+            sin = QUARTER_SIN[quarter];
+        } else {
+            double radians = Math.toRadians(degrees);
+            cos = (float) Math.cos(radians);
+            sin = (float) Math.sin(radians);
+        }
+
+        float a = mA * cos + mB * sin;
+        float c = mC * cos + mD * sin;
+        mB = mB * cos - mA * sin;
+        mD = mD * cos - mC * sin;
+        mA = a;
+        mC = c;
+    }
+
+    /**
+     * result = this * rhs, on column-major 4x4 matrices
+     * as android.opengl.Matrix.multiplyMM, this one
+     * leaving z unchanged.
+     * The result must not be rhs.
+     */
+    void multiply(float[] result, float[] rhs) {
+        for (int i = 0; i < 16; i += 4) {
+            float x = rhs[i];
+            float y = rhs[i + 1];
+            float w = rhs[i + 3];
+            result[i] = mA * x + mB * y + mTx * w;
+            result[i + 1] = mC * x + mD * y + mTy * w;
+            result[i + 2] = rhs[i + 2];
+            result[i + 3] = w;
+        }
+    }
+
+    /**
+     * result = lhs * this, on the 3x3 matrices of the x, y
+     * and w rows and columns of column-major 4x4 matrices,
+     * as the conversions to and from android.graphics.Matrix
+     * do. The z row and column of the result are identity.
+     * The result must not be lhs.
+     */
+    void preConcat(float[] result, float[] lhs) {
+        for (int row = 0; row < 4; row++) {
+            if (row == 2) {
+                continue;
+            }
+            float x = lhs[row];
+            float y = lhs[4 + row];
+            result[row] = x * mA + y * mC;
+            result[4 + row] = x * mB + y * mD;
+            result[12 + row] = x * mTx + y * mTy + lhs[12 + row];
+        }
+        result[2] = result[6] = result[14] = 0;
+        result[8] = result[9] = result[11] = 0;
+        result[10] = 1;
+    }
+}
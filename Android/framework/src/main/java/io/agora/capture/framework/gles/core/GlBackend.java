@@ -0,0 +1,118 @@
+package io.agora.capture.framework.gles.core;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The GL and EGL operations of the frame pipeline, so
+ * that channels, processors and window consumers can run
+ * on GLES on devices, or on a fake off device.
+ * A backend owns one context, and is only used on the
+ * thread that creates it.
+ * Surfaces are opaque handles created by the backend,
+ * EGLSurface for GLES.
+ * @see GlesBackend
+ * @see RecordingGlBackend
+ */
+public interface GlBackend {
+    /**
+     * Creates the backend of a channel on the channel
+     * thread.
+     */
+    interface Factory {
+        GlBackend create();
+    }
+
+    /**
+     * Errors of the context, called on the thread of the
+     * backend.
+     */
+    interface ErrorListener {
+        void onError(int code, String message);
+    }
+
+    /**
+     * @return a new backend whose context shares GL
+     * objects with this one, to be used on another thread.
+     */
+    GlBackend createShared();
+
+    /**
+     * Release the context and the GL objects kept by the
+     * backend. Surfaces should be released before.
+     */
+    void release();
+
+    /**
+     * @param listener null to stop listening
+     */
+    void setErrorListener(ErrorListener listener);
+
+    Object createOffscreenSurface(int width, int height);
+
+    /**
+     * @param target a Surface or SurfaceTexture for GLES
+     */
+    Object createWindowSurface(Object target);
+
+    void releaseSurface(Object surface);
+
+    void makeCurrent(Object surface);
+
+    void makeNothingCurrent();
+
+    boolean isCurrent(Object surface);
+
+    void swapBuffers(Object surface);
+
+    void viewport(int width, int height);
+
+    /**
+     * Clear the color, depth and stencil buffers.
+     */
+    void clear();
+
+    void setBlendEnabled(boolean enabled);
+
+    /**
+     * @return a framebuffer drawing to the 2D texture
+     */
+    int createFramebuffer(int textureId);
+
+    /**
+     * @param framebuffer 0 for the current surface
+     */
+    void bindFramebuffer(int framebuffer);
+
+    void deleteFramebuffer(int framebuffer);
+
+    /**
+     * @return a 2D texture of the size, possibly reused
+     * from those recycled.
+     */
+    int obtainTexture(int width, int height);
+
+    void recycleTexture(int textureId);
+
+    /**
+     * @return a 2D texture of the RGBA pixels
+     */
+    int createTexture(ByteBuffer rgba, int width, int height);
+
+    void deleteTexture(int textureId);
+
+    /**
+     * Draw a texture to the bound framebuffer.
+     * @param texFormat GL_TEXTURE_2D or GL_TEXTURE_EXTERNAL_OES
+     * @param alpha only applied to 2D textures
+     */
+    void drawFrame(int texFormat, int textureId, float[] texMatrix,
+                   float[] mvpMatrix, float alpha);
+
+    /**
+     * Draw a texture to a 2D texture of the size, which is
+     * kept by the backend and reused by the next call.
+     * @return the 2D texture drawn
+     */
+    int drawRotateFrame(int texFormat, int textureId, float[] texMatrix,
+                        float[] mvpMatrix, int width, int height);
+}
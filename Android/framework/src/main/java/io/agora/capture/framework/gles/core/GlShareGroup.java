@@ -0,0 +1,120 @@
+package io.agora.capture.framework.gles.core;
+
+import android.opengl.EGL14;
+import android.opengl.EGLContext;
+import android.opengl.GLES20;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.agora.capture.framework.util.LogUtil;
+
+/**
+ * A set of EGL contexts that share GL objects, so that
+ * several channels compile every shader once and reuse
+ * intermediate textures of each other.
+ * Each member context is created by join() and given
+ * back by leave() on its own thread. The shared shaders
+ * and free textures are deleted when the last member
+ * leaves.
+ * Program objects are not shared: a program keeps its
+ * uniforms, which would race between channel threads,
+ * so every context links its own from the shared shaders.
+ * The shaders can be compiled ahead on a background
+ * context with GlesBackend.prewarm.
+ */
+public class GlShareGroup {
+    private static final String TAG = GlShareGroup.class.getSimpleName();
+
+    private static final Map<EGLContext, GlShareGroup> sGroups = new ConcurrentHashMap<>();
+
+    private final List<EglCore> mMembers = new ArrayList<>();
+    private final Map<String, Integer> mShaders = new HashMap<>();
+    private final GlTexturePool mTexturePool = new GlTexturePool();
+    private boolean mPrewarmed;
+
+    /**
+     * @return the group of the context current on the
+     * calling thread, or null if it is not in a group.
+     */
+    public static GlShareGroup current() {
+        EGLContext context = EGL14.eglGetCurrentContext();
+        return context == null ? null : sGroups.get(context);
+    }
+
+    /**
+     * Create a context that shares with the other
+     * members of the group.
+     */
+    public synchronized EglCore join() {
+        EGLContext shared = mMembers.isEmpty() ? null :
+                mMembers.get(0).getEGLContext();
+        EglCore eglCore = new EglCore(shared, 0);
+        mMembers.add(eglCore);
+        sGroups.put(eglCore.getEGLContext(), this);
+        LogUtil.d(TAG, "EGL >> join share group, members=" + mMembers.size());
+        return eglCore;
+    }
+
+    /**
+     * Must be called with the context current and before
+     * it is released.
+     */
+    public synchronized void leave(EglCore eglCore) {
+        if (!mMembers.remove(eglCore)) {
+            return;
+        }
+        sGroups.remove(eglCore.getEGLContext());
+
+        if (mMembers.isEmpty()) {
+            for (int shader : mShaders.values()) {
+                GLES20.glDeleteShader(shader);
+            }
+            mShaders.clear();
+            mTexturePool.clear();
+            mPrewarmed = false;
+        }
+        LogUtil.d(TAG, "EGL >> leave share group, members=" + mMembers.size());
+    }
+
+    /**
+     * @return the compiled shader of the source, compiled
+     * in the current context the first time. Shared
+     * shaders must not be deleted by the caller.
+     */
+    synchronized int getShader(int shaderType, String source) {
+        String key = shaderType + ":" + source;
+        Integer shader = mShaders.get(key);
+        if (shader == null) {
+            shader = GlUtil.loadShader(shaderType, source);
+            if (shader == 0) {
+                return 0;
+            }
+            // Other contexts are only guaranteed to see a
+            // shared object complete once the commands that
+            // built it have finished in this context.
+            GLES20.glFinish();
+            mShaders.put(key, shader);
+        }
+        return shader;
+    }
+
+    /**
+     * @return true the first time since the group was
+     * emptied, so that its shaders are prewarmed once
+     */
+    synchronized boolean startPrewarm() {
+        if (mPrewarmed) {
+            return false;
+        }
+        mPrewarmed = true;
+        return true;
+    }
+
+    public GlTexturePool getTexturePool() {
+        return mTexturePool;
+    }
+}
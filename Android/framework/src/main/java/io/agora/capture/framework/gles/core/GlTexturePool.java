@@ -0,0 +1,133 @@
+package io.agora.capture.framework.gles.core;
+
+import android.opengl.GLES20;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.agora.capture.framework.util.LogUtil;
+
+/**
+ * Keeps RGBA textures used as render targets for reuse
+ * by the contexts of a share group, so a channel that
+ * resizes or stops leaves its textures to the others
+ * instead of deleting and allocating them again.
+ */
+public class GlTexturePool {
+    private static final String TAG = GlTexturePool.class.getSimpleName();
+    private static final int MAX_FREE_TEXTURES = 8;
+
+    // Sizes of all the textures created by the pool,
+    // packed as width << 32 | height.
+    private final Map<Integer, Long> mSizes = new HashMap<>();
+    private final List<Integer> mFree = new ArrayList<>();
+
+    /**
+     * Get a texture from the pool of the current share
+     * group, or create one if there is no share group.
+     */
+    public static int obtainTexture(int width, int height) {
+        GlShareGroup group = GlShareGroup.current();
+        return group != null ?
+                group.getTexturePool().obtain(width, height) :
+                createTexture(width, height);
+    }
+
+    /**
+     * Give back a texture got by obtainTexture(int, int).
+     * The texture must not be used by the caller anymore.
+     */
+    public static void recycleTexture(int texture) {
+        GlShareGroup group = GlShareGroup.current();
+        if (group != null) {
+            group.getTexturePool().recycle(texture);
+        } else {
+            deleteTexture(texture);
+        }
+    }
+
+    public synchronized int obtain(int width, int height) {
+        long size = packSize(width, height);
+        for (int i = mFree.size() - 1; i >= 0; i--) {
+            int texture = mFree.get(i);
+            if (mSizes.get(texture) == size) {
+                mFree.remove(i);
+                return texture;
+            }
+        }
+
+        int texture = createTexture(width, height);
+        mSizes.put(texture, size);
+        return texture;
+    }
+
+    public void recycle(int texture) {
+        if (texture == 0) {
+            return;
+        }
+
+        // Another context may render to the texture as
+        // soon as it is in the pool, so the commands of
+        // this context using it must have completed.
+        GLES20.glFinish();
+
+        synchronized (this) {
+            if (!mSizes.containsKey(texture)) {
+                deleteTexture(texture);
+                return;
+            }
+
+            mFree.add(texture);
+            if (mFree.size() > MAX_FREE_TEXTURES) {
+                int oldest = mFree.remove(0);
+                mSizes.remove(oldest);
+                deleteTexture(oldest);
+            }
+        }
+    }
+
+    /**
+     * Delete the free textures. Textures still in use
+     * are deleted when they are recycled.
+     */
+    public synchronized void clear() {
+        for (int texture : mFree) {
+            mSizes.remove(texture);
+            deleteTexture(texture);
+        }
+        mFree.clear();
+    }
+
+    private static long packSize(int width, int height) {
+        return ((long) width << 32) | (height & 0xffffffffL);
+    }
+
+    private static int createTexture(int width, int height) {
+        int[] textures = new int[1];
+        GLES20.glGenTextures(1, textures, 0);
+        GlUtil.checkGlError("glGenTextures");
+        LogUtil.d(TAG, "EGL >> createTexture glGenTextures texture=" + textures[0]);
+
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textures[0]);
+        GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_RGBA, width, height, 0,
+                GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, null);
+
+        GLES20.glTexParameterf(GLES20.GL_TEXTURE_2D,
+                GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameterf(GLES20.GL_TEXTURE_2D,
+                GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameterf(GLES20.GL_TEXTURE_2D,
+                GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+        GLES20.glTexParameterf(GLES20.GL_TEXTURE_2D,
+                GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
+        return textures[0];
+    }
+
+    private static void deleteTexture(int texture) {
+        GLES20.glDeleteTextures(1, new int[]{texture}, 0);
+        LogUtil.d(TAG, "EGL >> deleteTexture glDeleteTextures texture=" + texture);
+    }
+}
@@ -53,15 +53,23 @@ public abstract class GlUtil {
 
     /**
      * Creates a new program from the supplied vertex and fragment shaders.
+     * <p>
+     * If the current context is in a share group, the shaders compiled by
+     * the group are reused.
      *
      * @return A handle to the program, or 0 on failure.
      */
     public static int createProgram(String vertexSource, String fragmentSource) {
-        int vertexShader = loadShader(GLES20.GL_VERTEX_SHADER, vertexSource);
+        GlShareGroup group = GlShareGroup.current();
+        int vertexShader = group != null ?
+                group.getShader(GLES20.GL_VERTEX_SHADER, vertexSource) :
+                loadShader(GLES20.GL_VERTEX_SHADER, vertexSource);
         if (vertexShader == 0) {
             return 0;
         }
-        int pixelShader = loadShader(GLES20.GL_FRAGMENT_SHADER, fragmentSource);
+        int pixelShader = group != null ?
+                group.getShader(GLES20.GL_FRAGMENT_SHADER, fragmentSource) :
+                loadShader(GLES20.GL_FRAGMENT_SHADER, fragmentSource);
         if (pixelShader == 0) {
             return 0;
         }
@@ -0,0 +1,316 @@
+package io.agora.capture.framework.gles.core;
+
+import android.opengl.EGLSurface;
+import android.opengl.GLES11Ext;
+import android.opengl.GLES20;
+import android.os.Handler;
+import android.os.HandlerThread;
+
+import java.nio.ByteBuffer;
+
+import io.agora.capture.framework.gles.ProgramTexture2d;
+import io.agora.capture.framework.gles.ProgramTextureOES;
+import io.agora.capture.framework.gles.RotateProgram2D;
+import io.agora.capture.framework.gles.RotateProgramOES;
+import io.agora.capture.framework.util.LogUtil;
+
+/**
+ * The backend of the frame pipeline on GLES and EGL.
+ * The programs are created when first used, with the
+ * context current, and shared by the processors and
+ * consumers drawing with the backend. Their shaders are
+ * compiled once for the share group.
+ */
+public class GlesBackend implements GlBackend {
+    private static final String TAG = GlesBackend.class.getSimpleName();
+
+    private final EglCore mEglCore;
+    private final GlShareGroup mShareGroup;
+
+    private ProgramTexture2d mProgram2D;
+    private ProgramTextureOES mProgramOES;
+    private RotateProgram2D mRotateProgram2D;
+    private RotateProgramOES mRotateProgramOES;
+
+    /**
+     * @param shareGroup the group to join, or null for a
+     *                   context of its own
+     */
+    public GlesBackend(GlShareGroup shareGroup) {
+        mShareGroup = shareGroup;
+        mEglCore = shareGroup != null ? shareGroup.join() : new EglCore();
+    }
+
+    private GlesBackend(EglCore eglCore) {
+        mShareGroup = null;
+        mEglCore = eglCore;
+    }
+
+    /**
+     * @return a backend drawing in the context current on
+     * the calling thread, which it does not own. It has no
+     * surfaces, and releasing it only deletes its programs.
+     */
+    public static GlesBackend current() {
+        return new GlesBackend((EglCore) null);
+    }
+
+    /**
+     * @return null for a backend of the current context
+     */
+    public EglCore getEglCore() {
+        return mEglCore;
+    }
+
+    private EglCore eglCore() {
+        if (mEglCore == null) {
+            throw new IllegalStateException("The backend has no EGL context of its own");
+        }
+        return mEglCore;
+    }
+
+    public ProgramTexture2d getProgram2D() {
+        if (mProgram2D == null) {
+            mProgram2D = new ProgramTexture2d();
+        }
+        return mProgram2D;
+    }
+
+    public ProgramTextureOES getProgramOES() {
+        if (mProgramOES == null) {
+            mProgramOES = new ProgramTextureOES();
+        }
+        return mProgramOES;
+    }
+
+    private RotateProgram2D getRotateProgram2D() {
+        if (mRotateProgram2D == null) {
+            mRotateProgram2D = new RotateProgram2D();
+        }
+        return mRotateProgram2D;
+    }
+
+    private RotateProgramOES getRotateProgramOES() {
+        if (mRotateProgramOES == null) {
+            mRotateProgramOES = new RotateProgramOES();
+        }
+        return mRotateProgramOES;
+    }
+
+    /**
+     * Compiles the shaders of every program into the share
+     * group on a background context of the group, so that
+     * the channels only link programs for their first
+     * frames. Should be called once the group has a member,
+     * as the shaders are deleted when the last one leaves.
+     */
+    public static void prewarm(final GlShareGroup shareGroup) {
+        if (!shareGroup.startPrewarm()) {
+            return;
+        }
+
+        HandlerThread thread = new HandlerThread("GlPrewarm");
+        thread.start();
+        new Handler(thread.getLooper()).post(() -> {
+            long startNs = System.nanoTime();
+            GlesBackend backend = new GlesBackend(shareGroup);
+            Object surface = backend.createOffscreenSurface(1, 1);
+            backend.makeCurrent(surface);
+
+            // The share group finishes every shader before
+            // the other contexts can link it.
+            backend.getProgram2D();
+            backend.getProgramOES();
+            backend.getRotateProgram2D();
+            backend.getRotateProgramOES();
+
+            backend.releaseSurface(surface);
+            backend.release();
+            LogUtil.i(TAG, "prewarmed programs in " +
+                    (System.nanoTime() - startNs) / 1000000 + "ms");
+        });
+        // Quits once the programs are compiled
+        thread.quitSafely();
+    }
+
+    /**
+     * The context of a backend in a share group joins the
+     * group, so that it reuses the shaders compiled.
+     */
+    @Override
+    public GlBackend createShared() {
+        return mShareGroup != null ? new GlesBackend(mShareGroup) :
+                new GlesBackend(new EglCore(eglCore().getEGLContext(), 0));
+    }
+
+    @Override
+    public void release() {
+        if (mProgram2D != null) {
+            mProgram2D.release();
+            mProgram2D = null;
+        }
+        if (mProgramOES != null) {
+            mProgramOES.release();
+            mProgramOES = null;
+        }
+        if (mRotateProgram2D != null) {
+            mRotateProgram2D.destroyProgram();
+            mRotateProgram2D = null;
+        }
+        if (mRotateProgramOES != null) {
+            mRotateProgramOES.destroyProgram();
+            mRotateProgramOES = null;
+        }
+        if (mShareGroup != null) {
+            mShareGroup.leave(mEglCore);
+        }
+        if (mEglCore != null) {
+            mEglCore.release();
+        }
+    }
+
+    @Override
+    public void setErrorListener(ErrorListener listener) {
+        eglCore().setErrorCallback(listener != null ? listener::onError : null);
+    }
+
+    @Override
+    public Object createOffscreenSurface(int width, int height) {
+        return eglCore().createOffscreenSurface(width, height);
+    }
+
+    @Override
+    public Object createWindowSurface(Object target) {
+        return eglCore().createWindowSurface(target);
+    }
+
+    @Override
+    public void releaseSurface(Object surface) {
+        eglCore().releaseSurface((EGLSurface) surface);
+    }
+
+    @Override
+    public void makeCurrent(Object surface) {
+        eglCore().makeCurrent((EGLSurface) surface);
+    }
+
+    @Override
+    public void makeNothingCurrent() {
+        eglCore().makeNothingCurrent();
+    }
+
+    @Override
+    public boolean isCurrent(Object surface) {
+        return eglCore().isCurrent((EGLSurface) surface);
+    }
+
+    @Override
+    public void swapBuffers(Object surface) {
+        eglCore().swapBuffers((EGLSurface) surface);
+    }
+
+    @Override
+    public void viewport(int width, int height) {
+        GLES20.glViewport(0, 0, width, height);
+    }
+
+    @Override
+    public void clear() {
+        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT |
+                GLES20.GL_DEPTH_BUFFER_BIT | GLES20.GL_STENCIL_BUFFER_BIT);
+    }
+
+    @Override
+    public void setBlendEnabled(boolean enabled) {
+        if (enabled) {
+            GLES20.glEnable(GLES20.GL_BLEND);
+            GLES20.glBlendFunc(GLES20.GL_SRC_ALPHA, GLES20.GL_ONE_MINUS_SRC_ALPHA);
+        } else {
+            GLES20.glDisable(GLES20.GL_BLEND);
+        }
+    }
+
+    @Override
+    public int createFramebuffer(int textureId) {
+        int[] framebuffers = new int[1];
+        GLES20.glGenFramebuffers(1, framebuffers, 0);
+        GlUtil.checkGlError("glGenFramebuffers");
+        LogUtil.d(TAG, "EGL >> createFramebuffer glGenFramebuffers framebuffer=" + framebuffers[0]);
+
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, framebuffers[0]);
+        GLES20.glFramebufferTexture2D(GLES20.GL_FRAMEBUFFER,
+                GLES20.GL_COLOR_ATTACHMENT0,
+                GLES20.GL_TEXTURE_2D,
+                textureId, 0);
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+        return framebuffers[0];
+    }
+
+    @Override
+    public void bindFramebuffer(int framebuffer) {
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, framebuffer);
+    }
+
+    @Override
+    public void deleteFramebuffer(int framebuffer) {
+        GLES20.glDeleteFramebuffers(1, new int[]{framebuffer}, 0);
+        LogUtil.d(TAG, "EGL >> deleteFramebuffer glDeleteFramebuffers framebuffer=" + framebuffer);
+    }
+
+    @Override
+    public int obtainTexture(int width, int height) {
+        return GlTexturePool.obtainTexture(width, height);
+    }
+
+    @Override
+    public void recycleTexture(int textureId) {
+        GlTexturePool.recycleTexture(textureId);
+    }
+
+    @Override
+    public int createTexture(ByteBuffer rgba, int width, int height) {
+        int[] textureIds = new int[1];
+        GLES20.glGenTextures(1, textureIds, 0);
+        LogUtil.d(TAG, "EGL >> createTexture glGenTextures texture=" + textureIds[0]);
+
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textureIds[0]);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_REPEAT);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_REPEAT);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_RGBA, width, height,
+                0, GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, rgba);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
+        return textureIds[0];
+    }
+
+    @Override
+    public void deleteTexture(int textureId) {
+        GLES20.glDeleteTextures(1, new int[]{textureId}, 0);
+        LogUtil.d(TAG, "EGL >> deleteTexture glDeleteTextures texture=" + textureId);
+    }
+
+    @Override
+    public void drawFrame(int texFormat, int textureId, float[] texMatrix,
+                          float[] mvpMatrix, float alpha) {
+        if (texFormat == GLES11Ext.GL_TEXTURE_EXTERNAL_OES) {
+            getProgramOES().drawFrame(textureId, texMatrix, mvpMatrix);
+        } else {
+            getProgram2D().drawFrame(textureId, texMatrix, mvpMatrix, alpha);
+        }
+    }
+
+    @Override
+    public int drawRotateFrame(int texFormat, int textureId, float[] texMatrix,
+                               float[] mvpMatrix, int width, int height) {
+        if (texFormat == GLES11Ext.GL_TEXTURE_EXTERNAL_OES) {
+            RotateProgramOES program = getRotateProgramOES();
+            program.update(width, height);
+            return program.drawRotateFrame(textureId, texMatrix, mvpMatrix);
+        }
+
+        RotateProgram2D program = getRotateProgram2D();
+        program.update(width, height);
+        return program.drawRotateFrame(textureId, texMatrix, mvpMatrix);
+    }
+}
@@ -0,0 +1,328 @@
+package io.agora.capture.framework.gles.core;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A backend without GL, which counts the operations and
+ * keeps the state they change, so that the pipeline can
+ * be benchmarked and tested on the JVM.
+ * Backends created by createShared() share the counts
+ * and the live object counts, as contexts of a share
+ * group share GL objects.
+ * Like GL, it needs a current surface to draw, and fails
+ * with IllegalStateException otherwise.
+ */
+public class RecordingGlBackend implements GlBackend {
+    public static final int OP_MAKE_CURRENT = 0;
+    public static final int OP_SWAP_BUFFERS = 1;
+    public static final int OP_VIEWPORT = 2;
+    public static final int OP_CLEAR = 3;
+    public static final int OP_BLEND = 4;
+    public static final int OP_BIND_FRAMEBUFFER = 5;
+    public static final int OP_DRAW = 6;
+    public static final int OP_DRAW_ROTATE = 7;
+    public static final int OP_CREATE_SURFACE = 8;
+    public static final int OP_CREATE_FRAMEBUFFER = 9;
+    public static final int OP_CREATE_TEXTURE = 10;
+    public static final int OP_COUNT = 11;
+
+    private static final class Surface {
+        final int id;
+        final Object target;
+
+        Surface(int id, Object target) {
+            this.id = id;
+            this.target = target;
+        }
+
+        @Override
+        public String toString() {
+            return "Surface{id=" + id + ", target=" + target + "}";
+        }
+    }
+
+    private static final class Shared {
+        final AtomicLongArray counts = new AtomicLongArray(OP_COUNT);
+        final AtomicInteger nextId = new AtomicInteger(1);
+        final AtomicInteger liveSurfaces = new AtomicInteger();
+        final AtomicInteger liveFramebuffers = new AtomicInteger();
+        final AtomicInteger liveTextures = new AtomicInteger();
+        final AtomicInteger liveContexts = new AtomicInteger();
+    }
+
+    private final Shared mShared;
+    private volatile long mDrawCostNs;
+
+    private boolean mReleased;
+    private Surface mCurrent;
+    private int mFramebuffer;
+    private boolean mBlendEnabled;
+    private int mViewportWidth;
+    private int mViewportHeight;
+
+    private int mRotateTexture;
+    private int mRotateWidth;
+    private int mRotateHeight;
+
+    public RecordingGlBackend() {
+        this(new Shared());
+    }
+
+    private RecordingGlBackend(Shared shared) {
+        mShared = shared;
+        mShared.liveContexts.incrementAndGet();
+    }
+
+    /**
+     * Spend the time on the calling thread for every draw,
+     * as the GPU would, so that latencies are realistic.
+     */
+    public void setDrawCostNs(long costNs) {
+        mDrawCostNs = costNs;
+    }
+
+    public long getCount(int op) {
+        return mShared.counts.get(op);
+    }
+
+    public void resetCounts() {
+        for (int op = 0; op < OP_COUNT; op++) {
+            mShared.counts.set(op, 0);
+        }
+    }
+
+    /**
+     * @return the number of contexts, surfaces, framebuffers
+     * and textures not released, which should all be 0
+     * once the pipeline stops.
+     */
+    public int getLiveObjectCount() {
+        return mShared.liveContexts.get() + mShared.liveSurfaces.get() +
+                mShared.liveFramebuffers.get() + mShared.liveTextures.get();
+    }
+
+    public int getLiveTextureCount() {
+        return mShared.liveTextures.get();
+    }
+
+    public Object getCurrentSurface() {
+        return mCurrent;
+    }
+
+    public int getBoundFramebuffer() {
+        return mFramebuffer;
+    }
+
+    public boolean isBlendEnabled() {
+        return mBlendEnabled;
+    }
+
+    public int getViewportWidth() {
+        return mViewportWidth;
+    }
+
+    public int getViewportHeight() {
+        return mViewportHeight;
+    }
+
+    @Override
+    public GlBackend createShared() {
+        checkNotReleased();
+        RecordingGlBackend backend = new RecordingGlBackend(mShared);
+        backend.mDrawCostNs = mDrawCostNs;
+        return backend;
+    }
+
+    @Override
+    public void release() {
+        if (mReleased) {
+            return;
+        }
+        if (mRotateTexture != 0) {
+            recycleTexture(mRotateTexture);
+            mRotateTexture = 0;
+        }
+        mCurrent = null;
+        mReleased = true;
+        mShared.liveContexts.decrementAndGet();
+    }
+
+    // Nothing fails on the fake
+    @Override
+    public void setErrorListener(ErrorListener listener) {
+
+    }
+
+    @Override
+    public Object createOffscreenSurface(int width, int height) {
+        return createSurface("offscreen " + width + "x" + height);
+    }
+
+    @Override
+    public Object createWindowSurface(Object target) {
+        if (target == null) {
+            throw new IllegalArgumentException("No window to create the surface for");
+        }
+        return createSurface(target);
+    }
+
+    private Object createSurface(Object target) {
+        checkNotReleased();
+        count(OP_CREATE_SURFACE);
+        mShared.liveSurfaces.incrementAndGet();
+        return new Surface(mShared.nextId.getAndIncrement(), target);
+    }
+
+    @Override
+    public void releaseSurface(Object surface) {
+        if (surface != null) {
+            mShared.liveSurfaces.decrementAndGet();
+        }
+    }
+
+    @Override
+    public void makeCurrent(Object surface) {
+        checkNotReleased();
+        count(OP_MAKE_CURRENT);
+        mCurrent = (Surface) surface;
+        mFramebuffer = 0;
+    }
+
+    @Override
+    public void makeNothingCurrent() {
+        mCurrent = null;
+    }
+
+    @Override
+    public boolean isCurrent(Object surface) {
+        return surface != null && mCurrent == surface;
+    }
+
+    @Override
+    public void swapBuffers(Object surface) {
+        checkCurrent();
+        count(OP_SWAP_BUFFERS);
+    }
+
+    @Override
+    public void viewport(int width, int height) {
+        count(OP_VIEWPORT);
+        mViewportWidth = width;
+        mViewportHeight = height;
+    }
+
+    @Override
+    public void clear() {
+        checkCurrent();
+        count(OP_CLEAR);
+    }
+
+    @Override
+    public void setBlendEnabled(boolean enabled) {
+        count(OP_BLEND);
+        mBlendEnabled = enabled;
+    }
+
+    @Override
+    public int createFramebuffer(int textureId) {
+        checkCurrent();
+        count(OP_CREATE_FRAMEBUFFER);
+        mShared.liveFramebuffers.incrementAndGet();
+        return mShared.nextId.getAndIncrement();
+    }
+
+    @Override
+    public void bindFramebuffer(int framebuffer) {
+        count(OP_BIND_FRAMEBUFFER);
+        mFramebuffer = framebuffer;
+    }
+
+    @Override
+    public void deleteFramebuffer(int framebuffer) {
+        mShared.liveFramebuffers.decrementAndGet();
+        if (mFramebuffer == framebuffer) {
+            mFramebuffer = 0;
+        }
+    }
+
+    @Override
+    public int obtainTexture(int width, int height) {
+        checkCurrent();
+        count(OP_CREATE_TEXTURE);
+        mShared.liveTextures.incrementAndGet();
+        return mShared.nextId.getAndIncrement();
+    }
+
+    @Override
+    public void recycleTexture(int textureId) {
+        mShared.liveTextures.decrementAndGet();
+    }
+
+    @Override
+    public int createTexture(ByteBuffer rgba, int width, int height) {
+        if (rgba.remaining() < width * height * 4) {
+            throw new IllegalArgumentException("Not enough pixels for " + width + "x" + height);
+        }
+        return obtainTexture(width, height);
+    }
+
+    @Override
+    public void deleteTexture(int textureId) {
+        recycleTexture(textureId);
+    }
+
+    @Override
+    public void drawFrame(int texFormat, int textureId, float[] texMatrix,
+                          float[] mvpMatrix, float alpha) {
+        checkCurrent();
+        count(OP_DRAW);
+        spend();
+    }
+
+    @Override
+    public int drawRotateFrame(int texFormat, int textureId, float[] texMatrix,
+                               float[] mvpMatrix, int width, int height) {
+        checkCurrent();
+        if (mRotateTexture == 0 || mRotateWidth != width || mRotateHeight != height) {
+            if (mRotateTexture != 0) {
+                recycleTexture(mRotateTexture);
+            }
+            mRotateTexture = obtainTexture(width, height);
+            mRotateWidth = width;
+            mRotateHeight = height;
+        }
+        count(OP_DRAW_ROTATE);
+        spend();
+        return mRotateTexture;
+    }
+
+    private void count(int op) {
+        mShared.counts.incrementAndGet(op);
+    }
+
+    private void spend() {
+        long costNs = mDrawCostNs;
+        if (costNs <= 0) {
+            return;
+        }
+        long end = System.nanoTime() + costNs;
+        while (System.nanoTime() < end) {
+            // Busy as the GPU
+        }
+    }
+
+    private void checkNotReleased() {
+        if (mReleased) {
+            throw new IllegalStateException("The backend is released");
+        }
+    }
+
+    private void checkCurrent() {
+        checkNotReleased();
+        if (mCurrent == null) {
+            throw new IllegalStateException("No current surface");
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package io.agora.capture.framework.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts frames from one thread without locking or
+ * allocation, and gives the frame rate to any thread.
+ * The rate is averaged since the previous reading that
+ * is at least a second earlier.
+ */
+public final class FpsCounter {
+    private static final long MIN_WINDOW_NS = 1000000000L;
+
+    private final AtomicLong mCount = new AtomicLong();
+
+    private long mWindowStartNs = System.nanoTime();
+    private long mWindowStartCount;
+    private float mFps;
+
+    public void increment() {
+        mCount.incrementAndGet();
+    }
+
+    /**
+     * @return the number of frames since created
+     */
+    public long getCount() {
+        return mCount.get();
+    }
+
+    public synchronized float getFps() {
+        long now = System.nanoTime();
+        long elapsed = now - mWindowStartNs;
+        if (elapsed >= MIN_WINDOW_NS) {
+            long count = mCount.get();
+            mFps = (count - mWindowStartCount) * 1e9f / elapsed;
+            mWindowStartCount = count;
+            mWindowStartNs = now;
+        }
+        return mFps;
+    }
+}
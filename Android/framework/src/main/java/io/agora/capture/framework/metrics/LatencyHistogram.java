@@ -0,0 +1,150 @@
+package io.agora.capture.framework.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency histogram with fixed buckets, recorded without
+ * locking or allocation from any thread.
+ * Buckets are 0.5 ms wide up to 50 ms and 5 ms wide up
+ * to 500 ms, longer latencies share the last bucket.
+ * Percentiles are the upper bounds of their buckets.
+ */
+public final class LatencyHistogram {
+    private static final long FINE_STEP_NS = 500000L;
+    private static final long FINE_LIMIT_NS = 50000000L;
+    private static final long COARSE_STEP_NS = 5000000L;
+    private static final long COARSE_LIMIT_NS = 500000000L;
+    private static final int FINE_BUCKETS = (int) (FINE_LIMIT_NS / FINE_STEP_NS);
+    private static final int COARSE_BUCKETS =
+            (int) ((COARSE_LIMIT_NS - FINE_LIMIT_NS) / COARSE_STEP_NS);
+    private static final int BUCKET_COUNT = FINE_BUCKETS + COARSE_BUCKETS + 1;
+
+    private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong mCount = new AtomicLong();
+    private final AtomicLong mSumNs = new AtomicLong();
+    private final AtomicLong mMaxNs = new AtomicLong();
+
+    public void record(long latencyNs) {
+        if (latencyNs < 0) {
+            return;
+        }
+
+        mBuckets.incrementAndGet(bucketOf(latencyNs));
+        mCount.incrementAndGet();
+        mSumNs.addAndGet(latencyNs);
+
+        long max;
+        while (latencyNs > (max = mMaxNs.get())) {
+            if (mMaxNs.compareAndSet(max, latencyNs)) {
+                break;
+            }
+        }
+    }
+
+    public long getCount() {
+        return mCount.get();
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the latency that the given percentage of the
+     * records do not exceed, or 0 if nothing is recorded.
+     */
+    public long getPercentileNs(double percentile) {
+        long count = mCount.get();
+        if (count == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(count * percentile / 100);
+        if (rank < 1) rank = 1;
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT - 1; i++) {
+            seen += mBuckets.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), mMaxNs.get());
+            }
+        }
+        return mMaxNs.get();
+    }
+
+    /**
+     * @return the sum of all the records, to compute the
+     * mean latency between two readings.
+     */
+    public long getSumNs() {
+        return mSumNs.get();
+    }
+
+    public long getMaxNs() {
+        return mMaxNs.get();
+    }
+
+    public long getMeanNs() {
+        long count = mCount.get();
+        return count == 0 ? 0 : mSumNs.get() / count;
+    }
+
+    /**
+     * Records made during a reset may be partly kept.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            mBuckets.set(i, 0);
+        }
+        mCount.set(0);
+        mSumNs.set(0);
+        mMaxNs.set(0);
+    }
+
+    public Summary getSummary() {
+        return new Summary(getCount(), getPercentileNs(50),
+                getPercentileNs(90), getPercentileNs(99), getMaxNs(), getMeanNs());
+    }
+
+    private static int bucketOf(long latencyNs) {
+        if (latencyNs < FINE_LIMIT_NS) {
+            return (int) (latencyNs / FINE_STEP_NS);
+        } else if (latencyNs < COARSE_LIMIT_NS) {
+            return FINE_BUCKETS + (int) ((latencyNs - FINE_LIMIT_NS) / COARSE_STEP_NS);
+        }
+        return BUCKET_COUNT - 1;
+    }
+
+    private static long upperBoundOf(int bucket) {
+        if (bucket < FINE_BUCKETS) {
+            return (bucket + 1) * FINE_STEP_NS;
+        }
+        return FINE_LIMIT_NS + (bucket - FINE_BUCKETS + 1) * COARSE_STEP_NS;
+    }
+
+    public static final class Summary {
+        public final long count;
+        public final long p50Ns;
+        public final long p90Ns;
+        public final long p99Ns;
+        public final long maxNs;
+        public final long meanNs;
+
+        Summary(long count, long p50Ns, long p90Ns, long p99Ns, long maxNs, long meanNs) {
+            this.count = count;
+            this.p50Ns = p50Ns;
+            this.p90Ns = p90Ns;
+            this.p99Ns = p99Ns;
+            this.maxNs = maxNs;
+            this.meanNs = meanNs;
+        }
+
+        public String toString() {
+            return "Summary{" +
+                    "count=" + count +
+                    ", p50Ms=" + p50Ns / 1e6 +
+                    ", p90Ms=" + p90Ns / 1e6 +
+                    ", p99Ms=" + p99Ns / 1e6 +
+                    ", maxMs=" + maxNs / 1e6 +
+                    ", meanMs=" + meanNs / 1e6 +
+                    '}';
+        }
+    }
+}
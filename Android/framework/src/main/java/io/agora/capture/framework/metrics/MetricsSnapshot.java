@@ -0,0 +1,31 @@
+package io.agora.capture.framework.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Values of all the metrics read at one moment, keyed by
+ * metric name. Immutable.
+ */
+public final class MetricsSnapshot {
+    public final long timestampNs;
+    public final Map<String, Float> fps;
+    public final Map<String, Long> counts;
+    public final Map<String, LatencyHistogram.Summary> latencies;
+
+    MetricsSnapshot(long timestampNs, Map<String, Float> fps, Map<String, Long> counts,
+                    Map<String, LatencyHistogram.Summary> latencies) {
+        this.timestampNs = timestampNs;
+        this.fps = Collections.unmodifiableMap(fps);
+        this.counts = Collections.unmodifiableMap(counts);
+        this.latencies = Collections.unmodifiableMap(latencies);
+    }
+
+    public String toString() {
+        return "MetricsSnapshot{" +
+                "fps=" + fps +
+                ", counts=" + counts +
+                ", latencies=" + latencies +
+                '}';
+    }
+}
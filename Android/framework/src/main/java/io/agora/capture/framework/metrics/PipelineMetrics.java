@@ -0,0 +1,195 @@
+package io.agora.capture.framework.metrics;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.agora.capture.framework.modules.channels.ChannelManager;
+import io.agora.capture.framework.util.LogUtil;
+import io.agora.capture.video.camera.FrameTimestamps;
+
+/**
+ * Registry of the metrics of the video pipeline: frame
+ * rates of producers, channels and consumers, latency
+ * histograms of the pipeline stages, and counts like
+ * dropped frames and buffer pool occupancy.
+ * Metrics are created once by name and then updated
+ * without locking or allocation. All metrics can be read
+ * from any thread, pulled with snapshot() or given
+ * periodically to a listener.
+ */
+public class PipelineMetrics {
+    private static final String TAG = PipelineMetrics.class.getSimpleName();
+
+    /**
+     * A count read when the metrics are read, like the
+     * dropped frames of a queue.
+     */
+    public interface Gauge {
+        long get();
+    }
+
+    public interface Listener {
+        /**
+         * Called on the metrics thread.
+         */
+        void onMetrics(MetricsSnapshot snapshot);
+    }
+
+    private final ConcurrentHashMap<String, FpsCounter> mFps = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LatencyHistogram> mLatencies = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Gauge> mGauges = new ConcurrentHashMap<>();
+
+    private HandlerThread mThread;
+    private Handler mHandler;
+    private Listener mListener;
+    private long mPeriodMs;
+
+    private final Runnable mReportRun = new Runnable() {
+        @Override
+        public void run() {
+            Listener listener;
+            synchronized (PipelineMetrics.this) {
+                listener = mListener;
+                if (listener == null) return;
+                mHandler.postDelayed(this, mPeriodMs);
+            }
+
+            try {
+                listener.onMetrics(snapshot());
+            } catch (Exception e) {
+                LogUtil.e(TAG, "metrics listener failed: " + e);
+            }
+        }
+    };
+
+    public static String producer(int channelId) {
+        return ChannelManager.ChannelID.toString(channelId) + ".producer";
+    }
+
+    public static String channel(int channelId) {
+        return ChannelManager.ChannelID.toString(channelId);
+    }
+
+    public static String consumer(int channelId, String consumerName) {
+        return ChannelManager.ChannelID.toString(channelId) + ".consumer." + consumerName;
+    }
+
+    /**
+     * @param stage one of the stages in FrameTimestamps
+     */
+    public static String stage(int channelId, int stage) {
+        return ChannelManager.ChannelID.toString(channelId) + ".latency." +
+                FrameTimestamps.toString(stage);
+    }
+
+    /**
+     * Latency from capture to the end of the last consumer
+     */
+    public static String endToEnd(int channelId) {
+        return ChannelManager.ChannelID.toString(channelId) + ".latency.end_to_end";
+    }
+
+    /**
+     * @return the counter of the name, created the first
+     * time the name is used
+     */
+    public FpsCounter fps(String name) {
+        FpsCounter counter = mFps.get(name);
+        if (counter == null) {
+            FpsCounter created = new FpsCounter();
+            counter = mFps.putIfAbsent(name, created);
+            if (counter == null) counter = created;
+        }
+        return counter;
+    }
+
+    /**
+     * @return the histogram of the name, created the first
+     * time the name is used
+     */
+    public LatencyHistogram latency(String name) {
+        LatencyHistogram histogram = mLatencies.get(name);
+        if (histogram == null) {
+            LatencyHistogram created = new LatencyHistogram();
+            histogram = mLatencies.putIfAbsent(name, created);
+            if (histogram == null) histogram = created;
+        }
+        return histogram;
+    }
+
+    public void setGauge(String name, Gauge gauge) {
+        mGauges.put(name, gauge);
+    }
+
+    /**
+     * Remove the metrics of the name and those prefixed
+     * by the name and a dot.
+     */
+    public void remove(String name) {
+        removeFrom(mFps, name);
+        removeFrom(mLatencies, name);
+        removeFrom(mGauges, name);
+    }
+
+    private static void removeFrom(Map<String, ?> metrics, String name) {
+        String prefix = name + ".";
+        for (String key : metrics.keySet()) {
+            if (key.equals(name) || key.startsWith(prefix)) {
+                metrics.remove(key);
+            }
+        }
+    }
+
+    public MetricsSnapshot snapshot() {
+        Map<String, Float> fps = new TreeMap<>();
+        for (Map.Entry<String, FpsCounter> entry : mFps.entrySet()) {
+            fps.put(entry.getKey(), entry.getValue().getFps());
+        }
+
+        Map<String, Long> counts = new TreeMap<>();
+        for (Map.Entry<String, Gauge> entry : mGauges.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().get());
+        }
+
+        Map<String, LatencyHistogram.Summary> latencies = new TreeMap<>();
+        for (Map.Entry<String, LatencyHistogram> entry : mLatencies.entrySet()) {
+            latencies.put(entry.getKey(), entry.getValue().getSummary());
+        }
+        return new MetricsSnapshot(System.nanoTime(), fps, counts, latencies);
+    }
+
+    /**
+     * Give a snapshot to the listener every period on the
+     * metrics thread, which is stopped when the listener
+     * is set to null.
+     */
+    public synchronized void setListener(Listener listener, long periodMs) {
+        if (listener != null && periodMs <= 0) {
+            throw new IllegalArgumentException("Period must be positive: " + periodMs);
+        }
+
+        mListener = listener;
+        mPeriodMs = periodMs;
+        if (listener == null) {
+            if (mThread != null) {
+                mHandler.removeCallbacks(mReportRun);
+                mThread.quitSafely();
+                mThread = null;
+                mHandler = null;
+            }
+            return;
+        }
+
+        if (mThread == null) {
+            mThread = new HandlerThread(TAG);
+            mThread.start();
+            mHandler = new Handler(mThread.getLooper());
+        }
+        mHandler.removeCallbacks(mReportRun);
+        mHandler.postDelayed(mReportRun, periodMs);
+    }
+}
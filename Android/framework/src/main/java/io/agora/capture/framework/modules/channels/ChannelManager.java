@@ -2,14 +2,28 @@ package io.agora.capture.framework.modules.channels;
 
 import android.content.Context;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.agora.capture.framework.gles.core.GlBackend;
+import io.agora.capture.framework.gles.core.GlShareGroup;
+import io.agora.capture.framework.metrics.PipelineMetrics;
 import io.agora.capture.framework.modules.consumers.IVideoConsumer;
 import io.agora.capture.framework.modules.processors.IPreprocessor;
 import io.agora.capture.framework.modules.producers.IVideoProducer;
 import io.agora.capture.video.camera.CameraVideoChannel;
 
+/**
+ * Channels are created on demand by any non-negative id,
+ * the ids in ChannelID are only the predefined ones.
+ * All the channels of a manager are in one GL share group,
+ * so they compile shaders once and reuse the intermediate
+ * textures of each other.
+ */
 public class ChannelManager {
     public static final String TAG = ChannelManager.class.getSimpleName();
-    private static final int CHANNEL_COUNT = 3;
 
     public static class ChannelID {
         public static final int CAMERA = 0;
@@ -21,53 +35,65 @@ public class ChannelManager {
                 case CAMERA: return "camera_channel";
                 case SCREEN_SHARE: return "ScreenShare_channel";
                 case CUSTOM: return "custom_channel";
-                default: return "undefined_channel";
+                default: return "channel_" + id;
             }
         }
     }
 
     public ChannelManager(Context context) {
+        this(context, new PipelineMetrics());
+    }
+
+    public ChannelManager(Context context, PipelineMetrics metrics) {
         // The context should have no relation
         // to any Activity or a Service instance.
         mContext = context.getApplicationContext();
+        mMetrics = metrics;
     }
 
     private Context mContext;
-    private VideoChannel[] mChannels = new VideoChannel[CHANNEL_COUNT];
+    private final PipelineMetrics mMetrics;
+    private final Map<Integer, VideoChannel> mChannels = new HashMap<>();
+    private final GlShareGroup mShareGroup = new GlShareGroup();
+    private volatile GlBackend.Factory mGlBackendFactory;
+    private volatile boolean mShaderPrewarm = true;
 
     public VideoChannel connectProducer(IVideoProducer producer, int id) {
-        ensureChannelRunning(id);
-        mChannels[id].connectProducer(producer);
-        return mChannels[id];
+        VideoChannel channel = getRunningChannel(id);
+        channel.connectProducer(producer);
+        return channel;
     }
 
     public void disconnectProducer(int id) {
         if(ensureChannelRunning(id)){
-            mChannels[id].disconnectProducer();
+            getVideoChannel(id).disconnectProducer();
         }
     }
 
     public VideoChannel connectConsumer(IVideoConsumer consumer, int id, int type) {
-        ensureChannelRunning(id);
-        mChannels[id].connectConsumer(consumer, type);
-        return mChannels[id];
+        VideoChannel channel = getRunningChannel(id);
+        channel.connectConsumer(consumer, type);
+        return channel;
     }
 
     public void disconnectConsumer(IVideoConsumer consumer, int id) {
-        if(mChannels[id] != null){
-            mChannels[id].disconnectConsumer(consumer);
+        VideoChannel channel = getVideoChannel(id);
+        if(channel != null){
+            channel.disconnectConsumer(consumer);
         }
     }
 
-    public boolean ensureChannelRunning(int channelId) {
+    public synchronized boolean ensureChannelRunning(int channelId) {
         checkChannelId(channelId);
         try{
-            if (mChannels[channelId] == null) {
-                mChannels[channelId] = createVideoChannel(channelId);
+            VideoChannel channel = mChannels.get(channelId);
+            if (channel == null) {
+                channel = createVideoChannel(channelId);
+                mChannels.put(channelId, channel);
             }
 
-            if (!mChannels[channelId].isRunning()) {
-                mChannels[channelId].startChannel();
+            if (!channel.isRunning()) {
+                channel.startChannel();
             }
             return true;
         }
@@ -76,51 +102,107 @@ public class ChannelManager {
         }
     }
 
+    private synchronized VideoChannel getRunningChannel(int channelId) {
+        ensureChannelRunning(channelId);
+        return mChannels.get(channelId);
+    }
+
     public void stopChannel(int channelId) {
         checkChannelId(channelId);
 
-        if (mChannels[channelId] != null &&
-                mChannels[channelId].isRunning()) {
-            mChannels[channelId].stopChannel();
-            mChannels[channelId] = null;
+        VideoChannel channel;
+        synchronized (this) {
+            channel = mChannels.get(channelId);
+            if (channel == null || !channel.isRunning()) {
+                return;
+            }
+            mChannels.remove(channelId);
         }
+        channel.stopChannel();
+    }
+
+    public void stopAllChannels() {
+        for (int id : getChannelIds()) {
+            stopChannel(id);
+        }
+    }
+
+    /**
+     * @return the ids of the channels created and not
+     * stopped yet
+     */
+    public synchronized List<Integer> getChannelIds() {
+        return new ArrayList<>(mChannels.keySet());
     }
 
+    /**
+     * @deprecated off-screen consumers always receive the
+     * frames, whether on-screen consumers are connected
+     * or not. This has no effect.
+     */
+    @Deprecated
     public void enableOffscreenMode(int channelId, boolean enable) {
-        ensureChannelRunning(channelId);
-        mChannels[channelId].enableOffscreenMode(enable);
+
     }
 
-    public void setPreprocessor(int channelId, IPreprocessor preprocessor) {
+    public synchronized void setPreprocessor(int channelId, IPreprocessor preprocessor) {
         checkChannelId(channelId);
-        if (mChannels[channelId] == null) {
-            mChannels[channelId] = createVideoChannel(channelId);
+        VideoChannel channel = mChannels.get(channelId);
+        if (channel == null) {
+            channel = createVideoChannel(channelId);
+            mChannels.put(channelId, channel);
         }
 
-        mChannels[channelId].setPreprocessor(preprocessor);
+        channel.setPreprocessor(preprocessor);
     }
 
     public IPreprocessor getPreprocessor(int channelId) {
-        checkChannelId(channelId);
-        return mChannels[channelId] == null ?
-                null : mChannels[channelId].getPreprocessor();
+        VideoChannel channel = getVideoChannel(channelId);
+        return channel == null ? null : channel.getPreprocessor();
     }
 
     private VideoChannel createVideoChannel(int id) {
-        return id == ChannelID.CAMERA ?
+        VideoChannel channel = id == ChannelID.CAMERA ?
                 new CameraVideoChannel(mContext, id) :
                 new VideoChannel(mContext, id);
+        channel.setShareGroup(mShareGroup);
+        channel.setGlBackendFactory(mGlBackendFactory);
+        channel.setShaderPrewarm(mShaderPrewarm);
+        channel.setMetrics(mMetrics);
+        return channel;
+    }
+
+    /**
+     * Run the channels created afterwards on another GL
+     * backend, like RecordingGlBackend off device.
+     * @param factory null to run on GLES
+     */
+    public void setGlBackendFactory(GlBackend.Factory factory) {
+        mGlBackendFactory = factory;
+    }
+
+    /**
+     * Compile the shaders of the channels created afterwards
+     * on a background context while they start, which is
+     * the default.
+     */
+    public void setShaderPrewarmEnabled(boolean enabled) {
+        mShaderPrewarm = enabled;
+    }
+
+    public PipelineMetrics getMetrics() {
+        return mMetrics;
     }
 
     private void checkChannelId(int channelId) {
-        if (channelId < ChannelID.CAMERA || channelId > ChannelID.CUSTOM) {
+        if (channelId < 0) {
             throw new IllegalArgumentException(
                     "[ChannelManager] wrong argument: Undefined channel id");
         }
     }
 
-    public VideoChannel getVideoChannel(int channelId) {
+    public synchronized VideoChannel getVideoChannel(int channelId) {
         checkChannelId(channelId);
-        return mChannels[channelId];
+        return mChannels.get(channelId);
     }
 }
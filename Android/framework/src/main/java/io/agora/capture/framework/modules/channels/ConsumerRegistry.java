@@ -0,0 +1,187 @@
+package io.agora.capture.framework.modules.channels;
+
+import android.text.TextUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.agora.capture.framework.metrics.FpsCounter;
+import io.agora.capture.framework.modules.consumers.IVideoConsumer;
+
+/**
+ * Copy-on-write list of the consumers of one type in a
+ * channel. Every change publishes a new immutable
+ * snapshot, so the frame loop iterates a stable array
+ * without locking or allocation, while consumers are
+ * attached and detached from any thread.
+ * Consumers are indexed by drawing target and by id,
+ * and a consumer replaces those with the same drawing
+ * target or the same non-empty id.
+ */
+class ConsumerRegistry {
+    static final class Entry {
+        final IVideoConsumer consumer;
+        final FramePacer pacer;
+        final FpsCounter fps;
+
+        private Entry(IVideoConsumer consumer, FramePacer pacer, FpsCounter fps) {
+            this.consumer = consumer;
+            this.pacer = pacer;
+            this.fps = fps;
+        }
+    }
+
+    private static final class Snapshot {
+        final Entry[] entries;
+        final Map<Object, Entry> byTarget;
+        final Map<String, Entry> byId;
+
+        Snapshot(Entry[] entries) {
+            this.entries = entries;
+            Map<Object, Entry> byTarget = new HashMap<>();
+            Map<String, Entry> byId = new HashMap<>();
+            for (Entry entry : entries) {
+                Object target = entry.consumer.getDrawingTarget();
+                if (target != null) byTarget.put(target, entry);
+                String id = entry.consumer.getId();
+                if (!TextUtils.isEmpty(id)) byId.put(id, entry);
+            }
+            this.byTarget = Collections.unmodifiableMap(byTarget);
+            this.byId = Collections.unmodifiableMap(byId);
+        }
+
+        Entry find(IVideoConsumer consumer) {
+            Object target = consumer.getDrawingTarget();
+            Entry entry = target != null ? byTarget.get(target) : null;
+            if (entry == null) {
+                String id = consumer.getId();
+                if (!TextUtils.isEmpty(id)) entry = byId.get(id);
+            }
+            return entry;
+        }
+    }
+
+    private static final Snapshot EMPTY = new Snapshot(new Entry[0]);
+
+    private final AtomicReference<Snapshot> mSnapshot = new AtomicReference<>(EMPTY);
+
+    /**
+     * @return the current consumers, must not be modified
+     */
+    Entry[] entries() {
+        return mSnapshot.get().entries;
+    }
+
+    boolean isEmpty() {
+        return mSnapshot.get().entries.length == 0;
+    }
+
+    /**
+     * @param fps counts the frames given to the consumer
+     * @return the consumers replaced by the new one
+     */
+    List<IVideoConsumer> add(IVideoConsumer consumer, FpsCounter fps) {
+        while (true) {
+            Snapshot old = mSnapshot.get();
+            List<IVideoConsumer> removed = new ArrayList<>();
+            List<Entry> entries = new ArrayList<>(old.entries.length + 1);
+            for (Entry entry : old.entries) {
+                if (isSame(entry.consumer, consumer)) {
+                    removed.add(entry.consumer);
+                } else {
+                    entries.add(entry);
+                }
+            }
+            entries.add(new Entry(consumer, null, fps));
+
+            if (mSnapshot.compareAndSet(old, new Snapshot(entries.toArray(new Entry[0])))) {
+                return removed;
+            }
+        }
+    }
+
+    /**
+     * Remove the consumer instance, or if it is not in
+     * the list, those considered the same if sameAllowed.
+     * @return the removed consumers
+     */
+    List<IVideoConsumer> remove(IVideoConsumer consumer, boolean sameAllowed) {
+        while (true) {
+            Snapshot old = mSnapshot.get();
+            boolean contained = false;
+            for (Entry entry : old.entries) {
+                if (entry.consumer == consumer) {
+                    contained = true;
+                    break;
+                }
+            }
+
+            List<IVideoConsumer> removed = new ArrayList<>();
+            List<Entry> entries = new ArrayList<>(old.entries.length);
+            for (Entry entry : old.entries) {
+                if (entry.consumer == consumer ||
+                        (!contained && sameAllowed && isSame(entry.consumer, consumer))) {
+                    removed.add(entry.consumer);
+                } else {
+                    entries.add(entry);
+                }
+            }
+
+            if (removed.isEmpty()) {
+                return removed;
+            }
+
+            if (mSnapshot.compareAndSet(old, new Snapshot(entries.toArray(new Entry[0])))) {
+                return removed;
+            }
+        }
+    }
+
+    /**
+     * @return all the consumers that were in the list
+     */
+    List<IVideoConsumer> clear() {
+        Snapshot old = mSnapshot.getAndSet(EMPTY);
+        List<IVideoConsumer> removed = new ArrayList<>(old.entries.length);
+        for (Entry entry : old.entries) {
+            removed.add(entry.consumer);
+        }
+        return removed;
+    }
+
+    /**
+     * @return false if there is no such consumer
+     */
+    boolean setPacer(IVideoConsumer consumer, FramePacer pacer) {
+        while (true) {
+            Snapshot old = mSnapshot.get();
+            Entry found = old.find(consumer);
+            if (found == null) {
+                return false;
+            }
+
+            Entry[] entries = old.entries.clone();
+            for (int i = 0; i < entries.length; i++) {
+                if (entries[i] == found) {
+                    entries[i] = new Entry(found.consumer, pacer, found.fps);
+                }
+            }
+
+            if (mSnapshot.compareAndSet(old, new Snapshot(entries))) {
+                return true;
+            }
+        }
+    }
+
+    private static boolean isSame(IVideoConsumer a, IVideoConsumer b) {
+        if (a.getDrawingTarget() == b.getDrawingTarget()) {
+            return true;
+        }
+        String id = a.getId();
+        return !TextUtils.isEmpty(id) && id.equals(b.getId());
+    }
+}
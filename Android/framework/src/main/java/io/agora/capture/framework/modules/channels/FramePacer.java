@@ -0,0 +1,88 @@
+package io.agora.capture.framework.modules.channels;
+
+/**
+ * Decides which frames a consumer gets when it needs
+ * fewer frames than captured. Frames that are not
+ * accepted are never given to the consumer, so no work
+ * is scheduled for them.
+ * A pacer is only used by the channel thread.
+ */
+public abstract class FramePacer {
+    /**
+     * Pace frames by their timestamps, so the accepted
+     * frames are spread evenly at no more than maxFps,
+     * whatever the capture frame rate is.
+     */
+    public static FramePacer maxFps(float maxFps) {
+        return new RatePacer(maxFps);
+    }
+
+    /**
+     * Accept one of every n frames.
+     */
+    public static FramePacer everyNth(int n) {
+        return new NthPacer(n);
+    }
+
+    /**
+     * @param timestampNs monotonic capture timestamp of
+     *                    the frame, in nanoseconds
+     * @return true if the frame should be consumed
+     */
+    public abstract boolean accept(long timestampNs);
+
+    private static class RatePacer extends FramePacer {
+        private final double mIntervalNs;
+        // A frame a little earlier than due is accepted
+        // too, or capture jitter would skip a whole cycle.
+        private final double mToleranceNs;
+        private double mNextDueNs = -1;
+
+        RatePacer(float maxFps) {
+            if (maxFps <= 0) {
+                throw new IllegalArgumentException("Frame rate must be positive: " + maxFps);
+            }
+            mIntervalNs = 1e9 / maxFps;
+            mToleranceNs = mIntervalNs / 4;
+        }
+
+        @Override
+        public boolean accept(long timestampNs) {
+            if (mNextDueNs < 0) {
+                mNextDueNs = timestampNs + mIntervalNs;
+                return true;
+            }
+
+            if (timestampNs + mToleranceNs < mNextDueNs) {
+                return false;
+            }
+
+            mNextDueNs += mIntervalNs;
+            if (mNextDueNs <= timestampNs) {
+                // Frames came too late, like after a pause,
+                // start the cadence from this frame.
+                mNextDueNs = timestampNs + mIntervalNs;
+            }
+            return true;
+        }
+    }
+
+    private static class NthPacer extends FramePacer {
+        private final int mN;
+        private int mCount;
+
+        NthPacer(int n) {
+            if (n <= 0) {
+                throw new IllegalArgumentException("Frame interval must be positive: " + n);
+            }
+            mN = n;
+        }
+
+        @Override
+        public boolean accept(long timestampNs) {
+            boolean accepted = mCount == 0;
+            mCount = (mCount + 1) % mN;
+            return accepted;
+        }
+    }
+}
@@ -5,14 +5,20 @@ import android.opengl.EGLContext;
 import android.opengl.EGLSurface;
 import android.os.Handler;
 import android.os.HandlerThread;
-import android.text.TextUtils;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 
 import io.agora.capture.framework.gles.ProgramTexture2d;
 import io.agora.capture.framework.gles.ProgramTextureOES;
 import io.agora.capture.framework.gles.core.EglCore;
+import io.agora.capture.framework.gles.core.GlBackend;
+import io.agora.capture.framework.gles.core.GlShareGroup;
+import io.agora.capture.framework.gles.core.GlesBackend;
+import io.agora.capture.framework.metrics.FpsCounter;
+import io.agora.capture.framework.metrics.LatencyHistogram;
+import io.agora.capture.framework.metrics.PipelineMetrics;
+import io.agora.capture.framework.modules.consumers.AsyncVideoConsumer;
 import io.agora.capture.framework.modules.consumers.IVideoConsumer;
 import io.agora.capture.framework.modules.processors.IPreprocessor;
 import io.agora.capture.framework.modules.processors.RotateProcessor;
@@ -21,18 +27,19 @@ import io.agora.capture.framework.modules.producers.IVideoProducer;
 import io.agora.capture.framework.util.LogUtil;
 import io.agora.capture.framework.util.ThreadUtils;
 import io.agora.capture.video.camera.Constant;
+import io.agora.capture.video.camera.FrameTimestamps;
+import io.agora.capture.video.camera.VideoCaptureFormat;
 import io.agora.capture.video.camera.VideoCaptureFrame;
 
 public class VideoChannel extends HandlerThread {
     private static final String TAG = VideoChannel.class.getSimpleName();
 
     private int mChannelId;
-    private boolean mOffScreenMode;
 
     private IVideoProducer mProducer;
-    private List<IVideoConsumer> mOnScreenConsumers = new ArrayList<>();
-    private List<IVideoConsumer> mOffScreenConsumers = new ArrayList<>();
-    private int mOnScreenConsumerMirrorMode = Constant.MIRROR_MODE_AUTO;
+    private final ConsumerRegistry mOnScreenConsumers = new ConsumerRegistry();
+    private final ConsumerRegistry mOffScreenConsumers = new ConsumerRegistry();
+    private volatile int mOnScreenConsumerMirrorMode = Constant.MIRROR_MODE_AUTO;
     private IPreprocessor mPreprocessor;
     private volatile boolean isPreprocessorInitialized = false;
 
@@ -46,7 +53,23 @@ public class VideoChannel extends HandlerThread {
     private Handler mHandler;
 
     private ChannelContext mContext;
-    private EGLSurface mDummyEglSurface;
+    private Object mDummySurface;
+    private GlShareGroup mShareGroup;
+    private GlBackend.Factory mGlBackendFactory;
+    private boolean mShaderPrewarm;
+
+    private PipelineMetrics mMetrics;
+    private FpsCounter mFps;
+    private final LatencyHistogram[] mStageLatencies =
+            new LatencyHistogram[FrameTimestamps.STAGE_COUNT];
+    private LatencyHistogram mEndToEndLatency;
+
+    // When init started, GL became current and the
+    // processors were ready, by System.nanoTime
+    private volatile long mInitStartNs;
+    private volatile long mGlReadyNs;
+    private volatile long mInitEndNs;
+    private final CountDownLatch mInitDone = new CountDownLatch(1);
 
     public VideoChannel(Context context, int id) {
         super(ChannelManager.ChannelID.toString(id));
@@ -68,33 +91,124 @@ public class VideoChannel extends HandlerThread {
         }
     }
 
+    /**
+     * Must be set before the channel starts.
+     */
+    void setShareGroup(GlShareGroup shareGroup) {
+        mShareGroup = shareGroup;
+    }
+
+    /**
+     * Must be set before the channel starts.
+     * @param factory null to run on GLES
+     */
+    void setGlBackendFactory(GlBackend.Factory factory) {
+        mGlBackendFactory = factory;
+    }
+
+    /**
+     * Must be set before the channel starts.
+     * @see GlesBackend#prewarm(GlShareGroup)
+     */
+    void setShaderPrewarm(boolean enabled) {
+        mShaderPrewarm = enabled;
+    }
+
+    /**
+     * Must be set before the channel starts.
+     */
+    void setMetrics(PipelineMetrics metrics) {
+        mMetrics = metrics;
+        mFps = metrics.fps(PipelineMetrics.channel(mChannelId));
+        for (int stage = FrameTimestamps.PRODUCER_PUSH; stage < FrameTimestamps.STAGE_COUNT; stage++) {
+            mStageLatencies[stage] = metrics.latency(PipelineMetrics.stage(mChannelId, stage));
+        }
+        mEndToEndLatency = metrics.latency(PipelineMetrics.endToEnd(mChannelId));
+    }
+
+    protected PipelineMetrics getMetrics() {
+        return mMetrics;
+    }
+
     @Override
     public void run() {
-        init();
         super.run();
         release();
     }
 
+    /**
+     * GL is set up once the looper is prepared, so that
+     * startChannel() returns meanwhile, and the messages
+     * posted run after it.
+     */
+    @Override
+    protected void onLooperPrepared() {
+        init();
+    }
+
     private void init() {
         LogUtil.i(TAG, "channel opengl init");
-        initOpenGL();
-        initRotateProcessor();
-        initWatermarkProcessor();
+        mInitStartNs = System.nanoTime();
+        try {
+            initOpenGL();
+            mGlReadyNs = System.nanoTime();
+            initRotateProcessor();
+            initWatermarkProcessor();
+            mInitEndNs = System.nanoTime();
+        } finally {
+            mInitDone.countDown();
+        }
+        LogUtil.i(TAG, "channel opengl init done: egl " +
+                (mGlReadyNs - mInitStartNs) / 1000000 + "ms, programs " +
+                (mInitEndNs - mGlReadyNs) / 1000000 + "ms");
         onChannelContextCreated();
     }
 
+    // For other threads, which expect the channel set up
+    // once started
+    private void awaitInit() {
+        if (Thread.currentThread() != this && isAlive()) {
+            ThreadUtils.awaitUninterruptibly(mInitDone);
+        }
+    }
+
+    /**
+     * @return whether the channel has set up GL and its
+     * processors, or false while it is still doing so.
+     */
+    protected boolean isChannelContextReady() {
+        return mInitEndNs != 0;
+    }
+
+    protected long getInitStartNs() {
+        return mInitStartNs;
+    }
+
+    protected long getGlReadyNs() {
+        return mGlReadyNs;
+    }
+
+    protected long getInitEndNs() {
+        return mInitEndNs;
+    }
+
     // The initialization phase for sub classes
     protected void onChannelContextCreated() {
 
     }
 
     private void initOpenGL() {
-        EglCore eglCore = new EglCore();
-        mContext.setEglCore(eglCore);
-        mDummyEglSurface = eglCore.createOffscreenSurface(1, 1);
-        eglCore.makeCurrent(mDummyEglSurface);
-        mContext.setProgram2D(new ProgramTexture2d());
-        mContext.setProgramOES(new ProgramTextureOES());
+        GlBackend backend = mGlBackendFactory != null ?
+                mGlBackendFactory.create() : new GlesBackend(mShareGroup);
+        mContext.setGlBackend(backend);
+        mDummySurface = backend.createOffscreenSurface(1, 1);
+        backend.makeCurrent(mDummySurface);
+
+        // The programs are compiled when first drawn with,
+        // by then mostly from the shaders prewarmed
+        if (mShaderPrewarm && mGlBackendFactory == null && mShareGroup != null) {
+            GlesBackend.prewarm(mShareGroup);
+        }
     }
 
     private void mayInitPreprocessor() {
@@ -111,7 +225,7 @@ public class VideoChannel extends HandlerThread {
 
     private void initWatermarkProcessor() {
         if(mWatermarkProcessor == null){
-            mWatermarkProcessor = new WatermarkProcessor();
+            mWatermarkProcessor = new WatermarkProcessor(mContext);
         }
     }
 
@@ -125,8 +239,8 @@ public class VideoChannel extends HandlerThread {
 
     private void releaseWatermarkProcessor() {
         if (mWatermarkProcessor != null) {
-            mWatermarkProcessor.cleanWatermark();
-            mPreprocessor = null;
+            mWatermarkProcessor.release();
+            mWatermarkProcessor = null;
         }
     }
 
@@ -145,14 +259,20 @@ public class VideoChannel extends HandlerThread {
     }
 
     private void releaseOpenGL() {
-        mContext.getProgram2D().release();
-        mContext.getProgramOES().release();
-        mContext.getEglCore().releaseSurface(mDummyEglSurface);
-        mContext.getEglCore().release();
+        // The dummy surface is destroyed once it is not
+        // current, so the GL objects can still be released.
+        GlBackend backend = mContext.getGlBackend();
+        backend.releaseSurface(mDummySurface);
+        backend.release();
         mContext = null;
     }
 
+    /**
+     * Waits for the channel to set up GL, when called
+     * from another thread.
+     */
     public ChannelContext getChannelContext() {
+        awaitInit();
         return mContext;
     }
 
@@ -180,16 +300,17 @@ public class VideoChannel extends HandlerThread {
             mProducer = null;
         }
 
-        if (!mOffScreenConsumers.isEmpty()) {
-            for (IVideoConsumer consumer : mOffScreenConsumers) {
-                consumer.recycle();
-                consumer.disconnectChannel(mChannelId);
-            }
+        for (IVideoConsumer consumer : mOffScreenConsumers.clear()) {
+            consumer.recycle();
+            consumer.disconnectChannel(mChannelId);
         }
-        mOffScreenConsumers.clear();
 
         removeOnScreenConsumer();
         quitSafely();
+
+        if (mMetrics != null) {
+            mMetrics.remove(PipelineMetrics.channel(mChannelId));
+        }
     }
 
     private void resetOpenGLSurface() {
@@ -197,20 +318,18 @@ public class VideoChannel extends HandlerThread {
     }
 
     private void removeOnScreenConsumer() {
-        if (mOnScreenConsumers != null) {
-            mHandler.post(() -> {
-                for (IVideoConsumer consumer : mOnScreenConsumers) {
-                    consumer.recycle();
-                    consumer.disconnectChannel(mChannelId);
-                }
-
-                mOnScreenConsumers.clear();
-                // To remove on-screen consumer, we need
-                // to reset the GLSurface and maintain
-                // the OpenGL context properly.
-                makeDummySurfaceCurrent();
-            });
-        }
+        final List<IVideoConsumer> removed = mOnScreenConsumers.clear();
+        mHandler.post(() -> {
+            for (IVideoConsumer consumer : removed) {
+                consumer.recycle();
+                consumer.disconnectChannel(mChannelId);
+            }
+
+            // To remove on-screen consumer, we need
+            // to reset the GLSurface and maintain
+            // the OpenGL context properly.
+            makeDummySurfaceCurrent();
+        });
     }
 
     public boolean isRunning() {
@@ -230,7 +349,9 @@ public class VideoChannel extends HandlerThread {
     }
 
     /**
-     * Attach a consumer to the channel
+     * Attach a consumer to the channel. The consumer takes
+     * effect from the next frame, and the consumers it
+     * replaces are recycled on the channel thread.
      * @param consumer consumer to be attached
      * @param type on-screen or off-screen
      * @see io.agora.capture.framework.modules.consumers.IVideoConsumer
@@ -239,55 +360,74 @@ public class VideoChannel extends HandlerThread {
         if (consumer == null) return;
         checkThreadRunningState();
 
-        mHandler.post(() -> {
-            if (type == IVideoConsumer.TYPE_ON_SCREEN) {
-                removeSameConsumers(mOnScreenConsumers,
-                        consumer.getDrawingTarget(), consumer.getId());
-                mOnScreenConsumers.add(consumer);
-                consumer.setMirrorMode(mOnScreenConsumerMirrorMode);
-            } else if (type == IVideoConsumer.TYPE_OFF_SCREEN) {
-                removeSameConsumers(mOffScreenConsumers,
-                        consumer.getDrawingTarget(), consumer.getId());
-                mOffScreenConsumers.add(consumer);
-            }
-        });
+        List<IVideoConsumer> replaced;
+        if (type == IVideoConsumer.TYPE_ON_SCREEN) {
+            // On-screen consumers draw with the OpenGL
+            // context of the channel thread.
+            IVideoConsumer onScreen = consumer instanceof AsyncVideoConsumer ?
+                    ((AsyncVideoConsumer) consumer).getConsumer() : consumer;
+            onScreen.setMirrorMode(mOnScreenConsumerMirrorMode);
+            replaced = mOnScreenConsumers.add(onScreen, consumerFps(onScreen));
+            removeConsumerMetrics(replaced, onScreen);
+        } else if (type == IVideoConsumer.TYPE_OFF_SCREEN) {
+            replaced = mOffScreenConsumers.add(consumer, consumerFps(consumer));
+            removeConsumerMetrics(replaced, consumer);
+        } else {
+            return;
+        }
+
+        recycleConsumers(replaced);
     }
 
-    private void removeSameConsumers(List<IVideoConsumer> consumers,
-                                     Object newTarget, String newId) {
-        List<IVideoConsumer> removeList = new ArrayList<>();
+    private String consumerMetricsName(IVideoConsumer consumer) {
+        return PipelineMetrics.consumer(mChannelId, consumer.getClass().getSimpleName() +
+                "@" + Integer.toHexString(System.identityHashCode(consumer)));
+    }
 
-        for (IVideoConsumer consumer : consumers) {
-            Object target = consumer.getDrawingTarget();
-            String t = consumer.getId();
-
-            if (target == newTarget) {
-                // Consumers with the same drawing target
-                // should be considered the same
-                removeList.add(consumer);
-            } else if (!TextUtils.isEmpty(t) && t.equals(newId)) {
-                removeList.add(consumer);
-            }
+    private FpsCounter consumerFps(IVideoConsumer consumer) {
+        if (mMetrics == null) return null;
+        String name = consumerMetricsName(consumer);
+        if (consumer instanceof AsyncVideoConsumer) {
+            AsyncVideoConsumer async = (AsyncVideoConsumer) consumer;
+            mMetrics.setGauge(name + ".dropped", async::getDroppedFrameCount);
+            async.setLagHistogram(mMetrics.latency(name + ".lag"));
         }
+        return mMetrics.fps(name);
+    }
 
-        for (IVideoConsumer consumer : removeList) {
-            consumer.recycle();
-            consumers.remove(consumer);
+    private void removeConsumerMetrics(List<IVideoConsumer> consumers, IVideoConsumer kept) {
+        if (mMetrics == null) return;
+        for (IVideoConsumer consumer : consumers) {
+            if (consumer != kept) {
+                mMetrics.remove(consumerMetricsName(consumer));
+            }
         }
+    }
 
-        removeList.clear();
+    private void recycleConsumers(final List<IVideoConsumer> consumers) {
+        if (consumers.isEmpty()) return;
+        mHandler.post(() -> {
+            for (IVideoConsumer consumer : consumers) {
+                consumer.recycle();
+            }
+        });
     }
 
     public void setOnScreenConsumerMirror(int mode) {
         mOnScreenConsumerMirrorMode = mode;
         mHandler.post(() -> {
-            for (IVideoConsumer consumer : mOnScreenConsumers) {
-                consumer.setMirrorMode(mOnScreenConsumerMirrorMode);
+            for (ConsumerRegistry.Entry entry : mOnScreenConsumers.entries()) {
+                entry.consumer.setMirrorMode(mOnScreenConsumerMirrorMode);
             }
         });
     }
 
+    /**
+     * Waits for the channel to set up GL, when called
+     * from another thread.
+     */
     public WatermarkProcessor getWatermarkProcessor() {
+        awaitInit();
         return mWatermarkProcessor;
     }
 
@@ -297,18 +437,22 @@ public class VideoChannel extends HandlerThread {
             return;
         }
         checkThreadRunningState();
-        handler.post(() -> {
-            if (mOnScreenConsumers.contains(consumer)) {
-                consumer.recycle();
-                mOnScreenConsumers.remove(consumer);
-                LogUtil.d(TAG, "On-screen consumer disconnected:" + consumer);
-            } else if (mOffScreenConsumers.contains(consumer)) {
-                consumer.recycle();
-                mOffScreenConsumers.remove(consumer);
+
+        List<IVideoConsumer> removed = mOnScreenConsumers.remove(consumer, false);
+        if (!removed.isEmpty()) {
+            LogUtil.d(TAG, "On-screen consumer disconnected:" + consumer);
+        } else {
+            removed = mOffScreenConsumers.remove(consumer, true);
+            if (!removed.isEmpty()) {
                 LogUtil.d(TAG, "Off-screen consumer disconnected:" + consumer);
-            } else {
-                removeSameConsumers(mOffScreenConsumers,
-                        consumer.getDrawingTarget(), consumer.getId());
+            }
+        }
+        removeConsumerMetrics(removed, null);
+
+        final List<IVideoConsumer> recycled = removed;
+        handler.post(() -> {
+            for (IVideoConsumer c : recycled) {
+                c.recycle();
             }
 
             if (mOnScreenConsumers.isEmpty() &&
@@ -321,6 +465,36 @@ public class VideoChannel extends HandlerThread {
         });
     }
 
+    /**
+     * Limit the frames given to a connected consumer.
+     * The consumer is identified by its drawing target,
+     * or by its id if there is no drawing target. The
+     * setting is removed when the consumer disconnects.
+     * @param pacer null to give the consumer every frame
+     * @return false if the consumer is not connected, and
+     * the pacer is not kept.
+     * @see FramePacer#maxFps(float)
+     * @see FramePacer#everyNth(int)
+     */
+    public boolean setConsumerPacer(IVideoConsumer consumer, FramePacer pacer) {
+        if (consumer == null) return false;
+        return mOffScreenConsumers.setPacer(consumer, pacer) ||
+                mOnScreenConsumers.setPacer(consumer, pacer);
+    }
+
+    private void consumeFrame(ConsumerRegistry.Entry[] entries, VideoCaptureFrame frame) {
+        for (ConsumerRegistry.Entry entry : entries) {
+            if (entry.pacer != null &&
+                    !entry.pacer.accept(frame.timestamps.get(FrameTimestamps.CAPTURE))) {
+                continue;
+            }
+            entry.consumer.onConsumeFrame(frame, mContext);
+            frame.timestamps.markConsumer();
+            if (entry.fps != null) entry.fps.increment();
+            makeDummySurfaceCurrent();
+        }
+    }
+
     public void enablePreProcess(boolean enabled) {
         if (mPreprocessor != null) {
             mHandler.post(() -> mPreprocessor.enablePreProcess(enabled));
@@ -334,42 +508,61 @@ public class VideoChannel extends HandlerThread {
 
         if (mPreprocessor != null) {
             frame = mPreprocessor.onPreProcessFrame(frame, getChannelContext());
+            frame.timestamps.mark(FrameTimestamps.PREPROCESS);
             makeDummySurfaceCurrent();
         }
 
-        if (mWatermarkProcessor != null) {
+        // Frames with only image data are given to the
+        // consumers as they are.
+        boolean hasTexture = frame.format.getTexFormat() != VideoCaptureFormat.TEX_FORMAT_NONE;
+        if (hasTexture) {
+            // The processors replace the image with a
+            // texture, off-screen consumers may still
+            // need the image as captured.
+            frame.keepCapturedImage();
+        }
+
+        if (mWatermarkProcessor != null && hasTexture) {
             // Rotate the image to the final state.
             // Further rotation procedure will not be
             // necessary for all consumers.
             frame = mWatermarkProcessor.process(frame);
+            frame.timestamps.mark(FrameTimestamps.WATERMARK);
             makeDummySurfaceCurrent();
         }
 
-        if (mRotateProcessor != null) {
+        if (mRotateProcessor != null && hasTexture) {
             // Rotate the image to the final state.
             // Further rotation procedure will not be
             // necessary for all consumers.
             frame = mRotateProcessor.process(frame, getChannelContext());
+            frame.timestamps.mark(FrameTimestamps.ROTATE);
             makeDummySurfaceCurrent();
         }
 
-        if (mOnScreenConsumers.size() > 0) {
-            // Multiple on-screen consumers are drawn there
-            for (IVideoConsumer consumer : mOnScreenConsumers) {
-                consumer.onConsumeFrame(frame, mContext);
-                makeDummySurfaceCurrent();
-            }
+        // Snapshots stay the same during this frame even
+        // if consumers are attached or detached meanwhile.
+        // Multiple on-screen consumers are drawn there
+        consumeFrame(mOnScreenConsumers.entries(), frame);
+        consumeFrame(mOffScreenConsumers.entries(), frame);
+
+        recordMetrics(frame);
+    }
+
+    private void recordMetrics(VideoCaptureFrame frame) {
+        if (mFps == null) return;
+        mFps.increment();
+
+        FrameTimestamps timestamps = frame.timestamps;
+        for (int stage = FrameTimestamps.PRODUCER_PUSH; stage < FrameTimestamps.STAGE_COUNT; stage++) {
+            long latency = timestamps.getLatencyNs(stage);
+            if (latency >= 0) mStageLatencies[stage].record(latency);
         }
 
-        if (mOffScreenConsumers.size() > 0 || mOffScreenMode) {
-            // If there is no on-screen consumers connected,
-            // the off-screen consumers cannot actually be
-            // called, unless the channel runs in off-screen
-            // mode.
-            for (IVideoConsumer consumer : mOffScreenConsumers) {
-                consumer.onConsumeFrame(frame, mContext);
-                makeDummySurfaceCurrent();
-            }
+        int consumers = timestamps.getConsumerCount();
+        long capture = timestamps.get(FrameTimestamps.CAPTURE);
+        if (consumers > 0 && capture != 0) {
+            mEndToEndLatency.record(timestamps.getConsumer(consumers - 1) - capture);
         }
     }
 
@@ -380,8 +573,9 @@ public class VideoChannel extends HandlerThread {
         // will remain consistent even if the surfaces or
         // pixel buffers used by preprocessors or consumers
         // are destroyed in or out of the OpenGL threads.
-        if (!mContext.isCurrent(mDummyEglSurface)) {
-            mContext.makeCurrent(mDummyEglSurface);
+        GlBackend backend = mContext.getGlBackend();
+        if (!backend.isCurrent(mDummySurface)) {
+            backend.makeCurrent(mDummySurface);
         }
     }
 
@@ -391,15 +585,9 @@ public class VideoChannel extends HandlerThread {
         }
     }
 
-    void enableOffscreenMode(boolean enabled) {
-        mOffScreenMode = enabled;
-    }
-
     public static class ChannelContext {
         private Context mContext;
-        private EglCore mEglCore;
-        private ProgramTexture2d mProgram2D;
-        private ProgramTextureOES mProgramOES;
+        private GlBackend mGlBackend;
 
         public Context getContext() {
             return mContext;
@@ -409,44 +597,64 @@ public class VideoChannel extends HandlerThread {
             this.mContext = context;
         }
 
-        public EglCore getEglCore() {
-            return mEglCore;
+        public GlBackend getGlBackend() {
+            return mGlBackend;
         }
 
-        private void setEglCore(EglCore mEglCore) {
-            this.mEglCore = mEglCore;
+        private void setGlBackend(GlBackend backend) {
+            this.mGlBackend = backend;
         }
 
-        public EGLContext getEglContext() {
-            return getEglCore().getEGLContext();
+        private GlesBackend getGles() {
+            return mGlBackend instanceof GlesBackend ? (GlesBackend) mGlBackend : null;
         }
 
-        public ProgramTexture2d getProgram2D() {
-            return mProgram2D;
+        /**
+         * @return null if the channel does not run on GLES
+         */
+        public EglCore getEglCore() {
+            GlesBackend gles = getGles();
+            return gles != null ? gles.getEglCore() : null;
         }
 
-        private void setProgram2D(ProgramTexture2d mFullFrameRectTexture2D) {
-            this.mProgram2D = mFullFrameRectTexture2D;
+        /**
+         * @return null if the channel does not run on GLES
+         */
+        public EGLContext getEglContext() {
+            EglCore eglCore = getEglCore();
+            return eglCore != null ? eglCore.getEGLContext() : null;
         }
 
-        public ProgramTextureOES getProgramOES() {
-            return mProgramOES;
+        /**
+         * @return null if the channel does not run on GLES
+         */
+        public ProgramTexture2d getProgram2D() {
+            GlesBackend gles = getGles();
+            return gles != null ? gles.getProgram2D() : null;
         }
 
-        private void setProgramOES(ProgramTextureOES mTextureOES) {
-            this.mProgramOES = mTextureOES;
+        /**
+         * @return null if the channel does not run on GLES
+         */
+        public ProgramTextureOES getProgramOES() {
+            GlesBackend gles = getGles();
+            return gles != null ? gles.getProgramOES() : null;
         }
 
+        /**
+         * @return null if the channel does not run on GLES
+         */
         public EGLSurface getCurrentSurface() {
-            return mEglCore.getCurrentDrawingSurface();
+            EglCore eglCore = getEglCore();
+            return eglCore != null ? eglCore.getCurrentDrawingSurface() : null;
         }
 
         public void makeCurrent(EGLSurface surface) {
-            mEglCore.makeCurrent(surface);
+            mGlBackend.makeCurrent(surface);
         }
 
         public boolean isCurrent(EGLSurface surface) {
-            return mEglCore.isCurrent(surface);
+            return mGlBackend.isCurrent(surface);
         }
     }
 }
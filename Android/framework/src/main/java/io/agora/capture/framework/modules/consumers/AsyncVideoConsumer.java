@@ -0,0 +1,201 @@
+package io.agora.capture.framework.modules.consumers;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.agora.capture.framework.metrics.LatencyHistogram;
+import io.agora.capture.framework.modules.channels.VideoChannel;
+import io.agora.capture.framework.modules.producers.FrameQueue;
+import io.agora.capture.framework.util.LogUtil;
+import io.agora.capture.video.camera.FrameTimestamps;
+import io.agora.capture.video.camera.VideoCaptureFrame;
+
+/**
+ * Runs an off-screen consumer on its own thread, so that
+ * a slow consumer does not stall the channel and the
+ * other consumers. The channel thread only queues the
+ * frame, and the queue decides which frames are dropped
+ * when the consumer falls behind.
+ * The wrapped consumer is called without the OpenGL
+ * context of the channel, and the texture of a frame is
+ * drawn over by the next frames meanwhile. It should
+ * only use the image data as captured, which the queued
+ * frames keep, see VideoCaptureFrame.getCapturedPlanes().
+ * Camera frames do not have any other image data once
+ * rotated. The drawing target and id are those of the
+ * wrapped consumer.
+ */
+public class AsyncVideoConsumer implements IVideoConsumer {
+    private static final String TAG = AsyncVideoConsumer.class.getSimpleName();
+
+    private final IVideoConsumer mConsumer;
+    private final FrameQueue mQueue;
+    private final AtomicBoolean mConsumeScheduled = new AtomicBoolean(false);
+
+    private HandlerThread mThread;
+    private volatile Handler mHandler;
+    private volatile VideoChannel.ChannelContext mContext;
+
+    private volatile long mLastLagMs;
+    private volatile long mMaxLagMs;
+    private volatile long mConsumedCount;
+    private volatile LatencyHistogram mLagHistogram;
+
+    private final Runnable mConsumeRun = new Runnable() {
+        @Override
+        public void run() {
+            mConsumeScheduled.set(false);
+            VideoCaptureFrame frame;
+            while ((frame = mQueue.poll()) != null) {
+                try {
+                    long lagNs = FrameTimestamps.now() -
+                            frame.timestamps.get(FrameTimestamps.CAPTURE);
+                    LatencyHistogram histogram = mLagHistogram;
+                    if (histogram != null) histogram.record(lagNs);
+                    long lag = TimeUnit.NANOSECONDS.toMillis(lagNs);
+                    mLastLagMs = lag;
+                    if (lag > mMaxLagMs) mMaxLagMs = lag;
+                    mConsumer.onConsumeFrame(frame, mContext);
+                    mConsumedCount++;
+                } catch (Exception e) {
+                    LogUtil.e(TAG, "consume frame failed: " + e);
+                } finally {
+                    frame.release();
+                }
+            }
+        }
+    };
+
+    /**
+     * @param consumer the off-screen consumer to run
+     * @param queue drop policy when the consumer is slow,
+     *              usually FrameQueue.latestWins() or
+     *              FrameQueue.boundedFifo(int). A blocking
+     *              queue would block the channel thread.
+     */
+    public AsyncVideoConsumer(IVideoConsumer consumer, FrameQueue queue) {
+        mConsumer = consumer;
+        mQueue = queue;
+    }
+
+    public IVideoConsumer getConsumer() {
+        return mConsumer;
+    }
+
+    /**
+     * Record the lag of every frame consumed, from the
+     * capture to the start of consuming, in the histogram.
+     */
+    public void setLagHistogram(LatencyHistogram histogram) {
+        mLagHistogram = histogram;
+    }
+
+    // Called on the channel thread
+    @Override
+    public void onConsumeFrame(VideoCaptureFrame frame, VideoChannel.ChannelContext context) {
+        mContext = context;
+        // Queued under the lock of quitThread(), so that a
+        // frame is never left to a thread that has quit.
+        synchronized (this) {
+            Handler handler = handler();
+            if (mQueue.offer(frame.retain()) &&
+                    mConsumeScheduled.compareAndSet(false, true)) {
+                handler.post(mConsumeRun);
+            }
+        }
+    }
+
+    private synchronized Handler handler() {
+        if (mThread == null) {
+            mThread = new HandlerThread(TAG + "-" + mConsumer.getClass().getSimpleName());
+            mThread.start();
+            mHandler = new Handler(mThread.getLooper());
+        }
+        return mHandler;
+    }
+
+    private synchronized void quitThread() {
+        if (mThread != null) {
+            mHandler.removeCallbacks(mConsumeRun);
+            mThread.quitSafely();
+            mThread = null;
+            mHandler = null;
+        }
+        mQueue.clear();
+        mConsumeScheduled.set(false);
+        mMaxLagMs = 0;
+    }
+
+    @Override
+    public void connectChannel(int channelId) {
+        mConsumer.connectChannel(channelId);
+    }
+
+    @Override
+    public void disconnectChannel(int channelId) {
+        quitThread();
+        mConsumer.disconnectChannel(channelId);
+    }
+
+    @Override
+    public void setMirrorMode(int mode) {
+        mConsumer.setMirrorMode(mode);
+    }
+
+    @Override
+    public Object getDrawingTarget() {
+        return mConsumer.getDrawingTarget();
+    }
+
+    @Override
+    public int onMeasuredWidth() {
+        return mConsumer.onMeasuredWidth();
+    }
+
+    @Override
+    public int onMeasuredHeight() {
+        return mConsumer.onMeasuredHeight();
+    }
+
+    /**
+     * Frames still queued are dropped, and the thread
+     * is started again when frames come.
+     */
+    @Override
+    public void recycle() {
+        quitThread();
+        mConsumer.recycle();
+    }
+
+    @Override
+    public String getId() {
+        return mConsumer.getId();
+    }
+
+    public long getDroppedFrameCount() {
+        return mQueue.getDroppedCount();
+    }
+
+    public long getConsumedFrameCount() {
+        return mConsumedCount;
+    }
+
+    /**
+     * @return the time between the capture and the start
+     * of consuming of the latest frame, in milliseconds.
+     */
+    public long getLastLagMs() {
+        return mLastLagMs;
+    }
+
+    /**
+     * @return the longest lag since the consumer was
+     * connected or last recycled, in milliseconds.
+     */
+    public long getMaxLagMs() {
+        return mMaxLagMs;
+    }
+}
@@ -1,8 +1,5 @@
 package io.agora.capture.framework.modules.consumers;
 
-import android.opengl.EGL14;
-import android.opengl.EGLContext;
-import android.opengl.EGLSurface;
 import android.opengl.GLES11Ext;
 import android.opengl.GLES20;
 import android.os.Handler;
@@ -11,9 +8,7 @@ import android.os.HandlerThread;
 import io.agora.capture.framework.gles.MatrixOperator;
 import io.agora.capture.framework.gles.MatrixOperatorGL;
 import io.agora.capture.framework.gles.MatrixOperatorGraphics;
-import io.agora.capture.framework.gles.ProgramTexture2d;
-import io.agora.capture.framework.gles.ProgramTextureOES;
-import io.agora.capture.framework.gles.core.EglCore;
+import io.agora.capture.framework.gles.core.GlBackend;
 import io.agora.capture.framework.modules.channels.ChannelManager;
 import io.agora.capture.framework.modules.channels.VideoChannel;
 import io.agora.capture.framework.util.LogUtil;
@@ -29,7 +24,7 @@ public abstract class BaseWindowConsumer implements IVideoConsumer {
     private int mirrorMode;
     private String mId;
 
-    private EGLSurface drawingEglSurface;
+    private Object drawingEglSurface;
     volatile boolean needResetSurface = true;
     volatile boolean surfaceDestroyed;
 
@@ -39,11 +34,9 @@ public abstract class BaseWindowConsumer implements IVideoConsumer {
     private final boolean uniqueGLEnv;
     private volatile boolean uniqueIsRunning = false;
     private volatile boolean uniqueIsQuit = false;
-    private EglCore uniqueEglCore;
+    private GlBackend uniqueGlBackend;
     private HandlerThread uniqueThread;
     private Handler uniqueThreadHandler;
-    private ProgramTextureOES uniqueProgramOES;
-    private ProgramTexture2d uniqueProgram2d;
 
     protected BaseWindowConsumer(VideoModule videoModule, boolean uniqueGLEnv, @MatrixOperator.ScaleType int scaleType) {
         this.videoModule = videoModule;
@@ -57,7 +50,7 @@ public abstract class BaseWindowConsumer implements IVideoConsumer {
     public void connectChannel(int channelId) {
         videoChannel = videoModule.connectConsumer(this, channelId, IVideoConsumer.TYPE_ON_SCREEN);
         if (uniqueGLEnv) {
-            initUniqueGLEnv(videoChannel.getChannelContext().getEglContext());
+            initUniqueGLEnv(videoChannel.getChannelContext().getGlBackend());
         }
     }
 
@@ -91,13 +84,13 @@ public abstract class BaseWindowConsumer implements IVideoConsumer {
     @Override
     public void onConsumeFrame(VideoCaptureFrame frame, VideoChannel.ChannelContext context) {
         if (uniqueGLEnv) {
-            if (uniqueEglCore != null) {
+            if (uniqueGlBackend != null) {
                 runOnUniqueThread(() -> {
-                    drawFrame(frame, uniqueEglCore, uniqueProgramOES, uniqueProgram2d);
+                    drawFrame(frame, uniqueGlBackend);
                 });
             }
         } else {
-            drawFrame(frame, context.getEglCore(), context.getProgramOES(), context.getProgram2D());
+            drawFrame(frame, context.getGlBackend());
         }
     }
 
@@ -110,11 +103,11 @@ public abstract class BaseWindowConsumer implements IVideoConsumer {
         if (uniqueGLEnv) {
             unInitUniqueGlEnv();
         } else {
-            recycle(videoChannel.getChannelContext().getEglCore());
+            recycle(videoChannel.getChannelContext().getGlBackend());
         }
     }
 
-    private void initUniqueGLEnv(EGLContext shareContext) {
+    private void initUniqueGLEnv(GlBackend channelBackend) {
         uniqueIsQuit = false;
         uniqueThread = new HandlerThread(this.getClass().getSimpleName()) {
             @Override
@@ -122,30 +115,22 @@ public abstract class BaseWindowConsumer implements IVideoConsumer {
                 if (uniqueIsQuit) {
                     return;
                 }
-                uniqueEglCore = new EglCore(shareContext, 0);
+                uniqueGlBackend = channelBackend.createShared();
                 uniqueIsRunning = true;
                 super.run();
                 uniqueIsRunning = false;
-                if (uniqueProgramOES != null) {
-                    uniqueProgramOES.release();
-                    uniqueProgramOES = null;
-                }
-                if (uniqueProgram2d != null) {
-                    uniqueProgram2d.release();
-                    uniqueProgram2d = null;
-                }
-                if (uniqueEglCore != null) {
-                    recycle(uniqueEglCore);
-                    uniqueEglCore.release();
-                    uniqueEglCore = null;
+                if (uniqueGlBackend != null) {
+                    recycle(uniqueGlBackend);
+                    uniqueGlBackend.release();
+                    uniqueGlBackend = null;
                 }
             }
         };
         uniqueThread.start();
 
         runOnUniqueThread(() -> {
-            if (uniqueIsRunning) {
-                uniqueEglCore = new EglCore(shareContext, 0);
+            if (uniqueIsRunning && uniqueGlBackend == null) {
+                uniqueGlBackend = channelBackend.createShared();
             }
         });
     }
@@ -178,7 +163,7 @@ public abstract class BaseWindowConsumer implements IVideoConsumer {
     }
 
 
-    private void drawFrame(VideoCaptureFrame frame, EglCore eglCore, ProgramTextureOES programTextureOES, ProgramTexture2d programTexture2d) {
+    private void drawFrame(VideoCaptureFrame frame, GlBackend glBackend) {
         if (surfaceDestroyed) {
             return;
         }
@@ -188,9 +173,9 @@ public abstract class BaseWindowConsumer implements IVideoConsumer {
         }
 
         if (needResetSurface) {
-            if (drawingEglSurface != null && drawingEglSurface != EGL14.EGL_NO_SURFACE) {
-                eglCore.releaseSurface(drawingEglSurface);
-                eglCore.makeNothingCurrent();
+            if (drawingEglSurface != null) {
+                glBackend.releaseSurface(drawingEglSurface);
+                glBackend.makeNothingCurrent();
                 drawingEglSurface = null;
             }
 
@@ -199,7 +184,7 @@ public abstract class BaseWindowConsumer implements IVideoConsumer {
                 Object target = getDrawingTarget();
                 if (target != null) {
                     try {
-                        drawingEglSurface = eglCore.createWindowSurface(target);
+                        drawingEglSurface = glBackend.createWindowSurface(target);
                     } catch (Exception e) {
                         LogUtil.e(this, "EGL >> createWindowSurface error : \n" + e.toString());
                         return;
@@ -210,9 +195,9 @@ public abstract class BaseWindowConsumer implements IVideoConsumer {
         }
 
         boolean surfaceAvailable = true;
-        if (drawingEglSurface != null && !eglCore.isCurrent(drawingEglSurface)) {
+        if (drawingEglSurface != null && !glBackend.isCurrent(drawingEglSurface)) {
             try {
-                eglCore.makeCurrent(drawingEglSurface);
+                glBackend.makeCurrent(drawingEglSurface);
             } catch (Exception e) {
                 surfaceAvailable = false;
             }
@@ -222,8 +207,8 @@ public abstract class BaseWindowConsumer implements IVideoConsumer {
 
         int surfaceWidth = onMeasuredWidth();
         int surfaceHeight = onMeasuredHeight();
-        GLES20.glViewport(0, 0, surfaceWidth, surfaceHeight);
-        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT| GLES20.GL_DEPTH_BUFFER_BIT | GLES20.GL_STENCIL_BUFFER_BIT);
+        glBackend.viewport(surfaceWidth, surfaceHeight);
+        glBackend.clear();
 
         int desiredWidth = frame.format.getWidth();
         int desiredHeight = frame.format.getHeight();
@@ -246,29 +231,20 @@ public abstract class BaseWindowConsumer implements IVideoConsumer {
         mTextureMatrix.setPreFlipH(frame.mirrored);
         mTextureMatrix.setRotation(frame.rotation);
 
-        if (frame.format.getTexFormat() == GLES20.GL_TEXTURE_2D) {
-            if (programTexture2d == null) {
-                uniqueProgram2d = new ProgramTexture2d();
-                programTexture2d = uniqueProgram2d;
-            }
-            programTexture2d.drawFrame(frame.textureId, mTextureMatrix.getFinalMatrix(), mMVPMatrix.getFinalMatrix());
-        } else if (frame.format.getTexFormat() == GLES11Ext.GL_TEXTURE_EXTERNAL_OES) {
-            if (programTextureOES == null) {
-                uniqueProgramOES = new ProgramTextureOES();
-                programTextureOES = uniqueProgramOES;
-            }
-            programTextureOES.drawFrame(frame.textureId, mTextureMatrix.getFinalMatrix(), mMVPMatrix.getFinalMatrix());
+        int texFormat = frame.format.getTexFormat();
+        if (texFormat == GLES20.GL_TEXTURE_2D || texFormat == GLES11Ext.GL_TEXTURE_EXTERNAL_OES) {
+            glBackend.drawFrame(texFormat, frame.textureId,
+                    mTextureMatrix.peekFinalMatrix(), mMVPMatrix.peekFinalMatrix(), 1.0f);
         }
 
         if (drawingEglSurface != null) {
-            eglCore.swapBuffers(drawingEglSurface);
+            glBackend.swapBuffers(drawingEglSurface);
         }
     }
 
-    private void recycle(EglCore eglCore) {
-        if (videoChannel != null && drawingEglSurface != null
-                && drawingEglSurface != EGL14.EGL_NO_SURFACE) {
-            eglCore.releaseSurface(drawingEglSurface);
+    private void recycle(GlBackend glBackend) {
+        if (videoChannel != null && drawingEglSurface != null) {
+            glBackend.releaseSurface(drawingEglSurface);
             drawingEglSurface = null;
             needResetSurface = true;
         }
@@ -0,0 +1,299 @@
+package io.agora.capture.framework.modules.consumers;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.concurrent.ArrayBlockingQueue;
+
+import io.agora.capture.framework.modules.channels.VideoChannel;
+import io.agora.capture.framework.util.LogUtil;
+import io.agora.capture.video.camera.FrameTimestamps;
+import io.agora.capture.video.camera.VideoCaptureFrame;
+import io.agora.capture.video.camera.VideoFramePlanes;
+import io.agora.capture.video.camera.YuvConverter;
+
+/**
+ * Records the image data of frames to a Y4M or raw file,
+ * with an index of the timestamps of every frame in a
+ * text file next to it, named by the file and ".idx".
+ * The channel thread only copies the image into a free
+ * buffer of a preallocated ring, and a writer thread
+ * writes the buffers to the file. When the storage falls
+ * behind and no buffer is free, the frame is dropped and
+ * counted, and the channel thread is never blocked.
+ * The image is recorded as captured, before rotation.
+ * The size of the first frame is kept for the recording,
+ * frames of other sizes or without image data are
+ * skipped.
+ * A recording can be replayed by FileVideoProducer.
+ */
+public class FrameRecorder implements ICaptureFrameConsumer {
+    private static final String TAG = FrameRecorder.class.getSimpleName();
+
+    public static final int CONTAINER_Y4M = 0;
+    public static final int CONTAINER_RAW = 1;
+
+    public static final int DEFAULT_RING_SIZE = 4;
+    private static final long DROP_LOG_INTERVAL_NS = 1000000000L;
+    private static final byte[] Y4M_FRAME_HEADER =
+            "FRAME\n".getBytes(Charset.forName("US-ASCII"));
+
+    private static class Slot {
+        byte[] data;
+        ByteBuffer[] buffers;
+        int width;
+        int height;
+        int frameRate;
+        long captureTimeNs;
+        long timestamp;
+    }
+
+    // Tells the writer thread to finish
+    private static final Slot END_OF_RECORDING = new Slot();
+
+    private final File mFile;
+    private final int mContainer;
+    private final int mLayout;
+    private final int mRingSize;
+
+    private ArrayBlockingQueue<Slot> mFreeSlots;
+    private ArrayBlockingQueue<Slot> mFilledSlots;
+    private Thread mWriter;
+    private volatile boolean mRecording;
+
+    // Accessed on the channel thread, and reset before
+    // the recording starts
+    private int mWidth;
+    private int mHeight;
+    private long mLastDropLogNs;
+
+    private volatile long mWrittenCount;
+    private volatile long mDroppedCount;
+    private volatile long mSkippedCount;
+
+    /**
+     * Record to a Y4M file, of I420 frames.
+     */
+    public FrameRecorder(File file) {
+        this(file, CONTAINER_Y4M, VideoFramePlanes.LAYOUT_I420, DEFAULT_RING_SIZE);
+    }
+
+    /**
+     * @param container CONTAINER_Y4M or CONTAINER_RAW
+     * @param layout LAYOUT_NV21 or LAYOUT_I420 of
+     *               VideoFramePlanes, Y4M only has I420
+     * @param ringSize the number of frames that can wait
+     *                 for the storage before dropping
+     */
+    public FrameRecorder(File file, int container, int layout, int ringSize) {
+        if (container != CONTAINER_Y4M && container != CONTAINER_RAW) {
+            throw new IllegalArgumentException("Unknown container: " + container);
+        }
+        if (layout != VideoFramePlanes.LAYOUT_I420 &&
+                (container == CONTAINER_Y4M || layout != VideoFramePlanes.LAYOUT_NV21)) {
+            throw new IllegalArgumentException("Unsupported layout: " + layout);
+        }
+        if (ringSize < 2) {
+            throw new IllegalArgumentException("The ring needs 2 buffers at least: " + ringSize);
+        }
+
+        mFile = file;
+        mContainer = container;
+        mLayout = layout;
+        mRingSize = ringSize;
+    }
+
+    public File getIndexFile() {
+        return new File(mFile.getPath() + ".idx");
+    }
+
+    /**
+     * Start a new recording, replacing the files. The ring
+     * buffers are allocated with the first frame.
+     */
+    public synchronized void start() throws IOException {
+        if (mWriter != null) {
+            return;
+        }
+
+        final FileChannel channel = new RandomAccessFile(mFile, "rw").getChannel();
+        final BufferedWriter index;
+        try {
+            channel.truncate(0);
+            index = new BufferedWriter(new FileWriter(getIndexFile()));
+            index.write("frame,capture_time_ns,timestamp_ms,width,height\n");
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+
+        mFreeSlots = new ArrayBlockingQueue<>(mRingSize);
+        // Room for the end of recording
+        mFilledSlots = new ArrayBlockingQueue<>(mRingSize + 1);
+        for (int i = 0; i < mRingSize; i++) {
+            mFreeSlots.offer(new Slot());
+        }
+        mWidth = 0;
+        mHeight = 0;
+        mWrittenCount = 0;
+        mDroppedCount = 0;
+        mSkippedCount = 0;
+
+        mRecording = true;
+        mWriter = new Thread(() -> write(channel, index), TAG);
+        mWriter.start();
+    }
+
+    /**
+     * Blocks until the frames in the ring are written
+     * and the files are closed.
+     */
+    public synchronized void stop() {
+        if (mWriter == null) {
+            return;
+        }
+
+        mRecording = false;
+        try {
+            mFilledSlots.put(END_OF_RECORDING);
+            mWriter.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        mWriter = null;
+        LogUtil.i(TAG, "recorded " + mWrittenCount + " frames, dropped " +
+                mDroppedCount + ", skipped " + mSkippedCount);
+    }
+
+    public boolean isRecording() {
+        return mRecording;
+    }
+
+    @Override
+    public void onConsumeFrame(VideoCaptureFrame frame, VideoChannel.ChannelContext context) {
+        if (!mRecording) {
+            return;
+        }
+
+        VideoFramePlanes planes = frame.getCapturedPlanes();
+        if (planes == null) {
+            mSkippedCount++;
+            return;
+        }
+
+        if (mWidth == 0) {
+            mWidth = planes.getWidth();
+            mHeight = planes.getHeight();
+        } else if (planes.getWidth() != mWidth || planes.getHeight() != mHeight) {
+            mSkippedCount++;
+            return;
+        }
+
+        Slot slot = mFreeSlots.poll();
+        if (slot == null) {
+            mDroppedCount++;
+            long now = FrameTimestamps.now();
+            if (now - mLastDropLogNs > DROP_LOG_INTERVAL_NS) {
+                LogUtil.w(TAG, "storage falls behind, " + mDroppedCount + " frames dropped");
+                mLastDropLogNs = now;
+            }
+            return;
+        }
+
+        int size = planes.getPackedSize();
+        if (slot.data == null || slot.data.length != size) {
+            slot.data = new byte[size];
+            ByteBuffer data = ByteBuffer.wrap(slot.data);
+            slot.buffers = mContainer == CONTAINER_Y4M ?
+                    new ByteBuffer[]{ByteBuffer.wrap(Y4M_FRAME_HEADER), data} :
+                    new ByteBuffer[]{data};
+        }
+
+        YuvConverter.convert(planes, slot.data, mLayout);
+        slot.width = mWidth;
+        slot.height = mHeight;
+        slot.frameRate = frame.format.getFrameRate();
+        slot.captureTimeNs = frame.timestamps.get(FrameTimestamps.CAPTURE);
+        slot.timestamp = frame.timestamp;
+        mFilledSlots.offer(slot);
+    }
+
+    private void write(FileChannel channel, BufferedWriter index) {
+        boolean headerWritten = false;
+        try {
+            while (true) {
+                Slot slot = mFilledSlots.take();
+                if (slot == END_OF_RECORDING) {
+                    break;
+                }
+
+                if (!headerWritten && mContainer == CONTAINER_Y4M) {
+                    writeFully(channel, ByteBuffer.wrap(y4mHeader(slot)
+                            .getBytes(Charset.forName("US-ASCII"))));
+                }
+                headerWritten = true;
+
+                for (ByteBuffer buffer : slot.buffers) {
+                    buffer.clear();
+                }
+                writeFully(channel, slot.buffers);
+
+                index.write(mWrittenCount + "," + slot.captureTimeNs + "," +
+                        slot.timestamp + "," + slot.width + "," + slot.height + "\n");
+                mWrittenCount++;
+                mFreeSlots.offer(slot);
+            }
+        } catch (IOException | InterruptedException e) {
+            LogUtil.e(TAG, "recording failed: " + e);
+            mRecording = false;
+        } finally {
+            try {
+                index.close();
+            } catch (IOException e) {
+                LogUtil.e(TAG, "close index failed: " + e);
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LogUtil.e(TAG, "close file failed: " + e);
+            }
+        }
+    }
+
+    private static String y4mHeader(Slot slot) {
+        return "YUV4MPEG2 W" + slot.width + " H" + slot.height +
+                " F" + Math.max(1, slot.frameRate) + ":1 Ip A1:1 C420jpeg\n";
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer... buffers) throws IOException {
+        ByteBuffer last = buffers[buffers.length - 1];
+        while (last.hasRemaining()) {
+            channel.write(buffers);
+        }
+    }
+
+    /**
+     * @return the number of frames dropped because no
+     * buffer is free, as the storage falls behind.
+     */
+    public long getDroppedFrameCount() {
+        return mDroppedCount;
+    }
+
+    /**
+     * @return the number of frames without image data or
+     * of a size other than the recording.
+     */
+    public long getSkippedFrameCount() {
+        return mSkippedCount;
+    }
+
+    public long getWrittenFrameCount() {
+        return mWrittenCount;
+    }
+}
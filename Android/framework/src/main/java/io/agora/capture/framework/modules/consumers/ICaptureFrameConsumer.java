@@ -5,5 +5,12 @@ import io.agora.capture.video.camera.VideoCaptureFrame;
 
 public interface ICaptureFrameConsumer {
 
+    /**
+     * Called on the channel thread for every frame. The frame
+     * and its image buffer are reused once this method returns,
+     * so consumers that keep the frame for asynchronous work
+     * should call frame.retain() here and frame.release()
+     * when the work is done.
+     */
     void onConsumeFrame(VideoCaptureFrame frame, VideoChannel.ChannelContext context);
 }
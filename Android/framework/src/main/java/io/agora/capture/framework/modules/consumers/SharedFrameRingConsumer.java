@@ -0,0 +1,48 @@
+package io.agora.capture.framework.modules.consumers;
+
+import io.agora.capture.framework.modules.channels.VideoChannel;
+import io.agora.capture.framework.shm.SharedFrameRingWriter;
+import io.agora.capture.video.camera.FrameTimestamps;
+import io.agora.capture.video.camera.VideoCaptureFrame;
+import io.agora.capture.video.camera.VideoFramePlanes;
+
+/**
+ * Shares the image data of frames with other processes
+ * through a shared frame ring, which is written on the
+ * channel thread with no wait for readers. NV21 images
+ * are copied once into the ring, and planes converted
+ * right into it. The image is shared as captured, with
+ * the rotation and mirroring it needs, and frames
+ * without image data are skipped. The writer is not
+ * closed by the consumer.
+ * @see io.agora.capture.framework.shm.SharedFrameRingReader
+ */
+public class SharedFrameRingConsumer implements ICaptureFrameConsumer {
+    private final SharedFrameRingWriter mWriter;
+
+    public SharedFrameRingConsumer(SharedFrameRingWriter writer) {
+        mWriter = writer;
+    }
+
+    public SharedFrameRingWriter getWriter() {
+        return mWriter;
+    }
+
+    @Override
+    public void onConsumeFrame(VideoCaptureFrame frame, VideoChannel.ChannelContext context) {
+        long captureTimeNs = frame.timestamps.get(FrameTimestamps.CAPTURE);
+        int rotation = frame.getCapturedRotation();
+        boolean mirrored = frame.isCapturedMirrored();
+        byte[] image = frame.getCapturedImage();
+        if (image != null) {
+            mWriter.write(image, frame.getCapturedWidth(), frame.getCapturedHeight(),
+                    captureTimeNs, frame.timestamp, rotation, mirrored);
+            return;
+        }
+
+        VideoFramePlanes planes = frame.getCapturedPlanes();
+        if (planes != null) {
+            mWriter.write(planes, captureTimeNs, frame.timestamp, rotation, mirrored);
+        }
+    }
+}
@@ -10,15 +10,13 @@ import android.view.WindowManager;
 import io.agora.capture.framework.gles.MatrixOperator;
 import io.agora.capture.framework.gles.MatrixOperatorGL;
 import io.agora.capture.framework.gles.MatrixOperatorGraphics;
-import io.agora.capture.framework.gles.RotateProgram2D;
-import io.agora.capture.framework.gles.RotateProgramOES;
+import io.agora.capture.framework.gles.core.GlBackend;
 import io.agora.capture.framework.gles.core.GlUtil;
 import io.agora.capture.framework.modules.channels.VideoChannel;
 import io.agora.capture.video.camera.VideoCaptureFrame;
 
 public class RotateProcessor {
-    private RotateProgram2D mRotateProgram2D;
-    private RotateProgramOES mRotateProgramOES;
+    private GlBackend mGlBackend;
 
     private WindowManager mWindowManager;
 
@@ -26,10 +24,11 @@ public class RotateProcessor {
     private final MatrixOperator mRotateMVPMatrix = new MatrixOperatorGL(MatrixOperator.ScaleType.FitXY);
 
     public void init(VideoChannel.ChannelContext context) {
-        mRotateProgram2D = new RotateProgram2D();
-        mRotateProgramOES = new RotateProgramOES();
-        mWindowManager = (WindowManager) context.getContext()
-                .getSystemService(Context.WINDOW_SERVICE);
+        mGlBackend = context.getGlBackend();
+        Context appContext = context.getContext();
+        if (appContext != null) {
+            mWindowManager = (WindowManager) appContext.getSystemService(Context.WINDOW_SERVICE);
+        }
     }
 
     public VideoCaptureFrame process(VideoCaptureFrame frame,
@@ -57,17 +56,15 @@ public class RotateProcessor {
         mRotateMVPMatrix.setRotation(frame.mirrored ? surfaceRotation * -1 : surfaceRotation);
         mRotateMVPMatrix.setFlipH(frame.mirrored);
 
-        if (frame.format.getTexFormat() == GLES20.GL_TEXTURE_2D) {
-            mRotateProgram2D.update(desiredWidth, desiredHeight);
-            frame.textureId = mRotateProgram2D.drawRotateFrame(
-                    frame.textureId, mRotateTexMatrix.getFinalMatrix(), mRotateMVPMatrix.getFinalMatrix());
-        } else if (frame.format.getTexFormat() == GLES11Ext.GL_TEXTURE_EXTERNAL_OES) {
-            mRotateProgramOES.update(desiredWidth, desiredHeight);
-            frame.textureId = mRotateProgramOES.drawRotateFrame(
-                    frame.textureId, mRotateTexMatrix.getFinalMatrix(), mRotateMVPMatrix.getFinalMatrix());
+        int texFormat = frame.format.getTexFormat();
+        if (texFormat == GLES20.GL_TEXTURE_2D || texFormat == GLES11Ext.GL_TEXTURE_EXTERNAL_OES) {
+            frame.textureId = mGlBackend.drawRotateFrame(texFormat, frame.textureId,
+                    mRotateTexMatrix.peekFinalMatrix(), mRotateMVPMatrix.peekFinalMatrix(),
+                    desiredWidth, desiredHeight);
         }
 
         frame.image = null;
+        frame.planes = null;
         frame.format.setPixelFormat(ImageFormat.UNKNOWN);
         frame.rotation = 0;
         frame.mirrored = false;
@@ -79,9 +76,12 @@ public class RotateProcessor {
         return frame;
     }
 
+    /**
+     * The programs are kept and released by the GL backend
+     * of the channel.
+     */
     public void release(VideoChannel.ChannelContext context) {
-        if (mRotateProgram2D != null) mRotateProgram2D.destroyProgram();
-        if (mRotateProgramOES != null) mRotateProgramOES.destroyProgram();
+        mGlBackend = null;
     }
 
     private int getSurfaceRotation() {
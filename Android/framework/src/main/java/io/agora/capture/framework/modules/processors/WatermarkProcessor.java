@@ -7,7 +7,6 @@ import android.graphics.ImageFormat;
 import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.Rect;
-import android.opengl.GLES11Ext;
 import android.opengl.GLES20;
 
 import androidx.annotation.NonNull;
@@ -17,16 +16,17 @@ import java.nio.ByteBuffer;
 import io.agora.capture.framework.gles.MatrixOperator;
 import io.agora.capture.framework.gles.MatrixOperatorGL;
 import io.agora.capture.framework.gles.MatrixOperatorGraphics;
-import io.agora.capture.framework.gles.ProgramTexture2d;
-import io.agora.capture.framework.gles.ProgramTextureOES;
+import io.agora.capture.framework.gles.core.GlBackend;
+import io.agora.capture.framework.gles.core.GlesBackend;
 import io.agora.capture.framework.gles.core.GlUtil;
+import io.agora.capture.framework.modules.channels.VideoChannel;
 import io.agora.capture.framework.util.LogUtil;
 import io.agora.capture.video.camera.VideoCaptureFrame;
 
 public class WatermarkProcessor {
 
-    private final ProgramTexture2d programTexture2d;
-    private final ProgramTextureOES programTextureOES;
+    private final GlBackend glBackend;
+    private final boolean ownsGlBackend;
 
 
     private int outFboId;
@@ -45,9 +45,22 @@ public class WatermarkProcessor {
     private MatrixOperator watermarkMvp = new MatrixOperatorGL(MatrixOperator.ScaleType.CenterCrop);
 
 
+    /**
+     * Draws in the GL context current on the calling
+     * thread, where the processor must be created and used.
+     */
     public WatermarkProcessor() {
-        programTexture2d = new ProgramTexture2d();
-        programTextureOES = new ProgramTextureOES();
+        glBackend = GlesBackend.current();
+        ownsGlBackend = true;
+    }
+
+    /**
+     * Draws with the GL backend of the channel, which is
+     * only used on the channel thread.
+     */
+    public WatermarkProcessor(VideoChannel.ChannelContext context) {
+        glBackend = context.getGlBackend();
+        ownsGlBackend = false;
     }
 
     public VideoCaptureFrame process(VideoCaptureFrame frame) {
@@ -78,12 +91,11 @@ public class WatermarkProcessor {
 
         initOutFBO();
 
-        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, outFboId);
-        GLES20.glEnable(GLES20.GL_BLEND);
-        GLES20.glBlendFunc(GLES20.GL_SRC_ALPHA, GLES20.GL_ONE_MINUS_SRC_ALPHA);
+        glBackend.bindFramebuffer(outFboId);
+        glBackend.setBlendEnabled(true);
 
-        GLES20.glViewport(0, 0, outWidth, outHeight);
-        GLES20.glClear(GLES20.GL_DEPTH_BUFFER_BIT | GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_STENCIL_BUFFER_BIT);
+        glBackend.viewport(outWidth, outHeight);
+        glBackend.clear();
 
         // draw origin frame texture
         int originTexWidth = frame.format.getWidth();
@@ -100,20 +112,19 @@ public class WatermarkProcessor {
         originTexTrans.setPreFlipH(frame.mirrored);
         originTexTrans.setRotation(frame.rotation);
 
-        if (frame.format.getTexFormat() == GLES11Ext.GL_TEXTURE_EXTERNAL_OES) {
-            programTextureOES.drawFrame(frame.textureId, originTexTrans.getFinalMatrix(), originTexMvp.getFinalMatrix());
-        } else {
-            programTexture2d.drawFrame(frame.textureId, originTexTrans.getFinalMatrix(), originTexMvp.getFinalMatrix());
-        }
+        glBackend.drawFrame(frame.format.getTexFormat(), frame.textureId,
+                originTexTrans.peekFinalMatrix(), originTexMvp.peekFinalMatrix(), 1.0f);
 
         // draw watermark texture
-        programTexture2d.drawFrame(watermarkTexId, GlUtil.IDENTITY_MATRIX, watermarkMvp.getFinalMatrix(), watermarkAlpha);
+        glBackend.drawFrame(GLES20.GL_TEXTURE_2D, watermarkTexId,
+                GlUtil.IDENTITY_MATRIX, watermarkMvp.peekFinalMatrix(), watermarkAlpha);
 
-        GLES20.glDisable(GLES20.GL_BLEND);
-        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+        glBackend.setBlendEnabled(false);
+        glBackend.bindFramebuffer(0);
 
 
         frame.image = null;
+        frame.planes = null;
         frame.format.setPixelFormat(ImageFormat.UNKNOWN);
         frame.textureId = outTexId;
         frame.rotation = 0;
@@ -232,6 +243,19 @@ public class WatermarkProcessor {
         }
     }
 
+    /**
+     * Release the GL resources, called on the channel
+     * thread when the channel stops.
+     */
+    public void release() {
+        cleanWatermark();
+        releaseOutFBO();
+        releaseWatermarkTexId();
+        if (ownsGlBackend) {
+            glBackend.release();
+        }
+    }
+
     private void initOutFBO() {
         if (!resetFBO) {
             return;
@@ -239,54 +263,26 @@ public class WatermarkProcessor {
         resetFBO = false;
         releaseOutFBO();
 
-        int[] framebuffers = new int[1];
-        GLES20.glGenFramebuffers(1, framebuffers, 0);
-        GlUtil.checkGlError("glGenFramebuffers");
-        LogUtil.d(this, "EGL >> bindFramebuffer glGenFramebuffers framebuffer=" + framebuffers[0]);
-        outFboId = framebuffers[0];
-
-        int[] textures = new int[1];
-        GLES20.glGenTextures(1, textures, 0);
-        GlUtil.checkGlError("glGenTextures");
-        LogUtil.d(this, "EGL >> bindFramebuffer glGenTextures texture=" + textures[0]);
-        outTexId = textures[0];
-
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textures[0]);
-        GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_RGBA, outWidth, outHeight, 0,
-                GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, null);
-
-        GLES20.glTexParameterf(GLES20.GL_TEXTURE_2D,
-                GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
-        GLES20.glTexParameterf(GLES20.GL_TEXTURE_2D,
-                GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
-        GLES20.glTexParameterf(GLES20.GL_TEXTURE_2D,
-                GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
-        GLES20.glTexParameterf(GLES20.GL_TEXTURE_2D,
-                GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
-
-        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, outFboId);
-        GLES20.glFramebufferTexture2D(GLES20.GL_FRAMEBUFFER,
-                GLES20.GL_COLOR_ATTACHMENT0,
-                GLES20.GL_TEXTURE_2D,
-                outTexId, 0);
-
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
-        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+        outTexId = glBackend.obtainTexture(outWidth, outHeight);
+        LogUtil.d(this, "EGL >> bindFramebuffer obtainTexture texture=" + outTexId);
+
+        outFboId = glBackend.createFramebuffer(outTexId);
+        LogUtil.d(this, "EGL >> bindFramebuffer createFramebuffer framebuffer=" + outFboId);
     }
 
     private void releaseOutFBO() {
-        if (outTexId != 0) {
-            GLES20.glDeleteTextures(1, new int[]{outTexId}, 0);
-            LogUtil.d(this, "EGL >> releaseFBO glDeleteTextures texture=" + outTexId);
-            outTexId = 0;
-        }
-
         if (outFboId != 0) {
-            GLES20.glDeleteFramebuffers(1, new int[]{outFboId}, 0);
-            LogUtil.d(this, "EGL >> releaseFBO glDeleteFramebuffers framebuffer=" + outFboId);
+            glBackend.deleteFramebuffer(outFboId);
+            LogUtil.d(this, "EGL >> releaseFBO deleteFramebuffer framebuffer=" + outFboId);
             outFboId = 0;
         }
 
+        if (outTexId != 0) {
+            glBackend.recycleTexture(outTexId);
+            LogUtil.d(this, "EGL >> releaseFBO recycleTexture texture=" + outTexId);
+            outTexId = 0;
+        }
+
         resetFBO = true;
     }
 
@@ -294,37 +290,20 @@ public class WatermarkProcessor {
         releaseWatermarkTexId();
 
         Bitmap desiredBitmap = bitmap.copy(Bitmap.Config.ARGB_8888, true);
-        int[] textureIds = new int[1];
-        // 创建纹理
-        GLES20.glGenTextures(1, textureIds, 0);
-        LogUtil.d(this, "EGL >> createWatermarkTexId glGenTextures texture=" + textureIds[0]);
-        // 绑定纹理
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textureIds[0]);
-        //环绕（超出纹理坐标范围）  （s==x t==y GL_REPEAT 重复）
-        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_REPEAT);
-        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_REPEAT);
-        //过滤（纹理像素映射到坐标点）  （缩小、放大：GL_LINEAR线性）
-        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
-        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
-
         ByteBuffer bitmapBuffer = ByteBuffer.allocate(desiredBitmap.getHeight() * desiredBitmap.getWidth() * 4);//RGBA
         desiredBitmap.copyPixelsToBuffer(bitmapBuffer);
         //将bitmapBuffer位置移动到初始位置
         bitmapBuffer.flip();
 
-        //设置内存大小绑定内存地址
-        GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_RGBA, desiredBitmap.getWidth(), desiredBitmap.getHeight(),
-                0, GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, bitmapBuffer);
-
-        //解绑纹理
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
-        watermarkTexId = textureIds[0];
+        watermarkTexId = glBackend.createTexture(bitmapBuffer,
+                desiredBitmap.getWidth(), desiredBitmap.getHeight());
+        LogUtil.d(this, "EGL >> createWatermarkTexId createTexture texture=" + watermarkTexId);
     }
 
     private void releaseWatermarkTexId() {
         if (watermarkTexId != 0) {
-            GLES20.glDeleteTextures(1, new int[]{watermarkTexId}, 0);
-            LogUtil.d(this, "EGL >> releaseWatermarkTexId glDeleteTextures texture=" + watermarkTexId);
+            glBackend.deleteTexture(watermarkTexId);
+            LogUtil.d(this, "EGL >> releaseWatermarkTexId deleteTexture texture=" + watermarkTexId);
             watermarkTexId = 0;
         }
     }
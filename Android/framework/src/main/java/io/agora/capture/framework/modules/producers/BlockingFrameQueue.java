@@ -0,0 +1,63 @@
+package io.agora.capture.framework.modules.producers;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import io.agora.capture.video.camera.VideoCaptureFrame;
+
+/**
+ * A bounded ring that parks the offering thread when
+ * full, until the channel polls a frame or the timeout
+ * elapses. The producer must not run on the channel
+ * thread, or it would wait for itself; VideoProducer
+ * delivers such frames inline instead.
+ */
+class BlockingFrameQueue extends BoundedFrameQueue {
+    private final long mTimeoutNs;
+    private volatile Thread mWaiter;
+
+    BlockingFrameQueue(int capacity, long timeoutMs) {
+        super(capacity);
+        mTimeoutNs = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+    }
+
+    @Override
+    public boolean offer(VideoCaptureFrame frame) {
+        if (tryOffer(frame)) {
+            return true;
+        }
+
+        long deadline = System.nanoTime() + mTimeoutNs;
+        while (true) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                drop(frame);
+                return false;
+            }
+
+            // Check again after publishing the waiter, so a
+            // poll between the two checks always unparks.
+            mWaiter = Thread.currentThread();
+            try {
+                if (tryOffer(frame)) {
+                    return true;
+                }
+                LockSupport.parkNanos(this, remaining);
+            } finally {
+                mWaiter = null;
+            }
+        }
+    }
+
+    @Override
+    public VideoCaptureFrame poll() {
+        VideoCaptureFrame frame = super.poll();
+        if (frame != null) {
+            Thread waiter = mWaiter;
+            if (waiter != null) {
+                LockSupport.unpark(waiter);
+            }
+        }
+        return frame;
+    }
+}
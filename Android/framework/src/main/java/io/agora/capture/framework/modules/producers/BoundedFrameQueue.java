@@ -0,0 +1,77 @@
+package io.agora.capture.framework.modules.producers;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import io.agora.capture.video.camera.VideoCaptureFrame;
+
+/**
+ * A lock-free ring of frames in arrival order. There
+ * must be only one offering thread, while polling is
+ * safe from any thread. New frames are dropped when
+ * the ring is full.
+ * Polled slots are cleared so that the ring does not
+ * hold frames given away, a slot is only written again
+ * once it is cleared.
+ */
+class BoundedFrameQueue extends FrameQueue {
+    private final AtomicReferenceArray<VideoCaptureFrame> mRing;
+    private final int mCapacity;
+
+    // Indices keep increasing, the slot is index % capacity
+    private final AtomicLong mHead = new AtomicLong();
+    private final AtomicLong mTail = new AtomicLong();
+
+    BoundedFrameQueue(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        mCapacity = capacity;
+        mRing = new AtomicReferenceArray<>(capacity);
+    }
+
+    @Override
+    public boolean offer(VideoCaptureFrame frame) {
+        if (tryOffer(frame)) {
+            return true;
+        }
+        drop(frame);
+        return false;
+    }
+
+    boolean tryOffer(VideoCaptureFrame frame) {
+        long tail = mTail.get();
+        // The slot may still be being cleared by the poller
+        // that has just taken its frame.
+        if (tail - mHead.get() >= mCapacity || mRing.get(slot(tail)) != null) {
+            return false;
+        }
+        mRing.set(slot(tail), frame);
+        mTail.set(tail + 1);
+        return true;
+    }
+
+    @Override
+    public VideoCaptureFrame poll() {
+        while (true) {
+            long head = mHead.get();
+            if (head >= mTail.get()) {
+                return null;
+            }
+
+            // The slot cannot be overwritten before it is
+            // cleared by the poller that moves the head on,
+            // so the frame read here is the one that the
+            // successful CAS takes.
+            VideoCaptureFrame frame = mRing.get(slot(head));
+            if (mHead.compareAndSet(head, head + 1)) {
+                mRing.set(slot(head), null);
+                return frame;
+            }
+        }
+    }
+
+    private int slot(long index) {
+        return (int) (index % mCapacity);
+    }
+}
@@ -0,0 +1,83 @@
+package io.agora.capture.framework.modules.producers;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.agora.capture.video.camera.VideoCaptureFrame;
+
+/**
+ * Decides what a producer does with frames that arrive
+ * faster than the channel consumes them, or the channel
+ * does with frames for asynchronous consumers.
+ * Frames are offered by one thread and polled by the
+ * consuming thread. A queue owns one reference of
+ * every frame it accepts, and gives it to the poller.
+ * Frames that are dropped are released by the queue and
+ * counted exactly.
+ */
+public abstract class FrameQueue {
+    private final AtomicLong mDroppedCount = new AtomicLong();
+
+    /**
+     * Only keeps the newest frame, for preview where the
+     * latency matters most. This is the default.
+     */
+    public static FrameQueue latestWins() {
+        return new LatestFrameQueue();
+    }
+
+    /**
+     * Keeps up to capacity frames in order, and drops new
+     * frames when full. Short bursts are not lost.
+     * Note the image buffers of queued frames are kept,
+     * but a preview texture only has the latest image.
+     */
+    public static FrameQueue boundedFifo(int capacity) {
+        return new BoundedFrameQueue(capacity);
+    }
+
+    /**
+     * Keeps up to capacity frames in order, and blocks
+     * the producer when full until there is room or the
+     * timeout elapses, then the new frame is dropped.
+     */
+    public static FrameQueue blocking(int capacity, long timeoutMs) {
+        return new BlockingFrameQueue(capacity, timeoutMs);
+    }
+
+    /**
+     * @param frame the frame whose reference is taken by
+     *              the queue, whether accepted or not.
+     * @return false if the frame is dropped.
+     */
+    public abstract boolean offer(VideoCaptureFrame frame);
+
+    /**
+     * @return the oldest frame whose reference is given
+     * to the caller, or null if the queue is empty.
+     */
+    public abstract VideoCaptureFrame poll();
+
+    /**
+     * Release all the frames in the queue. Called when
+     * the queue is abandoned and no frame is offered.
+     */
+    public void clear() {
+        VideoCaptureFrame frame;
+        while ((frame = poll()) != null) {
+            frame.release();
+        }
+    }
+
+    void drop(VideoCaptureFrame frame) {
+        mDroppedCount.incrementAndGet();
+        frame.release();
+    }
+
+    /**
+     * @return the number of frames dropped by the queue
+     * since it was created.
+     */
+    public long getDroppedCount() {
+        return mDroppedCount.get();
+    }
+}
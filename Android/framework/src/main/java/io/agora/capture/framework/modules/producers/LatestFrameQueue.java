@@ -0,0 +1,27 @@
+package io.agora.capture.framework.modules.producers;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.agora.capture.video.camera.VideoCaptureFrame;
+
+/**
+ * A single slot. A new frame replaces the one that has
+ * not been taken by the channel, which is dropped.
+ */
+class LatestFrameQueue extends FrameQueue {
+    private final AtomicReference<VideoCaptureFrame> mSlot = new AtomicReference<>();
+
+    @Override
+    public boolean offer(VideoCaptureFrame frame) {
+        VideoCaptureFrame replaced = mSlot.getAndSet(frame);
+        if (replaced != null) {
+            drop(replaced);
+        }
+        return true;
+    }
+
+    @Override
+    public VideoCaptureFrame poll() {
+        return mSlot.getAndSet(null);
+    }
+}
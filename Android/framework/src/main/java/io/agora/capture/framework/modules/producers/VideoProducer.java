@@ -1,9 +1,17 @@
 package io.agora.capture.framework.modules.producers;
 
 import android.os.Handler;
+import android.os.Looper;
 
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.agora.capture.framework.metrics.FpsCounter;
+import io.agora.capture.framework.metrics.PipelineMetrics;
 import io.agora.capture.framework.modules.channels.VideoChannel;
 import io.agora.capture.framework.util.LogUtil;
+import io.agora.capture.video.camera.FrameTimestamps;
 import io.agora.capture.video.camera.VideoCaptureFrame;
 import io.agora.capture.video.camera.VideoModule;
 
@@ -13,28 +21,56 @@ public abstract class VideoProducer implements IVideoProducer {
     private VideoChannel videoChannel;
     protected volatile Handler pChannelHandler;
 
-    private VideoCaptureFrame pendingVideoFrame = null;
-    private final Object pendingVideoFrameLock = new Object();
-    private volatile int draggingFrameCount = 0;
+    private volatile FrameQueue frameQueue = FrameQueue.latestWins();
+    // The queues replaced and not yet cleared by the
+    // channel thread, which the producer may still be
+    // offering to while they are replaced.
+    private final ConcurrentLinkedQueue<FrameQueue> retiredQueues = new ConcurrentLinkedQueue<>();
+    // Frames dropped by the queues replaced
+    private final AtomicLong retiredDroppedCount = new AtomicLong();
+    private final AtomicBoolean consumeScheduled = new AtomicBoolean(false);
+
+    private volatile FpsCounter pushFps;
+    private String metricsName;
 
     private final Runnable consumeVideoFrameRun = () -> {
+        // Cleared before polling, so that frames offered
+        // from now on are either polled here or scheduled
+        // again.
+        consumeScheduled.set(false);
+        clearRetiredQueues();
+        FrameQueue queue = frameQueue;
         VideoCaptureFrame frame;
-        synchronized (pendingVideoFrameLock){
-            if (pendingVideoFrame == null) {
-                return;
-            }
-            frame = pendingVideoFrame;
+        while ((frame = queue.poll()) != null) {
+            consumeVideoFrame(frame);
         }
+    };
 
+    private void clearRetiredQueues() {
+        FrameQueue retired;
+        while ((retired = retiredQueues.poll()) != null) {
+            retired.clear();
+        }
+    }
+
+    private void consumeVideoFrame(VideoCaptureFrame frame) {
         // The capture utilizes the environment OpenGL
         // context for preview texture, so the capture
         // thread and video channel thread use their
         // shared OpenGL context.
         // Thus updateTexImage() is valid here.
+        frame.timestamps.mark(FrameTimestamps.CHANNEL_DEQUEUE);
         try {
-            frame.surfaceTexture.updateTexImage();
-            if (frame.textureTransform == null) frame.textureTransform = new float[16];
-            frame.surfaceTexture.getTransformMatrix(frame.textureTransform);
+            // Frames replayed from image data have no
+            // texture to latch.
+            if (frame.surfaceTexture != null) {
+                frame.surfaceTexture.updateTexImage();
+                onTextureUpdated(frame);
+                // Pooled capture frames own their matrix, only
+                // frames from other producers may lack one.
+                if (frame.textureTransform == null) frame.textureTransform = new float[16];
+                frame.surfaceTexture.getTransformMatrix(frame.textureTransform);
+            }
 
             if (videoChannel != null) {
                 videoChannel.pushVideoFrame(frame);
@@ -42,11 +78,17 @@ public abstract class VideoProducer implements IVideoProducer {
         } catch (Exception e) {
            onConsumeVideoFrameError(e);
         } finally {
-            synchronized (pendingVideoFrameLock) {
-                pendingVideoFrame = null;
-            }
+            frame.release();
         }
-    };
+    }
+
+    /**
+     * Called on the channel thread when the texture image
+     * of the frame is latched, before it is transformed.
+     */
+    protected void onTextureUpdated(VideoCaptureFrame frame) {
+
+    }
 
     protected void onConsumeVideoFrameError(Exception e){
 
@@ -56,26 +98,95 @@ public abstract class VideoProducer implements IVideoProducer {
     public void connectChannel(int channelId) {
         videoChannel = VideoModule.instance().connectProducer(this, channelId);
         pChannelHandler = videoChannel.getHandler();
+
+        PipelineMetrics metrics = VideoModule.instance().getMetrics();
+        metricsName = PipelineMetrics.producer(channelId);
+        metrics.setGauge(metricsName + ".dropped", this::getDroppedFrameCount);
+        onRegisterMetrics(metrics, metricsName);
+        pushFps = metrics.fps(metricsName);
+    }
+
+    /**
+     * Give subclasses a chance to register their own
+     * metrics, whose names should be prefixed by the
+     * producer name and a dot. They are removed when
+     * the producer disconnects.
+     */
+    protected void onRegisterMetrics(PipelineMetrics metrics, String name) {
+
+    }
+
+    /**
+     * Set how frames are queued when the channel is
+     * slower than the producer. Frames still queued in
+     * the previous queues are released by the channel
+     * thread, including those being offered meanwhile.
+     * @see FrameQueue#latestWins()
+     * @see FrameQueue#boundedFifo(int)
+     * @see FrameQueue#blocking(int, long)
+     */
+    public synchronized void setFrameQueue(FrameQueue queue) {
+        FrameQueue retired = frameQueue;
+        frameQueue = queue;
+        retiredDroppedCount.addAndGet(retired.getDroppedCount());
+        retiredQueues.offer(retired);
+
+        Handler handler = pChannelHandler;
+        if (handler == null) {
+            // Not pushing frames, nothing is being offered
+            clearRetiredQueues();
+        } else if (consumeScheduled.compareAndSet(false, true)) {
+            handler.post(consumeVideoFrameRun);
+        }
+    }
+
+    /**
+     * @return the number of frames dropped by the frame
+     * queues since the producer was created, including
+     * the queues replaced.
+     */
+    public long getDroppedFrameCount() {
+        return retiredDroppedCount.get() + frameQueue.getDroppedCount();
     }
 
     @Override
     public void pushVideoFrame(final VideoCaptureFrame frame) {
-        if (pChannelHandler == null) {
+        Handler handler = pChannelHandler;
+        if (handler == null) {
             return;
         }
 
-        synchronized (pendingVideoFrameLock) {
-            if (pendingVideoFrame == null) {
-                if (draggingFrameCount != 0) {
-                    LogUtil.d(TAG, "dragging frame count: " + draggingFrameCount);
-                    draggingFrameCount = 0;
-                }
-                pendingVideoFrame = frame;
-                pChannelHandler.removeCallbacks(consumeVideoFrameRun);
-                pChannelHandler.post(consumeVideoFrameRun);
-            } else {
-                draggingFrameCount++;
+        frame.timestamps.mark(FrameTimestamps.PRODUCER_PUSH);
+        FpsCounter fps = pushFps;
+        if (fps != null) fps.increment();
+
+        FrameQueue queue = frameQueue;
+        if (handler.getLooper() == Looper.myLooper()) {
+            // Already on the channel thread, nothing can be
+            // consumed concurrently. Frames queued earlier
+            // go first, then this one without queueing.
+            clearRetiredQueues();
+            VideoCaptureFrame queued;
+            while ((queued = queue.poll()) != null) {
+                consumeVideoFrame(queued);
             }
+            consumeVideoFrame(frame.retain());
+            return;
+        }
+
+        // The queued frame holds its image buffer until the
+        // channel finishes, so that the producer can safely
+        // refill its own buffers meanwhile.
+        boolean offered = queue.offer(frame.retain());
+        if (queue != frameQueue) {
+            // Replaced while offering, maybe after the channel
+            // cleared it, so it is cleared once more.
+            retiredQueues.offer(queue);
+            offered = true;
+        }
+
+        if (offered && consumeScheduled.compareAndSet(false, true)) {
+            handler.post(consumeVideoFrameRun);
         }
     }
 
@@ -83,15 +194,23 @@ public abstract class VideoProducer implements IVideoProducer {
     public void disconnect() {
         LogUtil.i(TAG, "disconnect");
 
-        synchronized (pendingVideoFrameLock){
-            pendingVideoFrame = null;
-        }
-
         if(pChannelHandler != null){
             pChannelHandler.removeCallbacks(consumeVideoFrameRun);
             pChannelHandler = null;
         }
 
+        // The frame being consumed is released when the
+        // channel finishes with it.
+        frameQueue.clear();
+        clearRetiredQueues();
+        consumeScheduled.set(false);
+
+        pushFps = null;
+        if (metricsName != null) {
+            VideoModule.instance().getMetrics().remove(metricsName);
+            metricsName = null;
+        }
+
         if (videoChannel != null) {
             videoChannel.disconnectProducer();
             videoChannel = null;
@@ -0,0 +1,92 @@
+package io.agora.capture.framework.shm;
+
+/**
+ * Layout of the shared frame ring file, shared by the
+ * writer and readers. All values are in the native byte
+ * order, as both sides run on the same device.
+ * <pre>
+ * header, 64 bytes:
+ *   0  int  magic, written last when the ring is created
+ *   4  int  version
+ *   8  int  slot count
+ *   12 int  slot capacity, the max image size in bytes
+ *   16 long frames published
+ * slots, from 64 and every slot size:
+ *   0  long seqlock, odd while the slot is written
+ *   8  long frame number
+ *   16 long capture time in System.nanoTime() base of
+ *           the writer
+ *   24 long wall-clock timestamp in milliseconds
+ *   32 int  width
+ *   36 int  height
+ *   40 int  layout, as of VideoFramePlanes
+ *   44 int  rotation in degrees
+ *   48 int  image size in bytes
+ *   52 int  flags
+ *   64 image data
+ * </pre>
+ * Frame n is written into slot n % slot count.
+ * The header and slots are aligned to 64 bytes so that
+ * slots do not share cache lines.
+ */
+final class SharedFrameRing {
+    static final int MAGIC = 0x41465247;
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 64;
+    static final int OFFSET_MAGIC = 0;
+    static final int OFFSET_VERSION = 4;
+    static final int OFFSET_SLOT_COUNT = 8;
+    static final int OFFSET_SLOT_CAPACITY = 12;
+    static final int OFFSET_PUBLISHED = 16;
+
+    static final int SLOT_HEADER_SIZE = 64;
+    static final int SLOT_SEQLOCK = 0;
+    static final int SLOT_FRAME_NUMBER = 8;
+    static final int SLOT_CAPTURE_TIME = 16;
+    static final int SLOT_TIMESTAMP = 24;
+    static final int SLOT_WIDTH = 32;
+    static final int SLOT_HEIGHT = 36;
+    static final int SLOT_LAYOUT = 40;
+    static final int SLOT_ROTATION = 44;
+    static final int SLOT_SIZE = 48;
+    static final int SLOT_FLAGS = 52;
+
+    static final int FLAG_MIRRORED = 1;
+
+    // Mapped buffers have no ordered access before Java 9.
+    // Accessing a volatile field is a full barrier on ART
+    // and HotSpot, which orders the accesses to the mapped
+    // memory around it too.
+    private static volatile int sFence;
+
+    private SharedFrameRing() {
+
+    }
+
+    static int slotSize(int capacity) {
+        return align(SLOT_HEADER_SIZE + capacity);
+    }
+
+    static long fileSize(int slotCount, int capacity) {
+        return HEADER_SIZE + (long) slotCount * slotSize(capacity);
+    }
+
+    static int slotOffset(int slot, int capacity) {
+        return HEADER_SIZE + slot * slotSize(capacity);
+    }
+
+    /**
+     * Neither earlier nor later accesses pass the fence.
+     * The volatile write keeps earlier accesses before,
+     * and the volatile read keeps later accesses after.
+     */
+    static int fence() {
+        sFence = 0;
+        return sFence;
+    }
+
+    private static int align(int size) {
+        return (size + 63) & ~63;
+    }
+}
@@ -0,0 +1,256 @@
+package io.agora.capture.framework.shm;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads frames from a shared frame ring in another
+ * process, without copying. It only depends on the Java
+ * runtime, so it can be used out of the Android app.
+ * The image of a frame is a view of the shared memory,
+ * which the writer may overwrite at any time. Readers
+ * should check the frame is still valid after using the
+ * image, and discard the result if it is not.
+ * Not thread-safe, every reading thread should open its
+ * own reader.
+ * @see SharedFrameRingWriter
+ */
+public class SharedFrameRingReader {
+    public static final int FLAG_MIRRORED = SharedFrameRing.FLAG_MIRRORED;
+
+    public class Frame {
+        private final int mBase;
+        private final ByteBuffer mSlotData;
+        private long mSequence;
+
+        private long mFrameNumber;
+        private long mCaptureTimeNs;
+        private long mTimestampMs;
+        private int mWidth;
+        private int mHeight;
+        private int mLayout;
+        private int mRotation;
+        private int mFlags;
+        private ByteBuffer mImage;
+
+        Frame(int base, ByteBuffer slotData) {
+            mBase = base;
+            mSlotData = slotData;
+        }
+
+        /**
+         * @return true if the writer has not touched the
+         * slot since the frame is read, so whatever read
+         * from the image is consistent.
+         */
+        public boolean isValid() {
+            SharedFrameRing.fence();
+            return mBuffer.getLong(mBase + SharedFrameRing.SLOT_SEQLOCK) == mSequence;
+        }
+
+        public long getFrameNumber() {
+            return mFrameNumber;
+        }
+
+        /**
+         * In the System.nanoTime() base of the writer, which
+         * is shared by the processes on Android and Linux.
+         */
+        public long getCaptureTimeNs() {
+            return mCaptureTimeNs;
+        }
+
+        public long getTimestampMs() {
+            return mTimestampMs;
+        }
+
+        public int getWidth() {
+            return mWidth;
+        }
+
+        public int getHeight() {
+            return mHeight;
+        }
+
+        /**
+         * @return the layout as of VideoFramePlanes, NV21
+         */
+        public int getLayout() {
+            return mLayout;
+        }
+
+        public int getRotation() {
+            return mRotation;
+        }
+
+        public boolean isMirrored() {
+            return (mFlags & FLAG_MIRRORED) != 0;
+        }
+
+        /**
+         * @return the read-only image in the shared memory,
+         * from position 0 to the image size.
+         */
+        public ByteBuffer getImage() {
+            return mImage;
+        }
+    }
+
+    private final MappedByteBuffer mBuffer;
+    private final int mSlotCount;
+    private final Frame[] mFrames;
+
+    private long mNextFrame;
+    private long mMissedCount;
+
+    private SharedFrameRingReader(MappedByteBuffer buffer, int slotCount, int capacity) {
+        mBuffer = buffer;
+        mSlotCount = slotCount;
+        mFrames = new Frame[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            int base = SharedFrameRing.slotOffset(i, capacity);
+            ByteBuffer data = buffer.duplicate();
+            data.position(base + SharedFrameRing.SLOT_HEADER_SIZE);
+            data.limit(base + SharedFrameRing.SLOT_HEADER_SIZE + capacity);
+            mFrames[i] = new Frame(base, data.slice());
+        }
+    }
+
+    /**
+     * Open the ring created by a writer. Reading starts
+     * from the oldest frame still in the ring.
+     */
+    public static SharedFrameRingReader open(File file) throws IOException {
+        MappedByteBuffer buffer;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            long size = raf.length();
+            if (size < SharedFrameRing.HEADER_SIZE) {
+                throw new IOException("Not a frame ring: " + file);
+            }
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        buffer.order(ByteOrder.nativeOrder());
+
+        if (buffer.getInt(SharedFrameRing.OFFSET_MAGIC) != SharedFrameRing.MAGIC) {
+            throw new IOException("Not a frame ring: " + file);
+        }
+        SharedFrameRing.fence();
+
+        int version = buffer.getInt(SharedFrameRing.OFFSET_VERSION);
+        if (version != SharedFrameRing.VERSION) {
+            throw new IOException("Unsupported frame ring version: " + version);
+        }
+
+        int slotCount = buffer.getInt(SharedFrameRing.OFFSET_SLOT_COUNT);
+        int capacity = buffer.getInt(SharedFrameRing.OFFSET_SLOT_CAPACITY);
+        if (slotCount < 2 || capacity <= 0 ||
+                SharedFrameRing.fileSize(slotCount, capacity) > buffer.capacity()) {
+            throw new IOException("Corrupted frame ring: " + slotCount + " x " + capacity);
+        }
+
+        SharedFrameRingReader reader = new SharedFrameRingReader(buffer, slotCount, capacity);
+        reader.mNextFrame = Math.max(0, reader.getPublishedFrameCount() - slotCount + 1);
+        return reader;
+    }
+
+    public long getPublishedFrameCount() {
+        long published = mBuffer.getLong(SharedFrameRing.OFFSET_PUBLISHED);
+        SharedFrameRing.fence();
+        return published;
+    }
+
+    /**
+     * Read the frames in order. Frames overwritten before
+     * read are skipped and counted as missed.
+     * @return the next frame, valid until the slot is read
+     * again by this reader, or null if there is no new
+     * frame yet.
+     */
+    public Frame readNext() {
+        while (true) {
+            long published = getPublishedFrameCount();
+            if (mNextFrame >= published) {
+                return null;
+            }
+
+            // The slot of the oldest frame may be being
+            // overwritten by the next one.
+            long oldest = published - mSlotCount + 1;
+            if (mNextFrame < oldest) {
+                mMissedCount += oldest - mNextFrame;
+                mNextFrame = oldest;
+            }
+
+            Frame frame = read(mNextFrame++);
+            if (frame != null) {
+                return frame;
+            }
+            mMissedCount++;
+        }
+    }
+
+    /**
+     * Read the latest frame, skipping those not read yet.
+     * @return the frame, valid until the slot is read
+     * again by this reader, or null if there is no new
+     * frame yet.
+     */
+    public Frame readLatest() {
+        long published = getPublishedFrameCount();
+        if (mNextFrame < published - 1) {
+            mNextFrame = published - 1;
+        }
+        return readNext();
+    }
+
+    /**
+     * @return the number of frames overwritten before they
+     * could be read.
+     */
+    public long getMissedFrameCount() {
+        return mMissedCount;
+    }
+
+    private Frame read(long frameNumber) {
+        Frame frame = mFrames[(int) (frameNumber % mSlotCount)];
+        int base = frame.mBase;
+
+        long sequence = mBuffer.getLong(base + SharedFrameRing.SLOT_SEQLOCK);
+        if ((sequence & 1) != 0) {
+            return null;
+        }
+        SharedFrameRing.fence();
+
+        long number = mBuffer.getLong(base + SharedFrameRing.SLOT_FRAME_NUMBER);
+        int width = mBuffer.getInt(base + SharedFrameRing.SLOT_WIDTH);
+        int height = mBuffer.getInt(base + SharedFrameRing.SLOT_HEIGHT);
+        int size = mBuffer.getInt(base + SharedFrameRing.SLOT_SIZE);
+        frame.mCaptureTimeNs = mBuffer.getLong(base + SharedFrameRing.SLOT_CAPTURE_TIME);
+        frame.mTimestampMs = mBuffer.getLong(base + SharedFrameRing.SLOT_TIMESTAMP);
+        frame.mLayout = mBuffer.getInt(base + SharedFrameRing.SLOT_LAYOUT);
+        frame.mRotation = mBuffer.getInt(base + SharedFrameRing.SLOT_ROTATION);
+        frame.mFlags = mBuffer.getInt(base + SharedFrameRing.SLOT_FLAGS);
+
+        SharedFrameRing.fence();
+        if (mBuffer.getLong(base + SharedFrameRing.SLOT_SEQLOCK) != sequence ||
+                number != frameNumber || size < 0 || size > frame.mSlotData.capacity()) {
+            return null;
+        }
+
+        frame.mSequence = sequence;
+        frame.mFrameNumber = number;
+        frame.mWidth = width;
+        frame.mHeight = height;
+        if (frame.mImage == null || frame.mImage.limit() != size) {
+            ByteBuffer image = frame.mSlotData.duplicate();
+            image.limit(size);
+            frame.mImage = image.slice().asReadOnlyBuffer();
+        }
+        return frame;
+    }
+}
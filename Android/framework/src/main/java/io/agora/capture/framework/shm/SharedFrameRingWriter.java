@@ -0,0 +1,192 @@
+package io.agora.capture.framework.shm;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import io.agora.capture.video.camera.VideoFramePlanes;
+import io.agora.capture.video.camera.YuvConverter;
+
+/**
+ * Writes NV21 frames into a ring of fixed slots in a
+ * memory-mapped file, for readers in other processes.
+ * Every slot is guarded by a seqlock, so the writer
+ * never waits for readers, and readers detect slots
+ * overwritten while they read.
+ * Only one writer may write a ring, from one thread.
+ * @see SharedFrameRingReader
+ */
+public class SharedFrameRingWriter implements Closeable {
+    private final int mSlotCount;
+    private final int mCapacity;
+    private MappedByteBuffer mBuffer;
+    private ByteBuffer[] mSlotData;
+
+    private long mPublished;
+    private long mSkippedCount;
+
+    private SharedFrameRingWriter(MappedByteBuffer buffer, int slotCount, int capacity) {
+        mBuffer = buffer;
+        mSlotCount = slotCount;
+        mCapacity = capacity;
+        mSlotData = new ByteBuffer[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            ByteBuffer data = buffer.duplicate();
+            int offset = SharedFrameRing.slotOffset(i, capacity) + SharedFrameRing.SLOT_HEADER_SIZE;
+            data.position(offset);
+            data.limit(offset + capacity);
+            mSlotData[i] = data.slice();
+        }
+    }
+
+    /**
+     * Create the ring file, replacing the file atomically
+     * so that readers of a previous ring are not broken.
+     * They should open the file again to follow the new
+     * ring.
+     * @param slotCount the number of frames kept for readers
+     * @param capacity the max image size in bytes, like
+     *                 VideoFramePlanes.packedSize(1920, 1080)
+     */
+    public static SharedFrameRingWriter create(File file, int slotCount, int capacity)
+            throws IOException {
+        if (slotCount < 2 || capacity <= 0) {
+            throw new IllegalArgumentException("Invalid ring: " + slotCount + " x " + capacity);
+        }
+
+        long size = SharedFrameRing.fileSize(slotCount, capacity);
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The ring is too large to map: " + size);
+        }
+
+        File temp = new File(file.getPath() + ".tmp");
+        MappedByteBuffer buffer;
+        try (RandomAccessFile raf = new RandomAccessFile(temp, "rw")) {
+            raf.setLength(0);
+            raf.setLength(size);
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        buffer.order(ByteOrder.nativeOrder());
+
+        buffer.putInt(SharedFrameRing.OFFSET_VERSION, SharedFrameRing.VERSION);
+        buffer.putInt(SharedFrameRing.OFFSET_SLOT_COUNT, slotCount);
+        buffer.putInt(SharedFrameRing.OFFSET_SLOT_CAPACITY, capacity);
+        buffer.putLong(SharedFrameRing.OFFSET_PUBLISHED, 0);
+        SharedFrameRing.fence();
+        buffer.putInt(SharedFrameRing.OFFSET_MAGIC, SharedFrameRing.MAGIC);
+
+        if (!temp.renameTo(file)) {
+            throw new IOException("Cannot rename " + temp + " to " + file);
+        }
+        return new SharedFrameRingWriter(buffer, slotCount, capacity);
+    }
+
+    /**
+     * Write tightly packed NV21 image data.
+     * @return false if the image exceeds the slot capacity,
+     * or the writer is closed
+     */
+    public boolean write(byte[] nv21, int width, int height, long captureTimeNs,
+                         long timestampMs, int rotation, boolean mirrored) {
+        int size = VideoFramePlanes.packedSize(width, height);
+        if (mBuffer == null || size > mCapacity || size > nv21.length) {
+            mSkippedCount++;
+            return false;
+        }
+
+        publish(nv21, null, size, width, height, captureTimeNs, timestampMs, rotation, mirrored);
+        return true;
+    }
+
+    /**
+     * Write the planes packed into NV21, converted right
+     * into the slot.
+     * @return false if the image exceeds the slot capacity,
+     * or the writer is closed
+     */
+    public boolean write(VideoFramePlanes planes, long captureTimeNs,
+                         long timestampMs, int rotation, boolean mirrored) {
+        int size = planes.getPackedSize();
+        if (mBuffer == null || size > mCapacity) {
+            mSkippedCount++;
+            return false;
+        }
+
+        publish(null, planes, size, planes.getWidth(), planes.getHeight(),
+                captureTimeNs, timestampMs, rotation, mirrored);
+        return true;
+    }
+
+    // The image is either NV21 data or planes to convert
+    private void publish(byte[] image, VideoFramePlanes planes, int size, int width, int height,
+                         long captureTimeNs, long timestampMs, int rotation, boolean mirrored) {
+        int slot = (int) (mPublished % mSlotCount);
+        int base = SharedFrameRing.slotOffset(slot, mCapacity);
+
+        // Odd while the slot is written, readers that see
+        // another sequence before and after reading the
+        // slot discard what they read.
+        long sequence = mBuffer.getLong(base + SharedFrameRing.SLOT_SEQLOCK);
+        mBuffer.putLong(base + SharedFrameRing.SLOT_SEQLOCK, sequence + 1);
+        SharedFrameRing.fence();
+
+        mBuffer.putLong(base + SharedFrameRing.SLOT_FRAME_NUMBER, mPublished);
+        mBuffer.putLong(base + SharedFrameRing.SLOT_CAPTURE_TIME, captureTimeNs);
+        mBuffer.putLong(base + SharedFrameRing.SLOT_TIMESTAMP, timestampMs);
+        mBuffer.putInt(base + SharedFrameRing.SLOT_WIDTH, width);
+        mBuffer.putInt(base + SharedFrameRing.SLOT_HEIGHT, height);
+        mBuffer.putInt(base + SharedFrameRing.SLOT_LAYOUT, VideoFramePlanes.LAYOUT_NV21);
+        mBuffer.putInt(base + SharedFrameRing.SLOT_ROTATION, rotation);
+        mBuffer.putInt(base + SharedFrameRing.SLOT_SIZE, size);
+        mBuffer.putInt(base + SharedFrameRing.SLOT_FLAGS,
+                mirrored ? SharedFrameRing.FLAG_MIRRORED : 0);
+        ByteBuffer data = mSlotData[slot];
+        if (planes != null) {
+            YuvConverter.convert(planes, data, VideoFramePlanes.LAYOUT_NV21);
+        } else {
+            data.clear();
+            data.put(image, 0, size);
+        }
+
+        SharedFrameRing.fence();
+        mBuffer.putLong(base + SharedFrameRing.SLOT_SEQLOCK, sequence + 2);
+        mPublished++;
+        SharedFrameRing.fence();
+        mBuffer.putLong(SharedFrameRing.OFFSET_PUBLISHED, mPublished);
+    }
+
+    public int getCapacity() {
+        return mCapacity;
+    }
+
+    public long getPublishedFrameCount() {
+        return mPublished;
+    }
+
+    /**
+     * @return the number of frames larger than the slots,
+     * or written after the writer is closed
+     */
+    public long getSkippedFrameCount() {
+        return mSkippedCount;
+    }
+
+    /**
+     * Stop writing and release the mapping of the ring.
+     * Mapped buffers cannot be unmapped explicitly, the
+     * mapping is released once the buffers are collected.
+     * The file is kept for readers that have not opened
+     * it yet, and can be deleted or replaced by a new ring
+     * once closed. Called on the writing thread.
+     */
+    @Override
+    public void close() {
+        mBuffer = null;
+        mSlotData = null;
+    }
+}
@@ -3,6 +3,11 @@ package io.agora.capture.framework.util;
 import android.os.Handler;
 import android.os.Looper;
 
+/**
+ * Watches the frame rate on a Handler thread to detect
+ * that frames stop coming. Frame rates are reported by
+ * PipelineMetrics instead of being logged.
+ */
 public class FpsUtil {
     private static final String TAG = "FpsUtil";
     private String logTag = "";
@@ -20,7 +25,6 @@ public class FpsUtil {
         @Override
         public void run() {
             currFps = Math.round(frameCount * 1000.0f / periodMs);
-            LogUtil.d(TAG, logTag + " fps: " + currFps + ".");
             if (frameCount == 0) {
                 ++freezePeriodCount;
                 if (periodMs * freezePeriodCount >= freezeReportTimeoutMs) {
@@ -0,0 +1,133 @@
+package io.agora.capture.video.camera;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.agora.capture.framework.util.ThreadUtils;
+
+/**
+ * Splits the YUV conversion of large images into bands
+ * of rows that are converted on a small worker pool.
+ * The calling thread converts one of the bands itself
+ * and waits for the others, so the result is ready
+ * when convert() returns. Images smaller than the
+ * threshold are converted on the calling thread only,
+ * where the cost of scheduling outweighs the gain.
+ */
+public class BandedYuvConverter {
+    // Below 1080p the conversion is fast enough on one core
+    public static final int DEFAULT_MIN_PARALLEL_PIXELS = 1920 * 1080;
+
+    private static final AtomicInteger sThreadCount = new AtomicInteger();
+
+    private final int mBandCount;
+    private final int mMinParallelPixels;
+    private ExecutorService mExecutor;
+
+    /**
+     * @param bandCount the number of bands an image is
+     *                  split into, including the one done
+     *                  by the calling thread. 1 disables
+     *                  the parallel conversion.
+     * @param minParallelPixels images with fewer pixels
+     *                          are converted in one band.
+     */
+    public BandedYuvConverter(int bandCount, int minParallelPixels) {
+        mBandCount = Math.max(1, bandCount);
+        mMinParallelPixels = minParallelPixels;
+    }
+
+    /**
+     * A converter that uses up to 4 bands, bounded by the
+     * number of available cores.
+     */
+    public static BandedYuvConverter createDefault() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        return new BandedYuvConverter(Math.min(4, cores), DEFAULT_MIN_PARALLEL_PIXELS);
+    }
+
+    public int getBandCount() {
+        return mBandCount;
+    }
+
+    /**
+     * @see YuvConverter#convert(VideoFramePlanes, byte[], int)
+     */
+    public byte[] convert(final VideoFramePlanes src, final byte[] dst, final int layout) {
+        int chromaHeight = VideoFramePlanes.chromaHeight(src.getHeight());
+        int bands = Math.min(mBandCount, chromaHeight);
+        if (bands <= 1 || src.getWidth() * src.getHeight() < mMinParallelPixels) {
+            return YuvConverter.convert(src, dst, layout);
+        }
+
+        ExecutorService executor = executor();
+        final CountDownLatch latch = new CountDownLatch(bands - 1);
+        final RuntimeException[] failure = new RuntimeException[1];
+        for (int i = 1; i < bands; i++) {
+            final int start = bandStart(chromaHeight, bands, i);
+            final int end = bandStart(chromaHeight, bands, i + 1);
+            Runnable band = new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        YuvConverter.convert(src, dst, layout, start, end);
+                    } catch (RuntimeException e) {
+                        synchronized (failure) {
+                            failure[0] = e;
+                        }
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            };
+
+            try {
+                executor.execute(band);
+            } catch (RejectedExecutionException e) {
+                // Released concurrently, do it here instead
+                band.run();
+            }
+        }
+
+        YuvConverter.convert(src, dst, layout, 0, bandStart(chromaHeight, bands, 1));
+        ThreadUtils.awaitUninterruptibly(latch);
+
+        synchronized (failure) {
+            if (failure[0] != null) throw failure[0];
+        }
+        return dst;
+    }
+
+    private static int bandStart(int rows, int bands, int index) {
+        return (int) ((long) rows * index / bands);
+    }
+
+    private synchronized ExecutorService executor() {
+        if (mExecutor == null) {
+            mExecutor = Executors.newFixedThreadPool(mBandCount - 1, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "YuvConverter-" + sThreadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return mExecutor;
+    }
+
+    /**
+     * Stop the worker threads. The converter can still be
+     * used afterwards, and the workers are created again.
+     */
+    public synchronized void release() {
+        if (mExecutor != null) {
+            mExecutor.shutdown();
+            mExecutor = null;
+        }
+    }
+}
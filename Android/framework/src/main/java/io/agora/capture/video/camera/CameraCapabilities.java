@@ -0,0 +1,179 @@
+package io.agora.capture.video.camera;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.agora.capture.framework.util.LogUtil;
+
+/**
+ * What is needed of a camera to open it: the facing, the
+ * sensor orientation, the preview sizes and the fps ranges.
+ * @see CameraCapabilityCache
+ */
+final class CameraCapabilities {
+    private static final String TAG = CameraCapabilities.class.getSimpleName();
+
+    static final int API_CAMERA1 = 1;
+    static final int API_CAMERA2 = 2;
+
+    // Counts above are taken as a corrupted file
+    private static final int MAX_COUNT = 1024;
+
+    final int api;
+    final String cameraId;
+
+    /**
+     * One of Constant.CAMERA_FACING_FRONT, CAMERA_FACING_BACK
+     * or CAMERA_FACING_INVALID for external cameras
+     */
+    final int facing;
+    final int orientation;
+
+    /**
+     * Whether sensor timestamps are in the elapsed realtime
+     * base, rather than the monotonic one.
+     */
+    final boolean realtimeTimestamps;
+
+    /**
+     * The fps ranges are multiplied by 1000, and divided by
+     * the factor to be given back to the camera.
+     */
+    final int fpsUnitFactor;
+
+    // Pairs of width and height
+    private final int[] mSizes;
+
+    // Pairs of min and max
+    private final int[] mFpsRanges;
+
+    CameraCapabilities(int api, String cameraId, int facing, int orientation,
+                       boolean realtimeTimestamps, int fpsUnitFactor,
+                       int[] sizes, int[] fpsRanges) {
+        this.api = api;
+        this.cameraId = cameraId;
+        this.facing = facing;
+        this.orientation = orientation;
+        this.realtimeTimestamps = realtimeTimestamps;
+        this.fpsUnitFactor = fpsUnitFactor;
+        mSizes = sizes;
+        mFpsRanges = fpsRanges;
+    }
+
+    static String key(int api, String cameraId) {
+        return api + ":" + cameraId;
+    }
+
+    String key() {
+        return key(api, cameraId);
+    }
+
+    int getSizeCount() {
+        return mSizes.length / 2;
+    }
+
+    int getWidth(int index) {
+        return mSizes[index * 2];
+    }
+
+    int getHeight(int index) {
+        return mSizes[index * 2 + 1];
+    }
+
+    /**
+     * Finds the size closest to (width x height) of those
+     * whose width is a multiple of 32. Ignores width or
+     * height if either is zero (== don't care).
+     * @return the index of the size, or -1 if none
+     */
+    int findClosestSize(int width, int height) {
+        int closest = -1;
+        int minDiff = Integer.MAX_VALUE;
+        for (int i = 0; i < getSizeCount(); i++) {
+            int sizeWidth = getWidth(i);
+            int diff = ((width > 0) ? Math.abs(sizeWidth - width) : 0)
+                    + ((height > 0) ? Math.abs(getHeight(i) - height) : 0);
+            if (diff < minDiff && sizeWidth % 32 == 0) {
+                minDiff = diff;
+                closest = i;
+            }
+        }
+        if (closest == -1) {
+            LogUtil.e(TAG, "Couldn't find resolution close to (" + width + "x" + height + ")");
+        }
+        return closest;
+    }
+
+    boolean hasFrameRateRanges() {
+        return mFpsRanges.length > 0;
+    }
+
+    /**
+     * @return a new list of the fps ranges, multiplied by 1000
+     */
+    List<VideoCapture.FrameRateRange> getFrameRateRanges() {
+        List<VideoCapture.FrameRateRange> ranges = new ArrayList<>(mFpsRanges.length / 2);
+        for (int i = 0; i < mFpsRanges.length; i += 2) {
+            ranges.add(new VideoCapture.FrameRateRange(mFpsRanges[i], mFpsRanges[i + 1]));
+        }
+        return ranges;
+    }
+
+    void write(DataOutputStream out) throws IOException {
+        out.writeByte(api);
+        out.writeUTF(cameraId);
+        out.writeByte(facing);
+        out.writeShort(orientation);
+        out.writeBoolean(realtimeTimestamps);
+        out.writeShort(fpsUnitFactor);
+        writeInts(out, mSizes);
+        writeInts(out, mFpsRanges);
+    }
+
+    static CameraCapabilities read(DataInputStream in) throws IOException {
+        int api = in.readByte();
+        String cameraId = in.readUTF();
+        int facing = in.readByte();
+        int orientation = in.readShort();
+        boolean realtimeTimestamps = in.readBoolean();
+        int fpsUnitFactor = in.readShort();
+        int[] sizes = readInts(in);
+        int[] fpsRanges = readInts(in);
+        return new CameraCapabilities(api, cameraId, facing, orientation,
+                realtimeTimestamps, fpsUnitFactor, sizes, fpsRanges);
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeShort(values.length);
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    private static int[] readInts(DataInputStream in) throws IOException {
+        int count = in.readShort();
+        if (count < 0 || count > MAX_COUNT) {
+            throw new IOException("Bad count " + count);
+        }
+        int[] values = new int[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        return "CameraCapabilities{" +
+                "api=" + api +
+                ", cameraId=" + cameraId +
+                ", facing=" + facing +
+                ", orientation=" + orientation +
+                ", sizes=" + getSizeCount() +
+                ", fpsRanges=" + mFpsRanges.length / 2 +
+                '}';
+    }
+}
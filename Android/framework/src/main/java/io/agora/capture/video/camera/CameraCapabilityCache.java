@@ -0,0 +1,192 @@
+package io.agora.capture.video.camera;
+
+import android.content.Context;
+import android.os.Build;
+import android.util.AtomicFile;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import io.agora.capture.framework.util.LogUtil;
+
+/**
+ * The capabilities of the cameras kept across runs in a
+ * small binary file, so that starting or switching the
+ * camera does not query them every time.
+ * The file is loaded when first used, and dropped when
+ * the build fingerprint differs, which it does after an
+ * OS update or on another device.
+ * A camera failing to configure with the capabilities
+ * kept should be removed, to be queried again next time.
+ * The facing and orientation of cameras never opened are
+ * kept too, so that finding the camera of a facing does
+ * not query every camera.
+ */
+final class CameraCapabilityCache {
+    private static final String TAG = CameraCapabilityCache.class.getSimpleName();
+    private static final String FILE_NAME = "camera_capabilities.bin";
+    private static final int MAGIC = 0x43415043;
+    private static final int VERSION = 2;
+    private static final int MAX_CAMERAS = 64;
+
+    static final class CameraInfo {
+        final int facing;
+        final int orientation;
+
+        CameraInfo(int facing, int orientation) {
+            this.facing = facing;
+            this.orientation = orientation;
+        }
+    }
+
+    private static CameraCapabilityCache sInstance;
+
+    private final Context mContext;
+    private final String mFingerprint;
+    private final Map<String, CameraCapabilities> mCapabilities = new HashMap<>();
+    private final Map<String, CameraInfo> mCameraInfos = new HashMap<>();
+    private AtomicFile mFile;
+
+    static synchronized CameraCapabilityCache instance(Context context) {
+        if (sInstance == null) {
+            Context appContext = context.getApplicationContext();
+            sInstance = new CameraCapabilityCache(appContext != null ? appContext : context,
+                    Build.FINGERPRINT);
+        }
+        return sInstance;
+    }
+
+    private CameraCapabilityCache(Context context, String fingerprint) {
+        mContext = context;
+        mFingerprint = fingerprint != null ? fingerprint : "";
+    }
+
+    /**
+     * @return the capabilities kept, or null if the camera
+     * has to be queried
+     */
+    synchronized CameraCapabilities get(int api, String cameraId) {
+        load();
+        return mCapabilities.get(CameraCapabilities.key(api, cameraId));
+    }
+
+    synchronized void put(CameraCapabilities capabilities) {
+        load();
+        mCapabilities.put(capabilities.key(), capabilities);
+        save();
+    }
+
+    /**
+     * @return the facing and orientation of the camera, from
+     * its capabilities or as kept by putCameraInfo, or null
+     * if the camera has to be queried
+     */
+    synchronized CameraInfo getCameraInfo(int api, String cameraId) {
+        load();
+        String key = CameraCapabilities.key(api, cameraId);
+        CameraCapabilities capabilities = mCapabilities.get(key);
+        if (capabilities != null) {
+            return new CameraInfo(capabilities.facing, capabilities.orientation);
+        }
+        return mCameraInfos.get(key);
+    }
+
+    synchronized void putCameraInfo(int api, String cameraId, int facing, int orientation) {
+        load();
+        mCameraInfos.put(CameraCapabilities.key(api, cameraId), new CameraInfo(facing, orientation));
+        save();
+    }
+
+    synchronized void remove(int api, String cameraId) {
+        load();
+        if (mCapabilities.remove(CameraCapabilities.key(api, cameraId)) != null) {
+            LogUtil.i(TAG, "removed camera " + cameraId + " of api " + api);
+            save();
+        }
+    }
+
+    private void load() {
+        if (mFile != null) {
+            return;
+        }
+        mFile = new AtomicFile(new File(mContext.getNoBackupFilesDir(), FILE_NAME));
+
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(mFile.openRead()))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                LogUtil.w(TAG, "dropped capabilities of another format");
+                mFile.delete();
+                return;
+            }
+            String fingerprint = in.readUTF();
+            if (!mFingerprint.equals(fingerprint)) {
+                LogUtil.i(TAG, "dropped capabilities of build " + fingerprint);
+                mFile.delete();
+                return;
+            }
+
+            int count = in.readShort();
+            if (count < 0 || count > MAX_CAMERAS) {
+                throw new IOException("Bad camera count " + count);
+            }
+            for (int i = 0; i < count; i++) {
+                CameraCapabilities capabilities = CameraCapabilities.read(in);
+                mCapabilities.put(capabilities.key(), capabilities);
+            }
+            int infoCount = in.readShort();
+            if (infoCount < 0 || infoCount > MAX_CAMERAS) {
+                throw new IOException("Bad camera info count " + infoCount);
+            }
+            for (int i = 0; i < infoCount; i++) {
+                String key = in.readUTF();
+                int facing = in.readByte();
+                int orientation = in.readShort();
+                mCameraInfos.put(key, new CameraInfo(facing, orientation));
+            }
+            LogUtil.d(TAG, "loaded capabilities of " + count + " cameras");
+        } catch (FileNotFoundException e) {
+            // Nothing kept yet
+        } catch (IOException e) {
+            LogUtil.w(TAG, "dropped capabilities that cannot be read: " + e);
+            mCapabilities.clear();
+            mCameraInfos.clear();
+            mFile.delete();
+        }
+    }
+
+    private void save() {
+        FileOutputStream stream = null;
+        try {
+            stream = mFile.startWrite();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(mFingerprint);
+            out.writeShort(mCapabilities.size());
+            for (CameraCapabilities capabilities : mCapabilities.values()) {
+                capabilities.write(out);
+            }
+            out.writeShort(mCameraInfos.size());
+            for (Map.Entry<String, CameraInfo> entry : mCameraInfos.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeByte(entry.getValue().facing);
+                out.writeShort(entry.getValue().orientation);
+            }
+            out.flush();
+            mFile.finishWrite(stream);
+        } catch (IOException e) {
+            LogUtil.w(TAG, "cannot save capabilities: " + e);
+            if (stream != null) {
+                mFile.failWrite(stream);
+            }
+        }
+    }
+}
@@ -2,8 +2,12 @@ package io.agora.capture.video.camera;
 
 import android.content.Context;
 
+import io.agora.capture.framework.metrics.LatencyHistogram;
+import io.agora.capture.framework.metrics.PipelineMetrics;
 import io.agora.capture.framework.modules.channels.ChannelManager;
 import io.agora.capture.framework.modules.channels.VideoChannel;
+import io.agora.capture.framework.modules.producers.FrameQueue;
+import io.agora.capture.framework.util.LogUtil;
 
 public class CameraVideoChannel extends VideoChannel {
     private static final String TAG = CameraVideoChannel.class.getSimpleName();
@@ -12,22 +16,39 @@ public class CameraVideoChannel extends VideoChannel {
     private static final int HEIGHT = 1080;
     private static final int FRAME_RATE = 24;
     private static final int FACING = Constant.CAMERA_FACING_FRONT;
+    private static final long GOVERNOR_PERIOD_MS = 1000;
 
-    private VideoCapture mVideoCapture;
+    private final VideoCapture mVideoCapture;
     private volatile boolean mCapturedStarted;
 
     private int mWidth = WIDTH;
     private int mHeight = HEIGHT;
     private int mFrameRate = FRAME_RATE;
     private int mFacing = FACING;
+    private FrameQueue mFrameQueue;
+    private volatile boolean mFastSwitchEnabled;
+
+    // Only accessed on the channel thread
+    private CaptureGovernor mGovernor;
+    private long mLastLatencyCount;
+    private long mLastLatencySumNs;
+    private long mLastPushedCount;
+    private long mLastDroppedCount;
+    private final Runnable mGovernRun = this::govern;
 
     public CameraVideoChannel(Context context, int id) {
         super(context, id);
+        // Created before the channel runs, so that capture
+        // can open the camera while the channel sets up GL
+        mVideoCapture = VideoCaptureFactory.createVideoCapture(context);
     }
 
     @Override
     protected void onChannelContextCreated() {
-        mVideoCapture = VideoCaptureFactory.createVideoCapture(getChannelContext().getContext());
+        if (mFrameQueue != null) {
+            mVideoCapture.setFrameQueue(mFrameQueue);
+        }
+        mVideoCapture.setFastSwitchEnabled(mFastSwitchEnabled);
     }
 
     /**
@@ -67,15 +88,177 @@ public class CameraVideoChannel extends VideoChannel {
         mFrameRate = frameRate;
     }
 
+    /**
+     * Set the backpressure policy of captured frames.
+     * @see io.agora.capture.framework.modules.producers.VideoProducer#setFrameQueue(FrameQueue)
+     */
+    public void setFrameQueue(FrameQueue queue) {
+        if (isRunning()) {
+            getHandler().post(() -> {
+                mFrameQueue = queue;
+                mVideoCapture.setFrameQueue(queue);
+            });
+        } else {
+            mFrameQueue = queue;
+        }
+    }
+
+    /**
+     * Let the governor lower the capture resolution and
+     * frame rate when the pipeline cannot keep up, and
+     * raise them again when it can. The levels of the
+     * governor replace the picture size and frame rate
+     * set before, and capture restarts when the level
+     * changes.
+     * @param governor null to capture with the picture
+     *                 size and frame rate set
+     */
+    public void setCaptureGovernor(CaptureGovernor governor) {
+        if (!isRunning()) {
+            return;
+        }
+
+        getHandler().post(() -> {
+            getHandler().removeCallbacks(mGovernRun);
+            mGovernor = governor;
+            if (governor != null) governor.reset();
+            fitGovernor();
+            if (mCapturedStarted) {
+                restartCapture();
+                scheduleGovern();
+            }
+        });
+    }
+
+    /**
+     * Switch camera without releasing the preview texture
+     * and buffers, opening the new camera off the channel
+     * thread, so that the last frame stays shown until the
+     * new camera gives its first one.
+     * The switch latency is reported by the producer
+     * metrics either way.
+     */
+    public void setFastSwitchEnabled(boolean enabled) {
+        mFastSwitchEnabled = enabled;
+        if (isRunning()) {
+            getHandler().post(() -> mVideoCapture.setFastSwitchEnabled(enabled));
+        }
+    }
+
+    private CaptureGovernor.Level governedLevel() {
+        return mGovernor != null ? mGovernor.getLevel() : null;
+    }
+
+    private int captureWidth() {
+        CaptureGovernor.Level level = governedLevel();
+        return level != null ? level.width : mWidth;
+    }
+
+    private int captureHeight() {
+        CaptureGovernor.Level level = governedLevel();
+        return level != null ? level.height : mHeight;
+    }
+
+    private int captureFrameRate() {
+        CaptureGovernor.Level level = governedLevel();
+        return level != null ? level.frameRate : mFrameRate;
+    }
+
+    private void restartCapture() {
+        mVideoCapture.deallocate();
+        mVideoCapture.allocate(captureWidth(), captureHeight(), captureFrameRate(), mFacing);
+        mVideoCapture.startCaptureMaybeAsync(false);
+    }
+
+    private void scheduleGovern() {
+        if (mGovernor == null || getMetrics() == null) return;
+        sampleLoad();
+        getHandler().postDelayed(mGovernRun, GOVERNOR_PERIOD_MS);
+    }
+
+    private void fitGovernor() {
+        CameraCapabilities capabilities = mVideoCapture.getCapabilities();
+        if (mGovernor != null && capabilities != null &&
+                mGovernor.fitTo(capabilities, mWidth, mHeight, mFrameRate)) {
+            LogUtil.i(TAG, "capture governor ladder " + mGovernor.getLadder());
+        }
+    }
+
+    private void govern() {
+        if (mGovernor == null || !mCapturedStarted) return;
+
+        // The camera may have been switched since
+        fitGovernor();
+        long[] load = sampleLoad();
+        if (mGovernor.update(load[0], load[1] > 0 ? (float) load[2] / load[1] : 0)) {
+            LogUtil.i(TAG, "capture governed to " + mGovernor.getLevel());
+            restartCapture();
+        }
+        getHandler().postDelayed(mGovernRun, GOVERNOR_PERIOD_MS);
+    }
+
+    /**
+     * @return the mean end-to-end latency, or -1 if no
+     * frame is consumed, the number of frames pushed and
+     * that dropped since the previous sample
+     */
+    private long[] sampleLoad() {
+        PipelineMetrics metrics = getMetrics();
+        int id = ChannelManager.ChannelID.CAMERA;
+        LatencyHistogram latency = metrics.latency(PipelineMetrics.endToEnd(id));
+        long count = latency.getCount();
+        long sum = latency.getSumNs();
+        long pushed = metrics.fps(PipelineMetrics.producer(id)).getCount();
+        long dropped = mVideoCapture.getDroppedFrameCount();
+
+        // Counters restart when the producer reconnects
+        // or the frame queue is replaced.
+        long frames = Math.max(0, count - mLastLatencyCount);
+        long latencyNs = frames > 0 ? (sum - mLastLatencySumNs) / frames : -1;
+        long pushedDelta = Math.max(0, pushed - mLastPushedCount);
+        long droppedDelta = Math.max(0, dropped - mLastDroppedCount);
+
+        mLastLatencyCount = count;
+        mLastLatencySumNs = sum;
+        mLastPushedCount = pushed;
+        mLastDroppedCount = dropped;
+        return new long[]{latencyNs, pushedDelta, droppedDelta};
+    }
+
+    public long getDroppedFrameCount() {
+        return mVideoCapture.getDroppedFrameCount();
+    }
+
+    /**
+     * Starts capture, timing each phase until the first
+     * captured frame.
+     * If the channel is still setting up GL, the camera is
+     * opened at the same time on the camera thread of the
+     * capture.
+     * @see VideoCapture.VideoCaptureStateListener#onStartupTimings(StartupTimings)
+     */
     public void startCapture() {
         if (isRunning()) {
+            final StartupTimings timings = new StartupTimings();
+            if (!mCapturedStarted && !isChannelContextReady()) {
+                // No governor can be set before the channel
+                // is ready, so the size set is the one used.
+                timings.setCameraOpenedEarly(mVideoCapture.allocateEarly(
+                        mWidth, mHeight, mFrameRate, mFacing, timings));
+            }
+
             getHandler().post(() -> {
                 if (!mCapturedStarted) {
+                    timings.set(StartupTimings.PHASE_EGL, getInitStartNs(), getGlReadyNs());
+                    timings.set(StartupTimings.PHASE_PROGRAMS, getGlReadyNs(), getInitEndNs());
+                    mVideoCapture.setStartupTimings(timings);
                     mVideoCapture.connectChannel(ChannelManager.ChannelID.CAMERA);
-                    mVideoCapture.setSharedContext(getChannelContext().getEglCore().getEGLContext());
-                    mVideoCapture.allocate(mWidth, mHeight, mFrameRate, mFacing);
-                    mVideoCapture.startCaptureMaybeAsync(false);
+                    mVideoCapture.setSharedContext(getChannelContext().getEglContext());
+                    mVideoCapture.allocateOrAwait(captureWidth(), captureHeight(),
+                            captureFrameRate(), mFacing);
+                    mVideoCapture.startCaptureTimed();
                     mCapturedStarted = true;
+                    scheduleGovern();
                 }
             });
         }
@@ -85,10 +268,9 @@ public class CameraVideoChannel extends VideoChannel {
         if (isRunning()) {
             getHandler().postAtFrontOfQueue(() -> {
                 if (mCapturedStarted) {
-                    mVideoCapture.deallocate();
                     switchCameraFacing();
-                    mVideoCapture.allocate(mWidth, mHeight, mFrameRate, mFacing);
-                    mVideoCapture.startCaptureMaybeAsync(false);
+                    mVideoCapture.switchCamera(captureWidth(), captureHeight(),
+                            captureFrameRate(), mFacing);
                 }
             });
         }
@@ -168,6 +350,7 @@ public class CameraVideoChannel extends VideoChannel {
         if (isRunning()) {
             getHandler().postAtFrontOfQueue(() -> {
                 if (mCapturedStarted) {
+                    getHandler().removeCallbacks(mGovernRun);
                     mVideoCapture.deallocate();
                     mCapturedStarted = false;
                 }
@@ -181,10 +364,15 @@ public class CameraVideoChannel extends VideoChannel {
 
     void setCameraStateListener(VideoCapture.VideoCaptureStateListener listener) {
         if (isRunning()) {
-            getChannelContext().getEglCore().setErrorCallback((code, msg) -> {
-                listener.onCameraCaptureError(Constant.ERROR_EGL_CORE, msg + ": EGL error: 0x" + Integer.toHexString(code));
-            });
-            getHandler().postAtFrontOfQueue(() -> mVideoCapture.setCaptureStateListener(listener));
+            // Set now, as the camera may be opening while the
+            // channel sets up GL
+            mVideoCapture.setCaptureStateListener(listener);
+            // Posted rather than waiting for the GL backend, so
+            // that the camera can be opened before it is set up
+            getHandler().postAtFrontOfQueue(() ->
+                getChannelContext().getGlBackend().setErrorListener((code, msg) -> {
+                    listener.onCameraCaptureError(Constant.ERROR_EGL_CORE, msg + ": EGL error: 0x" + Integer.toHexString(code));
+                }));
         }
     }
 
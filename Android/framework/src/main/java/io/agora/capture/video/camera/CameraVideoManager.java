@@ -7,8 +7,14 @@ import android.view.TextureView;
 
 import androidx.annotation.Nullable;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import io.agora.capture.framework.gles.MatrixOperator;
+import io.agora.capture.framework.metrics.PipelineMetrics;
 import io.agora.capture.framework.modules.channels.ChannelManager;
+import io.agora.capture.framework.modules.channels.FramePacer;
+import io.agora.capture.framework.modules.consumers.AsyncVideoConsumer;
 import io.agora.capture.framework.modules.consumers.CaptureFrameWrapConsumer;
 import io.agora.capture.framework.modules.consumers.ICaptureFrameConsumer;
 import io.agora.capture.framework.modules.consumers.IVideoConsumer;
@@ -16,6 +22,7 @@ import io.agora.capture.framework.modules.consumers.SurfaceViewConsumer;
 import io.agora.capture.framework.modules.consumers.TextureViewConsumer;
 import io.agora.capture.framework.modules.processors.IPreprocessor;
 import io.agora.capture.framework.modules.processors.WatermarkProcessor;
+import io.agora.capture.framework.modules.producers.FrameQueue;
 import io.agora.capture.framework.util.LogUtil;
 
 /**
@@ -38,6 +45,9 @@ public class CameraVideoManager {
 
     private CameraVideoChannel mCameraChannel;
 
+    // Pacers set before their consumers are attached
+    private final Map<ICaptureFrameConsumer, FramePacer> mPendingPacers = new HashMap<>();
+
     private volatile boolean available = true;
     private Exception releaseException = null;
 
@@ -102,7 +112,6 @@ public class CameraVideoManager {
         // the video channel starts
         videoModule.setPreprocessor(CHANNEL_ID, preprocessor);
         videoModule.startChannel(CHANNEL_ID);
-        videoModule.enableOffscreenMode(CHANNEL_ID, true);
         mCameraChannel = (CameraVideoChannel)
                 videoModule.getVideoChannel(CHANNEL_ID);
         mCameraChannel.setFacing(facing);
@@ -223,11 +232,71 @@ public class CameraVideoManager {
         checkAvailable();
         if (mCameraChannel != null) {
             mCameraChannel.connectConsumer(new CaptureFrameWrapConsumer(consumer), IVideoConsumer.TYPE_OFF_SCREEN);
+            applyPendingPacer(consumer);
+        }
+    }
+
+    /**
+     * Attach an off-screen consumer that runs on its own
+     * thread, so that it does not stall the preview and
+     * the other consumers when it is slow. It can be
+     * detached by detachOffScreenConsumer().
+     * @param consumer the consumer implementation
+     * @param queue how frames are dropped when the consumer
+     *              falls behind, like FrameQueue.latestWins()
+     *              or FrameQueue.boundedFifo(int)
+     * @return the wrapper that reports the dropped frames
+     * and the lag of the consumer
+     */
+    public AsyncVideoConsumer attachOffScreenConsumer(ICaptureFrameConsumer consumer, FrameQueue queue) {
+        checkAvailable();
+        AsyncVideoConsumer asyncConsumer = new AsyncVideoConsumer(
+                new CaptureFrameWrapConsumer(consumer), queue);
+        if (mCameraChannel != null) {
+            mCameraChannel.connectConsumer(asyncConsumer, IVideoConsumer.TYPE_OFF_SCREEN);
+            applyPendingPacer(consumer);
+        }
+        return asyncConsumer;
+    }
+
+    /**
+     * Limit the frames given to an off-screen consumer,
+     * like FramePacer.maxFps(5) for analytics. If the
+     * consumer is not attached yet, the pacer is applied
+     * when it is attached. The pacer is removed when the
+     * consumer is detached.
+     * @param pacer null to give the consumer every frame
+     */
+    public void setOffScreenConsumerPacer(ICaptureFrameConsumer consumer, FramePacer pacer) {
+        checkAvailable();
+        if (consumer == null) return;
+        synchronized (mPendingPacers) {
+            if (mCameraChannel != null && mCameraChannel.setConsumerPacer(
+                    new CaptureFrameWrapConsumer(consumer), pacer)) {
+                mPendingPacers.remove(consumer);
+            } else if (pacer != null) {
+                mPendingPacers.put(consumer, pacer);
+            } else {
+                mPendingPacers.remove(consumer);
+            }
+        }
+    }
+
+    private void applyPendingPacer(ICaptureFrameConsumer consumer) {
+        FramePacer pacer;
+        synchronized (mPendingPacers) {
+            pacer = mPendingPacers.remove(consumer);
+        }
+        if (pacer != null) {
+            mCameraChannel.setConsumerPacer(new CaptureFrameWrapConsumer(consumer), pacer);
         }
     }
 
     public void detachOffScreenConsumer(ICaptureFrameConsumer consumer) {
         checkAvailable();
+        synchronized (mPendingPacers) {
+            mPendingPacers.remove(consumer);
+        }
         if (mCameraChannel != null) {
             mCameraChannel.disconnectConsumer(new CaptureFrameWrapConsumer(consumer));
         }
@@ -245,6 +314,58 @@ public class CameraVideoManager {
         }
     }
 
+    /**
+     * Set how captured frames are queued when the frames
+     * are consumed slower than captured. By default only
+     * the latest frame is kept for the lowest latency.
+     * @param queue one of FrameQueue.latestWins(),
+     *              FrameQueue.boundedFifo(int) or
+     *              FrameQueue.blocking(int, long)
+     */
+    public void setFrameQueue(FrameQueue queue) {
+        checkAvailable();
+        if (mCameraChannel != null) {
+            mCameraChannel.setFrameQueue(queue);
+        }
+    }
+
+    public long getDroppedFrameCount() {
+        checkAvailable();
+        if (mCameraChannel != null) {
+            return mCameraChannel.getDroppedFrameCount();
+        }
+        return 0;
+    }
+
+    /**
+     * @return the metrics of the whole video pipeline,
+     * which can be read from any thread.
+     */
+    public PipelineMetrics getMetrics() {
+        return VideoModule.instance().getMetrics();
+    }
+
+    /**
+     * Receive the pipeline metrics periodically on the
+     * metrics thread.
+     * @param listener null to stop
+     */
+    public void setMetricsListener(PipelineMetrics.Listener listener, long periodMs) {
+        VideoModule.instance().getMetrics().setListener(listener, periodMs);
+    }
+
+    /**
+     * Adapt the capture resolution and frame rate to the
+     * load of the pipeline, see CaptureGovernor.
+     * @param governor null to stop adapting
+     */
+    public void setCaptureGovernor(CaptureGovernor governor) {
+        checkAvailable();
+        if (mCameraChannel != null) {
+            mCameraChannel.setCaptureGovernor(governor);
+        }
+    }
+
     public void startCapture() {
         checkAvailable();
         if (mCameraChannel != null) {
@@ -266,6 +387,19 @@ public class CameraVideoManager {
         }
     }
 
+    /**
+     * Keep the last frame shown while switching camera,
+     * and switch faster by keeping the preview texture
+     * and buffers. The switch latency is reported as the
+     * producer "switch_latency" metric.
+     */
+    public void setFastSwitchEnabled(boolean enabled) {
+        checkAvailable();
+        if (mCameraChannel != null) {
+            mCameraChannel.setFastSwitchEnabled(enabled);
+        }
+    }
+
     // zoom api
     public boolean isZoomSupported(){
         checkAvailable();
@@ -0,0 +1,398 @@
+package io.agora.capture.video.camera;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import io.agora.capture.framework.util.CameraUtils;
+
+/**
+ * Decides the capture resolution and frame rate from the
+ * load of the pipeline. Capture steps down a ladder of
+ * levels when the frames take too long or are dropped,
+ * and steps back up when there is headroom again.
+ * Only the decision is made here, with no dependency on
+ * the camera or the clock, so it can be driven by a
+ * simulated load trace. The camera channel feeds one
+ * sample per period and applies the chosen level.
+ * Once the camera is known, the ladder is fitted to the
+ * sizes and frame rate ranges it supports, so that every
+ * step changes what the camera captures.
+ * Not thread-safe.
+ */
+public class CaptureGovernor {
+    private static final int[][] RESOLUTIONS = {
+            {1920, 1080}, {1280, 720}, {960, 540}, {640, 360}, {480, 270}
+    };
+    private static final int MIN_FRAME_RATE = 15;
+    private static final int MAX_UP_SAMPLES_FACTOR = 8;
+
+    // Sizes of the camera in the ladder built from its
+    // capabilities: with the aspect ratio requested, at
+    // least this many pixels, and each with at most 3/4
+    // of the pixels of the size above.
+    private static final int MIN_PIXELS = 480 * 270;
+    private static final float ASPECT_RATIO_TOLERANCE = 0.02f;
+    private static final float MAX_SIZE_STEP = 0.75f;
+
+    public static class Level {
+        public final int width;
+        public final int height;
+        public final int frameRate;
+
+        public Level(int width, int height, int frameRate) {
+            this.width = width;
+            this.height = height;
+            this.frameRate = frameRate;
+        }
+
+        long pixelRate() {
+            return (long) width * height * frameRate;
+        }
+
+        @Override
+        public String toString() {
+            return width + "x" + height + "@" + frameRate;
+        }
+    }
+
+    // Null to build the ladder from the capabilities of
+    // the camera
+    private final List<Level> mRequestedLadder;
+    private List<Level> mLadder;
+    private CameraCapabilities mFittedCapabilities;
+    private int mFittedWidth;
+    private int mFittedHeight;
+    private int mFittedFrameRate;
+    private int[] mRequestedLevels;
+
+    // A sample is overloaded if either exceeds its high
+    // threshold, and has headroom only if both are below
+    // their low thresholds. Samples in between keep the
+    // level, which is the hysteresis band.
+    private long mHighLatencyNs = 80000000L;
+    private long mLowLatencyNs = 40000000L;
+    private float mHighDropRate = 0.1f;
+    private float mLowDropRate = 0.02f;
+
+    private int mDownSamples = 3;
+    private int mUpSamples = 10;
+    private int mHoldSamples = 3;
+
+    private int mLevel;
+    private int mOverloadCount;
+    private int mHeadroomCount;
+    private int mHoldCount;
+    // Samples needed to step up, doubled every time
+    // capture has to step down again soon after stepping
+    // up, so an unreachable level is not retried often.
+    private int mUpSamplesRequired = mUpSamples;
+    private int mSamplesSinceStepUp = -1;
+
+    /**
+     * Build the levels from the sizes and frame rates that
+     * the camera supports, below the picture size and frame
+     * rate set, once capture has started. Until then there
+     * is no level and capture is as set.
+     */
+    public CaptureGovernor() {
+        mRequestedLadder = null;
+        mLadder = Collections.emptyList();
+    }
+
+    /**
+     * @param ladder levels from the highest load to the
+     *               lowest, capture starts at the first.
+     *               Levels the camera captures the same
+     *               way are merged once it is known.
+     */
+    public CaptureGovernor(List<Level> ladder) {
+        if (ladder == null || ladder.isEmpty()) {
+            throw new IllegalArgumentException("The ladder must have a level");
+        }
+        mRequestedLadder = new ArrayList<>(ladder);
+        mLadder = Collections.unmodifiableList(mRequestedLadder);
+    }
+
+    /**
+     * Build the levels below the requested capture by
+     * lowering the frame rate down to 15 fps and the
+     * resolution down the common 16:9 sizes, ordered by
+     * pixel rate. The camera still picks its closest
+     * supported size and frame rate range for each, and
+     * levels it captures the same way are merged.
+     * @see #CaptureGovernor() for levels of the camera sizes
+     */
+    public static List<Level> defaultLadder(int width, int height, int frameRate) {
+        List<Level> ladder = new ArrayList<>();
+        List<int[]> sizes = new ArrayList<>();
+        sizes.add(new int[]{width, height});
+        for (int[] size : RESOLUTIONS) {
+            if (size[0] < width && size[1] < height) {
+                sizes.add(size);
+            }
+        }
+
+        int reducedRate = Math.max(MIN_FRAME_RATE, frameRate * 2 / 3);
+        for (int[] size : sizes) {
+            ladder.add(new Level(size[0], size[1], frameRate));
+            if (reducedRate < frameRate) {
+                ladder.add(new Level(size[0], size[1], reducedRate));
+            }
+        }
+
+        Collections.sort(ladder, (l1, l2) -> Long.compare(l2.pixelRate(), l1.pixelRate()));
+        return ladder;
+    }
+
+    /**
+     * Fit the ladder to a camera: every level takes the
+     * size the camera picks for it, and the levels that
+     * end up with the same size and frame rate range are
+     * merged, as stepping between them would only restart
+     * capture. The current level is kept, or the next one
+     * with a lower load.
+     * @param width the picture size set, for the ladder
+     *              built from the capabilities
+     * @return false if the ladder is fitted to the camera
+     * and picture size already
+     */
+    boolean fitTo(CameraCapabilities capabilities, int width, int height, int frameRate) {
+        if (capabilities == mFittedCapabilities && (mRequestedLadder != null ||
+                width == mFittedWidth && height == mFittedHeight && frameRate == mFittedFrameRate)) {
+            return false;
+        }
+        if (!capabilities.hasFrameRateRanges()) {
+            return false;
+        }
+
+        List<Level> candidates = mRequestedLadder != null ? mRequestedLadder :
+                capabilityLadder(capabilities, width, height, frameRate);
+        List<VideoCapture.FrameRateRange> ranges = capabilities.getFrameRateRanges();
+        List<Level> ladder = new ArrayList<>();
+        List<String> modes = new ArrayList<>();
+        // The level of the fitted ladder of every candidate
+        int[] fittedLevels = new int[candidates.size()];
+        for (int i = 0; i < candidates.size(); i++) {
+            Level level = candidates.get(i);
+            int index = capabilities.findClosestSize(level.width, level.height);
+            if (index == -1) {
+                return false;
+            }
+            int fittedWidth = capabilities.getWidth(index);
+            int fittedHeight = capabilities.getHeight(index);
+            VideoCapture.FrameRateRange range = CameraUtils.getClosestFrameRateRangeExactly(
+                    ranges, level.frameRate * 1000);
+            String mode = fittedWidth + "x" + fittedHeight + "@" + range.min + "-" + range.max;
+            fittedLevels[i] = modes.indexOf(mode);
+            if (fittedLevels[i] == -1) {
+                fittedLevels[i] = ladder.size();
+                modes.add(mode);
+                ladder.add(new Level(fittedWidth, fittedHeight, level.frameRate));
+            }
+        }
+
+        int level = 0;
+        if (mRequestedLadder != null) {
+            // The same levels requested are fitted again
+            int requested = mFittedCapabilities == null ? mLevel : mRequestedLevels[mLevel];
+            level = fittedLevels[requested];
+        } else if (!mLadder.isEmpty()) {
+            long pixelRate = getLevel().pixelRate();
+            level = ladder.size() - 1;
+            for (int i = 0; i < ladder.size(); i++) {
+                if (ladder.get(i).pixelRate() <= pixelRate) {
+                    level = i;
+                    break;
+                }
+            }
+        }
+
+        // The first level requested of every fitted level
+        mRequestedLevels = new int[ladder.size()];
+        for (int i = candidates.size() - 1; i >= 0; i--) {
+            mRequestedLevels[fittedLevels[i]] = i;
+        }
+        mLadder = Collections.unmodifiableList(ladder);
+        mLevel = level;
+        mFittedCapabilities = capabilities;
+        mFittedWidth = width;
+        mFittedHeight = height;
+        mFittedFrameRate = frameRate;
+        return true;
+    }
+
+    /**
+     * The sizes of the camera with the aspect ratio of the
+     * picture size and not larger, each at the frame rate
+     * set and at 2/3 of it down to 15 fps.
+     */
+    static List<Level> capabilityLadder(CameraCapabilities capabilities,
+                                        int width, int height, int frameRate) {
+        List<int[]> sizes = new ArrayList<>();
+        for (int i = 0; i < capabilities.getSizeCount(); i++) {
+            int sizeWidth = capabilities.getWidth(i);
+            int sizeHeight = capabilities.getHeight(i);
+            float ratioDiff = Math.abs((float) sizeWidth * height / sizeHeight / width - 1);
+            if (sizeWidth <= width && sizeHeight <= height &&
+                    sizeWidth * sizeHeight >= MIN_PIXELS &&
+                    ratioDiff <= ASPECT_RATIO_TOLERANCE) {
+                sizes.add(new int[]{sizeWidth, sizeHeight});
+            }
+        }
+        Collections.sort(sizes, (s1, s2) -> Integer.compare(s2[0] * s2[1], s1[0] * s1[1]));
+
+        List<Level> ladder = new ArrayList<>();
+        int reducedRate = Math.max(MIN_FRAME_RATE, frameRate * 2 / 3);
+        // The size set comes first even if the camera only
+        // has a close one.
+        ladder.add(new Level(width, height, frameRate));
+        long lastPixels = (long) width * height;
+        for (int[] size : sizes) {
+            long pixels = (long) size[0] * size[1];
+            if (pixels <= lastPixels * MAX_SIZE_STEP) {
+                ladder.add(new Level(size[0], size[1], frameRate));
+                lastPixels = pixels;
+            }
+        }
+
+        int count = ladder.size();
+        for (int i = 0; i < count && reducedRate < frameRate; i++) {
+            Level level = ladder.get(i);
+            ladder.add(new Level(level.width, level.height, reducedRate));
+        }
+        Collections.sort(ladder, (l1, l2) -> Long.compare(l2.pixelRate(), l1.pixelRate()));
+        return ladder;
+    }
+
+    /**
+     * @param highNs latency over which a sample is overloaded
+     * @param lowNs latency under which a sample has headroom
+     */
+    public void setLatencyThresholds(long highNs, long lowNs) {
+        if (lowNs > highNs) {
+            throw new IllegalArgumentException("Low threshold over high: " + lowNs + " > " + highNs);
+        }
+        mHighLatencyNs = highNs;
+        mLowLatencyNs = lowNs;
+    }
+
+    /**
+     * @param high drop rate over which a sample is overloaded
+     * @param low drop rate under which a sample has headroom
+     */
+    public void setDropRateThresholds(float high, float low) {
+        if (low > high) {
+            throw new IllegalArgumentException("Low threshold over high: " + low + " > " + high);
+        }
+        mHighDropRate = high;
+        mLowDropRate = low;
+    }
+
+    /**
+     * @param down consecutive overloaded samples to step down
+     * @param up consecutive samples with headroom to step up
+     * @param hold samples ignored after a step, while the
+     *             capture restarts and the pipeline settles
+     */
+    public void setSampleCounts(int down, int up, int hold) {
+        if (down <= 0 || up <= 0 || hold < 0) {
+            throw new IllegalArgumentException("Invalid sample counts");
+        }
+        mDownSamples = down;
+        mUpSamples = up;
+        mUpSamplesRequired = up;
+        mHoldSamples = hold;
+    }
+
+    public List<Level> getLadder() {
+        return mLadder;
+    }
+
+    public int getLevelIndex() {
+        return mLevel;
+    }
+
+    /**
+     * @return null if the ladder is to be built from the
+     * camera, which is not known yet
+     */
+    public Level getLevel() {
+        return mLadder.isEmpty() ? null : mLadder.get(mLevel);
+    }
+
+    /**
+     * Feed the load of one period.
+     * @param latencyNs the latency of the frames in the
+     *                  period, or -1 if there is none
+     * @param dropRate the ratio of frames dropped in the
+     *                 period to frames captured
+     * @return true if the level has changed
+     */
+    public boolean update(long latencyNs, float dropRate) {
+        if (mHoldCount > 0) {
+            mHoldCount--;
+            return false;
+        }
+
+        if (latencyNs < 0 || mLadder.isEmpty()) {
+            // No frame to judge the load by
+            return false;
+        }
+
+        if (mSamplesSinceStepUp >= 0) {
+            mSamplesSinceStepUp++;
+            if (mSamplesSinceStepUp > mUpSamples * 2) {
+                // The level has held, forgive earlier relapses
+                mUpSamplesRequired = mUpSamples;
+                mSamplesSinceStepUp = -1;
+            }
+        }
+
+        boolean overloaded = latencyNs > mHighLatencyNs || dropRate > mHighDropRate;
+        boolean headroom = latencyNs < mLowLatencyNs && dropRate < mLowDropRate;
+
+        if (overloaded) {
+            mHeadroomCount = 0;
+            if (++mOverloadCount >= mDownSamples && mLevel < mLadder.size() - 1) {
+                if (mSamplesSinceStepUp >= 0) {
+                    mUpSamplesRequired = Math.min(mUpSamplesRequired * 2,
+                            mUpSamples * MAX_UP_SAMPLES_FACTOR);
+                    mSamplesSinceStepUp = -1;
+                }
+                return stepTo(mLevel + 1);
+            }
+        } else if (headroom) {
+            mOverloadCount = 0;
+            if (++mHeadroomCount >= mUpSamplesRequired && mLevel > 0) {
+                mSamplesSinceStepUp = 0;
+                return stepTo(mLevel - 1);
+            }
+        } else {
+            mOverloadCount = 0;
+            mHeadroomCount = 0;
+        }
+        return false;
+    }
+
+    /**
+     * Go back to the first level, like when the capture
+     * restarts.
+     */
+    public void reset() {
+        mLevel = 0;
+        mOverloadCount = 0;
+        mHeadroomCount = 0;
+        mHoldCount = 0;
+        mUpSamplesRequired = mUpSamples;
+        mSamplesSinceStepUp = -1;
+    }
+
+    private boolean stepTo(int level) {
+        mLevel = level;
+        mOverloadCount = 0;
+        mHeadroomCount = 0;
+        mHoldCount = mHoldSamples;
+        return true;
+    }
+}
@@ -0,0 +1,421 @@
+package io.agora.capture.video.camera;
+
+import android.graphics.ImageFormat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+import io.agora.capture.framework.metrics.PipelineMetrics;
+import io.agora.capture.framework.modules.producers.VideoProducer;
+import io.agora.capture.framework.util.LogUtil;
+
+/**
+ * Replays NV21 or I420 frames from a raw or Y4M file, so
+ * the pipeline can be run and measured without a camera.
+ * The file is memory mapped, and the frames are given as
+ * read-only planes that slice the mapping without copying.
+ * The frames have no texture, channels give them to the
+ * consumers without the texture processing, and the
+ * consumers should read the planes.
+ * Frames are paced at the frame rate, or pushed as fast
+ * as the channel takes them if the rate is 0, which needs
+ * a blocking frame queue not to drop most of them.
+ * @see VideoProducer#setFrameQueue
+ */
+public class FileVideoProducer extends VideoProducer {
+    private static final String TAG = FileVideoProducer.class.getSimpleName();
+
+    private static final String Y4M_MAGIC = "YUV4MPEG2";
+    private static final String Y4M_FRAME = "FRAME";
+    private static final int MAX_Y4M_HEADER_LENGTH = 1024;
+    private static final int DEFAULT_FRAME_RATE = 30;
+
+    // One mapping cannot exceed 2 GB, so the file is
+    // mapped in windows of whole frames.
+    private static final long MAP_WINDOW_BYTES = 64L << 20;
+    private static final int MAX_POOLED_FRAMES = 6;
+    // Late more than this, the pacing starts over
+    // instead of bursting to catch up.
+    private static final long MAX_PACING_DELAY_NS = 1000000000L;
+
+    public interface ReplayListener {
+        /**
+         * Called on the replay thread when the last frame
+         * is pushed and the replay does not loop.
+         */
+        void onReplayEnd(long frameCount);
+    }
+
+    private final File mFile;
+    private final VideoCaptureFormat mFormat;
+    private final int mLayout;
+    private final int mFrameSize;
+    private final long[] mFrameOffsets;
+
+    private final VideoCaptureFramePool mFramePool = new VideoCaptureFramePool(MAX_POOLED_FRAMES);
+
+    private volatile int mFrameRate;
+    private volatile boolean mLooping;
+    private volatile ReplayListener mListener;
+
+    private Thread mThread;
+    private volatile boolean mRunning;
+
+    // Only accessed on the replay thread. Planes of the
+    // frames in the window are kept, so looping over a
+    // file that fits in one window does not allocate.
+    private MappedByteBuffer mWindow;
+    private int mWindowFirstFrame;
+    private VideoFramePlanes[] mWindowPlanes;
+
+    private FileVideoProducer(File file, int width, int height, int layout,
+                              int frameRate, long[] frameOffsets) {
+        mFile = file;
+        mLayout = layout;
+        mFrameRate = frameRate;
+        mFrameSize = VideoFramePlanes.packedSize(width, height);
+        mFrameOffsets = frameOffsets;
+        mFormat = new VideoCaptureFormat(Constant.CAMERA_FACING_INVALID, width, height,
+                frameRate, layout == VideoFramePlanes.LAYOUT_NV21 ?
+                ImageFormat.NV21 : ImageFormat.YUV_420_888,
+                VideoCaptureFormat.TEX_FORMAT_NONE);
+    }
+
+    /**
+     * Open a file of frames packed one after another with
+     * no header.
+     * @param layout LAYOUT_NV21 or LAYOUT_I420 of VideoFramePlanes
+     */
+    public static FileVideoProducer openRaw(File file, int width, int height,
+                                            int layout, int frameRate) throws IOException {
+        if (layout != VideoFramePlanes.LAYOUT_NV21 && layout != VideoFramePlanes.LAYOUT_I420) {
+            throw new IllegalArgumentException("Unsupported layout: " + layout);
+        }
+        if (width <= 0 || height <= 0 || frameRate < 0) {
+            throw new IllegalArgumentException("Invalid format: " +
+                    width + "x" + height + "@" + frameRate);
+        }
+
+        int frameSize = VideoFramePlanes.packedSize(width, height);
+        long[] offsets = new long[(int) (file.length() / frameSize)];
+        if (offsets.length == 0) {
+            throw new IOException("No complete frame in " + file);
+        }
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = (long) i * frameSize;
+        }
+        return new FileVideoProducer(file, width, height, layout, frameRate, offsets);
+    }
+
+    /**
+     * Open a Y4M file of 4:2:0 frames, replayed as I420
+     * at the frame rate of the file.
+     */
+    public static FileVideoProducer openY4M(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+
+            String header = readLine(channel, 0);
+            if (header == null || !header.startsWith(Y4M_MAGIC)) {
+                throw new IOException("Not a Y4M file: " + file);
+            }
+
+            int width = 0;
+            int height = 0;
+            int frameRate = DEFAULT_FRAME_RATE;
+            for (String param : header.substring(Y4M_MAGIC.length()).trim().split(" +")) {
+                if (param.isEmpty()) continue;
+                String value = param.substring(1);
+                switch (param.charAt(0)) {
+                    case 'W':
+                        width = Integer.parseInt(value);
+                        break;
+                    case 'H':
+                        height = Integer.parseInt(value);
+                        break;
+                    case 'F':
+                        String[] ratio = value.split(":");
+                        int den = Integer.parseInt(ratio[1]);
+                        if (den > 0) {
+                            frameRate = Math.round((float) Integer.parseInt(ratio[0]) / den);
+                        }
+                        break;
+                    case 'C':
+                        if (!isY4M420(value)) {
+                            throw new IOException("Unsupported Y4M colorspace: C" + value +
+                                    ", only 8-bit 4:2:0 (C420, C420jpeg, C420paldv or C420mpeg2)" +
+                                    " can be replayed");
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+            if (width <= 0 || height <= 0) {
+                throw new IOException("No frame size in Y4M header: " + header);
+            }
+
+            // Every frame has its own header line, whose
+            // length may vary with its parameters.
+            int frameSize = VideoFramePlanes.packedSize(width, height);
+            long[] offsets = new long[16];
+            int count = 0;
+            long position = header.length() + 1;
+            while (position < size) {
+                String frameHeader = readLine(channel, position);
+                if (frameHeader == null || !frameHeader.startsWith(Y4M_FRAME)) {
+                    throw new IOException("Bad Y4M frame header at " + position);
+                }
+
+                long offset = position + frameHeader.length() + 1;
+                if (offset + frameSize > size) {
+                    LogUtil.w(TAG, "Y4M file ends with a truncated frame: " + file);
+                    break;
+                }
+                if (count == offsets.length) {
+                    offsets = Arrays.copyOf(offsets, count * 2);
+                }
+                offsets[count++] = offset;
+                position = offset + frameSize;
+            }
+
+            if (count == 0) {
+                throw new IOException("No complete frame in " + file);
+            }
+            return new FileVideoProducer(file, width, height, VideoFramePlanes.LAYOUT_I420,
+                    frameRate, Arrays.copyOf(offsets, count));
+        }
+    }
+
+    /**
+     * The 8-bit 4:2:0 colorspaces, which only differ in
+     * where the chroma is sited. Deeper ones like 420p10
+     * have 2 bytes per sample.
+     */
+    private static boolean isY4M420(String colorspace) {
+        switch (colorspace) {
+            case "420":
+            case "420jpeg":
+            case "420paldv":
+            case "420mpeg2":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return the line from the position without the line
+     * feed, or null if there is no line feed in reach.
+     */
+    private static String readLine(FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(MAX_Y4M_HEADER_LENGTH);
+        while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) > 0) {
+            // Read until the buffer is full or the file ends
+        }
+
+        for (int i = 0; i < buffer.position(); i++) {
+            if (buffer.get(i) == '\n') {
+                return new String(buffer.array(), 0, i, Charset.forName("US-ASCII"));
+            }
+        }
+        return null;
+    }
+
+    public VideoCaptureFormat getFormat() {
+        return mFormat.copy();
+    }
+
+    public int getFrameCount() {
+        return mFrameOffsets.length;
+    }
+
+    /**
+     * @param frameRate the rate to push frames at, or 0
+     *                  to push as fast as possible
+     */
+    public void setFrameRate(int frameRate) {
+        if (frameRate < 0) {
+            throw new IllegalArgumentException("Invalid frame rate: " + frameRate);
+        }
+        mFrameRate = frameRate;
+    }
+
+    public void setLooping(boolean looping) {
+        mLooping = looping;
+    }
+
+    public void setReplayListener(ReplayListener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Start replaying from the first frame on the replay
+     * thread. The producer should be connected to a
+     * channel first, or the frames are discarded.
+     */
+    public synchronized void start() {
+        if (mThread != null) {
+            return;
+        }
+
+        mRunning = true;
+        mThread = new Thread(this::replay, TAG);
+        mThread.start();
+    }
+
+    /**
+     * Blocks until it is guaranteed that no more frames
+     * are pushed.
+     */
+    public synchronized void stop() {
+        if (mThread == null) {
+            return;
+        }
+
+        mRunning = false;
+        LockSupport.unpark(mThread);
+        try {
+            mThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        mThread = null;
+    }
+
+    public boolean isRunning() {
+        return mRunning;
+    }
+
+    private void replay() {
+        LogUtil.i(TAG, "replay " + mFile + " " + mFormat);
+        long pushed = 0;
+        boolean ended = false;
+
+        try (RandomAccessFile raf = new RandomAccessFile(mFile, "r")) {
+            FileChannel channel = raf.getChannel();
+            int index = 0;
+            int pacedRate = 0;
+            long pacingStartNs = 0;
+            long pacedCount = 0;
+
+            while (mRunning) {
+                if (index == mFrameOffsets.length) {
+                    if (!mLooping) {
+                        ended = true;
+                        break;
+                    }
+                    index = 0;
+                }
+
+                int frameRate = mFrameRate;
+                if (frameRate > 0) {
+                    long now = FrameTimestamps.now();
+                    if (frameRate != pacedRate) {
+                        pacedRate = frameRate;
+                        pacingStartNs = now;
+                        pacedCount = 0;
+                    }
+
+                    long dueNs = pacingStartNs + pacedCount * 1000000000L / frameRate;
+                    if (now - dueNs > MAX_PACING_DELAY_NS) {
+                        pacingStartNs = now;
+                        pacedCount = 0;
+                        dueNs = now;
+                    }
+
+                    while (mRunning && (now = FrameTimestamps.now()) < dueNs) {
+                        LockSupport.parkNanos(dueNs - now);
+                    }
+                    if (!mRunning) break;
+                    pacedCount++;
+                } else {
+                    pacedRate = 0;
+                }
+
+                pushFrame(getPlanes(channel, index++));
+                pushed++;
+            }
+        } catch (IOException e) {
+            LogUtil.e(TAG, "replay failed: " + e);
+        } finally {
+            mWindow = null;
+            mWindowPlanes = null;
+            mRunning = false;
+        }
+
+        ReplayListener listener = mListener;
+        if (ended && listener != null) {
+            listener.onReplayEnd(pushed);
+        }
+    }
+
+    private void pushFrame(VideoFramePlanes planes) {
+        VideoCaptureFrame frame = mFramePool.obtain();
+        frame.set(mFormat, null, -1, null, planes,
+                System.currentTimeMillis(), FrameTimestamps.now(), 0, false);
+        pushVideoFrame(frame);
+
+        // The producer has taken its own reference
+        frame.release();
+    }
+
+    private VideoFramePlanes getPlanes(FileChannel channel, int index) throws IOException {
+        if (mWindow == null || index < mWindowFirstFrame ||
+                index >= mWindowFirstFrame + mWindowPlanes.length) {
+            mapWindow(channel, index);
+        }
+
+        int slot = index - mWindowFirstFrame;
+        VideoFramePlanes planes = mWindowPlanes[slot];
+        if (planes == null) {
+            ByteBuffer data = mWindow.duplicate();
+            data.position((int) (mFrameOffsets[index] - mFrameOffsets[mWindowFirstFrame]));
+            planes = mLayout == VideoFramePlanes.LAYOUT_NV21 ?
+                    VideoFramePlanes.wrapNV21(data, mFormat.getWidth(), mFormat.getHeight()) :
+                    VideoFramePlanes.wrapI420(data, mFormat.getWidth(), mFormat.getHeight());
+            mWindowPlanes[slot] = planes;
+        }
+        return planes;
+    }
+
+    /**
+     * Map the frames from the first one that fit in a
+     * window, or only the first frame if it does not.
+     * The previous mapping is unmapped by the garbage
+     * collector when no frame holds its planes anymore.
+     */
+    private void mapWindow(FileChannel channel, int first) throws IOException {
+        long start = mFrameOffsets[first];
+        int last = first;
+        while (last + 1 < mFrameOffsets.length &&
+                mFrameOffsets[last + 1] + mFrameSize - start <= MAP_WINDOW_BYTES) {
+            last++;
+        }
+
+        long length = mFrameOffsets[last] + mFrameSize - start;
+        mWindow = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+        mWindowFirstFrame = first;
+        mWindowPlanes = new VideoFramePlanes[last - first + 1];
+    }
+
+    @Override
+    protected void onRegisterMetrics(PipelineMetrics metrics, String name) {
+        metrics.setGauge(name + ".frame_pool.allocated", mFramePool::getAllocatedCount);
+        metrics.setGauge(name + ".frame_pool.free", mFramePool::getFreeCount);
+    }
+
+    @Override
+    public void disconnect() {
+        stop();
+        super.disconnect();
+    }
+}
@@ -0,0 +1,97 @@
+package io.agora.capture.video.camera;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A reference-counted byte buffer that holds the raw
+ * image data of captured frames.
+ * A buffer is obtained from a FrameBufferPool with one
+ * reference owned by the caller. Every party that needs
+ * the data beyond the current call should retain the
+ * buffer, and release it when done. The buffer returns
+ * to its pool when the last reference is released, and
+ * its content must not be accessed after that.
+ * A buffer can also wrap memory owned by others, like
+ * camera images, in which case there is no byte array
+ * and the owner is notified by the recycler instead.
+ */
+public class FrameBuffer {
+    public interface Recycler {
+        /**
+         * Called when the last reference of the buffer is
+         * released, on the thread that releases it.
+         */
+        void recycle(FrameBuffer buffer);
+    }
+
+    private final byte[] mData;
+    private final Recycler mRecycler;
+    private final AtomicInteger mRefCount = new AtomicInteger(0);
+
+    FrameBuffer(FrameBufferPool pool, int size) {
+        mRecycler = pool;
+        mData = new byte[size];
+    }
+
+    /**
+     * Wrap the memory of another owner, the buffer holds
+     * one reference of the caller when created.
+     * @param recycler notified when the memory can be
+     *                 given back to the owner.
+     */
+    public FrameBuffer(Recycler recycler) {
+        mRecycler = recycler;
+        mData = null;
+        reset();
+    }
+
+    /**
+     * @return the byte array of a pooled buffer, or null if
+     * this buffer wraps memory that is not a Java array.
+     */
+    public byte[] data() {
+        return mData;
+    }
+
+    public int size() {
+        return mData != null ? mData.length : 0;
+    }
+
+    public int refCount() {
+        return mRefCount.get();
+    }
+
+    public FrameBuffer retain() {
+        while (true) {
+            int count = mRefCount.get();
+            if (count <= 0) {
+                throw new IllegalStateException("Retain a frame buffer that has been released");
+            }
+            if (mRefCount.compareAndSet(count, count + 1)) {
+                return this;
+            }
+        }
+    }
+
+    /**
+     * @return true if this is the last reference and the
+     * buffer has been returned to the pool.
+     */
+    public boolean release() {
+        int count = mRefCount.decrementAndGet();
+        if (count < 0) {
+            mRefCount.incrementAndGet();
+            throw new IllegalStateException("Release a frame buffer more times than retained");
+        }
+
+        if (count == 0) {
+            if (mRecycler != null) mRecycler.recycle(this);
+            return true;
+        }
+        return false;
+    }
+
+    void reset() {
+        mRefCount.set(1);
+    }
+}
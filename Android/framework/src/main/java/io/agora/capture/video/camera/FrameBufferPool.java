@@ -0,0 +1,78 @@
+package io.agora.capture.video.camera;
+
+import java.util.ArrayDeque;
+
+/**
+ * Pool of frame buffers of one size. Buffers of other
+ * sizes are dropped once the requested size changes,
+ * so the pool can be kept across camera reallocation
+ * and switching without allocating in steady state.
+ * Buffers are handed out with one reference, and come
+ * back automatically when fully released.
+ */
+public class FrameBufferPool implements FrameBuffer.Recycler {
+    private final int mMaxPooledCount;
+    private final ArrayDeque<FrameBuffer> mFreeBuffers = new ArrayDeque<>();
+    private int mBufferSize;
+    private int mAllocatedCount;
+
+    /**
+     * @param maxPooledCount the max number of idle buffers
+     *                       kept for reuse. Buffers released
+     *                       when the pool is full are left
+     *                       to garbage collection.
+     */
+    public FrameBufferPool(int maxPooledCount) {
+        mMaxPooledCount = maxPooledCount;
+    }
+
+    /**
+     * Get a buffer of exactly the given size, which is
+     * reused if there is one idle in the pool.
+     * @param size buffer size in bytes
+     * @return a buffer holding one reference of the caller
+     */
+    public synchronized FrameBuffer obtain(int size) {
+        if (size != mBufferSize) {
+            mFreeBuffers.clear();
+            mBufferSize = size;
+        }
+
+        FrameBuffer buffer = mFreeBuffers.pollFirst();
+        if (buffer == null) {
+            buffer = new FrameBuffer(this, size);
+            mAllocatedCount++;
+        }
+        buffer.reset();
+        return buffer;
+    }
+
+    @Override
+    public synchronized void recycle(FrameBuffer buffer) {
+        if (buffer.size() == mBufferSize &&
+                mFreeBuffers.size() < mMaxPooledCount) {
+            mFreeBuffers.offerFirst(buffer);
+        }
+    }
+
+    public synchronized int getBufferSize() {
+        return mBufferSize;
+    }
+
+    public synchronized int getFreeCount() {
+        return mFreeBuffers.size();
+    }
+
+    /**
+     * @return the number of buffers ever created by this
+     * pool, which keeps unchanged in steady state.
+     */
+    public synchronized int getAllocatedCount() {
+        return mAllocatedCount;
+    }
+
+    public synchronized void clear() {
+        mFreeBuffers.clear();
+        mBufferSize = 0;
+    }
+}
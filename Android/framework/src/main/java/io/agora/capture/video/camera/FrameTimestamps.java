@@ -0,0 +1,111 @@
+package io.agora.capture.video.camera;
+
+/**
+ * Monotonic timestamps of a frame at each stage of the
+ * pipeline, in nanoseconds of the System.nanoTime() time
+ * base, which is also that of camera sensor timestamps.
+ * A stage not reached by the frame has timestamp 0.
+ * Stages are stamped by the thread that owns the frame
+ * at that moment, and read after the frame is handed
+ * over, so no synchronization is needed.
+ */
+public final class FrameTimestamps {
+    /** Sensor exposure, or when the producer got the frame */
+    public static final int CAPTURE = 0;
+    /** The producer pushes the frame to the channel */
+    public static final int PRODUCER_PUSH = 1;
+    /** The channel thread starts with the frame */
+    public static final int CHANNEL_DEQUEUE = 2;
+    /** The preprocessor finishes */
+    public static final int PREPROCESS = 3;
+    /** The watermark is drawn */
+    public static final int WATERMARK = 4;
+    /** The frame is rotated, ready for consumers */
+    public static final int ROTATE = 5;
+    public static final int STAGE_COUNT = 6;
+
+    private final long[] mStages = new long[STAGE_COUNT];
+
+    // When each consumer finishes, in consuming order.
+    // Grown rarely, only when more consumers are attached.
+    private long[] mConsumers = new long[4];
+    private int mConsumerCount;
+
+    public static long now() {
+        return System.nanoTime();
+    }
+
+    public static String toString(int stage) {
+        switch (stage) {
+            case CAPTURE: return "capture";
+            case PRODUCER_PUSH: return "producer_push";
+            case CHANNEL_DEQUEUE: return "channel_dequeue";
+            case PREPROCESS: return "preprocess";
+            case WATERMARK: return "watermark";
+            case ROTATE: return "rotate";
+            default: return "undefined_stage";
+        }
+    }
+
+    public void mark(int stage) {
+        mStages[stage] = now();
+    }
+
+    public void set(int stage, long timestampNs) {
+        mStages[stage] = timestampNs;
+    }
+
+    public long get(int stage) {
+        return mStages[stage];
+    }
+
+    /**
+     * @return the time from capture to the stage, or -1
+     * if either is not stamped.
+     */
+    public long getLatencyNs(int stage) {
+        long capture = mStages[CAPTURE];
+        long time = mStages[stage];
+        return capture == 0 || time == 0 ? -1 : time - capture;
+    }
+
+    public void markConsumer() {
+        if (mConsumerCount == mConsumers.length) {
+            long[] consumers = new long[mConsumers.length * 2];
+            System.arraycopy(mConsumers, 0, consumers, 0, mConsumerCount);
+            mConsumers = consumers;
+        }
+        mConsumers[mConsumerCount++] = now();
+    }
+
+    public int getConsumerCount() {
+        return mConsumerCount;
+    }
+
+    /**
+     * @return when the consumer of the index in consuming
+     * order finished the frame
+     */
+    public long getConsumer(int index) {
+        if (index < 0 || index >= mConsumerCount) {
+            throw new IndexOutOfBoundsException("No consumer timestamp at " + index);
+        }
+        return mConsumers[index];
+    }
+
+    public void copyFrom(FrameTimestamps other) {
+        System.arraycopy(other.mStages, 0, mStages, 0, STAGE_COUNT);
+        if (mConsumers.length < other.mConsumerCount) {
+            mConsumers = new long[other.mConsumers.length];
+        }
+        System.arraycopy(other.mConsumers, 0, mConsumers, 0, other.mConsumerCount);
+        mConsumerCount = other.mConsumerCount;
+    }
+
+    void reset() {
+        for (int i = 0; i < STAGE_COUNT; i++) {
+            mStages[i] = 0;
+        }
+        mConsumerCount = 0;
+    }
+}
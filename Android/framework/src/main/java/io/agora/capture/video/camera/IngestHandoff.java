@@ -0,0 +1,96 @@
+package io.agora.capture.video.camera;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hands the frames ready on the ingest thread over to
+ * the channel thread. Only the latest frame is kept, if
+ * the channel has not taken the previous one yet, the
+ * previous one is dropped.
+ * The holders of the frames are pooled, so the hand-off
+ * does not allocate in steady state.
+ */
+class IngestHandoff {
+    interface Receiver {
+        /**
+         * Called on the channel thread. The buffer is
+         * released after the call returns.
+         */
+        void onFrame(FrameBuffer buffer, VideoFramePlanes planes, long timestampNs);
+    }
+
+    // One waiting, one being delivered and one being
+    // offered by the ingest thread.
+    private static final int POOL_SIZE = 3;
+
+    private static class Holder {
+        FrameBuffer buffer;
+        VideoFramePlanes planes;
+        long timestampNs;
+    }
+
+    private final AtomicReference<Holder> mPending = new AtomicReference<>();
+    private final ArrayBlockingQueue<Holder> mFreeHolders = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    IngestHandoff() {
+        for (int i = 0; i < POOL_SIZE; i++) {
+            mFreeHolders.offer(new Holder());
+        }
+    }
+
+    /**
+     * Called on the ingest thread, the reference of the
+     * buffer is taken over.
+     * @return true if there was no frame waiting, and a
+     * delivery should be scheduled. Otherwise the waiting
+     * frame is dropped and the scheduled delivery takes
+     * this one instead.
+     */
+    boolean offer(FrameBuffer buffer, VideoFramePlanes planes, long timestampNs) {
+        Holder holder = mFreeHolders.poll();
+        if (holder == null) holder = new Holder();
+        holder.buffer = buffer;
+        holder.planes = planes;
+        holder.timestampNs = timestampNs;
+
+        Holder dropped = mPending.getAndSet(holder);
+        if (dropped != null) {
+            recycle(dropped);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Called on the channel thread.
+     * @return false if there was no frame waiting
+     */
+    boolean deliver(Receiver receiver) {
+        Holder holder = mPending.getAndSet(null);
+        if (holder == null) return false;
+
+        try {
+            receiver.onFrame(holder.buffer, holder.planes, holder.timestampNs);
+        } finally {
+            recycle(holder);
+        }
+        return true;
+    }
+
+    /**
+     * Drops the waiting frame, if any.
+     */
+    void clear() {
+        Holder holder = mPending.getAndSet(null);
+        if (holder != null) recycle(holder);
+    }
+
+    private void recycle(Holder holder) {
+        FrameBuffer buffer = holder.buffer;
+        holder.buffer = null;
+        holder.planes = null;
+        mFreeHolders.offer(holder);
+        buffer.release();
+    }
+}
@@ -0,0 +1,127 @@
+package io.agora.capture.video.camera;
+
+import java.util.Locale;
+
+/**
+ * How long each phase of starting capture took, from
+ * startCapture until the first captured frame.
+ * Phases may overlap: the camera is opened while the
+ * channel sets up GL if capture starts before the channel
+ * is ready. The phases of the channel are before the
+ * origin if the channel was ready when capture started.
+ * @see VideoCapture.VideoCaptureStateListener#onStartupTimings(StartupTimings)
+ */
+public final class StartupTimings {
+    // EGL context and the offscreen surface
+    public static final int PHASE_EGL = 0;
+
+    // Programs of the rotate and watermark processors
+    public static final int PHASE_PROGRAMS = 1;
+
+    // Opening the camera and negotiating its parameters
+    public static final int PHASE_CAMERA_OPEN = 2;
+
+    // Creating the preview texture and requesting preview
+    public static final int PHASE_PREVIEW_START = 3;
+
+    // Until the first frame, including the frames skipped
+    // while the camera settles
+    public static final int PHASE_FIRST_FRAME = 4;
+
+    public static final int PHASE_COUNT = 5;
+
+    private static final String[] PHASE_NAMES = {
+            "egl", "programs", "camera_open", "preview_start", "first_frame"
+    };
+
+    private final long mOriginNs;
+    private final long[] mStartNs = new long[PHASE_COUNT];
+    private final long[] mEndNs = new long[PHASE_COUNT];
+    private boolean mCameraOpenedEarly;
+
+    StartupTimings() {
+        mOriginNs = System.nanoTime();
+    }
+
+    synchronized void set(int phase, long startNs, long endNs) {
+        mStartNs[phase] = startNs;
+        mEndNs[phase] = endNs;
+    }
+
+    synchronized void begin(int phase) {
+        mStartNs[phase] = System.nanoTime();
+    }
+
+    synchronized void end(int phase) {
+        mEndNs[phase] = System.nanoTime();
+    }
+
+    /**
+     * Ends the first frame phase, which starts once the
+     * preview is requested.
+     */
+    synchronized void markFirstFrame() {
+        long startNs = mEndNs[PHASE_PREVIEW_START];
+        if (startNs == 0) startNs = mStartNs[PHASE_PREVIEW_START];
+        if (startNs == 0) startNs = mOriginNs;
+        mStartNs[PHASE_FIRST_FRAME] = startNs;
+        mEndNs[PHASE_FIRST_FRAME] = System.nanoTime();
+    }
+
+    synchronized void setCameraOpenedEarly(boolean early) {
+        mCameraOpenedEarly = early;
+    }
+
+    public static String getPhaseName(int phase) {
+        return PHASE_NAMES[phase];
+    }
+
+    /**
+     * @return whether the phase has been timed
+     */
+    public synchronized boolean hasPhase(int phase) {
+        return mStartNs[phase] != 0 && mEndNs[phase] != 0;
+    }
+
+    /**
+     * @return when the phase started, relative to the call
+     * of startCapture, which is negative if it was before
+     */
+    public synchronized long getStartNs(int phase) {
+        return mStartNs[phase] - mOriginNs;
+    }
+
+    public synchronized long getDurationNs(int phase) {
+        return hasPhase(phase) ? mEndNs[phase] - mStartNs[phase] : 0;
+    }
+
+    /**
+     * @return the time from startCapture to the first
+     * captured frame
+     */
+    public synchronized long getTimeToFirstFrameNs() {
+        return hasPhase(PHASE_FIRST_FRAME) ? mEndNs[PHASE_FIRST_FRAME] - mOriginNs : 0;
+    }
+
+    /**
+     * @return whether the camera was opened while the
+     * channel was setting up GL
+     */
+    public synchronized boolean isCameraOpenedEarly() {
+        return mCameraOpenedEarly;
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder builder = new StringBuilder("StartupTimings{");
+        builder.append(String.format(Locale.US, "first_frame_at=%.1fms",
+                getTimeToFirstFrameNs() / 1e6));
+        for (int phase = 0; phase < PHASE_COUNT; phase++) {
+            if (hasPhase(phase)) {
+                builder.append(String.format(Locale.US, ", %s=%.1fms@%.1fms",
+                        PHASE_NAMES[phase], getDurationNs(phase) / 1e6, getStartNs(phase) / 1e6));
+            }
+        }
+        return builder.append(", early_open=").append(mCameraOpenedEarly).append('}').toString();
+    }
+}
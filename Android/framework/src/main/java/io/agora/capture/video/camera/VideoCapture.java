@@ -10,13 +10,18 @@ import android.content.Context;
 import android.graphics.SurfaceTexture;
 import android.opengl.EGLContext;
 import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.Looper;
 
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 
+import io.agora.capture.framework.metrics.LatencyHistogram;
+import io.agora.capture.framework.metrics.PipelineMetrics;
 import io.agora.capture.framework.modules.producers.VideoProducer;
 import io.agora.capture.framework.util.FpsUtil;
 import io.agora.capture.framework.util.LogUtil;
+import io.agora.capture.framework.util.ThreadUtils;
 
 /**
  * Video Capture Device base class, defines a set of methods that native code
@@ -106,9 +111,23 @@ public abstract class VideoCapture extends VideoProducer {
         void onCameraClosed();
 
         FrameRateRange onSelectCameraFpsRange(List<FrameRateRange> supportFpsRange, FrameRateRange selectedRange);
+
+        /**
+         * Called with the first captured frame after
+         * startCapture, with how long each phase of
+         * starting capture took.
+         */
+        default void onStartupTimings(StartupTimings timings) {
+
+        }
     }
 
     private static final String TAG = VideoCapture.class.getSimpleName();
+    private static final int MAX_POOLED_FRAME_BUFFERS = 6;
+    private static final int MAX_POOLED_FRAMES = 6;
+    // Sensor timestamps older than this are not believed
+    // to be of the same frame, or in the same time base.
+    private static final long MAX_SENSOR_DELAY_NS = 1000000000L;
 
     // The angle (0, 90, 180, 270) that the image needs to be rotated to show in
     // the display's native orientation.
@@ -119,12 +138,31 @@ public abstract class VideoCapture extends VideoProducer {
     boolean pInvertDeviceOrientationReadings;
 
     VideoCaptureFormat pCaptureFormat;
+    // Of the camera allocated last
+    volatile CameraCapabilities pCapabilities;
     Context pContext;
     EGLContext pEGLContext;
 
     int pPreviewTextureId = -1;
     SurfaceTexture pPreviewSurfaceTexture;
-    byte[] pYUVImage;
+    FrameBuffer pYUVBuffer;
+
+    // Set when the image memory is exposed as planes
+    // directly, and pYUVBuffer has no byte array then.
+    VideoFramePlanes pYUVPlanes;
+
+    // Sensor timestamp of the image in pYUVBuffer, or 0
+    // if the camera gives none.
+    long pYUVTimestampNs;
+
+    // Added to sensor timestamps to convert them to the
+    // System.nanoTime() time base.
+    long pSensorTimeOffsetNs;
+
+    // Image buffers are reused across allocate() and
+    // switching camera as long as the frame size keeps.
+    final FrameBufferPool pFrameBufferPool = new FrameBufferPool(MAX_POOLED_FRAME_BUFFERS);
+    final VideoCaptureFramePool pFramePool = new VideoCaptureFramePool(MAX_POOLED_FRAMES);
 
     boolean mNeedsPreview;
     int mPreviewWidth;
@@ -137,10 +175,28 @@ public abstract class VideoCapture extends VideoProducer {
     boolean cameraSteady;
     boolean firstFrame;
 
-    VideoCaptureStateListener stateListener;
+    volatile VideoCaptureStateListener stateListener;
 
     private FpsUtil fpsUtil;
 
+    private volatile boolean mFastSwitchEnabled;
+    // When the current switch started, until the first
+    // frame of the new camera
+    private volatile long mSwitchStartNs;
+    private volatile LatencyHistogram mSwitchLatency;
+
+    // Opens and closes cameras off the channel thread, and
+    // gets the callbacks of the cameras opened on it.
+    // Only accessed on the channel thread, or before the
+    // channel is ready.
+    private HandlerThread mCameraThread;
+    private Handler mCameraHandler;
+    private CountDownLatch mEarlyAllocation;
+    private volatile boolean mEarlyAllocated;
+
+    private volatile StartupTimings mStartupTimings;
+    private volatile LatencyHistogram mTimeToFirstFrame;
+
     VideoCapture(Context context) {
         pContext = context;
     }
@@ -186,11 +242,154 @@ public abstract class VideoCapture extends VideoProducer {
 
 
     void deallocate() {
+        // Waits for what is posted to the camera thread
+        quitCameraThread();
+        releaseFpsUtil();
+        mStartupTimings = null;
+        deallocate(true);
+    }
+
+    Handler cameraHandler() {
+        if (mCameraThread == null) {
+            mCameraThread = new HandlerThread(TAG + "-camera");
+            mCameraThread.start();
+            mCameraHandler = new Handler(mCameraThread.getLooper());
+        }
+        return mCameraHandler;
+    }
+
+    private void quitCameraThread() {
+        if (mCameraThread == null) {
+            return;
+        }
+        mCameraThread.quitSafely();
+        ThreadUtils.joinUninterruptibly(mCameraThread);
+        mCameraThread = null;
+        mCameraHandler = null;
+    }
+
+    /**
+     * Set before starting capture, to time its phases
+     * until the first frame.
+     */
+    void setStartupTimings(StartupTimings timings) {
+        mStartupTimings = timings;
+    }
+
+    /**
+     * @return the capabilities of the camera allocated
+     * last, or null if none has been
+     */
+    CameraCapabilities getCapabilities() {
+        return pCapabilities;
+    }
+
+    /**
+     * Allocates on the camera thread, so that opening the
+     * camera overlaps the channel setting up GL. The
+     * channel thread must then call allocateOrAwait.
+     * @return false if an allocation is started already
+     */
+    boolean allocateEarly(final int width, final int height, final int frameRate,
+                          final int facing, StartupTimings timings) {
+        if (mEarlyAllocation != null) {
+            return false;
+        }
+        final CountDownLatch done = new CountDownLatch(1);
+        mEarlyAllocation = done;
+        mStartupTimings = timings;
+        cameraHandler().post(() -> {
+            mEarlyAllocated = allocateTimed(width, height, frameRate, facing);
+            done.countDown();
+        });
+        return true;
+    }
+
+    /**
+     * Waits for the allocation started by allocateEarly,
+     * or allocates if there is none.
+     */
+    boolean allocateOrAwait(int width, int height, int frameRate, int facing) {
+        CountDownLatch early = mEarlyAllocation;
+        if (early == null) {
+            return allocateTimed(width, height, frameRate, facing);
+        }
+        mEarlyAllocation = null;
+        ThreadUtils.awaitUninterruptibly(early);
+        return mEarlyAllocated;
+    }
+
+    private boolean allocateTimed(int width, int height, int frameRate, int facing) {
+        StartupTimings timings = mStartupTimings;
+        if (timings != null) timings.begin(StartupTimings.PHASE_CAMERA_OPEN);
+        boolean allocated = allocate(width, height, frameRate, facing);
+        if (timings != null) timings.end(StartupTimings.PHASE_CAMERA_OPEN);
+        return allocated;
+    }
+
+    /**
+     * Starts capture, timing the preview request as a
+     * phase of startup.
+     */
+    void startCaptureTimed() {
+        StartupTimings timings = mStartupTimings;
+        if (timings != null) timings.begin(StartupTimings.PHASE_PREVIEW_START);
+        startCaptureMaybeAsync(false);
+        if (timings != null) timings.end(StartupTimings.PHASE_PREVIEW_START);
+    }
+
+    private void releaseFpsUtil() {
         if (fpsUtil != null) {
             fpsUtil.release();
             fpsUtil = null;
         }
-        deallocate(true);
+    }
+
+    /**
+     * In fast switch mode, the capture switches camera
+     * without releasing the preview texture and buffers,
+     * if it can, and the last frame stays until the new
+     * camera gives its first one.
+     */
+    void setFastSwitchEnabled(boolean enabled) {
+        mFastSwitchEnabled = enabled;
+    }
+
+    boolean isFastSwitchEnabled() {
+        return mFastSwitchEnabled;
+    }
+
+    /**
+     * Switch to the camera of the facing, by allocating
+     * capture again or by a fast switch. The time until
+     * the first frame of the new camera is recorded by
+     * the switch latency metric of the producer.
+     */
+    void switchCamera(int width, int height, int frameRate, int facing) {
+        mSwitchStartNs = System.nanoTime();
+        if (mFastSwitchEnabled) {
+            // Frames come from the thread the new camera
+            // is opened on, which watches them instead.
+            releaseFpsUtil();
+            if (switchCameraFast(width, height, frameRate, facing)) {
+                return;
+            }
+        }
+
+        deallocate();
+        allocate(width, height, frameRate, facing);
+        startCaptureMaybeAsync(false);
+    }
+
+    /**
+     * Switch without releasing the preview texture and
+     * buffers, closing and opening cameras off the calling
+     * thread.
+     * @return false if the capture cannot now, to switch
+     * by allocating again
+     */
+    protected boolean switchCameraFast(int width, int height, int frameRate, int facing) {
+        return false;
     }
 
     protected abstract int getNumberOfCameras();
@@ -204,17 +403,20 @@ public abstract class VideoCapture extends VideoProducer {
     }
 
     void onFrameAvailable() {
-        VideoCaptureFrame frame = new VideoCaptureFrame(
-                // The format may be changed during processing.
-                // Create a copy of the format config to avoid
-                // the original format instance from being
-                // modified unexpectedly.
-                pCaptureFormat.copy(),
+        VideoCaptureFrame frame = pFramePool.obtain();
+        // The format may be changed during processing.
+        // The frame keeps a copy of the format config to
+        // avoid the original format instance from being
+        // modified unexpectedly.
+        frame.set(pCaptureFormat,
                 pPreviewSurfaceTexture,
                 pPreviewTextureId,
-                pYUVImage,
-                null,
+                pYUVBuffer,
+                pYUVPlanes,
                 System.currentTimeMillis(),
+                pYUVTimestampNs > 0 ?
+                        pYUVTimestampNs + pSensorTimeOffsetNs :
+                        FrameTimestamps.now(),
                 pCameraNativeOrientation,
                 pInvertDeviceOrientationReadings);
 
@@ -226,11 +428,67 @@ public abstract class VideoCapture extends VideoProducer {
 
         if (firstFrame) {
             if (stateListener != null) {
-                stateListener.onFirstCapturedFrame(frame.format.getWidth(), frame.format.getHeight());
+                // The frame format may be being changed
+                // by the channel thread now.
+                stateListener.onFirstCapturedFrame(pCaptureFormat.getWidth(), pCaptureFormat.getHeight());
             }
             LogUtil.i(TAG, "first capture frame detected");
             firstFrame = false;
+
+            long switchStartNs = mSwitchStartNs;
+            LatencyHistogram switchLatency = mSwitchLatency;
+            if (switchStartNs != 0 && switchLatency != null) {
+                switchLatency.record(System.nanoTime() - switchStartNs);
+            }
+            mSwitchStartNs = 0;
+
+            StartupTimings timings = mStartupTimings;
+            if (timings != null) {
+                mStartupTimings = null;
+                timings.markFirstFrame();
+                LatencyHistogram timeToFirstFrame = mTimeToFirstFrame;
+                if (timeToFirstFrame != null) {
+                    timeToFirstFrame.record(timings.getTimeToFirstFrameNs());
+                }
+                LogUtil.i(TAG, "startup " + timings);
+                if (stateListener != null) {
+                    stateListener.onStartupTimings(timings);
+                }
+            }
         }
+
+        // The producer has taken its own reference
+        frame.release();
+    }
+
+    /**
+     * The texture image is latched on the channel thread,
+     * its sensor timestamp replaces the capture time if
+     * it is earlier, as when the camera gives no sensor
+     * timestamp with the image data.
+     */
+    @Override
+    protected void onTextureUpdated(VideoCaptureFrame frame) {
+        long sensorNs = frame.surfaceTexture.getTimestamp();
+        if (sensorNs <= 0) {
+            return;
+        }
+
+        long captureNs = sensorNs + pSensorTimeOffsetNs;
+        long stampedNs = frame.timestamps.get(FrameTimestamps.CAPTURE);
+        if (captureNs < stampedNs && stampedNs - captureNs < MAX_SENSOR_DELAY_NS) {
+            frame.timestamps.set(FrameTimestamps.CAPTURE, captureNs);
+        }
+    }
+
+    @Override
+    protected void onRegisterMetrics(PipelineMetrics metrics, String name) {
+        metrics.setGauge(name + ".frame_pool.allocated", pFramePool::getAllocatedCount);
+        metrics.setGauge(name + ".frame_pool.free", pFramePool::getFreeCount);
+        metrics.setGauge(name + ".buffer_pool.allocated", pFrameBufferPool::getAllocatedCount);
+        metrics.setGauge(name + ".buffer_pool.free", pFrameBufferPool::getFreeCount);
+        mSwitchLatency = metrics.latency(name + ".switch_latency");
+        mTimeToFirstFrame = metrics.latency(name + ".time_to_first_frame");
     }
 
     @Override
@@ -21,7 +21,7 @@ import android.util.Log;
 import androidx.annotation.NonNull;
 
 import java.io.IOException;
-import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -47,6 +47,9 @@ public class VideoCaptureCamera
     private Camera mCamera;
     // Lock to mutually exclude execution of OnPreviewFrame() and {start/stop}Capture().
     private ReentrantLock mPreviewBufferLock = new ReentrantLock();
+    // Pooled buffers currently handed to the camera as
+    // preview callback buffers, keyed by their data.
+    private final IdentityHashMap<byte[], FrameBuffer> mCallbackBuffers = new IdentityHashMap<>();
     private final Object mCameraStateLock = new Object();
     private CaptureErrorCallback mErrorCallback = new CaptureErrorCallback();
     private volatile CameraState mCameraState = CameraState.STOPPED;
@@ -114,6 +117,37 @@ public class VideoCaptureCamera
         return Camera.getNumberOfCameras();
     }
 
+    private static int toConstantFacing(int facing) {
+        if (facing == Camera.CameraInfo.CAMERA_FACING_FRONT) {
+            return Constant.CAMERA_FACING_FRONT;
+        } else if (facing == Camera.CameraInfo.CAMERA_FACING_BACK) {
+            return Constant.CAMERA_FACING_BACK;
+        }
+        return Constant.CAMERA_FACING_INVALID;
+    }
+
+    private static CameraCapabilities queryCapabilities(String cameraId, Camera.CameraInfo info,
+                                                        Camera.Parameters parameters) {
+        List<Camera.Size> sizeList = parameters.getSupportedPreviewSizes();
+        int[] sizes = new int[sizeList != null ? sizeList.size() * 2 : 0];
+        for (int i = 0; i < sizes.length; i += 2) {
+            Camera.Size size = sizeList.get(i / 2);
+            sizes[i] = size.width;
+            sizes[i + 1] = size.height;
+        }
+
+        List<int[]> rangeList = parameters.getSupportedPreviewFpsRange();
+        int[] fpsRanges = new int[rangeList != null ? rangeList.size() * 2 : 0];
+        for (int i = 0; i < fpsRanges.length; i += 2) {
+            int[] range = rangeList.get(i / 2);
+            fpsRanges[i] = range[0];
+            fpsRanges[i + 1] = range[1];
+        }
+
+        return new CameraCapabilities(CameraCapabilities.API_CAMERA1, cameraId,
+                toConstantFacing(info.facing), info.orientation, false, 1, sizes, fpsRanges);
+    }
+
     VideoCaptureCamera(Context context) {
         super(context);
     }
@@ -134,22 +168,28 @@ public class VideoCaptureCamera
         }
 
         curCameraFacing = facing;
+        CameraCapabilityCache cache = CameraCapabilityCache.instance(pContext);
         Camera.CameraInfo info = new Camera.CameraInfo();
         int numCameras = getNumberOfCameras();
         for (int i = 0; i < numCameras; i++) {
-            try {
-                Camera.getCameraInfo(i, info);
-            } catch (Exception e) {
-                String message = "allocate: Camera.getCameraInfo: index=" + i + "\n" + e;
-                LogUtil.e(TAG, message);
-                handleCaptureError(ERROR_ALLOCATE, message);
-                return false;
-            }
-            if (curCameraFacing == Constant.CAMERA_FACING_FRONT && info.facing == Camera.CameraInfo.CAMERA_FACING_FRONT) {
-                mCameraId = i;
+            String id = String.valueOf(i);
+            CameraCapabilityCache.CameraInfo cached = cache.getCameraInfo(CameraCapabilities.API_CAMERA1, id);
+            int cameraFacing;
+            if (cached != null) {
+                cameraFacing = cached.facing;
+            } else {
+                try {
+                    Camera.getCameraInfo(i, info);
+                } catch (Exception e) {
+                    String message = "allocate: Camera.getCameraInfo: index=" + i + "\n" + e;
+                    LogUtil.e(TAG, message);
+                    handleCaptureError(ERROR_ALLOCATE, message);
+                    return false;
+                }
+                cameraFacing = toConstantFacing(info.facing);
+                cache.putCameraInfo(CameraCapabilities.API_CAMERA1, id, cameraFacing, info.orientation);
             }
-
-            if (curCameraFacing == Constant.CAMERA_FACING_BACK && info.facing == Camera.CameraInfo.CAMERA_FACING_BACK) {
+            if (cameraFacing != Constant.CAMERA_FACING_INVALID && curCameraFacing == cameraFacing) {
                 mCameraId = i;
             }
         }
@@ -170,15 +210,6 @@ public class VideoCaptureCamera
             return false;
         }
 
-        Camera.CameraInfo cameraInfo = getCameraInfo(mCameraId);
-        if (cameraInfo == null) {
-            camera.release();
-            String message = "allocate: getCameraInfo null";
-            LogUtil.e(TAG, message);
-            handleCaptureError(ERROR_ALLOCATE, message);
-            return false;
-        }
-
         // Making the texture transformation behaves
         // as the same as Camera2 api.
         try {
@@ -190,8 +221,6 @@ public class VideoCaptureCamera
             handleCaptureError(ERROR_ALLOCATE, message);
             return false;
         }
-        pCameraNativeOrientation = cameraInfo.orientation;
-        pInvertDeviceOrientationReadings = cameraInfo.facing == Camera.CameraInfo.CAMERA_FACING_FRONT;
 
         Camera.Parameters parameters = getCameraParameters(camera);
         if (parameters == null) {
@@ -202,10 +231,28 @@ public class VideoCaptureCamera
             return false;
         }
 
+        final String cameraId = String.valueOf(mCameraId);
+        CameraCapabilities capabilities = cache.get(CameraCapabilities.API_CAMERA1, cameraId);
+        if (capabilities == null) {
+            Camera.CameraInfo cameraInfo = getCameraInfo(mCameraId);
+            if (cameraInfo == null) {
+                camera.release();
+                String message = "allocate: getCameraInfo null";
+                LogUtil.e(TAG, message);
+                handleCaptureError(ERROR_ALLOCATE, message);
+                return false;
+            }
+            capabilities = queryCapabilities(cameraId, cameraInfo, parameters);
+            if (capabilities.hasFrameRateRanges()) {
+                cache.put(capabilities);
+            }
+        }
+        pCameraNativeOrientation = capabilities.orientation;
+        pInvertDeviceOrientationReadings = capabilities.facing == Constant.CAMERA_FACING_FRONT;
+
         // getSupportedPreviewFpsRange() returns a List with at least one
         // element, but when camera is in bad state, it can return null pointer.
-        List<int[]> listFpsRange = parameters.getSupportedPreviewFpsRange();
-        if (listFpsRange == null || listFpsRange.size() == 0) {
+        if (!capabilities.hasFrameRateRanges()) {
             camera.release();
 
             String message = "allocate: no fps range found";
@@ -213,11 +260,7 @@ public class VideoCaptureCamera
             handleCaptureError(ERROR_ALLOCATE, message);
             return false;
         }
-        final ArrayList<FrameRateRange> ranges =
-                new ArrayList<>(listFpsRange.size());
-        for (int[] range : listFpsRange) {
-            ranges.add(new FrameRateRange(range[0], range[1]));
-        }
+        final List<FrameRateRange> ranges = capabilities.getFrameRateRanges();
         // API fps ranges are scaled up x1000 to avoid floating point.
         int frameRateScaled = frameRate * 1000;
         FrameRateRange chosenRange =
@@ -235,19 +278,8 @@ public class VideoCaptureCamera
 
 
         // Calculate size.
-        List<Camera.Size> listCameraSize = parameters.getSupportedPreviewSizes();
-        int minDiff = Integer.MAX_VALUE;
-        int matchedWidth = width;
-        int matchedHeight = height;
-        for (Camera.Size size : listCameraSize) {
-            int diff = Math.abs(size.width - width) + Math.abs(size.height - height);
-            if (diff < minDiff && (size.width % 32 == 0)) {
-                minDiff = diff;
-                matchedWidth = size.width;
-                matchedHeight = size.height;
-            }
-        }
-        if (minDiff == Integer.MAX_VALUE) {
+        int sizeIndex = capabilities.findClosestSize(width, height);
+        if (sizeIndex == -1) {
             camera.release();
 
             String message = "allocate: " + "Couldn't find resolution close to (" + width + "x" + height + ")";
@@ -255,7 +287,10 @@ public class VideoCaptureCamera
             handleCaptureError(ERROR_ALLOCATE, message);
             return false;
         }
+        int matchedWidth = capabilities.getWidth(sizeIndex);
+        int matchedHeight = capabilities.getHeight(sizeIndex);
         LogUtil.d(TAG, "allocate: matched (" + matchedWidth +  " x " + matchedHeight + ")");
+        pCapabilities = capabilities;
 
         mPreviewWidth = matchedWidth;
         mPreviewHeight = matchedHeight;
@@ -273,6 +308,7 @@ public class VideoCaptureCamera
             parameters.setPreviewFpsRange(chosenFpsRange[0], chosenFpsRange[1]);
         } catch (Exception e) {
             camera.release();
+            cache.remove(CameraCapabilities.API_CAMERA1, cameraId);
             String message = "allocate: parameters.setPreviewFpsRange: " + e;
             LogUtil.e(TAG, message);
             handleCaptureError(ERROR_ALLOCATE, message);
@@ -294,6 +330,7 @@ public class VideoCaptureCamera
             camera.setParameters(parameters);
         } catch (Exception ex) {
             camera.release();
+            cache.remove(CameraCapabilities.API_CAMERA1, cameraId);
 
             String message = "allocate: setParameters error -- " + ex;
             LogUtil.e(TAG, message);
@@ -305,9 +342,13 @@ public class VideoCaptureCamera
 
         mExpectedFrameSize = pCaptureFormat.getWidth() * pCaptureFormat.getHeight()
                 * ImageFormat.getBitsPerPixel(pCaptureFormat.getPixelFormat()) / 8;
-        for (int i = 0; i < NUM_CAPTURE_BUFFERS; i++) {
-            byte[] buffer = new byte[mExpectedFrameSize];
-            camera.addCallbackBuffer(buffer);
+        mPreviewBufferLock.lock();
+        try {
+            for (int i = 0; i < NUM_CAPTURE_BUFFERS; i++) {
+                addPooledCallbackBuffer(camera);
+            }
+        } finally {
+            mPreviewBufferLock.unlock();
         }
 
         synchronized (mCameraStateLock) {
@@ -329,6 +370,10 @@ public class VideoCaptureCamera
             return;
         }
 
+        startPreviewOnTexture();
+    }
+
+    private void startPreviewOnTexture() {
         try {
             mCamera.setPreviewCallbackWithBuffer(this);
             mCamera.setPreviewTexture(pPreviewSurfaceTexture);
@@ -351,6 +396,53 @@ public class VideoCaptureCamera
         }
     }
 
+    /**
+     * The old camera is closed and the new one opened on the
+     * camera thread, which the new camera delivers preview
+     * frames to. Camera1 cannot open a camera before another
+     * is released on most devices, so both happen in turn
+     * while the channel keeps drawing.
+     * The preview texture and the callback buffers are kept
+     * for the new camera.
+     */
+    @Override
+    protected boolean switchCameraFast(final int width, final int height,
+                                       final int frameRate, final int facing) {
+        final Camera oldCamera;
+        synchronized (mCameraStateLock) {
+            if (mCameraState != CameraState.STARTED || mCamera == null ||
+                    pPreviewSurfaceTexture == null) {
+                return false;
+            }
+            oldCamera = mCamera;
+            mCamera = null;
+            mCameraState = CameraState.STOPPING;
+        }
+        cameraSteady = false;
+
+        cameraHandler().post(() -> {
+            try {
+                oldCamera.setPreviewCallbackWithBuffer(null);
+                oldCamera.stopPreview();
+                oldCamera.release();
+            } catch (RuntimeException ex) {
+                LogUtil.e(TAG, "switchCameraFast: release: " + ex);
+            }
+
+            // Back to the pool, so that the new camera gets
+            // them if the frame size keeps
+            releaseCallbackBuffers();
+            synchronized (mCameraStateLock) {
+                mCameraState = CameraState.STOPPED;
+            }
+
+            if (allocate(width, height, frameRate, facing)) {
+                startPreviewOnTexture();
+            }
+        });
+        return true;
+    }
+
 
     @Override
     public void startCaptureMaybeAsync(boolean needsPreview) {
@@ -416,15 +508,45 @@ public class VideoCaptureCamera
             mCameraState = CameraState.STOPPED;
         }
 
+        releaseCallbackBuffers();
+
         if (stateListener != null) {
             stateListener.onCameraClosed();
         }
     }
 
+    // Must be called with mPreviewBufferLock held
+    private void addPooledCallbackBuffer(Camera camera) {
+        FrameBuffer buffer = pFrameBufferPool.obtain(mExpectedFrameSize);
+        mCallbackBuffers.put(buffer.data(), buffer);
+        camera.addCallbackBuffer(buffer.data());
+    }
+
+    private void releaseCallbackBuffers() {
+        // The camera has been released and will not fill
+        // these buffers any more, so they go back to the
+        // pool for the next allocation.
+        mPreviewBufferLock.lock();
+        try {
+            for (FrameBuffer buffer : mCallbackBuffers.values()) {
+                buffer.release();
+            }
+            mCallbackBuffers.clear();
+        } finally {
+            mPreviewBufferLock.unlock();
+        }
+    }
+
     @Override
     public void onPreviewFrame(byte[] data, @NonNull Camera camera) {
+        FrameBuffer buffer = null;
         mPreviewBufferLock.lock();
         try {
+            buffer = mCallbackBuffers.remove(data);
+            if (buffer == null) {
+                // Not a buffer of the current allocation
+                return;
+            }
             if (mCameraState != CameraState.STARTED) {
                 return;
             }
@@ -438,11 +560,20 @@ public class VideoCaptureCamera
                 return;
             }
 
-            pYUVImage = data;
+            pYUVBuffer = buffer;
             onFrameAvailable();
         } finally {
+            pYUVBuffer = null;
+            if (buffer != null) {
+                // Drop the capture's reference. If any consumer
+                // still holds the buffer, the camera is given
+                // another one from the pool instead.
+                buffer.release();
+                if (mCamera == camera) {
+                    addPooledCallbackBuffer(camera);
+                }
+            }
             mPreviewBufferLock.unlock();
-            camera.addCallbackBuffer(data);
         }
     }
 
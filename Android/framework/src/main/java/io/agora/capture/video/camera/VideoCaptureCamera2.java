@@ -28,15 +28,17 @@ import android.media.ImageReader;
 import android.opengl.GLES11Ext;
 import android.opengl.GLES20;
 import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
 import android.util.Range;
 import android.util.Size;
 import android.view.Surface;
 
 import androidx.annotation.NonNull;
 
-import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 import io.agora.capture.framework.gles.core.GlUtil;
@@ -92,6 +94,7 @@ public class VideoCaptureCamera2 extends VideoCapture {
                 mPreviewSession = null;
             }
 
+            closeImageReader();
             changeCameraStateAndNotify(CameraState.STOPPED);
             if (mPendingStartRequest) {
                 mPendingStartRequest = false;
@@ -172,6 +175,9 @@ public class VideoCaptureCamera2 extends VideoCapture {
         @Override
         public void onConfigureFailed(@NonNull CameraCaptureSession cameraCaptureSession) {
             LogUtil.e(TAG, "CameraPreviewSessionListener.onConfigureFailed");
+            // Query the camera again next time, in case what is kept is stale
+            CameraCapabilityCache.instance(pContext)
+                    .remove(CameraCapabilities.API_CAMERA2, mCamera2Id);
             changeCameraStateAndNotify(CameraState.STOPPED);
         }
 
@@ -182,6 +188,13 @@ public class VideoCaptureCamera2 extends VideoCapture {
     };
 
     private class CameraPreviewReaderListener implements ImageReader.OnImageAvailableListener {
+        private final ImageReaderRef mReaderRef;
+
+        CameraPreviewReaderListener(ImageReaderRef readerRef) {
+            mReaderRef = readerRef;
+        }
+
+        // Runs on the image ingest thread
         @Override
         public void onImageAvailable(ImageReader reader) {
             // There is a case where the frame callbacks are
@@ -189,7 +202,14 @@ public class VideoCaptureCamera2 extends VideoCapture {
             // capture is stopped.
             if (mCameraState != CameraState.STARTED) return;
 
-            try (Image image = reader.acquireLatestImage()) {
+            // All images that can be held by consumers are
+            // in use, the image waits in the reader and the
+            // older ones are dropped until some are released.
+            if (mReaderRef.zeroCopy && mReaderRef.isFull()) return;
+
+            Image image = null;
+            try {
+                image = mReaderRef.acquireLatestImage();
                 if (image == null) return;
 
                 if (image.getFormat() != ImageFormat.YUV_420_888 || image.getPlanes().length != 3) {
@@ -207,14 +227,176 @@ public class VideoCaptureCamera2 extends VideoCapture {
                     throw new IllegalStateException();
                 }
 
-                pYUVImage = YUV_420_888toNV21(image);
-                onFrameAvailable();
+                if (mReaderRef.zeroCopy) {
+                    // The image is closed by the buffer
+                    // when the last consumer releases it.
+                    ImageWrapper wrapper = mReaderRef.wrap(image);
+                    image = null;
+                    handOff(wrapper.buffer, wrapper.planes, wrapper.image.getTimestamp());
+                } else {
+                    handOff(convertImage(image), null, image.getTimestamp());
+                }
             } catch (IllegalStateException ex) {
                 LogUtil.e(TAG, "acquireLatestImage():");
+            } finally {
+                if (image != null) mReaderRef.release(image);
+            }
+        }
+    };
+
+    // Only used on the ingest thread
+    private final VideoFramePlanes mConvertPlanes = new VideoFramePlanes();
+
+    private FrameBuffer convertImage(Image image) {
+        wrapImagePlanes(image, mConvertPlanes);
+        FrameBuffer buffer = pFrameBufferPool.obtain(mConvertPlanes.getPackedSize());
+        try {
+            mYuvConverter.convert(mConvertPlanes, buffer.data(), VideoFramePlanes.LAYOUT_NV21);
+        } catch (RuntimeException e) {
+            buffer.release();
+            throw e;
+        }
+        return buffer;
+    }
+
+    private void handOff(FrameBuffer buffer, VideoFramePlanes planes, long timestampNs) {
+        if (!mIngestHandoff.offer(buffer, planes, timestampNs)) return;
+
+        Handler handler = pChannelHandler;
+        if (handler == null || !handler.post(mDeliverIngestedFrame)) {
+            mIngestHandoff.clear();
+        }
+    }
+
+    private final IngestHandoff.Receiver mIngestedFrameReceiver = new IngestHandoff.Receiver() {
+        @Override
+        public void onFrame(FrameBuffer buffer, VideoFramePlanes planes, long timestampNs) {
+            if (mCameraState != CameraState.STARTED) return;
+
+            try {
+                pYUVBuffer = buffer;
+                pYUVPlanes = planes;
+                pYUVTimestampNs = timestampNs;
+                onFrameAvailable();
+            } finally {
+                pYUVBuffer = null;
+                pYUVPlanes = null;
+                pYUVTimestampNs = 0;
             }
         }
     };
 
+    private final Runnable mDeliverIngestedFrame = new Runnable() {
+        @Override
+        public void run() {
+            mIngestHandoff.deliver(mIngestedFrameReceiver);
+        }
+    };
+
+    private static void wrapImagePlanes(Image image, VideoFramePlanes out) {
+        Image.Plane[] planes = image.getPlanes();
+        out.set(image.getWidth(), image.getHeight(), VideoFramePlanes.LAYOUT_YUV_420_888);
+        for (int i = 0; i < 3; i++) {
+            out.getPlane(i).set(planes[i].getBuffer(),
+                    planes[i].getRowStride(), planes[i].getPixelStride());
+        }
+    }
+
+    /**
+     * Lends the memory of an image to consumers. The
+     * wrappers are reused once the image is given back.
+     */
+    private static class ImageWrapper implements FrameBuffer.Recycler {
+        final ImageReaderRef readerRef;
+        final FrameBuffer buffer = new FrameBuffer(this);
+        final VideoFramePlanes planes = new VideoFramePlanes();
+        Image image;
+
+        ImageWrapper(ImageReaderRef readerRef) {
+            this.readerRef = readerRef;
+        }
+
+        @Override
+        public void recycle(FrameBuffer buffer) {
+            Image closing = image;
+            image = null;
+            readerRef.recycle(this, closing);
+        }
+    }
+
+    /**
+     * Tracks the images of an ImageReader that are being
+     * converted or held by consumers. Closing the reader
+     * invalidates all of its images, so the reader is
+     * closed only when the last image is given back.
+     */
+    private static class ImageReaderRef {
+        final ImageReader reader;
+        final boolean zeroCopy;
+        private final int mMaxInFlight;
+        private final ArrayDeque<ImageWrapper> mFreeWrappers = new ArrayDeque<>();
+        private int mInFlight;
+        private boolean mClosing;
+
+        ImageReaderRef(ImageReader reader, boolean zeroCopy, int maxInFlight) {
+            this.reader = reader;
+            this.zeroCopy = zeroCopy;
+            mMaxInFlight = maxInFlight;
+        }
+
+        synchronized boolean isFull() {
+            return mInFlight >= mMaxInFlight;
+        }
+
+        /**
+         * @return the latest image, or null if there is none
+         * or the reader is being closed. The image must be
+         * given back by release().
+         */
+        synchronized Image acquireLatestImage() {
+            if (mClosing) return null;
+            Image image = reader.acquireLatestImage();
+            if (image != null) mInFlight++;
+            return image;
+        }
+
+        /**
+         * @return the image wrapped with one reference of
+         * the caller, which gives the image back when the
+         * last reference is released.
+         */
+        synchronized ImageWrapper wrap(Image image) {
+            ImageWrapper wrapper = mFreeWrappers.poll();
+            if (wrapper == null) wrapper = new ImageWrapper(this);
+            wrapper.image = image;
+            wrapImagePlanes(image, wrapper.planes);
+            wrapper.buffer.reset();
+            return wrapper;
+        }
+
+        synchronized void recycle(ImageWrapper wrapper, Image image) {
+            mFreeWrappers.offer(wrapper);
+            release(image);
+        }
+
+        synchronized void release(Image image) {
+            image.close();
+            mInFlight--;
+            closeIfIdle();
+        }
+
+        synchronized void close() {
+            mClosing = true;
+            closeIfIdle();
+        }
+
+        private void closeIfIdle() {
+            if (mClosing && mInFlight == 0) {
+                reader.close();
+            }
+        }
+    }
+
     private static final String TAG = VideoCaptureCamera2.class.getSimpleName();
     private final Object mCameraStateLock = new Object();
 
@@ -222,19 +404,27 @@ public class VideoCaptureCamera2 extends VideoCapture {
     private CameraCaptureSession mPreviewSession;
     private CaptureRequest mPreviewRequest;
     private CaptureRequest.Builder mPreviewRequestBuilder;
+    private static final int DEFAULT_MAX_FRAMES_IN_FLIGHT = 3;
+
     private ImageReader mImageReader;
+    private ImageReaderRef mImageReaderRef;
+    private volatile boolean mZeroCopyEnabled;
+    private volatile int mMaxFramesInFlight = DEFAULT_MAX_FRAMES_IN_FLIGHT;
+    private volatile BandedYuvConverter mYuvConverter = BandedYuvConverter.createDefault();
+
+    // Image reader callbacks and conversion run on their
+    // own thread, apart from the GL work of the channel.
+    private HandlerThread mIngestThread;
+    private Handler mIngestHandler;
+    private final IngestHandoff mIngestHandoff = new IngestHandoff();
     private static CameraManager mCameraManager;
 
     private volatile boolean mPendingStartRequest;
 
     private Range<Integer> mAeFpsRange;
-    private CameraState mCameraState = CameraState.STOPPED;
+    private volatile CameraState mCameraState = CameraState.STOPPED;
     private Surface mSurface;
 
-    private int mImageYSize;
-    private int mImageUVSize;
-    private byte[] mBuffer;
-
     private CameraCharacteristics getCameraCharacteristics(String id) {
         try {
             return mCameraManager.getCameraCharacteristics(id);
@@ -244,6 +434,64 @@ public class VideoCaptureCamera2 extends VideoCapture {
         return null;
     }
 
+    private CameraCapabilities getCapabilities(CameraCapabilityCache cache, String id) {
+        CameraCapabilities capabilities = cache.get(CameraCapabilities.API_CAMERA2, id);
+        if (capabilities != null) {
+            return capabilities;
+        }
+
+        CameraCharacteristics characteristics = getCameraCharacteristics(id);
+        if (characteristics == null) {
+            return null;
+        }
+        capabilities = queryCapabilities(id, characteristics);
+        if (capabilities.hasFrameRateRanges()) {
+            cache.put(capabilities);
+        }
+        return capabilities;
+    }
+
+    private static CameraCapabilities queryCapabilities(String id,
+                                                        CameraCharacteristics characteristics) {
+        Integer lensFacing = characteristics.get(CameraCharacteristics.LENS_FACING);
+        int facing = Constant.CAMERA_FACING_INVALID;
+        if (lensFacing != null && lensFacing == CameraCharacteristics.LENS_FACING_FRONT) {
+            facing = Constant.CAMERA_FACING_FRONT;
+        } else if (lensFacing != null && lensFacing == CameraCharacteristics.LENS_FACING_BACK) {
+            facing = Constant.CAMERA_FACING_BACK;
+        }
+        Integer orientation = characteristics.get(CameraCharacteristics.SENSOR_ORIENTATION);
+        Integer timestampSource = characteristics.get(
+                CameraCharacteristics.SENSOR_INFO_TIMESTAMP_SOURCE);
+
+        final StreamConfigurationMap streamMap =
+                characteristics.get(CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP);
+        Size[] sizeArray = streamMap != null ? streamMap.getOutputSizes(ImageFormat.YUV_420_888) : null;
+        int[] sizes = new int[sizeArray != null ? sizeArray.length * 2 : 0];
+        for (int i = 0; i < sizes.length; i += 2) {
+            sizes[i] = sizeArray[i / 2].getWidth();
+            sizes[i + 1] = sizeArray[i / 2].getHeight();
+        }
+
+        Range<Integer>[] rangeArray = characteristics.get(
+                CameraCharacteristics.CONTROL_AE_AVAILABLE_TARGET_FPS_RANGES);
+        int[] fpsRanges = new int[rangeArray != null ? rangeArray.length * 2 : 0];
+        // On some legacy implementations FPS values are multiplied by 1000. Multiply by 1000
+        // everywhere for consistency. Set fpsUnitFactor to 1 if fps ranges are already multiplied
+        // by 1000.
+        final int fpsUnitFactor = fpsRanges.length > 0 && rangeArray[0].getUpper() > 1000 ? 1 : 1000;
+        for (int i = 0; i < fpsRanges.length; i += 2) {
+            fpsRanges[i] = rangeArray[i / 2].getLower() * fpsUnitFactor;
+            fpsRanges[i + 1] = rangeArray[i / 2].getUpper() * fpsUnitFactor;
+        }
+
+        return new CameraCapabilities(CameraCapabilities.API_CAMERA2, id, facing,
+                orientation != null ? orientation : 0,
+                timestampSource != null &&
+                        timestampSource == CameraCharacteristics.SENSOR_INFO_TIMESTAMP_SOURCE_REALTIME,
+                fpsUnitFactor, sizes, fpsRanges);
+    }
+
     private void createPreviewObjectsAndStartPreviewOrFail() {
         if (createPreviewObjectsAndStartPreview()) return;
 
@@ -254,10 +502,19 @@ public class VideoCaptureCamera2 extends VideoCapture {
     private boolean createPreviewObjectsAndStartPreview() {
         if (mCameraDevice == null) return false;
 
+        closeImageReader();
+        boolean zeroCopy = mZeroCopyEnabled;
+        int maxFramesInFlight = mMaxFramesInFlight;
+
+        // acquireLatestImage() needs two images free besides
+        // those held by consumers.
+        int maxImages = zeroCopy ? maxFramesInFlight + 2 : 2;
         mImageReader = ImageReader.newInstance(pCaptureFormat.getWidth(),
-                pCaptureFormat.getHeight(), pCaptureFormat.getPixelFormat(), 2);
-        final CameraPreviewReaderListener imageReaderListener = new CameraPreviewReaderListener();
-        mImageReader.setOnImageAvailableListener(imageReaderListener, pChannelHandler);
+                pCaptureFormat.getHeight(), pCaptureFormat.getPixelFormat(), maxImages);
+        mImageReaderRef = new ImageReaderRef(mImageReader, zeroCopy, maxFramesInFlight);
+        final CameraPreviewReaderListener imageReaderListener =
+                new CameraPreviewReaderListener(mImageReaderRef);
+        mImageReader.setOnImageAvailableListener(imageReaderListener, ingestHandler());
 
         try {
             // TEMPLATE_PREVIEW specifically means "high frame rate is given
@@ -313,32 +570,71 @@ public class VideoCaptureCamera2 extends VideoCapture {
         requestBuilder.set(CaptureRequest.CONTROL_AE_TARGET_FPS_RANGE, mAeFpsRange);
     }
 
-    private void changeCameraStateAndNotify(CameraState state) {
-        synchronized (mCameraStateLock) {
-            mCameraState = state;
-            mCameraStateLock.notifyAll();
+    private Handler ingestHandler() {
+        if (mIngestThread == null) {
+            mIngestThread = new HandlerThread(TAG + "-ingest");
+            mIngestThread.start();
+            mIngestHandler = new Handler(mIngestThread.getLooper());
         }
+        return mIngestHandler;
     }
 
-    // Finds the closest Size to (|width|x|height|) in |sizes|, and returns it or null.
-    // Ignores |width| or |height| if either is zero (== don't care).
-    private static Size findClosestSizeInArray(Size[] sizes, int width, int height) {
-        if (sizes == null) return null;
-        Size closestSize = null;
-        int minDiff = Integer.MAX_VALUE;
-        for (Size size : sizes) {
-            final int diff = ((width > 0) ? Math.abs(size.getWidth() - width) : 0)
-                    + ((height > 0) ? Math.abs(size.getHeight() - height) : 0);
-            if (diff < minDiff && size.getWidth() % 32 == 0) {
-                minDiff = diff;
-                closestSize = size;
-            }
+    private void quitIngestThread() {
+        if (mIngestThread != null) {
+            mIngestThread.quitSafely();
+            mIngestThread = null;
+            mIngestHandler = null;
         }
-        if (minDiff == Integer.MAX_VALUE) {
-            LogUtil.e(TAG, "Couldn't find resolution close to (" + width + "x" + height + ")");
-            return null;
+    }
+
+    private void closeImageReader() {
+        if (mImageReaderRef != null) {
+            mImageReader.setOnImageAvailableListener(null, null);
+            mImageReaderRef.close();
+            mImageReaderRef = null;
+            mImageReader = null;
+        }
+    }
+
+    /**
+     * Wrap the ImageReader images directly into frames
+     * instead of copying them to NV21 byte arrays. The
+     * frames then carry planes but no image array, and
+     * every image is held until the last consumer
+     * releases the frame.
+     * Takes effect when the next capture session starts.
+     * @param enabled whether zero-copy frames are used
+     * @param maxFramesInFlight the max number of frames
+     *                          consumers may hold at the
+     *                          same time, frames beyond
+     *                          that are dropped.
+     */
+    public void setZeroCopyEnabled(boolean enabled, int maxFramesInFlight) {
+        mZeroCopyEnabled = enabled;
+        mMaxFramesInFlight = Math.max(1, maxFramesInFlight);
+    }
+
+    public boolean isZeroCopyEnabled() {
+        return mZeroCopyEnabled;
+    }
+
+    /**
+     * Set how many row bands the NV21 conversion of an
+     * image is split into. The bands run in parallel for
+     * images of at least minParallelPixels pixels.
+     * @param bandCount 1 to convert on the capture thread only
+     */
+    public void setConversionBands(int bandCount, int minParallelPixels) {
+        BandedYuvConverter old = mYuvConverter;
+        mYuvConverter = new BandedYuvConverter(bandCount, minParallelPixels);
+        old.release();
+    }
+
+    private void changeCameraStateAndNotify(CameraState state) {
+        synchronized (mCameraStateLock) {
+            mCameraState = state;
+            mCameraStateLock.notifyAll();
         }
-        return closestSize;
     }
 
     protected int getNumberOfCameras() {
@@ -368,18 +664,15 @@ public class VideoCaptureCamera2 extends VideoCapture {
             }
         }
 
+        CameraCapabilityCache cache = CameraCapabilityCache.instance(pContext);
         try {
             for (String cameraId : mCameraManager.getCameraIdList()) {
-                CameraCharacteristics characteristics
-                        = getCameraCharacteristics(cameraId);
-
-                Integer face = characteristics.get(CameraCharacteristics.LENS_FACING);
-                if (curCameraFacing == Constant.CAMERA_FACING_FRONT && face == characteristics.LENS_FACING_FRONT) {
-                    mCamera2Id = cameraId;
-                    break;
+                CameraCapabilities capabilities = getCapabilities(cache, cameraId);
+                if (capabilities == null) {
+                    continue;
                 }
 
-                if (curCameraFacing == Constant.CAMERA_FACING_BACK && face == characteristics.LENS_FACING_BACK) {
+                if (capabilities.facing != Constant.CAMERA_FACING_INVALID && curCameraFacing == capabilities.facing) {
                     mCamera2Id = cameraId;
                     break;
                 }
@@ -388,57 +681,51 @@ public class VideoCaptureCamera2 extends VideoCapture {
             e.printStackTrace();
         }
 
-        final CameraCharacteristics cameraCharacteristics = getCameraCharacteristics(mCamera2Id);
-        final StreamConfigurationMap streamMap =
-                cameraCharacteristics.get(CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP);
+        final CameraCapabilities capabilities = getCapabilities(cache, mCamera2Id);
+        if (capabilities == null) {
+            LogUtil.e(TAG, "No capabilities of camera " + mCamera2Id);
+            return false;
+        }
 
         // Find closest supported size.
-        final Size[] supportedSizes = streamMap.getOutputSizes(ImageFormat.YUV_420_888);
-        final Size closestSupportedSize = findClosestSizeInArray(supportedSizes, width, height);
-        if (closestSupportedSize == null) {
+        final int sizeIndex = capabilities.findClosestSize(width, height);
+        if (sizeIndex == -1) {
             LogUtil.e(TAG, "No supported resolutions.");
             return false;
         }
-        LogUtil.d(TAG, "allocate: matched (" + closestSupportedSize.getWidth() +  " x "
-                + closestSupportedSize.getHeight() + ")");
-        mPreviewWidth = closestSupportedSize.getWidth();
-        mPreviewHeight = closestSupportedSize.getHeight();
+        final int matchedWidth = capabilities.getWidth(sizeIndex);
+        final int matchedHeight = capabilities.getHeight(sizeIndex);
+        LogUtil.d(TAG, "allocate: matched (" + matchedWidth +  " x " + matchedHeight + ")");
 
-        final List<Range<Integer>> fpsRanges = Arrays.asList(cameraCharacteristics.get(
-                CameraCharacteristics.CONTROL_AE_AVAILABLE_TARGET_FPS_RANGES));
-        if (fpsRanges.isEmpty()) {
+        if (!capabilities.hasFrameRateRanges()) {
             LogUtil.e(TAG, "No supported framerate ranges.");
             return false;
         }
-        final List<FrameRateRange> ranges =
-                new ArrayList<FrameRateRange>(fpsRanges.size());
-        // On some legacy implementations FPS values are multiplied by 1000. Multiply by 1000
-        // everywhere for consistency. Set fpsUnitFactor to 1 if fps ranges are already multiplied
-        // by 1000.
-        final int fpsUnitFactor = fpsRanges.get(0).getUpper() > 1000 ? 1 : 1000;
-        for (Range<Integer> range : fpsRanges) {
-            ranges.add(new FrameRateRange(
-                    range.getLower() * fpsUnitFactor, range.getUpper() * fpsUnitFactor));
-        }
+        final List<FrameRateRange> ranges = capabilities.getFrameRateRanges();
+        final int fpsUnitFactor = capabilities.fpsUnitFactor;
         final FrameRateRange aeRange =
                 CameraUtils.getClosestFrameRateRangeExactly(ranges, frameRate * 1000);
         mAeFpsRange = new Range<Integer>(
                 aeRange.min / fpsUnitFactor, aeRange.max / fpsUnitFactor);
         LogUtil.d(TAG, "allocate: fps set to [" + mAeFpsRange.getLower() + "-" + mAeFpsRange.getUpper() + "]");
 
-        mPreviewWidth = closestSupportedSize.getWidth();
-        mPreviewHeight = closestSupportedSize.getHeight();
+        mPreviewWidth = matchedWidth;
+        mPreviewHeight = matchedHeight;
 
         // |mCaptureFormat| is also used to configure the ImageReader.
-        pCaptureFormat = new VideoCaptureFormat(mCameraId, closestSupportedSize.getWidth(),
-                closestSupportedSize.getHeight(),
+        pCaptureFormat = new VideoCaptureFormat(mCameraId, matchedWidth, matchedHeight,
                 aeRange.max / fpsUnitFactor,
                 ImageFormat.YUV_420_888, GLES11Ext.GL_TEXTURE_EXTERNAL_OES);
-        pCameraNativeOrientation =
-                cameraCharacteristics.get(CameraCharacteristics.SENSOR_ORIENTATION);
+        pCameraNativeOrientation = capabilities.orientation;
         pInvertDeviceOrientationReadings =
-                cameraCharacteristics.get(CameraCharacteristics.LENS_FACING)
-                == CameraCharacteristics.LENS_FACING_FRONT;
+                capabilities.facing == Constant.CAMERA_FACING_FRONT;
+        pCapabilities = capabilities;
+
+        // Sensor timestamps are either in the monotonic
+        // time base or in the elapsed realtime base, which
+        // counts deep sleep as well.
+        pSensorTimeOffsetNs = capabilities.realtimeTimestamps ?
+                System.nanoTime() - SystemClock.elapsedRealtimeNanos() : 0;
 
         return true;
     }
@@ -494,6 +781,9 @@ public class VideoCaptureCamera2 extends VideoCapture {
         LogUtil.d(TAG, "deallocate " + disconnect);
         cameraSteady = false;
         stopCaptureAndBlockUntilStopped();
+        quitIngestThread();
+        mYuvConverter.release();
+        mIngestHandoff.clear();
 
         if (pPreviewTextureId != -1) {
             int[] textures = new int[]{pPreviewTextureId};
@@ -547,76 +837,4 @@ public class VideoCaptureCamera2 extends VideoCapture {
     public int getMaxExposureCompensation() {
         return 0;
     }
-
-    private byte[] YUV_420_888toNV21(Image image) {
-        int width = image.getWidth();
-        int height = image.getHeight();
-        int ySize = width * height;
-        int uvSize = width * height / 4;
-
-        if (ySize != mImageYSize || uvSize != mImageUVSize ||
-            mBuffer == null) {
-            mBuffer = new byte[ySize + uvSize * 2];
-            mImageYSize = ySize;
-            mImageUVSize = uvSize;
-        }
-
-        ByteBuffer yBuffer = image.getPlanes()[0].getBuffer(); // Y
-        ByteBuffer uBuffer = image.getPlanes()[1].getBuffer(); // U
-        ByteBuffer vBuffer = image.getPlanes()[2].getBuffer(); // V
-
-        int rowStride = image.getPlanes()[0].getRowStride();
-        assert (image.getPlanes()[0].getPixelStride() == 1);
-
-        int pos = 0;
-
-        if (rowStride == width) { // likely
-            yBuffer.get(mBuffer, 0, ySize);
-            pos += ySize;
-        } else {
-            int yBufferPos = width - rowStride; // not an actual position
-            for (; pos < ySize; pos += width) {
-                yBufferPos += rowStride - width;
-                yBuffer.position(yBufferPos);
-                yBuffer.get(mBuffer, pos, width);
-            }
-        }
-
-        rowStride = image.getPlanes()[2].getRowStride();
-        int pixelStride = image.getPlanes()[2].getPixelStride();
-
-        assert (rowStride == image.getPlanes()[1].getRowStride());
-        assert (pixelStride == image.getPlanes()[1].getPixelStride());
-
-        if (pixelStride == 2 && rowStride == width && uBuffer.get(0) == vBuffer.get(1)) {
-            // maybe V an U planes overlap as per NV21, which means vBuffer[1] is alias of uBuffer[0]
-            byte savePixel = vBuffer.get(1);
-            vBuffer.put(1, (byte) 0);
-            if (uBuffer.get(0) == 0) {
-                vBuffer.put(1, (byte) 255);
-                if (uBuffer.get(0) == 255) {
-                    vBuffer.put(1, savePixel);
-                    vBuffer.get(mBuffer, ySize, uvSize);
-
-                    return mBuffer; // shortcut
-                }
-            }
-
-            // unfortunately, the check failed. We must save U and V pixel by pixel
-            vBuffer.put(1, savePixel);
-        }
-
-        // other optimizations could check if (pixelStride == 1) or (pixelStride == 2),
-        // but performance gain would be less significant
-
-        for (int row = 0; row < height / 2; row++) {
-            for (int col = 0; col < width / 2; col++) {
-                int vuPos = col * pixelStride + row * rowStride;
-                mBuffer[pos++] = vBuffer.get(vuPos);
-                mBuffer[pos++] = uBuffer.get(vuPos);
-            }
-        }
-
-        return mBuffer;
-    }
 }
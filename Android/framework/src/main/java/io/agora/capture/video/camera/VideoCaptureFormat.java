@@ -7,6 +7,11 @@ package io.agora.capture.video.camera;
 import androidx.annotation.NonNull;
 
 public class VideoCaptureFormat {
+    /**
+     * Texture format of frames that only carry image data
+     */
+    public static final int TEX_FORMAT_NONE = 0;
+
     private int mWidth;
     private int mHeight;
     private int mFrameRate;
@@ -77,6 +82,15 @@ public class VideoCaptureFormat {
                 '}';
     }
 
+    void copyFrom(VideoCaptureFormat format) {
+        mCameraFacing = format.mCameraFacing;
+        mWidth = format.mWidth;
+        mHeight = format.mHeight;
+        mFrameRate = format.mFrameRate;
+        mPixelFormat = format.mPixelFormat;
+        mTexFormat = format.mTexFormat;
+    }
+
     public VideoCaptureFormat copy() {
         return new VideoCaptureFormat(mCameraFacing,
                 mWidth, mHeight, mFrameRate, mPixelFormat, mTexFormat);
@@ -3,6 +3,7 @@ package io.agora.capture.video.camera;
 import android.graphics.SurfaceTexture;
 
 import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class VideoCaptureFrame {
     /**
@@ -40,14 +41,46 @@ public class VideoCaptureFrame {
      */
     public int rotation;
 
+    /**
+     * Wall-clock time of the frame in milliseconds. It
+     * may jump, use timestamps to measure latency or pace.
+     */
     public long timestamp;
 
+    /**
+     * Monotonic nanosecond timestamps of the capture and
+     * every pipeline stage of this frame. Frames created
+     * by the public constructors are stamped as captured
+     * when created.
+     */
+    public final FrameTimestamps timestamps = new FrameTimestamps();
+
     /**
      * Raw image data from the system camera. For android
      * devices this format is NV21 by default.
+     * Producers that expose their memory as planes may
+     * leave it null, use getImage() to always get the
+     * NV21 data when there is any.
      */
     public byte[] image;
 
+    /**
+     * Stride-aware description of the image memory.
+     * It is created lazily from the NV21 image if the
+     * producer does not give the planes directly.
+     * @see #getPlanes()
+     */
+    public VideoFramePlanes planes;
+
+    /**
+     * The reference-counted buffer that backs the image
+     * data, if the image comes from a frame buffer pool.
+     * The image content stays valid only during the
+     * consuming callbacks unless the frame is retained.
+     * @see #retain()
+     */
+    public FrameBuffer buffer;
+
     /**
      * Whether this image is mirrored. The definition of
      * mirror mode keeps align with the system camera.
@@ -57,9 +90,41 @@ public class VideoCaptureFrame {
      */
     public boolean mirrored;
 
+    // The image as captured, kept when the processors
+    // replace it with a texture.
+    // @see #keepCapturedImage()
+    private boolean mCapturedKept;
+    private byte[] mCapturedImage;
+    private VideoFramePlanes mCapturedPlanes;
+    private int mCapturedWidth;
+    private int mCapturedHeight;
+    private int mCapturedRotation;
+    private boolean mCapturedMirrored;
+
+    // Only used by frames from a VideoCaptureFramePool.
+    // Processors may replace the format and transform of
+    // the frame, the owned instances are restored on reuse.
+    private final VideoCaptureFramePool mPool;
+    private final VideoCaptureFormat mOwnFormat;
+    private final float[] mOwnTransform;
+    private final AtomicInteger mRefCount;
+
+    VideoCaptureFrame(VideoCaptureFramePool pool) {
+        mPool = pool;
+        mOwnFormat = new VideoCaptureFormat(0, 0, 0, 0, 0, 0);
+        mOwnTransform = new float[16];
+        mRefCount = new AtomicInteger(0);
+        format = mOwnFormat;
+        textureTransform = mOwnTransform;
+    }
+
     public VideoCaptureFrame(VideoCaptureFormat format, SurfaceTexture texture,
                              int textureId, byte[] image, float[] textureTransform,
                              long timestamp, int rotation, boolean mirror) {
+        mPool = null;
+        mOwnFormat = null;
+        mOwnTransform = null;
+        mRefCount = null;
         this.format = format;
         this.textureId = textureId;
         this.surfaceTexture = texture;
@@ -68,17 +133,219 @@ public class VideoCaptureFrame {
         this.timestamp = timestamp;
         this.rotation = rotation;
         this.mirrored = mirror;
+        timestamps.mark(FrameTimestamps.CAPTURE);
+    }
+
+    public VideoCaptureFrame(VideoCaptureFormat format, SurfaceTexture texture,
+                             int textureId, FrameBuffer buffer, float[] textureTransform,
+                             long timestamp, int rotation, boolean mirror) {
+        this(format, texture, textureId, buffer != null ? buffer.data() : null,
+                textureTransform, timestamp, rotation, mirror);
+        this.buffer = buffer;
     }
 
+    /**
+     * Note the copy shares the same image buffer with
+     * the original frame without taking a reference.
+     */
     public VideoCaptureFrame(VideoCaptureFrame frame) {
+        mPool = null;
+        mOwnFormat = null;
+        mOwnTransform = null;
+        mRefCount = null;
         this.format = frame.format.copy();
         this.textureId = frame.textureId;
         this.surfaceTexture = frame.surfaceTexture;
         this.image = frame.image;
+        this.planes = frame.planes;
+        this.buffer = frame.buffer;
         this.textureTransform = frame.textureTransform;
         this.timestamp = frame.timestamp;
+        this.timestamps.copyFrom(frame.timestamps);
         this.rotation = frame.rotation;
         this.mirrored = frame.mirrored;
+        this.mCapturedKept = frame.mCapturedKept;
+        this.mCapturedImage = frame.mCapturedImage;
+        this.mCapturedPlanes = frame.mCapturedPlanes;
+        this.mCapturedWidth = frame.mCapturedWidth;
+        this.mCapturedHeight = frame.mCapturedHeight;
+        this.mCapturedRotation = frame.mCapturedRotation;
+        this.mCapturedMirrored = frame.mCapturedMirrored;
+    }
+
+    /**
+     * @return the NV21 image data, packed from the planes
+     * at the first call if the producer only gives planes.
+     * Null if the frame has no image data.
+     */
+    public byte[] getImage() {
+        if (image == null && planes != null) {
+            image = planes.toNV21(new byte[planes.getPackedSize()]);
+        }
+        return image;
+    }
+
+    /**
+     * @return the planes of the image data, wrapping the
+     * NV21 image without copying if the producer does not
+     * give the planes. Null if the frame has no image data.
+     */
+    public VideoFramePlanes getPlanes() {
+        if (planes == null && image != null) {
+            planes = VideoFramePlanes.wrapNV21(image, format.getWidth(), format.getHeight());
+        }
+        return planes;
+    }
+
+    /**
+     * Keep the image data as captured, before processors
+     * replace the image with a rotated texture and clear
+     * it. The data stays backed by the buffer of the
+     * frame, so it is valid as long as the frame is.
+     * Only the first call keeps the image.
+     */
+    public void keepCapturedImage() {
+        if (mCapturedKept) return;
+        mCapturedKept = true;
+        mCapturedImage = image;
+        mCapturedPlanes = planes;
+        mCapturedWidth = format.getWidth();
+        mCapturedHeight = format.getHeight();
+        mCapturedRotation = rotation;
+        mCapturedMirrored = mirrored;
+    }
+
+    /**
+     * @return the NV21 image data as captured, or null if
+     * the producer only gives planes or the frame has no
+     * image data.
+     * @see #keepCapturedImage()
+     */
+    public byte[] getCapturedImage() {
+        return mCapturedKept ? mCapturedImage : image;
+    }
+
+    /**
+     * @return the planes of the image data as captured,
+     * which are not rotated or mirrored. Null if the frame
+     * has no image data.
+     * @see #getCapturedRotation()
+     * @see #isCapturedMirrored()
+     */
+    public VideoFramePlanes getCapturedPlanes() {
+        if (!mCapturedKept) {
+            return getPlanes();
+        }
+        if (mCapturedPlanes == null && mCapturedImage != null) {
+            mCapturedPlanes = VideoFramePlanes.wrapNV21(mCapturedImage,
+                    mCapturedWidth, mCapturedHeight);
+        }
+        return mCapturedPlanes;
+    }
+
+    public int getCapturedWidth() {
+        return mCapturedKept ? mCapturedWidth : format.getWidth();
+    }
+
+    public int getCapturedHeight() {
+        return mCapturedKept ? mCapturedHeight : format.getHeight();
+    }
+
+    /**
+     * @return the degrees that the captured image needs to
+     * be rotated clockwise
+     */
+    public int getCapturedRotation() {
+        return mCapturedKept ? mCapturedRotation : rotation;
+    }
+
+    public boolean isCapturedMirrored() {
+        return mCapturedKept ? mCapturedMirrored : mirrored;
+    }
+
+    /**
+     * Fill a pooled frame. The format is copied into the
+     * frame's own format instance, and the frame takes
+     * its own reference of the buffer.
+     */
+    void set(VideoCaptureFormat format, SurfaceTexture texture, int textureId,
+             FrameBuffer buffer, VideoFramePlanes planes,
+             long timestamp, long captureTimeNs, int rotation, boolean mirror) {
+        mOwnFormat.copyFrom(format);
+        this.format = mOwnFormat;
+        this.textureTransform = mOwnTransform;
+        this.surfaceTexture = texture;
+        this.textureId = textureId;
+        this.buffer = buffer != null ? buffer.retain() : null;
+        this.image = buffer != null ? buffer.data() : null;
+        this.planes = planes;
+        this.timestamp = timestamp;
+        this.timestamps.reset();
+        this.timestamps.set(FrameTimestamps.CAPTURE, captureTimeNs);
+        this.rotation = rotation;
+        this.mirrored = mirror;
+        clearCapturedImage();
+    }
+
+    private void clearCapturedImage() {
+        mCapturedKept = false;
+        mCapturedImage = null;
+        mCapturedPlanes = null;
+    }
+
+    void reset() {
+        mRefCount.set(1);
+    }
+
+    /**
+     * Keep the frame and its image buffer from being
+     * reused after the consuming callback returns.
+     * Consumers that handle the frame asynchronously must
+     * retain it and call release() exactly once when they
+     * finish. Frames from a pool go back to the pool when
+     * the last reference is released, and none of their
+     * fields may be accessed after that.
+     * @return this frame
+     */
+    public VideoCaptureFrame retain() {
+        if (mPool == null) {
+            if (buffer != null) buffer.retain();
+            return this;
+        }
+
+        while (true) {
+            int count = mRefCount.get();
+            if (count <= 0) {
+                throw new IllegalStateException("Retain a frame that has been released");
+            }
+            if (mRefCount.compareAndSet(count, count + 1)) {
+                return this;
+            }
+        }
+    }
+
+    public void release() {
+        if (mPool == null) {
+            if (buffer != null) buffer.release();
+            return;
+        }
+
+        int count = mRefCount.decrementAndGet();
+        if (count < 0) {
+            mRefCount.incrementAndGet();
+            throw new IllegalStateException("Release a frame more times than retained");
+        }
+
+        if (count == 0) {
+            FrameBuffer frameBuffer = buffer;
+            buffer = null;
+            image = null;
+            planes = null;
+            surfaceTexture = null;
+            clearCapturedImage();
+            if (frameBuffer != null) frameBuffer.release();
+            mPool.recycle(this);
+        }
     }
 
     public String toString() {
@@ -87,6 +354,7 @@ public class VideoCaptureFrame {
                 ", mRotation=" + rotation +
                 ", mMirror=" + mirrored +
                 ", mTimeStamp=" + timestamp +
+                ", mCaptureTimeNs=" + timestamps.get(FrameTimestamps.CAPTURE) +
                 ", mTextureId=" + textureId +
                 ", mTexMatrix=" + Arrays.toString(textureTransform) +
                 '}';
@@ -0,0 +1,53 @@
+package io.agora.capture.video.camera;
+
+import java.util.ArrayDeque;
+
+/**
+ * Pool of capture frames, so that producers do not
+ * create a frame, a format and a transform matrix for
+ * every captured image.
+ * Frames are handed out with one reference, and come
+ * back automatically when fully released.
+ * @see VideoCaptureFrame#retain()
+ */
+public class VideoCaptureFramePool {
+    private final int mMaxPooledCount;
+    private final ArrayDeque<VideoCaptureFrame> mFreeFrames = new ArrayDeque<>();
+    private int mAllocatedCount;
+
+    public VideoCaptureFramePool(int maxPooledCount) {
+        mMaxPooledCount = maxPooledCount;
+    }
+
+    /**
+     * @return a frame holding one reference of the caller,
+     * whose content should be set before use.
+     */
+    public synchronized VideoCaptureFrame obtain() {
+        VideoCaptureFrame frame = mFreeFrames.pollFirst();
+        if (frame == null) {
+            frame = new VideoCaptureFrame(this);
+            mAllocatedCount++;
+        }
+        frame.reset();
+        return frame;
+    }
+
+    synchronized void recycle(VideoCaptureFrame frame) {
+        if (mFreeFrames.size() < mMaxPooledCount) {
+            mFreeFrames.offerFirst(frame);
+        }
+    }
+
+    public synchronized int getFreeCount() {
+        return mFreeFrames.size();
+    }
+
+    /**
+     * @return the number of frames ever created by this
+     * pool, which keeps unchanged in steady state.
+     */
+    public synchronized int getAllocatedCount() {
+        return mAllocatedCount;
+    }
+}
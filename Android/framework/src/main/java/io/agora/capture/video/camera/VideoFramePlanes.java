@@ -0,0 +1,190 @@
+package io.agora.capture.video.camera;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Describes the memory of a YUV 4:2:0 image as three
+ * planes (Y, U and V), in the same manner as
+ * android.media.Image does. Every plane has its own
+ * buffer, row stride and pixel stride, so the memory of
+ * the producer can be exposed as it is, without being
+ * repacked into a tight byte array.
+ * Semi-planar images (NV21 and NV12) have U and V
+ * planes of pixel stride 2 that share the same memory.
+ * If the planes are known to be packed in one of the
+ * common layouts, the layout is given so that consumers
+ * like encoders can take the memory directly.
+ */
+public class VideoFramePlanes {
+    /**
+     * The planes are not known to be in any packed
+     * layout, the strides must be respected.
+     */
+    public static final int LAYOUT_YUV_420_888 = 0;
+    public static final int LAYOUT_NV21 = 1;
+    public static final int LAYOUT_NV12 = 2;
+    public static final int LAYOUT_I420 = 3;
+
+    public static final int PLANE_Y = 0;
+    public static final int PLANE_U = 1;
+    public static final int PLANE_V = 2;
+
+    public static class Plane {
+        private ByteBuffer mBuffer;
+        private int mRowStride;
+        private int mPixelStride;
+
+        public Plane(ByteBuffer buffer, int rowStride, int pixelStride) {
+            set(buffer, rowStride, pixelStride);
+        }
+
+        /**
+         * Only for the planes pooled by the producer, which
+         * are reused once the frame is released.
+         */
+        void set(ByteBuffer buffer, int rowStride, int pixelStride) {
+            mBuffer = buffer;
+            mRowStride = rowStride;
+            mPixelStride = pixelStride;
+        }
+
+        /**
+         * The plane data starts from index 0 of the buffer.
+         * Multiple readers may share the buffer, so only
+         * absolute get operations or duplicates should
+         * be used to read the content.
+         */
+        public ByteBuffer getBuffer() {
+            return mBuffer;
+        }
+
+        public int getRowStride() {
+            return mRowStride;
+        }
+
+        public int getPixelStride() {
+            return mPixelStride;
+        }
+    }
+
+    private int mWidth;
+    private int mHeight;
+    private int mLayout;
+    private final Plane[] mPlanes;
+
+    public VideoFramePlanes(int width, int height, int layout, Plane y, Plane u, Plane v) {
+        mWidth = width;
+        mHeight = height;
+        mLayout = layout;
+        mPlanes = new Plane[] { y, u, v };
+    }
+
+    /**
+     * Empty planes to be filled by set(), for the producers
+     * that reuse them across frames.
+     */
+    VideoFramePlanes() {
+        this(0, 0, LAYOUT_YUV_420_888,
+                new Plane(null, 0, 0),
+                new Plane(null, 0, 0),
+                new Plane(null, 0, 0));
+    }
+
+    void set(int width, int height, int layout) {
+        mWidth = width;
+        mHeight = height;
+        mLayout = layout;
+    }
+
+    public static VideoFramePlanes wrapNV21(byte[] data, int width, int height) {
+        return wrapNV21(ByteBuffer.wrap(data), width, height);
+    }
+
+    public static VideoFramePlanes wrapNV21(ByteBuffer data, int width, int height) {
+        int ySize = width * height;
+        int uvStride = chromaWidth(width) * 2;
+        int uvLength = chromaHeight(height) * uvStride;
+        return new VideoFramePlanes(width, height, LAYOUT_NV21,
+                new Plane(slice(data, 0, ySize), width, 1),
+                new Plane(slice(data, ySize + 1, uvLength - 1), uvStride, 2),
+                new Plane(slice(data, ySize, uvLength - 1), uvStride, 2));
+    }
+
+    public static VideoFramePlanes wrapNV12(ByteBuffer data, int width, int height) {
+        int ySize = width * height;
+        int uvStride = chromaWidth(width) * 2;
+        int uvLength = chromaHeight(height) * uvStride;
+        return new VideoFramePlanes(width, height, LAYOUT_NV12,
+                new Plane(slice(data, 0, ySize), width, 1),
+                new Plane(slice(data, ySize, uvLength - 1), uvStride, 2),
+                new Plane(slice(data, ySize + 1, uvLength - 1), uvStride, 2));
+    }
+
+    public static VideoFramePlanes wrapI420(ByteBuffer data, int width, int height) {
+        int ySize = width * height;
+        int chromaStride = chromaWidth(width);
+        int chromaSize = chromaStride * chromaHeight(height);
+        return new VideoFramePlanes(width, height, LAYOUT_I420,
+                new Plane(slice(data, 0, ySize), width, 1),
+                new Plane(slice(data, ySize, chromaSize), chromaStride, 1),
+                new Plane(slice(data, ySize + chromaSize, chromaSize), chromaStride, 1));
+    }
+
+    private static ByteBuffer slice(ByteBuffer data, int offset, int length) {
+        ByteBuffer buffer = data.duplicate();
+        buffer.position(data.position() + offset);
+        buffer.limit(data.position() + offset + length);
+        return buffer.slice();
+    }
+
+    public static int chromaWidth(int width) {
+        return (width + 1) / 2;
+    }
+
+    public static int chromaHeight(int height) {
+        return (height + 1) / 2;
+    }
+
+    /**
+     * @return the size in bytes of the image when packed
+     * tightly in NV21, NV12 or I420.
+     */
+    public static int packedSize(int width, int height) {
+        return width * height + chromaWidth(width) * chromaHeight(height) * 2;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public int getLayout() {
+        return mLayout;
+    }
+
+    public Plane getPlane(int index) {
+        return mPlanes[index];
+    }
+
+    public Plane[] getPlanes() {
+        return mPlanes;
+    }
+
+    public int getPackedSize() {
+        return packedSize(mWidth, mHeight);
+    }
+
+    /**
+     * Pack the planes tightly into NV21.
+     * @param out the destination, must not be smaller
+     *            than getPackedSize().
+     * @return the destination array
+     * @see YuvConverter
+     */
+    public byte[] toNV21(byte[] out) {
+        return YuvConverter.convert(this, out, LAYOUT_NV21);
+    }
+}
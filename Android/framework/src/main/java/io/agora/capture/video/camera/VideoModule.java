@@ -2,6 +2,8 @@ package io.agora.capture.video.camera;
 
 import android.content.Context;
 
+import io.agora.capture.framework.gles.core.GlBackend;
+import io.agora.capture.framework.metrics.PipelineMetrics;
 import io.agora.capture.framework.modules.channels.ChannelManager;
 import io.agora.capture.framework.modules.channels.VideoChannel;
 import io.agora.capture.framework.modules.consumers.IVideoConsumer;
@@ -15,6 +17,7 @@ public class VideoModule {
     private volatile static VideoModule mSelf;
     private ChannelManager mChannelManager;
     private boolean mHasInitialized;
+    private final PipelineMetrics mMetrics = new PipelineMetrics();
 
     public static VideoModule instance() {
         if (mSelf == null) {
@@ -36,7 +39,7 @@ public class VideoModule {
      * @param context
      */
     public void init(Context context) {
-        mChannelManager = new ChannelManager(context);
+        mChannelManager = new ChannelManager(context, mMetrics);
         mHasInitialized = true;
     }
 
@@ -44,6 +47,32 @@ public class VideoModule {
         return mHasInitialized;
     }
 
+    /**
+     * @return the metrics of all the channels, producers
+     * and consumers, available before init.
+     */
+    public PipelineMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    /**
+     * Run the channels started afterwards on another GL
+     * backend, like RecordingGlBackend off device.
+     * @param factory null to run on GLES
+     */
+    public void setGlBackendFactory(GlBackend.Factory factory) {
+        mChannelManager.setGlBackendFactory(factory);
+    }
+
+    /**
+     * Compile the shaders of the channels started afterwards
+     * on a background context while they start, which is
+     * the default.
+     */
+    public void setShaderPrewarmEnabled(boolean enabled) {
+        mChannelManager.setShaderPrewarmEnabled(enabled);
+    }
+
     public VideoChannel connectProducer(IVideoProducer producer, int id) {
         return mChannelManager.connectProducer(producer, id);
     }
@@ -69,21 +98,18 @@ public class VideoModule {
     }
 
     public void stopAllChannels() {
-        stopChannel(ChannelManager.ChannelID.CAMERA);
-        stopChannel(ChannelManager.ChannelID.SCREEN_SHARE);
-        stopChannel(ChannelManager.ChannelID.CUSTOM);
+        mChannelManager.stopAllChannels();
     }
 
     /**
-     * Enable the channel to capture video frames and do
-     * offscreen rendering without the onscreen consumer
-     * (Like SurfaceView or TextureView).
-     * The default is true.
-     * @param channelId
-     * @param enabled
+     * @deprecated off-screen consumers always receive the
+     * frames, whether on-screen consumers (like SurfaceView
+     * or TextureView) are connected or not. This has no
+     * effect.
      */
+    @Deprecated
     public void enableOffscreenMode(int channelId, boolean enabled) {
-        mChannelManager.enableOffscreenMode(channelId, enabled);
+
     }
 
     public void setPreprocessor(int channelId, IPreprocessor preprocessor) {
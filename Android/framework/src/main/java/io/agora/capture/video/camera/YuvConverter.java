@@ -0,0 +1,219 @@
+package io.agora.capture.video.camera;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Packs YUV 4:2:0 planes of any row and pixel strides
+ * into tight NV21, NV12 or I420 byte arrays, or buffers
+ * like mapped files.
+ * Rows are read from the plane buffers with bulk
+ * copies, and chroma samples are interleaved or
+ * de-interleaved from the copied rows, so that no
+ * per-pixel buffer access is made. The source planes
+ * are only read, never written.
+ * The conversion can be done by bands of chroma rows,
+ * and different bands can be converted concurrently.
+ */
+public class YuvConverter {
+    private static final ThreadLocal<byte[][]> sRowBuffers = new ThreadLocal<byte[][]>() {
+        @Override
+        protected byte[][] initialValue() {
+            return new byte[3][0];
+        }
+    };
+
+    private YuvConverter() {
+
+    }
+
+    /**
+     * Convert the whole image.
+     * @param src source planes
+     * @param dst destination array, must not be smaller
+     *            than src.getPackedSize()
+     * @param layout one of VideoFramePlanes.LAYOUT_NV21,
+     *               LAYOUT_NV12 or LAYOUT_I420
+     * @return the destination array
+     */
+    public static byte[] convert(VideoFramePlanes src, byte[] dst, int layout) {
+        convert(src, dst, layout, 0, VideoFramePlanes.chromaHeight(src.getHeight()));
+        return dst;
+    }
+
+    /**
+     * Convert a band of the image. The band covers the
+     * given chroma rows and the luma rows of them.
+     * @param chromaRowStart the first chroma row, inclusive
+     * @param chromaRowEnd the last chroma row, exclusive
+     */
+    public static void convert(VideoFramePlanes src, byte[] dst, int layout,
+                               int chromaRowStart, int chromaRowEnd) {
+        convert(src, dst, null, layout, chromaRowStart, chromaRowEnd);
+    }
+
+    /**
+     * Convert the whole image into a buffer, without a
+     * copy in between.
+     * @param dst destination buffer written from index 0,
+     *            must not be smaller than
+     *            src.getPackedSize(). Its position and
+     *            limit are not changed.
+     * @see #convert(VideoFramePlanes, byte[], int)
+     */
+    public static void convert(VideoFramePlanes src, ByteBuffer dst, int layout) {
+        // Restored rather than duplicated, not to allocate
+        int position = dst.position();
+        int limit = dst.limit();
+        dst.limit(dst.capacity());
+        try {
+            convert(src, null, dst, layout, 0, VideoFramePlanes.chromaHeight(src.getHeight()));
+        } finally {
+            dst.limit(limit);
+            dst.position(position);
+        }
+    }
+
+    // Into the array, or into the buffer when there is one
+    private static void convert(VideoFramePlanes src, byte[] dst, ByteBuffer out, int layout,
+                                int chromaRowStart, int chromaRowEnd) {
+        if (layout != VideoFramePlanes.LAYOUT_NV21 &&
+                layout != VideoFramePlanes.LAYOUT_NV12 &&
+                layout != VideoFramePlanes.LAYOUT_I420) {
+            throw new IllegalArgumentException("Unsupported output layout " + layout);
+        }
+
+        int width = src.getWidth();
+        int height = src.getHeight();
+        copyLuma(src.getPlane(VideoFramePlanes.PLANE_Y), dst, out, width,
+                chromaRowStart * 2, Math.min(chromaRowEnd * 2, height));
+
+        if (layout == VideoFramePlanes.LAYOUT_I420) {
+            copyPlanarChroma(src, dst, out, chromaRowStart, chromaRowEnd);
+        } else {
+            copySemiPlanarChroma(src, dst, out, layout == VideoFramePlanes.LAYOUT_NV21,
+                    chromaRowStart, chromaRowEnd);
+        }
+    }
+
+    private static void copyLuma(VideoFramePlanes.Plane plane, byte[] dst, ByteBuffer out,
+                                 int width, int rowStart, int rowEnd) {
+        copyPlane(plane, dst, out, 0, width, rowStart, rowEnd);
+    }
+
+    private static void copyPlanarChroma(VideoFramePlanes src, byte[] dst, ByteBuffer out,
+                                         int rowStart, int rowEnd) {
+        int width = VideoFramePlanes.chromaWidth(src.getWidth());
+        int height = VideoFramePlanes.chromaHeight(src.getHeight());
+        int uOffset = src.getWidth() * src.getHeight();
+        int vOffset = uOffset + width * height;
+        copyPlane(src.getPlane(VideoFramePlanes.PLANE_U), dst, out, uOffset, width, rowStart, rowEnd);
+        copyPlane(src.getPlane(VideoFramePlanes.PLANE_V), dst, out, vOffset, width, rowStart, rowEnd);
+    }
+
+    private static void copyPlane(VideoFramePlanes.Plane plane, byte[] dst, ByteBuffer out,
+                                  int offset, int width, int rowStart, int rowEnd) {
+        ByteBuffer buffer = plane.getBuffer().duplicate();
+        int rowStride = plane.getRowStride();
+        int pixelStride = plane.getPixelStride();
+
+        if (pixelStride == 1 && rowStride == width) {
+            copy(buffer, rowStart * width, dst, out, offset + rowStart * width,
+                    (rowEnd - rowStart) * width);
+            return;
+        }
+
+        if (pixelStride == 1) {
+            for (int row = rowStart; row < rowEnd; row++) {
+                copy(buffer, row * rowStride, dst, out, offset + row * width, width);
+            }
+            return;
+        }
+
+        int length = rowLength(width, pixelStride);
+        byte[] rowBuffer = rowBuffer(0, length);
+        byte[] target = out == null ? dst : rowBuffer(2, width);
+        for (int row = rowStart; row < rowEnd; row++) {
+            readRow(buffer, row * rowStride, rowBuffer, length);
+            int pos = out == null ? offset + row * width : 0;
+            for (int col = 0, i = 0; col < width; col++, i += pixelStride) {
+                target[pos + col] = rowBuffer[i];
+            }
+            if (out != null) writeRow(out, offset + row * width, target, width);
+        }
+    }
+
+    private static void copySemiPlanarChroma(VideoFramePlanes src, byte[] dst, ByteBuffer out,
+                                             boolean vFirst, int rowStart, int rowEnd) {
+        int width = VideoFramePlanes.chromaWidth(src.getWidth());
+        int offset = src.getWidth() * src.getHeight();
+        VideoFramePlanes.Plane first = src.getPlane(
+                vFirst ? VideoFramePlanes.PLANE_V : VideoFramePlanes.PLANE_U);
+        VideoFramePlanes.Plane second = src.getPlane(
+                vFirst ? VideoFramePlanes.PLANE_U : VideoFramePlanes.PLANE_V);
+
+        ByteBuffer firstBuffer = first.getBuffer().duplicate();
+        ByteBuffer secondBuffer = second.getBuffer().duplicate();
+        int firstStride = first.getPixelStride();
+        int secondStride = second.getPixelStride();
+        int firstLength = rowLength(width, firstStride);
+        int secondLength = rowLength(width, secondStride);
+        byte[] firstRow = rowBuffer(0, firstLength);
+        byte[] secondRow = rowBuffer(1, secondLength);
+        byte[] target = out == null ? dst : rowBuffer(2, width * 2);
+
+        for (int row = rowStart; row < rowEnd; row++) {
+            readRow(firstBuffer, row * first.getRowStride(), firstRow, firstLength);
+            readRow(secondBuffer, row * second.getRowStride(), secondRow, secondLength);
+            int pos = out == null ? offset + row * width * 2 : 0;
+            for (int col = 0, i = 0, j = 0; col < width; col++, i += firstStride, j += secondStride) {
+                target[pos++] = firstRow[i];
+                target[pos++] = secondRow[j];
+            }
+            if (out != null) writeRow(out, offset + row * width * 2, target, width * 2);
+        }
+    }
+
+    /**
+     * The number of bytes a row of samples spans in the
+     * plane. The last row of a plane may end right after
+     * its last sample, so the padding is never read.
+     */
+    private static int rowLength(int width, int pixelStride) {
+        return (width - 1) * pixelStride + 1;
+    }
+
+    private static void readRow(ByteBuffer buffer, int position, byte[] row, int length) {
+        buffer.position(position);
+        buffer.get(row, 0, length);
+    }
+
+    // Bytes of the source buffer into the array, or buffer
+    // to buffer when there is one
+    private static void copy(ByteBuffer buffer, int position, byte[] dst, ByteBuffer out,
+                             int offset, int length) {
+        buffer.position(position);
+        if (out == null) {
+            buffer.get(dst, offset, length);
+            return;
+        }
+
+        int limit = buffer.limit();
+        buffer.limit(position + length);
+        out.position(offset);
+        out.put(buffer);
+        buffer.limit(limit);
+    }
+
+    private static void writeRow(ByteBuffer out, int offset, byte[] row, int length) {
+        out.position(offset);
+        out.put(row, 0, length);
+    }
+
+    private static byte[] rowBuffer(int index, int length) {
+        byte[][] buffers = sRowBuffers.get();
+        if (buffers[index].length < length) {
+            buffers[index] = new byte[length];
+        }
+        return buffers[index];
+    }
+}